@@ -18,9 +18,16 @@ import java.util.regex.Pattern;
 
 import com.openshift.express.internal.client.Application;
 import com.openshift.express.internal.client.InternalUser;
+import com.openshift.express.internal.client.utils.TailDelta;
 
 /**
+ * Reads the log of an application by polling its tail. Only the lines that
+ * were appended since the last poll are read, lines that the consecutive
+ * tails share are skipped.
+ * 
  * @author André Dietisheim
+ * 
+ * @see #setIncremental(boolean)
  */
 public class ApplicationLogReader extends Reader {
 
@@ -34,6 +41,9 @@ public class ApplicationLogReader extends Reader {
 	private InternalUser user;
 	private String currentStatus;
 	private String logFile;
+	private LogFilter filter;
+	private TailDelta tailDelta = new TailDelta();
+	private boolean incremental = true;
 
 	public ApplicationLogReader(Application application, InternalUser user, IOpenShiftService service) {
 		this.application = application;
@@ -48,6 +58,16 @@ public class ApplicationLogReader extends Reader {
 		this.logFile = logFile;
 	}
 
+	/**
+	 * Creates a reader that only reads the lines of the given log that match
+	 * the given filter.
+	 */
+	public ApplicationLogReader(Application application, InternalUser user, IOpenShiftService service,
+			String logFile, LogFilter filter) {
+		this(application, user, service, logFile);
+		this.filter = filter;
+	}
+
 	public int read(char[] cbuf, int off, int len) throws IOException {
 		int charactersRead = -1;
 		try {
@@ -68,8 +88,30 @@ public class ApplicationLogReader extends Reader {
 		}
 	}
 
+	/**
+	 * Sets whether only the lines that were appended since the last poll are
+	 * read or whether the whole tail is read again once it changed.
+	 * Incremental is the default.
+	 * <p>
+	 * Tails carry no offsets, the appended lines are told apart by the lines
+	 * the consecutive tails share. For logs that repeat lines (ex. periodic
+	 * heartbeats) this is ambiguous: the fewest appended lines are assumed
+	 * and appended lines that repeat the lines they follow may be missed.
+	 * Read such logs non-incrementally or with a
+	 * {@link StreamingLogReader}.
+	 * 
+	 * @see TailDelta
+	 */
+	public void setIncremental(boolean incremental) {
+		this.incremental = incremental;
+		tailDelta.reset();
+	}
+
 	private Reader createLogReader(String status) throws InterruptedException, IOException {
 		String log = getLog(status);
+		if (incremental) {
+			log = tailDelta.next(log);
+		}
 		return new StringReader(log);
 	}
 
@@ -86,8 +128,12 @@ public class ApplicationLogReader extends Reader {
 	protected String requestStatus() throws InterruptedException, OpenShiftException {
 		String status = null;
 		while (status == null) {
-			if (logFile != null)
+			if (logFile != null && filter != null)
+				status = service.getStatus(application.getName(), application.getCartridge(), user, logFile, 100, filter);
+			else if (logFile != null)
 				status = service.getStatus(application.getName(), application.getCartridge(), user, logFile, 100);
+			else if (filter != null)
+				status = filter.filter(service.getStatus(application.getName(), application.getCartridge(), user));
 			else
 				status = service.getStatus(application.getName(), application.getCartridge(), user);
 			if (isSameStatus(currentStatus, status)) {
@@ -0,0 +1,152 @@
+/******************************************************************************* 
+ * Copyright (c) 2011 Red Hat, Inc. 
+ * Distributed under license by Red Hat, Inc. All rights reserved. 
+ * This program is made available under the terms of the 
+ * Eclipse Public License v1.0 which accompanies this distribution, 
+ * and is available at http://www.eclipse.org/legal/epl-v10.html 
+ * 
+ * Contributors: 
+ * Red Hat, Inc. - initial API and implementation 
+ ******************************************************************************/
+package com.openshift.express.client;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import com.openshift.express.internal.client.concurrent.DaemonThreadFactory;
+import com.openshift.express.internal.client.concurrent.KeyedSerialExecutor;
+
+/**
+ * Queues operations on applications. The broker does not allow concurrent
+ * operations on the same application, so the operations on an application
+ * run one after the other, in the order they were submitted. Operations on
+ * different applications run in parallel on a shared pool of workers.
+ * 
+ * <pre>
+ * ApplicationOperationQueue queue = new ApplicationOperationQueue(8);
+ * queue.addEmbeddedCartridge(application, IEmbeddableCartridge.MYSQL_51);
+ * queue.restart(application); // runs once mysql is embedded
+ * </pre>
+ * 
+ * @author agent
+ */
+public class ApplicationOperationQueue {
+
+	public static final int DEFAULT_WORKERS = 8;
+	private static final long WORKER_KEEPALIVE = 30 * 1000;
+
+	private final ThreadPoolExecutor workers;
+	private final KeyedSerialExecutor<IApplication> executor;
+
+	public ApplicationOperationQueue() {
+		this(DEFAULT_WORKERS);
+	}
+
+	/**
+	 * @param workers
+	 *            the max number of applications that are operated on at the
+	 *            same time
+	 */
+	public ApplicationOperationQueue(int workers) {
+		this.workers = new ThreadPoolExecutor(workers, workers, WORKER_KEEPALIVE, TimeUnit.MILLISECONDS,
+				new LinkedBlockingQueue<Runnable>(), new DaemonThreadFactory("application-queue"));
+		this.workers.allowCoreThreadTimeOut(true);
+		this.executor = new KeyedSerialExecutor<IApplication>(this.workers);
+	}
+
+	/**
+	 * Queues the given operation for the given application.
+	 * 
+	 * @return the future result of the operation
+	 * @throws RejectedExecutionException
+	 *             if the queue was shut down
+	 */
+	public <V> Future<V> submit(IApplication application, Callable<V> operation) {
+		if (workers.isShutdown()) {
+			throw new RejectedExecutionException("Application operation queue was shut down");
+		}
+		return executor.submit(application, operation);
+	}
+
+	public Future<Void> start(final IApplication application) {
+		return submit(application, new Callable<Void>() {
+
+			public Void call() throws Exception {
+				application.start();
+				return null;
+			}
+		});
+	}
+
+	public Future<Void> stop(final IApplication application) {
+		return submit(application, new Callable<Void>() {
+
+			public Void call() throws Exception {
+				application.stop();
+				return null;
+			}
+		});
+	}
+
+	public Future<Void> restart(final IApplication application) {
+		return submit(application, new Callable<Void>() {
+
+			public Void call() throws Exception {
+				application.restart();
+				return null;
+			}
+		});
+	}
+
+	public Future<Void> addEmbeddedCartridge(final IApplication application, final IEmbeddableCartridge cartridge) {
+		return submit(application, new Callable<Void>() {
+
+			public Void call() throws Exception {
+				application.addEmbbedCartridge(cartridge);
+				return null;
+			}
+		});
+	}
+
+	public Future<Void> removeEmbeddedCartridge(final IApplication application,
+			final IEmbeddableCartridge cartridge) {
+		return submit(application, new Callable<Void>() {
+
+			public Void call() throws Exception {
+				application.removeEmbbedCartridge(cartridge);
+				return null;
+			}
+		});
+	}
+
+	public Future<Void> destroy(final IApplication application) {
+		return submit(application, new Callable<Void>() {
+
+			public Void call() throws Exception {
+				application.destroy();
+				return null;
+			}
+		});
+	}
+
+	/**
+	 * Returns the number of operations that wait for the given application,
+	 * excluding the one that is running.
+	 */
+	public int getPending(IApplication application) {
+		return executor.getPending(application);
+	}
+
+	/**
+	 * Stops accepting operations. Queued operations still run, those of an
+	 * application one after the other on the worker that ran its last
+	 * operation.
+	 */
+	public void shutdown() {
+		workers.shutdown();
+	}
+}
@@ -0,0 +1,171 @@
+/******************************************************************************* 
+ * Copyright (c) 2011 Red Hat, Inc. 
+ * Distributed under license by Red Hat, Inc. All rights reserved. 
+ * This program is made available under the terms of the 
+ * Eclipse Public License v1.0 which accompanies this distribution, 
+ * and is available at http://www.eclipse.org/legal/epl-v10.html 
+ * 
+ * Contributors: 
+ * Red Hat, Inc. - initial API and implementation 
+ ******************************************************************************/
+package com.openshift.express.client;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+
+import com.openshift.express.internal.client.concurrent.ByteRingBuffer;
+import com.openshift.express.internal.client.concurrent.DaemonThreadFactory;
+
+/**
+ * Reads a log through a buffer of fixed size. The given log reader is read
+ * ahead on a background thread, so that the log keeps being read while the
+ * consumer is busy, and the memory a log takes stays the same no matter how
+ * much the application logs. If the consumer falls behind, the
+ * {@link OverflowPolicy} decides whether the log reading waits or whether
+ * lines are dropped. Dropped lines are counted.
+ * 
+ * <pre>
+ * Reader reader = new BoundedLogReader(application.getLogReader(), 64 * 1024, OverflowPolicy.DROP_OLDEST);
+ * </pre>
+ * 
+ * @author agent
+ */
+public class BoundedLogReader extends Reader {
+
+	private static final Charset CHARSET = Charset.forName("UTF-8");
+	private static final int BUFFER_SIZE = 8 * 1024;
+
+	private final Reader logReader;
+	private final ByteRingBuffer ringBuffer;
+	private final CharsetDecoder decoder = CHARSET.newDecoder()
+			.onMalformedInput(CodingErrorAction.REPLACE)
+			.onUnmappableCharacter(CodingErrorAction.REPLACE);
+	private final ByteBuffer bytes = ByteBuffer.allocate(BUFFER_SIZE);
+	private final CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE);
+	private final Thread producer;
+	private volatile IOException failure;
+
+	public BoundedLogReader(Reader logReader, int capacity, OverflowPolicy policy) {
+		this(logReader, capacity, policy, false);
+	}
+
+	/**
+	 * @param logReader
+	 *            the reader to read the log with
+	 * @param capacity
+	 *            the max number of bytes that are buffered
+	 * @param policy
+	 *            what to do with lines that do not fit into the buffer
+	 * @param direct
+	 *            whether the buffer is held off-heap
+	 */
+	public BoundedLogReader(Reader logReader, int capacity, OverflowPolicy policy, boolean direct) {
+		this.logReader = logReader;
+		this.ringBuffer = new ByteRingBuffer(capacity, policy, direct);
+		chars.flip();
+		this.producer = new DaemonThreadFactory("bounded-log-reader").newThread(new Runnable() {
+
+			public void run() {
+				readAhead();
+			}
+		});
+		producer.start();
+	}
+
+	private void readAhead() {
+		BufferedReader reader = new BufferedReader(logReader);
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				byte[] lineBytes = (line + '\n').getBytes(CHARSET.name());
+				ringBuffer.write(lineBytes, 0, lineBytes.length);
+			}
+		} catch (IOException e) {
+			this.failure = e;
+		} catch (InterruptedException e) {
+			// closed
+		} finally {
+			ringBuffer.close();
+		}
+	}
+
+	/**
+	 * Blocks until log output is available and reads it.
+	 * 
+	 * @return the number of characters read or <code>-1</code> if the log
+	 *         ended or the reader was closed
+	 * @throws IOException
+	 *             if reading the log failed
+	 */
+	public synchronized int read(char[] cbuf, int off, int len) throws IOException {
+		if (len == 0) {
+			return 0;
+		}
+		while (!chars.hasRemaining()) {
+			if (!fill()) {
+				if (failure != null) {
+					throw failure;
+				}
+				return -1;
+			}
+		}
+		int read = Math.min(len, chars.remaining());
+		chars.get(cbuf, off, read);
+		return read;
+	}
+
+	private boolean fill() {
+		try {
+			int read = ringBuffer.read(bytes.array(), bytes.position(), bytes.remaining());
+			if (read == -1) {
+				return false;
+			}
+			bytes.position(bytes.position() + read);
+			bytes.flip();
+			chars.compact();
+			decoder.decode(bytes, chars, false);
+			// bytes of an incomplete character stay in the buffer
+			bytes.compact();
+			chars.flip();
+			return true;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+
+	/**
+	 * Returns the number of bytes that were dropped since the reader was
+	 * created.
+	 */
+	public long getDroppedBytes() {
+		return ringBuffer.getDroppedBytes();
+	}
+
+	/**
+	 * Returns the number of lines that were dropped since the reader was
+	 * created.
+	 */
+	public long getDroppedLines() {
+		return ringBuffer.getDroppedLines();
+	}
+
+	/**
+	 * Returns the number of bytes that are buffered and were not read yet.
+	 */
+	public int getBufferedBytes() {
+		return ringBuffer.getSize();
+	}
+
+	public void close() throws IOException {
+		ringBuffer.close();
+		producer.interrupt();
+		logReader.close();
+	}
+}
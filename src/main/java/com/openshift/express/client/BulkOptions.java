@@ -0,0 +1,96 @@
+/******************************************************************************* 
+ * Copyright (c) 2011 Red Hat, Inc. 
+ * Distributed under license by Red Hat, Inc. All rights reserved. 
+ * This program is made available under the terms of the 
+ * Eclipse Public License v1.0 which accompanies this distribution, 
+ * and is available at http://www.eclipse.org/legal/epl-v10.html 
+ * 
+ * Contributors: 
+ * Red Hat, Inc. - initial API and implementation 
+ ******************************************************************************/
+package com.openshift.express.client;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.openshift.express.internal.client.concurrent.AimdLimit;
+import com.openshift.express.internal.client.concurrent.FairScheduler;
+
+/**
+ * Options for the bulk operations on applications.
+ * 
+ * @author agent
+ * 
+ * @see IUser#restartApplications(List, BulkOptions)
+ */
+public class BulkOptions {
+
+	public static final int DEFAULT_PARALLELISM = 8;
+
+	private int parallelism = DEFAULT_PARALLELISM;
+	private IBulkProgressListener progressListener;
+	private List<ICartridge> cartridgeOrder = Collections.emptyList();
+	private FairScheduler concurrencyLimiter;
+
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	/**
+	 * Sets the maximum number of applications that are operated on at the same
+	 * time.
+	 */
+	public BulkOptions setParallelism(int parallelism) {
+		if (parallelism < 1) {
+			throw new IllegalArgumentException("parallelism has to be at least 1");
+		}
+		this.parallelism = parallelism;
+		return this;
+	}
+
+	public IBulkProgressListener getProgressListener() {
+		return progressListener;
+	}
+
+	public BulkOptions setProgressListener(IBulkProgressListener progressListener) {
+		this.progressListener = progressListener;
+		return this;
+	}
+
+	public List<ICartridge> getCartridgeOrder() {
+		return cartridgeOrder;
+	}
+
+	/**
+	 * Operates on the applications grouped by cartridge, one group after the
+	 * other in the given order. Applications with a cartridge that is not
+	 * listed are operated on last. The applications within a group are still
+	 * operated on in parallel.
+	 */
+	public BulkOptions setCartridgeOrder(ICartridge... cartridges) {
+		this.cartridgeOrder = new ArrayList<ICartridge>();
+		for (ICartridge cartridge : cartridges) {
+			cartridgeOrder.add(cartridge);
+		}
+		return this;
+	}
+
+	public FairScheduler getConcurrencyLimiter() {
+		return concurrencyLimiter;
+	}
+
+	/**
+	 * Limits the applications that are operated on at the same time with the
+	 * given limiter on top of the parallelism. A limiter with an
+	 * {@link AimdLimit} backs off when the broker gets slow or fails and may
+	 * be shared by several bulk operations and workflows. It is shared fairly
+	 * among the users that own the applications. The scheduler of the
+	 * service ({@link OpenShiftService#getScheduler()}) limits each request
+	 * already and is not acquired again around the operations.
+	 */
+	public BulkOptions setConcurrencyLimiter(FairScheduler concurrencyLimiter) {
+		this.concurrencyLimiter = concurrencyLimiter;
+		return this;
+	}
+}
@@ -0,0 +1,83 @@
+/******************************************************************************* 
+ * Copyright (c) 2011 Red Hat, Inc. 
+ * Distributed under license by Red Hat, Inc. All rights reserved. 
+ * This program is made available under the terms of the 
+ * Eclipse Public License v1.0 which accompanies this distribution, 
+ * and is available at http://www.eclipse.org/legal/epl-v10.html 
+ * 
+ * Contributors: 
+ * Red Hat, Inc. - initial API and implementation 
+ ******************************************************************************/
+package com.openshift.express.client;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The outcome of a bulk operation on several applications.
+ * 
+ * @author agent
+ * 
+ * @see IUser#restartApplications(List, BulkOptions)
+ */
+public class BulkResult {
+
+	private List<IApplication> succeeded = new ArrayList<IApplication>();
+	private Map<IApplication, OpenShiftException> failures = new LinkedHashMap<IApplication, OpenShiftException>();
+
+	public void addSuccess(IApplication application) {
+		succeeded.add(application);
+	}
+
+	public void addFailure(IApplication application, OpenShiftException e) {
+		failures.put(application, e);
+	}
+
+	public List<IApplication> getSucceeded() {
+		return Collections.unmodifiableList(succeeded);
+	}
+
+	/**
+	 * Returns the applications that the operation failed for and the reason
+	 * why it failed.
+	 */
+	public Map<IApplication, OpenShiftException> getFailures() {
+		return Collections.unmodifiableMap(failures);
+	}
+
+	public OpenShiftException getFailure(IApplication application) {
+		return failures.get(application);
+	}
+
+	public boolean isSuccessful() {
+		return failures.isEmpty();
+	}
+
+	/**
+	 * Throws an exception that lists all failures if the operation failed for
+	 * any application.
+	 * 
+	 * @throws OpenShiftException
+	 *             if the operation failed for any application
+	 */
+	public void assertSuccessful() throws OpenShiftException {
+		if (isSuccessful()) {
+			return;
+		}
+		StringBuilder builder = new StringBuilder();
+		for (Map.Entry<IApplication, OpenShiftException> entry : failures.entrySet()) {
+			if (builder.length() > 0) {
+				builder.append(", ");
+			}
+			builder.append(entry.getKey().getName())
+					.append(": ")
+					.append(entry.getValue().getMessage());
+		}
+		throw new OpenShiftException(failures.values().iterator().next(),
+				"Operation failed for {0} of {1} applications ({2})",
+				failures.size(), failures.size() + succeeded.size(), builder.toString());
+	}
+}
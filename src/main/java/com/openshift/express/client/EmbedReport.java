@@ -0,0 +1,156 @@
+/******************************************************************************* 
+ * Copyright (c) 2011 Red Hat, Inc. 
+ * Distributed under license by Red Hat, Inc. All rights reserved. 
+ * This program is made available under the terms of the 
+ * Eclipse Public License v1.0 which accompanies this distribution, 
+ * and is available at http://www.eclipse.org/legal/epl-v10.html 
+ * 
+ * Contributors: 
+ * Red Hat, Inc. - initial API and implementation 
+ ******************************************************************************/
+package com.openshift.express.client;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The outcome of adding or removing embedded cartridges on one or several
+ * applications. May be filled from several threads at the same time.
+ * 
+ * @author agent
+ * 
+ * @see IUser#addEmbeddedCartridges(List, List, BulkOptions)
+ */
+public class EmbedReport {
+
+	private Map<IApplication, List<IEmbeddableCartridge>> succeeded =
+			new LinkedHashMap<IApplication, List<IEmbeddableCartridge>>();
+	private Map<IApplication, Map<IEmbeddableCartridge, OpenShiftException>> failures =
+			new LinkedHashMap<IApplication, Map<IEmbeddableCartridge, OpenShiftException>>();
+	private Map<IApplication, List<IEmbeddableCartridge>> skipped =
+			new LinkedHashMap<IApplication, List<IEmbeddableCartridge>>();
+
+	public synchronized void addSuccess(IApplication application, IEmbeddableCartridge cartridge) {
+		add(application, cartridge, succeeded);
+	}
+
+	/**
+	 * Reports a cartridge that was not processed since a cartridge it depends
+	 * on (or when removing: that depends on it) failed.
+	 */
+	public synchronized void addSkipped(IApplication application, IEmbeddableCartridge cartridge) {
+		add(application, cartridge, skipped);
+	}
+
+	private void add(IApplication application, IEmbeddableCartridge cartridge,
+			Map<IApplication, List<IEmbeddableCartridge>> cartridgesByApplication) {
+		List<IEmbeddableCartridge> cartridges = cartridgesByApplication.get(application);
+		if (cartridges == null) {
+			cartridges = new ArrayList<IEmbeddableCartridge>();
+			cartridgesByApplication.put(application, cartridges);
+		}
+		cartridges.add(cartridge);
+	}
+
+	public synchronized void addFailure(IApplication application, IEmbeddableCartridge cartridge,
+			OpenShiftException e) {
+		Map<IEmbeddableCartridge, OpenShiftException> applicationFailures = failures.get(application);
+		if (applicationFailures == null) {
+			applicationFailures = new LinkedHashMap<IEmbeddableCartridge, OpenShiftException>();
+			failures.put(application, applicationFailures);
+		}
+		applicationFailures.put(cartridge, e);
+	}
+
+	/**
+	 * Returns the cartridges that were successfully added to or removed from
+	 * the given application.
+	 */
+	public synchronized List<IEmbeddableCartridge> getSucceeded(IApplication application) {
+		return get(application, succeeded);
+	}
+
+	/**
+	 * Returns the cartridges that were not added to or removed from the given
+	 * application since a cartridge they depend on failed.
+	 */
+	public synchronized List<IEmbeddableCartridge> getSkipped(IApplication application) {
+		return get(application, skipped);
+	}
+
+	private List<IEmbeddableCartridge> get(IApplication application,
+			Map<IApplication, List<IEmbeddableCartridge>> cartridgesByApplication) {
+		List<IEmbeddableCartridge> cartridges = cartridgesByApplication.get(application);
+		if (cartridges == null) {
+			return Collections.emptyList();
+		}
+		return new ArrayList<IEmbeddableCartridge>(cartridges);
+	}
+
+	/**
+	 * Returns the cartridges that could not be added to or removed from the
+	 * given application and the reason why.
+	 */
+	public synchronized Map<IEmbeddableCartridge, OpenShiftException> getFailures(IApplication application) {
+		Map<IEmbeddableCartridge, OpenShiftException> applicationFailures = failures.get(application);
+		if (applicationFailures == null) {
+			return Collections.emptyMap();
+		}
+		return new LinkedHashMap<IEmbeddableCartridge, OpenShiftException>(applicationFailures);
+	}
+
+	public synchronized List<IApplication> getFailedApplications() {
+		return new ArrayList<IApplication>(failures.keySet());
+	}
+
+	public synchronized boolean isSuccessful() {
+		return failures.isEmpty();
+	}
+
+	/**
+	 * Throws an exception that lists all failures and skipped cartridges if
+	 * any cartridge could not be added or removed.
+	 * 
+	 * @throws OpenShiftException
+	 *             if any cartridge could not be added or removed
+	 */
+	public synchronized void assertSuccessful() throws OpenShiftException {
+		if (isSuccessful()) {
+			return;
+		}
+		StringBuilder builder = new StringBuilder();
+		OpenShiftException cause = null;
+		int count = 0;
+		for (Map.Entry<IApplication, Map<IEmbeddableCartridge, OpenShiftException>> entry : failures.entrySet()) {
+			for (Map.Entry<IEmbeddableCartridge, OpenShiftException> failure : entry.getValue().entrySet()) {
+				if (cause == null) {
+					cause = failure.getValue();
+				}
+				if (builder.length() > 0) {
+					builder.append(", ");
+				}
+				builder.append(entry.getKey().getName())
+						.append('/')
+						.append(failure.getKey().getName())
+						.append(": ")
+						.append(failure.getValue().getMessage());
+				count++;
+			}
+		}
+		for (Map.Entry<IApplication, List<IEmbeddableCartridge>> entry : skipped.entrySet()) {
+			for (IEmbeddableCartridge cartridge : entry.getValue()) {
+				builder.append(", ")
+						.append(entry.getKey().getName())
+						.append('/')
+						.append(cartridge.getName())
+						.append(": skipped");
+				count++;
+			}
+		}
+		throw new OpenShiftException(cause, "Could not process {0} embedded cartridge(s) ({1})", count,
+				builder.toString());
+	}
+}
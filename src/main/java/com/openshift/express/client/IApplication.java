@@ -52,7 +52,8 @@ public interface IApplication {
 	/**
 	 * Returns the url at which this application may be checked for its health state.
 	 * 
-	 * @return the url at which the health state may be queried.
+	 * @return the url at which the health state may be queried or
+	 *         <code>null</code> if it is not known
 	 * @throws OpenShiftException
 	 */
 	public String getHealthCheckUrl() throws OpenShiftException;
@@ -76,10 +77,13 @@ public interface IApplication {
 	public void addEmbbedCartridge(IEmbeddableCartridge embeddedCartridge) throws OpenShiftException;
 
 	/**
-	 * Adds all given embeddable cartridges from this app.
+	 * Adds all given embeddable cartridges to this app, one after the other in
+	 * the given order. Continues if a cartridge cannot be added and reports
+	 * all failures once all cartridges were processed.
 	 * 
 	 * @param embeddedCartridges
 	 * @throws OpenShiftException
+	 *             if any of the cartridges could not be added
 	 * 
 	 * @see IEmbeddableCartridge
 	 * @see #addEmbbedCartridge(IEmbeddableCartridge)
@@ -100,10 +104,13 @@ public interface IApplication {
 	public void removeEmbbedCartridge(IEmbeddableCartridge embeddedCartridge) throws OpenShiftException;
 
 	/**
-	 * Removes all given cartridges from this app.
+	 * Removes all given cartridges from this app, in reverse order. Continues
+	 * if a cartridge cannot be removed and reports all failures once all
+	 * cartridges were processed.
 	 * 
 	 * @param embeddedCartridges all cartridges that shall be removed.
 	 * @throws OpenShiftException
+	 *             if any of the cartridges could not be removed
 	 * 
 	 * @see IEmbeddableCartridge
 	 * @see #addEmbbedCartridge(IEmbeddableCartridge)
@@ -213,6 +220,61 @@ public interface IApplication {
 	 * @see ApplicationLogReader
 	 */
 	public ApplicationLogReader getLogReader(String logFile) throws OpenShiftException;
+
+	/**
+	 * Returns a reader that reads the lines of the given log that match the
+	 * given filter. The filter is evaluated on the application's host as far
+	 * as possible.
+	 * 
+	 * @param logFile
+	 *            the log file
+	 * @param filter
+	 *            the filter that the lines have to match
+	 * @return a reader that you can read the matching lines from
+	 * @throws OpenShiftException
+	 * 
+	 * @see LogFilter
+	 */
+	public ApplicationLogReader getLogReader(String logFile, LogFilter filter) throws OpenShiftException;
+
+	/**
+	 * Returns a reader that streams the given log file as it grows. Unlike
+	 * the {@link ApplicationLogReader} it does not poll but keeps a tail open
+	 * on the application host. The caller has to close the reader.
+	 * 
+	 * @param logFile
+	 * 			the log file
+	 * @return a reader that you can read the log from
+	 * @throws OpenShiftException
+	 * 
+	 * @see StreamingLogReader
+	 */
+	public StreamingLogReader getStreamingLogReader(String logFile) throws OpenShiftException;
+
+	/**
+	 * Returns a reader that reads the last lines of the given log files as
+	 * one log, in the order of their timestamps.
+	 * <p>
+	 * This is a convenience for short tails: the last lines of each log are
+	 * downloaded and held in memory before the merge starts, so memory grows
+	 * with <code>numLines</code> times the number of logs. To merge logs
+	 * with the memory bound of {@link MergedLogReader}, pass it the
+	 * {@link #getStreamingLogReader(String) streaming readers} of the logs.
+	 * 
+	 * @param numLines
+	 *            the number of lines to read of each log
+	 * @param timestampFormat
+	 *            the {@link java.text.SimpleDateFormat} pattern of the
+	 *            timestamps the lines start with
+	 * @param logFiles
+	 *            the log files
+	 * @return a reader that you can read the merged logs from
+	 * @throws OpenShiftException
+	 * 
+	 * @see MergedLogReader
+	 */
+	public MergedLogReader getMergedLogReader(int numLines, String timestampFormat, String... logFiles)
+			throws OpenShiftException;
 	
 	/**
 	 * Waits for this application to become accessible on its public url. 
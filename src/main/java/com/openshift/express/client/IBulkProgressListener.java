@@ -0,0 +1,36 @@
+/******************************************************************************* 
+ * Copyright (c) 2011 Red Hat, Inc. 
+ * Distributed under license by Red Hat, Inc. All rights reserved. 
+ * This program is made available under the terms of the 
+ * Eclipse Public License v1.0 which accompanies this distribution, 
+ * and is available at http://www.eclipse.org/legal/epl-v10.html 
+ * 
+ * Contributors: 
+ * Red Hat, Inc. - initial API and implementation 
+ ******************************************************************************/
+package com.openshift.express.client;
+
+/**
+ * Gets notified while a bulk operation on several applications progresses.
+ * All notifications are sent from the thread that started the bulk operation.
+ * 
+ * @author agent
+ * 
+ * @see IUser#restartApplications(java.util.List, BulkOptions)
+ */
+public interface IBulkProgressListener {
+
+	/**
+	 * Called once for each application when the operation on it is done.
+	 * 
+	 * @param application
+	 *            the application that the operation was performed on
+	 * @param failure
+	 *            the failure or <code>null</code> if the operation succeeded
+	 * @param done
+	 *            the number of applications that are done so far
+	 * @param total
+	 *            the number of applications in this bulk operation
+	 */
+	public void done(IApplication application, OpenShiftException failure, int done, int total);
+}
@@ -10,6 +10,8 @@
  ******************************************************************************/
 package com.openshift.express.client;
 
+import java.util.Map;
+
 /**
  * @author André Dietisheim
  */
@@ -26,11 +28,24 @@ public interface IDomain {
 	/**
 	 * Waits for the domain to become accessible. A domain is considered as
 	 * accessible as soon as at least 1 application url in it resolves to a
-	 * valid ip address.
+	 * valid ip address. All application urls are checked concurrently.
 	 * 
 	 * @return boolean true if at least 1 application within this domain
-	 *         resolves
+	 *         resolves or if there are no applications
 	 * @throws OpenShiftException
 	 */
 	public boolean waitForAccessible(long timeout) throws OpenShiftException;
+
+	/**
+	 * Waits for the urls of all applications within this domain to resolve.
+	 * All urls are checked concurrently and share the given timeout. Returns
+	 * as soon as all urls resolved or the timeout is reached.
+	 * 
+	 * @param timeout
+	 *            the max time to wait for all applications
+	 * @return <code>true</code> for each application whose url resolved,
+	 *         <code>false</code> otherwise
+	 * @throws OpenShiftException
+	 */
+	public Map<IApplication, Boolean> waitForApplicationsResolve(long timeout) throws OpenShiftException;
 }
\ No newline at end of file
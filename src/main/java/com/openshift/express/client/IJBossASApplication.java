@@ -10,6 +10,9 @@
  ******************************************************************************/
 package com.openshift.express.client;
 
+import com.openshift.express.client.threaddump.IThreadDumpListener;
+import com.openshift.express.client.threaddump.ThreadDump;
+
 /**
  * @author William DeCoste
  */
@@ -23,4 +26,31 @@ public interface IJBossASApplication extends IApplication {
 	 */
 	public String threadDump() throws OpenShiftException;
 
+	/**
+	 * Triggers a thread dump and reads it from the log it is written to.
+	 * 
+	 * @param timeout
+	 *            the max time to wait for the dump, in milliseconds
+	 * @return the thread dump
+	 * @throws OpenShiftException
+	 *             if the dump could not be read within the timeout
+	 * 
+	 * @see #captureThreadDump(IThreadDumpListener, long)
+	 */
+	public ThreadDump captureThreadDump(long timeout) throws OpenShiftException;
+
+	/**
+	 * Triggers a thread dump and reads it from the log it is written to. The
+	 * given listener gets each thread as soon as it was read.
+	 * 
+	 * @param listener
+	 *            the listener that gets the threads, may be <code>null</code>
+	 * @param timeout
+	 *            the max time to wait for the dump, in milliseconds
+	 * @return the thread dump
+	 * @throws OpenShiftException
+	 *             if the dump could not be read within the timeout
+	 */
+	public ThreadDump captureThreadDump(IThreadDumpListener listener, long timeout) throws OpenShiftException;
+
 }
\ No newline at end of file
@@ -12,6 +12,7 @@ package com.openshift.express.client;
 
 import java.net.MalformedURLException;
 import java.util.List;
+import java.util.concurrent.Future;
 
 import com.openshift.express.internal.client.ApplicationInfo;
 import com.openshift.express.internal.client.UserInfo;
@@ -293,6 +294,57 @@ public interface IOpenShiftService {
 	 */
 	public String getStatus(String name, ICartridge cartridge, IUser user, String logFile, int numLines) throws OpenShiftException;
 
+	/**
+	 * Returns the last lines of the given log of the given application that
+	 * match the given filter. The filter is evaluated on the application's
+	 * host as far as possible, so that only matching lines are transferred.
+	 * 
+	 * @param name
+	 *            of the application that the log shall be returned of
+	 * @param cartridge
+	 *            the cartridge the application is running on
+	 * @param user
+	 *            the user account to use
+	 * @param logFile
+	 *            the log file
+	 * @param numLines
+	 *            the max number of matching lines to return
+	 * @param filter
+	 *            the filter that the lines have to match or
+	 *            <code>null</code> for all lines
+	 * @return the last matching lines of the log. If the filter is not
+	 *         {@link LogFilter#isPushedDown() pushed down} as a whole they are
+	 *         the last matching lines among the last
+	 *         {@link LogFilter#CLIENT_FILTER_LINES_FACTOR} times
+	 *         <code>numLines</code> lines
+	 * @throws OpenShiftException
+	 * 
+	 * @see LogFilter
+	 */
+	public String getStatus(String name, ICartridge cartridge, IUser user, String logFile, int numLines,
+			LogFilter filter) throws OpenShiftException;
+
+	/**
+	 * Returns a reader that streams the given log of the application with the
+	 * given name and cartridge as it grows. The reader starts at the current
+	 * end of the log.
+	 * 
+	 * @param name
+	 *            of the application that the log shall be streamed of
+	 * @param cartridge
+	 *            the cartridge the application is running on
+	 * @param user
+	 *            the user account to use
+	 * @param logFile
+	 *            the log file
+	 * @return the reader that streams the log
+	 * @throws OpenShiftException
+	 * 
+	 * @see StreamingLogReader
+	 */
+	public StreamingLogReader getLogStream(String name, ICartridge cartridge, IUser user, String logFile)
+			throws OpenShiftException;
+
 
 	/**
 	 * Changes the current domain (namespace) to the given name.
@@ -381,6 +433,46 @@ public interface IOpenShiftService {
 	public boolean waitForApplication(String applicationHealthCheckUrl, long timeout) throws OpenShiftException;
 	
 	public boolean waitForHostResolves(String url, long timeout) throws OpenShiftException;
+
+	/**
+	 * Waits for the given application to become accessible without blocking
+	 * the calling thread. The health check url is probed with a growing delay.
+	 * 
+	 * @param healthCheckUrl
+	 *            the url at which the application may be queried for it's
+	 *            accessibility
+	 * @param timeout
+	 *            the max time that shall be waited for.
+	 * @param callback
+	 *            notified once the wait is over, may be <code>null</code>
+	 * @return a future that is <code>true</code> if the application became
+	 *         accessible
+	 * @throws OpenShiftException
+	 *             if the url is malformed
+	 * 
+	 * @see #waitForApplication(String, long)
+	 */
+	public Future<Boolean> waitForApplicationAsync(String healthCheckUrl, long timeout, IWaitCallback callback)
+			throws OpenShiftException;
+
+	/**
+	 * Waits for the host of the given url to resolve without blocking the
+	 * calling thread.
+	 * 
+	 * @param url
+	 *            the url whose host shall resolve
+	 * @param timeout
+	 *            the max time that shall be waited for.
+	 * @param callback
+	 *            notified once the wait is over, may be <code>null</code>
+	 * @return a future that is <code>true</code> if the host resolved
+	 * @throws OpenShiftException
+	 *             if the url is malformed
+	 * 
+	 * @see #waitForHostResolves(String, long)
+	 */
+	public Future<Boolean> waitForHostResolvesAsync(String url, long timeout, IWaitCallback callback)
+			throws OpenShiftException;
 	
 	/**
 	 * Sets flag for enabling SSL certificate checks (i.e. self-signed SSL certificates)
@@ -0,0 +1,37 @@
+/******************************************************************************* 
+ * Copyright (c) 2011 Red Hat, Inc. 
+ * Distributed under license by Red Hat, Inc. All rights reserved. 
+ * This program is made available under the terms of the 
+ * Eclipse Public License v1.0 which accompanies this distribution, 
+ * and is available at http://www.eclipse.org/legal/epl-v10.html 
+ * 
+ * Contributors: 
+ * Red Hat, Inc. - initial API and implementation 
+ ******************************************************************************/
+package com.openshift.express.client;
+
+/**
+ * Gets the output of a remote command while it runs. Called concurrently for
+ * different targets, the calls for a single target are made in order from a
+ * single thread.
+ * 
+ * @author agent
+ * 
+ * @see RemoteCommandRunner
+ */
+public interface IRemoteCommandListener {
+
+	/**
+	 * Called for each line of output of the command on the given target.
+	 * 
+	 * @param stderr
+	 *            whether the line was written to stderr
+	 */
+	public void lineRead(RemoteCommandTarget target, String line, boolean stderr);
+
+	/**
+	 * Called once the command on the given target exited, timed out or
+	 * failed.
+	 */
+	public void done(RemoteCommandResult result);
+}
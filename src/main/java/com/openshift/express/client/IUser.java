@@ -65,6 +65,74 @@ public interface IUser {
 
 	public boolean hasApplication(ICartridge cartridge) throws OpenShiftException;
 
+	/**
+	 * Starts the given applications, several of them at the same time. The
+	 * operation continues if it fails for some of the applications, the
+	 * failures are reported in the returned result.
+	 * 
+	 * @param applications
+	 *            the applications to start
+	 * @param options
+	 *            the parallelism, progress listener and cartridge order to use
+	 * @return the applications that were started and the failures
+	 * @throws OpenShiftException
+	 *             if the operation was interrupted
+	 */
+	public BulkResult startApplications(List<IApplication> applications, BulkOptions options)
+			throws OpenShiftException;
+
+	/**
+	 * Stops the given applications, several of them at the same time.
+	 * 
+	 * @see #startApplications(List, BulkOptions)
+	 */
+	public BulkResult stopApplications(List<IApplication> applications, BulkOptions options)
+			throws OpenShiftException;
+
+	/**
+	 * Restarts the given applications, several of them at the same time.
+	 * 
+	 * @see #startApplications(List, BulkOptions)
+	 */
+	public BulkResult restartApplications(List<IApplication> applications, BulkOptions options)
+			throws OpenShiftException;
+
+	/**
+	 * Destroys the given applications, several of them at the same time.
+	 * Applications that were destroyed are removed from this user.
+	 * 
+	 * @see #startApplications(List, BulkOptions)
+	 */
+	public BulkResult destroyApplications(List<IApplication> applications, BulkOptions options)
+			throws OpenShiftException;
+
+	/**
+	 * Adds the given cartridges to all given applications. The applications
+	 * are processed in parallel, the cartridges of each application one after
+	 * the other in the given order.
+	 * 
+	 * @param applications
+	 *            the applications to add the cartridges to
+	 * @param cartridges
+	 *            the cartridges to add
+	 * @param options
+	 *            the parallelism, progress listener and cartridge order to use
+	 * @return the cartridges that were added and the failures per application
+	 * @throws OpenShiftException
+	 *             if the operation was interrupted
+	 */
+	public EmbedReport addEmbeddedCartridges(List<IApplication> applications, List<IEmbeddableCartridge> cartridges,
+			BulkOptions options) throws OpenShiftException;
+
+	/**
+	 * Removes the given cartridges from all given applications. The
+	 * cartridges of each application are removed in reverse order.
+	 * 
+	 * @see #addEmbeddedCartridges(List, List, BulkOptions)
+	 */
+	public EmbedReport removeEmbeddedCartridges(List<IApplication> applications,
+			List<IEmbeddableCartridge> cartridges, BulkOptions options) throws OpenShiftException;
+
 	public void refresh() throws OpenShiftException;
 
 }
\ No newline at end of file
@@ -0,0 +1,32 @@
+/******************************************************************************* 
+ * Copyright (c) 2011 Red Hat, Inc. 
+ * Distributed under license by Red Hat, Inc. All rights reserved. 
+ * This program is made available under the terms of the 
+ * Eclipse Public License v1.0 which accompanies this distribution, 
+ * and is available at http://www.eclipse.org/legal/epl-v10.html 
+ * 
+ * Contributors: 
+ * Red Hat, Inc. - initial API and implementation 
+ ******************************************************************************/
+package com.openshift.express.client;
+
+/**
+ * Gets notified once an asynchronous wait is over.
+ * 
+ * @author agent
+ * 
+ * @see IOpenShiftService#waitForApplicationAsync(String, long, IWaitCallback)
+ * @see IOpenShiftService#waitForHostResolvesAsync(String, long, IWaitCallback)
+ */
+public interface IWaitCallback {
+
+	/**
+	 * Called once the awaited condition is met or the timeout was reached.
+	 * Not called if the wait is cancelled.
+	 * 
+	 * @param successful
+	 *            <code>true</code> if the condition was met,
+	 *            <code>false</code> if the timeout was reached
+	 */
+	public void done(boolean successful);
+}
@@ -0,0 +1,474 @@
+/******************************************************************************* 
+ * Copyright (c) 2011 Red Hat, Inc. 
+ * Distributed under license by Red Hat, Inc. All rights reserved. 
+ * This program is made available under the terms of the 
+ * Eclipse Public License v1.0 which accompanies this distribution, 
+ * and is available at http://www.eclipse.org/legal/epl-v10.html 
+ * 
+ * Contributors: 
+ * Red Hat, Inc. - initial API and implementation 
+ ******************************************************************************/
+package com.openshift.express.client;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.jcraft.jsch.ChannelExec;
+import com.jcraft.jsch.JSchException;
+import com.jcraft.jsch.Session;
+import com.openshift.express.internal.client.concurrent.DaemonThreadFactory;
+import com.openshift.express.internal.client.ssh.SshSessionKey;
+import com.openshift.express.internal.client.ssh.SshSessionPool;
+
+/**
+ * Tails the logs of many applications over a bounded number of ssh channels.
+ * The logs are split into groups, one per channel, and each group is tailed
+ * by a single <code>tail -F</code> that tells the files apart by headers. All
+ * channels share the same pooled ssh session. Lines are tagged with the
+ * application they were read from and delivered through {@link #take()} or
+ * a listener, round robin across the applications.
+ * <p>
+ * Each application buffers a bounded number of lines. If the consumer falls
+ * behind on an application, the lines that do not fit are dropped and
+ * counted for that application (see {@link #setOverflowPolicy(OverflowPolicy)})
+ * so that the other applications on the same channel keep flowing. Logs are
+ * tailed from their current end; after a reconnect the lines that were
+ * written while disconnected are skipped. Lines are decoded as UTF-8.
+ * 
+ * <pre>
+ * LogAggregator aggregator = new LogAggregator(service, user);
+ * for (IApplication application : user.getApplications()) {
+ * 	aggregator.add(application, &quot;logs/server.log&quot;);
+ * }
+ * aggregator.start();
+ * LogLine line = aggregator.take();
+ * </pre>
+ * 
+ * @author agent
+ */
+public class LogAggregator {
+
+	public static final int DEFAULT_MAX_CHANNELS = 4;
+	public static final int DEFAULT_BUFFERED_LINES = 1024;
+
+	private static final String CHARSET = "UTF-8";
+	private static final Pattern HEADER = Pattern.compile("^==> (.+) <==$");
+	private static final long MIN_RECONNECT_DELAY = 500;
+	private static final long MAX_RECONNECT_DELAY = 30 * 1000;
+
+	private final SshSessionPool pool;
+	private final SshSessionKey key;
+	private OpenShiftService service;
+	private IUser user;
+	private int maxChannels = DEFAULT_MAX_CHANNELS;
+	private int bufferedLines = DEFAULT_BUFFERED_LINES;
+	private long reconnectDelay = MIN_RECONNECT_DELAY;
+	private OverflowPolicy overflowPolicy = OverflowPolicy.DROP_OLDEST;
+	private ILogListener listener;
+
+	private final Map<String, Source> sourcesByPath = new LinkedHashMap<String, Source>();
+	/** sources that have buffered lines, in the order they get their turn */
+	private final Queue<Source> turns = new LinkedList<Source>();
+	private final List<ChannelTail> tails = new ArrayList<ChannelTail>();
+	private ExecutorService executor;
+	private volatile boolean running;
+	private Throwable failure;
+
+	/**
+	 * Creates an aggregator for the logs of the given user's applications.
+	 */
+	public LogAggregator(OpenShiftService service, IUser user) {
+		this(service.getSshSessionPool(), service.createSshSessionKey(service.getSshHost()));
+		this.service = service;
+		this.user = user;
+	}
+
+	/**
+	 * Creates an aggregator for the logs on the host of the given ssh
+	 * session.
+	 */
+	public LogAggregator(SshSessionPool pool, SshSessionKey key) {
+		this.pool = pool;
+		this.key = key;
+	}
+
+	/**
+	 * Adds the given log of the given application. Its lines are tagged with
+	 * the name of the application.
+	 */
+	public void add(IApplication application, String logFile) throws OpenShiftException {
+		if (service == null) {
+			throw new OpenShiftException("Aggregator was not created for a service, cannot add application \"{0}\"",
+					application.getName());
+		}
+		add(application.getName(), service.getLogPath(application.getName(), application.getCartridge(), user, logFile));
+	}
+
+	/**
+	 * Adds the log at the given path. Its lines are tagged with the given
+	 * source. Sources have to be added before the aggregator is started.
+	 */
+	public synchronized void add(String source, String path) {
+		if (running) {
+			throw new IllegalStateException("cannot add sources to a running aggregator");
+		}
+		sourcesByPath.put(path, new Source(source));
+	}
+
+	/**
+	 * Sets the max number of channels that the logs are tailed on.
+	 */
+	public synchronized void setMaxChannels(int maxChannels) {
+		this.maxChannels = maxChannels;
+	}
+
+	/**
+	 * Sets the max number of lines that are buffered per source.
+	 */
+	public synchronized void setBufferedLines(int bufferedLines) {
+		this.bufferedLines = bufferedLines;
+	}
+
+	/**
+	 * Sets what happens to the lines of a source whose buffer is full. The
+	 * default, {@link OverflowPolicy#DROP_OLDEST}, drops the oldest buffered
+	 * lines of that source. {@link OverflowPolicy#BLOCK} stops reading the
+	 * channel until the consumer made room, which also holds back all other
+	 * sources that are tailed on the same channel.
+	 */
+	public synchronized void setOverflowPolicy(OverflowPolicy overflowPolicy) {
+		this.overflowPolicy = overflowPolicy;
+	}
+
+	public synchronized void setReconnectDelay(long reconnectDelay) {
+		this.reconnectDelay = reconnectDelay;
+	}
+
+	/**
+	 * Delivers the lines to the given listener on a thread of the aggregator
+	 * instead of through {@link #take()}. Has to be set before the aggregator
+	 * is started.
+	 */
+	public synchronized void setListener(ILogListener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * Starts tailing all logs.
+	 */
+	public synchronized void start() {
+		if (running) {
+			return;
+		}
+		this.running = true;
+		List<String> paths = new ArrayList<String>(sourcesByPath.keySet());
+		int channels = Math.min(maxChannels, paths.size());
+		int pathsPerChannel = channels == 0 ? 0 : (paths.size() + channels - 1) / channels;
+		this.executor = Executors.newCachedThreadPool(new DaemonThreadFactory("log-aggregator"));
+		for (int i = 0; i < paths.size(); i += pathsPerChannel) {
+			ChannelTail tail = new ChannelTail(paths.subList(i, Math.min(paths.size(), i + pathsPerChannel)));
+			tails.add(tail);
+			executor.execute(tail);
+		}
+		if (listener != null) {
+			executor.execute(new Dispatcher(listener));
+		}
+	}
+
+	/**
+	 * Stops tailing and releases the channels. Threads that block in
+	 * {@link #take()} return <code>null</code>.
+	 */
+	public void stop() {
+		List<ChannelTail> tails;
+		synchronized (this) {
+			if (!running) {
+				return;
+			}
+			this.running = false;
+			tails = new ArrayList<ChannelTail>(this.tails);
+			this.tails.clear();
+			notifyAll();
+		}
+		for (ChannelTail tail : tails) {
+			tail.disconnect();
+		}
+		executor.shutdownNow();
+	}
+
+	/**
+	 * Stops the aggregator because a channel failed with the given error.
+	 */
+	private void fail(Throwable failure) {
+		synchronized (this) {
+			this.failure = failure;
+		}
+		stop();
+	}
+
+	/**
+	 * Returns the error that stopped the aggregator or <code>null</code> if
+	 * it was not stopped by an error.
+	 */
+	public synchronized Throwable getFailure() {
+		return failure;
+	}
+
+	/**
+	 * Blocks until a line is available and returns it. Lines are taken round
+	 * robin across the sources.
+	 * 
+	 * @return the next line or <code>null</code> if the aggregator was stopped
+	 *         or failed
+	 * @see #getFailure()
+	 */
+	public synchronized LogLine take() throws InterruptedException {
+		while (running
+				&& turns.isEmpty()) {
+			wait();
+		}
+		if (turns.isEmpty()) {
+			return null;
+		}
+		Source source = turns.poll();
+		LogLine line = source.lines.poll();
+		if (!source.lines.isEmpty()) {
+			turns.add(source);
+		}
+		// a channel may wait for room in this source
+		notifyAll();
+		return line;
+	}
+
+	/**
+	 * Returns the number of lines that are buffered for the given source.
+	 */
+	public synchronized int getBufferedLines(String source) {
+		Source candidate = getSourceByName(source);
+		if (candidate == null) {
+			return 0;
+		}
+		return candidate.lines.size();
+	}
+
+	/**
+	 * Returns the number of lines of the given source that were dropped
+	 * because its buffer was full.
+	 */
+	public synchronized long getDroppedLines(String source) {
+		Source candidate = getSourceByName(source);
+		if (candidate == null) {
+			return 0;
+		}
+		return candidate.dropped;
+	}
+
+	private Source getSourceByName(String source) {
+		for (Source candidate : sourcesByPath.values()) {
+			if (candidate.name.equals(source)) {
+				return candidate;
+			}
+		}
+		return null;
+	}
+
+	public synchronized int getChannelCount() {
+		return tails.size();
+	}
+
+	/**
+	 * Buffers the given line. Applies the overflow policy if the source is
+	 * full.
+	 * 
+	 * @return <code>false</code> if the aggregator was stopped
+	 */
+	private synchronized boolean put(Source source, String line) throws InterruptedException {
+		if (overflowPolicy == OverflowPolicy.BLOCK) {
+			while (running
+					&& source.lines.size() >= bufferedLines) {
+				wait();
+			}
+		}
+		if (!running) {
+			return false;
+		}
+		if (source.lines.size() >= bufferedLines) {
+			source.dropped++;
+			if (overflowPolicy == OverflowPolicy.DROP_NEWEST) {
+				return true;
+			}
+			source.lines.poll();
+		}
+		if (source.lines.isEmpty()) {
+			turns.add(source);
+		}
+		source.lines.add(new LogLine(source.name, line, System.currentTimeMillis()));
+		notifyAll();
+		return true;
+	}
+
+	private synchronized Source getSource(String path) {
+		return sourcesByPath.get(path);
+	}
+
+	private static class Source {
+
+		private final String name;
+		private final Queue<LogLine> lines = new LinkedList<LogLine>();
+		private long dropped;
+
+		private Source(String name) {
+			this.name = name;
+		}
+	}
+
+	/**
+	 * Tails a group of logs on one channel, reconnects if it drops. Stops
+	 * the aggregator if it fails with an error so that no taker blocks
+	 * forever.
+	 */
+	private class ChannelTail implements Runnable {
+
+		private final List<String> paths;
+		private volatile ChannelExec channel;
+
+		private ChannelTail(List<String> paths) {
+			this.paths = new ArrayList<String>(paths);
+		}
+
+		public void run() {
+			long delay = reconnectDelay;
+			while (running) {
+				try {
+					if (tail()) {
+						delay = reconnectDelay;
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return;
+				} catch (Exception e) {
+					// reconnect
+				} catch (Error e) {
+					fail(e);
+					throw e;
+				}
+				if (!running) {
+					return;
+				}
+				try {
+					Thread.sleep(delay);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return;
+				}
+				delay = Math.min(MAX_RECONNECT_DELAY, delay * 2);
+			}
+		}
+
+		/**
+		 * Tails the logs until the channel drops or the aggregator stops.
+		 * 
+		 * @return <code>true</code> if any line was read
+		 */
+		private boolean tail() throws JSchException, IOException, InterruptedException {
+			Session session = pool.acquire(key);
+			try {
+				ChannelExec channel = (ChannelExec) session.openChannel("exec");
+				this.channel = channel;
+				channel.setCommand(createCommand());
+				BufferedReader reader = new BufferedReader(new InputStreamReader(channel.getInputStream(), CHARSET));
+				channel.connect();
+				return read(reader);
+			} catch (JSchException e) {
+				if (!session.isConnected()) {
+					pool.invalidate(key);
+				}
+				throw e;
+			} finally {
+				disconnect();
+				pool.release(key);
+			}
+		}
+
+		private String createCommand() {
+			StringBuilder builder = new StringBuilder("tail -v -n 0 -F");
+			for (String path : paths) {
+				builder.append(' ').append(path);
+			}
+			return builder.toString();
+		}
+
+		private boolean read(BufferedReader reader) throws IOException, InterruptedException {
+			boolean lineRead = false;
+			Source source = null;
+			// tail separates the files with an empty line before the header
+			boolean pendingEmptyLine = false;
+			String line;
+			while ((line = reader.readLine()) != null) {
+				Matcher matcher = HEADER.matcher(line);
+				if (matcher.matches()) {
+					source = getSource(matcher.group(1));
+					pendingEmptyLine = false;
+					continue;
+				}
+				if (source == null) {
+					continue;
+				}
+				if (pendingEmptyLine
+						&& !put(source, "")) {
+					return lineRead;
+				}
+				pendingEmptyLine = line.length() == 0;
+				if (!pendingEmptyLine) {
+					if (!put(source, line)) {
+						return lineRead;
+					}
+					lineRead = true;
+				}
+			}
+			return lineRead;
+		}
+
+		private void disconnect() {
+			ChannelExec channel = this.channel;
+			if (channel != null) {
+				channel.disconnect();
+				this.channel = null;
+			}
+		}
+	}
+
+	/**
+	 * Delivers the lines to the listener.
+	 */
+	private class Dispatcher implements Runnable {
+
+		private final ILogListener listener;
+
+		private Dispatcher(ILogListener listener) {
+			this.listener = listener;
+		}
+
+		public void run() {
+			try {
+				LogLine line;
+				while ((line = take()) != null) {
+					listener.lineRead(line);
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+}
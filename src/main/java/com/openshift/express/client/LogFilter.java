@@ -0,0 +1,391 @@
+/******************************************************************************* 
+ * Copyright (c) 2011 Red Hat, Inc. 
+ * Distributed under license by Red Hat, Inc. All rights reserved. 
+ * This program is made available under the terms of the 
+ * Eclipse Public License v1.0 which accompanies this distribution, 
+ * and is available at http://www.eclipse.org/legal/epl-v10.html 
+ * 
+ * Contributors: 
+ * Red Hat, Inc. - initial API and implementation 
+ ******************************************************************************/
+package com.openshift.express.client;
+
+import java.text.DateFormat;
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.LinkedList;
+import java.util.regex.Pattern;
+
+/**
+ * Filters log lines by a pattern, a min level and a time window. The filter
+ * is compiled into the command that reads the log on the application's host,
+ * so that only matching lines are transferred. Criteria that the remote tools
+ * cannot evaluate the same way are applied on the client only:
+ * <ul>
+ * <li>patterns are pushed down if they use the regular expression syntax
+ * that java and <code>grep -E</code> share</li>
+ * <li>levels are always pushed down</li>
+ * <li>time windows are pushed down if the timestamp at the start of the lines
+ * sorts like the time it stands for, ex. <code>yyyy-MM-dd HH:mm:ss</code></li>
+ * </ul>
+ * The lines that the host returns are filtered on the client again. If all
+ * criteria are pushed down the result is the last matching lines of the
+ * log. Otherwise the host returns {@link #CLIENT_FILTER_LINES_FACTOR} times
+ * the requested number of lines (that match the criteria that were pushed
+ * down) and the result is the last matching lines among those: matches that
+ * are further back in the log are missed.
+ * 
+ * @author agent
+ * 
+ * @see IOpenShiftService#getStatus(String, ICartridge, IUser, String, int,
+ *      LogFilter)
+ */
+public class LogFilter {
+
+	/** the timestamp fields in decreasing significance and their widths */
+	private static final String SORTABLE_FIELDS = "yMdHmsS";
+	private static final int[] SORTABLE_WIDTHS = { 4, 2, 2, 2, 2, 2, 3 };
+	/**
+	 * the factor by which more lines are read from the host if criteria are
+	 * applied on the client
+	 */
+	public static final int CLIENT_FILTER_LINES_FACTOR = 10;
+
+	/** the characters that may be escaped in extended posix expressions */
+	private static final String ERE_METACHARACTERS = ".[]()*+?{}|^$\\";
+
+	private String pattern;
+	private Pattern compiledPattern;
+	private LogLevel level;
+	private Pattern levelPattern;
+	private Date from;
+	private Date to;
+	private String timestampFormat;
+
+	/**
+	 * Only lets lines pass that contain a match of the given regular
+	 * expression.
+	 */
+	public LogFilter setPattern(String pattern) {
+		this.pattern = pattern;
+		this.compiledPattern = pattern == null ? null : Pattern.compile(pattern);
+		return this;
+	}
+
+	/**
+	 * Only lets lines pass that are logged at the given level or a more
+	 * severe one.
+	 */
+	public LogFilter setLevel(LogLevel level) {
+		this.level = level;
+		this.levelPattern = level == null ? null : Pattern.compile(createLevelRegex(level));
+		return this;
+	}
+
+	/**
+	 * Only lets lines pass that start with a timestamp within the given
+	 * window. Lines without a timestamp, ex. the lines of a stack trace, do
+	 * not pass.
+	 * 
+	 * @param from
+	 *            the start of the window, inclusive, or <code>null</code>
+	 * @param to
+	 *            the end of the window, exclusive, or <code>null</code>
+	 * @param timestampFormat
+	 *            the {@link SimpleDateFormat} pattern of the timestamps, in
+	 *            the default time zone
+	 */
+	public LogFilter setTimeWindow(Date from, Date to, String timestampFormat) {
+		this.from = from;
+		this.to = to;
+		this.timestampFormat = timestampFormat;
+		return this;
+	}
+
+	public boolean matches(String line) {
+		return (compiledPattern == null || compiledPattern.matcher(line).find())
+				&& (levelPattern == null || levelPattern.matcher(line).find())
+				&& isInTimeWindow(line);
+	}
+
+	/**
+	 * Returns the lines of the given log that match.
+	 */
+	public String filter(String log) {
+		return filter(log, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Returns the last lines of the given log that match.
+	 * 
+	 * @param numLines
+	 *            the max number of lines to return
+	 */
+	public String filter(String log, int numLines) {
+		LinkedList<String> lines = new LinkedList<String>();
+		int start = 0;
+		while (start < log.length()) {
+			int end = log.indexOf('\n', start);
+			end = end == -1 ? log.length() : end + 1;
+			String line = log.substring(start, end);
+			if (matches(stripLineTerminator(line))) {
+				lines.add(line);
+				if (lines.size() > numLines) {
+					lines.removeFirst();
+				}
+			}
+			start = end;
+		}
+		StringBuilder builder = new StringBuilder();
+		for (String line : lines) {
+			builder.append(line);
+		}
+		return builder.toString();
+	}
+
+	private String stripLineTerminator(String line) {
+		int end = line.length();
+		while (end > 0
+				&& (line.charAt(end - 1) == '\n' || line.charAt(end - 1) == '\r')) {
+			end--;
+		}
+		return line.substring(0, end);
+	}
+
+	private boolean isInTimeWindow(String line) {
+		if (timestampFormat == null
+				|| (from == null && to == null)) {
+			return true;
+		}
+		Date timestamp = createDateFormat().parse(line, new ParsePosition(0));
+		return timestamp != null
+				&& (from == null || !timestamp.before(from))
+				&& (to == null || timestamp.before(to));
+	}
+
+	/**
+	 * Returns the command that reads the last lines of the given log that
+	 * match the criteria that can be pushed down. If criteria are applied on
+	 * the client, {@link #CLIENT_FILTER_LINES_FACTOR} times the given number
+	 * of lines are read.
+	 */
+	public String createCommand(String path, int numLines) {
+		if (!isPushedDown()) {
+			numLines = numLines > Integer.MAX_VALUE / CLIENT_FILTER_LINES_FACTOR
+					? Integer.MAX_VALUE
+					: numLines * CLIENT_FILTER_LINES_FACTOR;
+		}
+		StringBuilder command = new StringBuilder();
+		if (isPatternPushedDown()) {
+			appendStage("grep -E -e " + quote(pattern), command, path);
+		}
+		if (level != null) {
+			appendStage("grep -E -e " + quote(createLevelRegex(level)), command, path);
+		}
+		if (isTimeWindowPushedDown()) {
+			appendStage("awk " + quote(createTimeWindowProgram()), command, path);
+		}
+		if (command.length() == 0) {
+			return "tail -n " + numLines + " " + path;
+		}
+		return command.append(" | tail -n ").append(numLines).toString();
+	}
+
+	private void appendStage(String stage, StringBuilder command, String path) {
+		if (command.length() == 0) {
+			command.append(stage).append(' ').append(path);
+		} else {
+			command.append(" | ").append(stage);
+		}
+	}
+
+	/**
+	 * Returns <code>true</code> if all criteria are evaluated on the
+	 * application's host. Only then are the lines read with this filter the
+	 * last matching lines of the whole log, otherwise they are the last
+	 * matching lines among the last lines that the host returned.
+	 */
+	public boolean isPushedDown() {
+		return (pattern == null || isPatternPushedDown())
+				&& (timestampFormat == null || (from == null && to == null) || isTimeWindowPushedDown());
+	}
+
+	private boolean isPatternPushedDown() {
+		return pattern != null
+				&& isPortableRegex(pattern);
+	}
+
+	/**
+	 * Returns <code>true</code> if the given java regular expression means
+	 * the same as an extended posix one. Escapes are only allowed for the
+	 * metacharacters of extended posix expressions outside of brackets (GNU
+	 * grep reads other escaped punctuation such as \&lt; or \&gt; as
+	 * anchors), non greedy, possessive and special groups are not allowed.
+	 */
+	private boolean isPortableRegex(String regex) {
+		boolean inBrackets = false;
+		for (int i = 0; i < regex.length(); i++) {
+			char character = regex.charAt(i);
+			char next = i + 1 < regex.length() ? regex.charAt(i + 1) : 0;
+			switch (character) {
+			case '\\':
+				if (inBrackets
+						|| ERE_METACHARACTERS.indexOf(next) < 0) {
+					return false;
+				}
+				i++;
+				break;
+			case '[':
+				if (inBrackets
+						&& next == ':') {
+					// posix character class
+					return false;
+				}
+				if (!inBrackets) {
+					inBrackets = true;
+					if (next == '^') {
+						i++;
+					}
+					if (i + 1 < regex.length()
+							&& regex.charAt(i + 1) == ']') {
+						// leading ] is a literal in posix
+						return false;
+					}
+				}
+				break;
+			case ']':
+				inBrackets = false;
+				break;
+			case '&':
+				if (inBrackets
+						&& next == '&') {
+					return false;
+				}
+				break;
+			case '(':
+				if (!inBrackets
+						&& next == '?') {
+					return false;
+				}
+				break;
+			case '*':
+			case '+':
+			case '?':
+			case '}':
+				if (!inBrackets
+						&& (next == '?' || next == '+')) {
+					return false;
+				}
+				break;
+			case '\n':
+			case '\r':
+			case 0:
+				return false;
+			}
+		}
+		return !inBrackets;
+	}
+
+	private String createLevelRegex(LogLevel level) {
+		StringBuilder names = new StringBuilder();
+		LogLevel[] levels = LogLevel.values();
+		for (int i = level.ordinal(); i < levels.length; i++) {
+			for (String name : levels[i].getNames()) {
+				if (names.length() > 0) {
+					names.append('|');
+				}
+				names.append(name);
+			}
+		}
+		return "(^|[^A-Za-z])(" + names + ")([^A-Za-z]|$)";
+	}
+
+	private boolean isTimeWindowPushedDown() {
+		if (timestampFormat == null
+				|| (from == null && to == null)
+				|| !isSortableFormat(timestampFormat)) {
+			return false;
+		}
+		return isAwkString(format(from))
+				&& isAwkString(format(to));
+	}
+
+	/**
+	 * Returns <code>true</code> if timestamps in the given format sort like
+	 * the times they stand for: the fields are of fixed width, start with the
+	 * year and follow in decreasing significance.
+	 */
+	private boolean isSortableFormat(String format) {
+		int lastField = -1;
+		int i = 0;
+		while (i < format.length()) {
+			char character = format.charAt(i);
+			if (character == '\'') {
+				return false;
+			}
+			if (!Character.isLetter(character)) {
+				if (lastField == -1) {
+					return false;
+				}
+				i++;
+				continue;
+			}
+			int field = SORTABLE_FIELDS.indexOf(character);
+			if (field <= lastField
+					|| (lastField == -1 && field != 0)) {
+				return false;
+			}
+			int width = 0;
+			while (i < format.length()
+					&& format.charAt(i) == character) {
+				width++;
+				i++;
+			}
+			if (width != SORTABLE_WIDTHS[field]) {
+				return false;
+			}
+			lastField = field;
+		}
+		return lastField != -1;
+	}
+
+	private boolean isAwkString(String string) {
+		return string == null
+				|| (string.indexOf('"') == -1
+						&& string.indexOf('\\') == -1
+						&& string.indexOf('\'') == -1);
+	}
+
+	private String createTimeWindowProgram() {
+		String timestamp = "substr($0, 1, " + timestampFormat.length() + ")";
+		StringBuilder program = new StringBuilder();
+		if (from != null) {
+			program.append(timestamp).append(" >= \"").append(format(from)).append('"');
+		}
+		if (to != null) {
+			if (program.length() > 0) {
+				program.append(" && ");
+			}
+			program.append(timestamp).append(" < \"").append(format(to)).append('"');
+		}
+		return program.toString();
+	}
+
+	private String format(Date date) {
+		if (date == null) {
+			return null;
+		}
+		return createDateFormat().format(date);
+	}
+
+	private DateFormat createDateFormat() {
+		SimpleDateFormat format = new SimpleDateFormat(timestampFormat);
+		format.setLenient(false);
+		return format;
+	}
+
+	private String quote(String argument) {
+		return "'" + argument.replace("'", "'\\''") + "'";
+	}
+}
@@ -0,0 +1,38 @@
+/******************************************************************************* 
+ * Copyright (c) 2011 Red Hat, Inc. 
+ * Distributed under license by Red Hat, Inc. All rights reserved. 
+ * This program is made available under the terms of the 
+ * Eclipse Public License v1.0 which accompanies this distribution, 
+ * and is available at http://www.eclipse.org/legal/epl-v10.html 
+ * 
+ * Contributors: 
+ * Red Hat, Inc. - initial API and implementation 
+ ******************************************************************************/
+package com.openshift.express.client;
+
+/**
+ * The levels of log lines, from the least to the most severe. Each level is
+ * known under the names that the common logging frameworks use for it.
+ * 
+ * @author agent
+ * 
+ * @see LogFilter#setLevel(LogLevel)
+ */
+public enum LogLevel {
+	TRACE("TRACE", "FINEST", "FINER"),
+	DEBUG("DEBUG", "FINE"),
+	INFO("INFO"),
+	WARN("WARN", "WARNING"),
+	ERROR("ERROR", "SEVERE"),
+	FATAL("FATAL");
+
+	private final String[] names;
+
+	private LogLevel(String... names) {
+		this.names = names;
+	}
+
+	public String[] getNames() {
+		return names;
+	}
+}
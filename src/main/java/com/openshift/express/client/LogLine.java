@@ -0,0 +1,57 @@
+/******************************************************************************* 
+ * Copyright (c) 2011 Red Hat, Inc. 
+ * Distributed under license by Red Hat, Inc. All rights reserved. 
+ * This program is made available under the terms of the 
+ * Eclipse Public License v1.0 which accompanies this distribution, 
+ * and is available at http://www.eclipse.org/legal/epl-v10.html 
+ * 
+ * Contributors: 
+ * Red Hat, Inc. - initial API and implementation 
+ ******************************************************************************/
+package com.openshift.express.client;
+
+/**
+ * A line of a log, tagged with the source it was read from.
+ * 
+ * @author agent
+ * 
+ * @see LogAggregator
+ */
+public class LogLine {
+
+	private final String source;
+	private final String line;
+	private final long timestamp;
+
+	public LogLine(String source, String line, long timestamp) {
+		this.source = source;
+		this.line = line;
+		this.timestamp = timestamp;
+	}
+
+	/**
+	 * Returns the source the line was read from, the application name for
+	 * application logs.
+	 */
+	public String getSource() {
+		return source;
+	}
+
+	/**
+	 * Returns the line without its line terminator.
+	 */
+	public String getLine() {
+		return line;
+	}
+
+	/**
+	 * Returns the time the line was received at, in milliseconds.
+	 */
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	public String toString() {
+		return "[" + source + "] " + line;
+	}
+}
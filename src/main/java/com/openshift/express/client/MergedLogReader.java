@@ -0,0 +1,198 @@
+/******************************************************************************* 
+ * Copyright (c) 2011 Red Hat, Inc. 
+ * Distributed under license by Red Hat, Inc. All rights reserved. 
+ * This program is made available under the terms of the 
+ * Eclipse Public License v1.0 which accompanies this distribution, 
+ * and is available at http://www.eclipse.org/legal/epl-v10.html 
+ * 
+ * Contributors: 
+ * Red Hat, Inc. - initial API and implementation 
+ ******************************************************************************/
+package com.openshift.express.client;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.text.DateFormat;
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Reads several logs as one, in the order of the timestamps their lines start
+ * with. The logs are merged with a heap that holds the next line of each log,
+ * so that a single line per log is held no matter how long the logs are.
+ * Lines without a timestamp, ex. the lines of a stack trace, stay with the
+ * line they follow.
+ * <p>
+ * The logs are expected to be in timestamp order each. A line is only read
+ * once the next line of each log is known, so a log that is waiting for
+ * output holds back the others.
+ * <p>
+ * The memory bound only holds for logs that are streamed, ex. with
+ * {@link StreamingLogReader}s. {@link IApplication#getMergedLogReader(int, String, String...)}
+ * downloads the tails of the logs before merging them.
+ * 
+ * @author agent
+ * 
+ * @see IApplication#getMergedLogReader(int, String, String...)
+ */
+public class MergedLogReader extends Reader {
+
+	private static final String LINE_SEPARATOR = "\n";
+
+	private final List<Source> sources = new ArrayList<Source>();
+	private final PriorityQueue<Line> heads = new PriorityQueue<Line>();
+	private final DateFormat timestampFormat;
+	private boolean tagged;
+	private boolean started;
+	/** the log whose lines are read until one has a timestamp */
+	private Source current;
+	private String pending = "";
+	private int pendingOffset;
+
+	/**
+	 * @param logs
+	 *            the readers of the logs, by the name of the log. The order
+	 *            breaks ties in the timestamps.
+	 * @param timestampFormat
+	 *            the {@link SimpleDateFormat} pattern of the timestamps at the
+	 *            start of the lines
+	 */
+	public MergedLogReader(Map<String, Reader> logs, String timestampFormat) {
+		for (Map.Entry<String, Reader> entry : logs.entrySet()) {
+			sources.add(new Source(entry.getKey(), entry.getValue(), sources.size()));
+		}
+		this.timestampFormat = new SimpleDateFormat(timestampFormat);
+		this.timestampFormat.setLenient(false);
+	}
+
+	/**
+	 * Sets whether the lines are prefixed with the name of their log, ex.
+	 * <code>[server.log] 10:22:51,001 INFO ...</code>.
+	 */
+	public void setTagged(boolean tagged) {
+		this.tagged = tagged;
+	}
+
+	public synchronized int read(char[] cbuf, int off, int len) throws IOException {
+		if (len == 0) {
+			return 0;
+		}
+		if (pendingOffset == pending.length()) {
+			String line = readLine();
+			if (line == null) {
+				return -1;
+			}
+			this.pending = line;
+			this.pendingOffset = 0;
+		}
+		int read = Math.min(len, pending.length() - pendingOffset);
+		pending.getChars(pendingOffset, pendingOffset + read, cbuf, off);
+		pendingOffset += read;
+		return read;
+	}
+
+	/**
+	 * Returns the next line in timestamp order including its line separator
+	 * or <code>null</code> if all logs ended.
+	 */
+	private String readLine() throws IOException {
+		if (!started) {
+			start();
+		}
+		if (current != null) {
+			Source source = current;
+			this.current = null;
+			String line = source.reader.readLine();
+			if (line != null) {
+				Date timestamp = parseTimestamp(line);
+				if (timestamp == null) {
+					this.current = source;
+					return format(source, line);
+				}
+				heads.add(new Line(source, line, timestamp.getTime()));
+			}
+		}
+		Line head = heads.poll();
+		if (head == null) {
+			return null;
+		}
+		this.current = head.source;
+		return format(head.source, head.line);
+	}
+
+	private void start() throws IOException {
+		this.started = true;
+		for (Source source : sources) {
+			String line = source.reader.readLine();
+			if (line != null) {
+				Date timestamp = parseTimestamp(line);
+				// leading lines without timestamp go first
+				heads.add(new Line(source, line, timestamp == null ? Long.MIN_VALUE : timestamp.getTime()));
+			}
+		}
+	}
+
+	private Date parseTimestamp(String line) {
+		return timestampFormat.parse(line, new ParsePosition(0));
+	}
+
+	private String format(Source source, String line) {
+		if (tagged) {
+			return "[" + source.name + "] " + line + LINE_SEPARATOR;
+		}
+		return line + LINE_SEPARATOR;
+	}
+
+	public void close() throws IOException {
+		IOException failure = null;
+		for (Source source : sources) {
+			try {
+				source.reader.close();
+			} catch (IOException e) {
+				failure = e;
+			}
+		}
+		if (failure != null) {
+			throw failure;
+		}
+	}
+
+	private static class Source {
+
+		private final String name;
+		private final BufferedReader reader;
+		private final int index;
+
+		private Source(String name, Reader reader, int index) {
+			this.name = name;
+			this.reader = new BufferedReader(reader);
+			this.index = index;
+		}
+	}
+
+	private static class Line implements Comparable<Line> {
+
+		private final Source source;
+		private final String line;
+		private final long timestamp;
+
+		private Line(Source source, String line, long timestamp) {
+			this.source = source;
+			this.line = line;
+			this.timestamp = timestamp;
+		}
+
+		public int compareTo(Line other) {
+			if (timestamp != other.timestamp) {
+				return timestamp < other.timestamp ? -1 : 1;
+			}
+			return source.index - other.source.index;
+		}
+	}
+}
@@ -10,19 +10,26 @@
  ******************************************************************************/
 package com.openshift.express.client;
 
-import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.text.MessageFormat;
 import java.util.List;
-import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
-import com.jcraft.jsch.Channel;
-import com.jcraft.jsch.ChannelExec;
-import com.jcraft.jsch.JSch;
-import com.jcraft.jsch.Session;
 import com.openshift.express.client.utils.HostUtils;
 import com.openshift.express.internal.client.UserInfo;
+import com.openshift.express.internal.client.cache.CatalogCache;
+import com.openshift.express.internal.client.cache.ModelSnapshot;
+import com.openshift.express.internal.client.cache.ModelSnapshotStore;
+import com.openshift.express.internal.client.cache.ModelSnapshotWarmStart;
+import com.openshift.express.internal.client.cache.UserInfoCache;
+import com.openshift.express.internal.client.concurrent.AimdLimit;
+import com.openshift.express.internal.client.concurrent.FairScheduler;
+import com.openshift.express.internal.client.concurrent.IRateLimiter;
+import com.openshift.express.internal.client.concurrent.RequestCoalescer;
+import com.openshift.express.internal.client.concurrent.ScheduledWaiter;
 import com.openshift.express.internal.client.httpclient.HttpClientException;
 import com.openshift.express.internal.client.httpclient.NotFoundException;
 import com.openshift.express.internal.client.httpclient.UnauthorizedException;
@@ -53,6 +60,8 @@ import com.openshift.express.internal.client.response.unmarshalling.JsonSanitize
 import com.openshift.express.internal.client.response.unmarshalling.ListCartridgesResponseUnmarshaller;
 import com.openshift.express.internal.client.response.unmarshalling.ListEmbeddableCartridgesResponseUnmarshaller;
 import com.openshift.express.internal.client.response.unmarshalling.UserInfoResponseUnmarshaller;
+import com.openshift.express.internal.client.ssh.SshSessionKey;
+import com.openshift.express.internal.client.ssh.SshSessionPool;
 
 /**
  * @author André Dietisheim
@@ -62,13 +71,23 @@ public class OpenShiftService implements IOpenShiftService {
 	// TODO extract to properties file
 	private static final String USERAGENT_FORMAT = "Java OpenShift/{0} ({1})";
 	private static final String MALFORMED_URL_EXCEPTION_MSG = "Application URL {0} is invalid";
-	private static final long APPLICATION_WAIT_DELAY = 2;
 	private static final String HEALTH_RESPONSE_OK = "1";
+	/** the max time to wait for the health check of an application to respond */
+	private static final int PROBE_READ_TIMEOUT = 10 * 1000;
 	private static final int MAX_APP_NAME_LENGTH = 16;
 
 	private String baseUrl;
 	private String id;
 	private boolean doSSLChecks = false;
+	private UserInfoCache userInfoCache = new UserInfoCache();
+	private RequestCoalescer requestCoalescer = new RequestCoalescer();
+	private volatile ModelSnapshotWarmStart warmStart;
+	private ScheduledWaiter waiter = ScheduledWaiter.getDefault();
+	private volatile FairScheduler scheduler;
+	private volatile CatalogCache catalogCache;
+	private volatile IRateLimiter rateLimiter;
+	private SshSessionPool sshSessionPool = SshSessionPool.getDefault();
+	private volatile boolean blockOnRateLimit;
 
 	public OpenShiftService(String id, String baseUrl) {
 		this.id = id;
@@ -106,29 +125,113 @@ public class OpenShiftService implements IOpenShiftService {
 		return baseUrl;
 	}
 
+	/**
+	 * Enables serving user info and cartridges from a persisted snapshot until
+	 * they were fetched from the broker in the background. Passing
+	 * <code>null</code> disables snapshots.
+	 * 
+	 * @param store
+	 *            the store that holds the snapshots
+	 * 
+	 * @see ModelSnapshotStore
+	 */
+	public void setModelSnapshotStore(ModelSnapshotStore store) {
+		if (store == null) {
+			this.warmStart = null;
+		} else {
+			this.warmStart = new ModelSnapshotWarmStart(store, getPlatformUrl());
+		}
+	}
+
 	public boolean isValid(final IUser user) throws OpenShiftException {
-		return getUserInfo(user) != null;
+		// never validate credentials against a snapshot
+		return fetchUserInfo(user) != null;
 	}
 
 	public UserInfo getUserInfo(final IUser user) throws OpenShiftException {
+		ModelSnapshot snapshot = getWarmStartSnapshot(user);
+		if (snapshot != null
+				&& snapshot.getUserInfo() != null) {
+			return snapshot.getUserInfo();
+		}
+		return fetchUserInfo(user);
+	}
+
+	private UserInfo fetchUserInfo(final IUser user) throws OpenShiftException {
+		return requestCoalescer.execute(createRequestKey("user_info", user), new Callable<UserInfo>() {
+
+			public UserInfo call() throws Exception {
+				return requestUserInfo(user);
+			}
+		});
+	}
+
+	protected UserInfo requestUserInfo(final IUser user) throws OpenShiftException {
 		UserInfoRequest userInfoRequest = new UserInfoRequest(user.getRhlogin(), true);
 		String url = userInfoRequest.getUrlString(getServiceUrl());
 
 		String request = new UserInfoRequestJsonMarshaller().marshall(userInfoRequest);
-		String response = sendRequest(request, url, user.getPassword(), user.getAuthKey(), user.getAuthIV(),
+		String response = postRequest(request, url, userInfoRequest.getResourcePath(), user,
 				"Could not get user info for user \"{0}\" at \"{1}\"");
-		OpenShiftResponse<UserInfo> userInfoResponse =
-				new UserInfoResponseUnmarshaller().unmarshall(response);
-		return userInfoResponse.getOpenShiftObject();
+		UserInfo userInfo = userInfoCache.get(user.getRhlogin(), response);
+		if (userInfo == null) {
+			OpenShiftResponse<UserInfo> userInfoResponse =
+					new UserInfoResponseUnmarshaller().unmarshall(JsonSanitizer.sanitize(response));
+			userInfo = userInfoResponse.getOpenShiftObject();
+			userInfoCache.put(user.getRhlogin(), response, userInfo);
+		}
+		return userInfo;
+	}
+
+	/**
+	 * Returns the cache that allows {@link #getUserInfo(IUser)} to skip
+	 * parsing responses that did not change since the last request.
+	 * 
+	 * @return the user info cache
+	 */
+	public UserInfoCache getUserInfoCache() {
+		return userInfoCache;
 	}
 
 	public List<IEmbeddableCartridge> getEmbeddableCartridges(final IUser user) throws OpenShiftException {
+		ModelSnapshot snapshot = getWarmStartSnapshot(user);
+		if (snapshot != null
+				&& snapshot.getEmbeddableCartridges() != null) {
+			return snapshot.getEmbeddableCartridges();
+		}
+		return fetchEmbeddableCartridges(user);
+	}
+
+	private List<IEmbeddableCartridge> fetchEmbeddableCartridges(final IUser user) throws OpenShiftException {
+		CatalogCache catalogCache = this.catalogCache;
+		if (catalogCache == null) {
+			return coalesceEmbeddableCartridges(user);
+		}
+		List<IEmbeddableCartridge> embeddableCartridges = catalogCache.getEmbeddableCartridges();
+		if (embeddableCartridges == null) {
+			embeddableCartridges = coalesceEmbeddableCartridges(user);
+			catalogCache.setEmbeddableCartridges(embeddableCartridges);
+		}
+		return embeddableCartridges;
+	}
+
+	private List<IEmbeddableCartridge> coalesceEmbeddableCartridges(final IUser user) throws OpenShiftException {
+		return requestCoalescer.execute(createRequestKey("embeddable_cartridges", user),
+				new Callable<List<IEmbeddableCartridge>>() {
+
+					public List<IEmbeddableCartridge> call() throws Exception {
+						return requestEmbeddableCartridges(user);
+					}
+				});
+	}
+
+	protected List<IEmbeddableCartridge> requestEmbeddableCartridges(final IUser user) throws OpenShiftException {
 		ListCartridgesRequest listCartridgesRequest =
 				new ListCartridgesRequest(ListCartridgesRequest.CartridgeType.EMBEDDED, user.getRhlogin(), true);
 		String url = listCartridgesRequest.getUrlString(getServiceUrl());
 		String request =
 				new ListCartridgesRequestJsonMarshaller().marshall(listCartridgesRequest);
-		String response = sendRequest(request, url, user.getPassword(), user.getAuthKey(), user.getAuthIV(),
+		String response = sendRequest(request, url, listCartridgesRequest.getResourcePath(), user,
 				MessageFormat.format("Could not list available embeddable cartridges at \"{0}\"", url));
 		OpenShiftResponse<List<IEmbeddableCartridge>> listCartridgesResponse =
 				new ListEmbeddableCartridgesResponseUnmarshaller().unmarshall(response);
@@ -136,12 +239,71 @@ public class OpenShiftService implements IOpenShiftService {
 	}
 
 	public List<ICartridge> getCartridges(final IUser user) throws OpenShiftException {
+		ModelSnapshot snapshot = getWarmStartSnapshot(user);
+		if (snapshot != null
+				&& snapshot.getCartridges() != null) {
+			return snapshot.getCartridges();
+		}
+		return fetchCartridges(user);
+	}
+
+	private List<ICartridge> fetchCartridges(final IUser user) throws OpenShiftException {
+		CatalogCache catalogCache = this.catalogCache;
+		if (catalogCache == null) {
+			return coalesceCartridges(user);
+		}
+		List<ICartridge> cartridges = catalogCache.getCartridges();
+		if (cartridges == null) {
+			cartridges = coalesceCartridges(user);
+			catalogCache.setCartridges(cartridges);
+		}
+		return cartridges;
+	}
+
+	private List<ICartridge> coalesceCartridges(final IUser user) throws OpenShiftException {
+		return requestCoalescer.execute(createRequestKey("cartridges", user), new Callable<List<ICartridge>>() {
+
+			public List<ICartridge> call() throws Exception {
+				return requestCartridges(user);
+			}
+		});
+	}
+
+	private ModelSnapshot getWarmStartSnapshot(final IUser user) throws OpenShiftException {
+		ModelSnapshotWarmStart warmStart = this.warmStart;
+		if (warmStart == null) {
+			return null;
+		}
+		final String rhlogin = user.getRhlogin();
+		return warmStart.get(rhlogin, new Callable<ModelSnapshot>() {
+
+			public ModelSnapshot call() throws Exception {
+				return new ModelSnapshot(getPlatformUrl(), rhlogin, System.currentTimeMillis(),
+						fetchUserInfo(user), fetchCartridges(user), fetchEmbeddableCartridges(user));
+			}
+		});
+	}
+
+	/**
+	 * Drops all cached state for the given user. Called by all operations that
+	 * alter the state of the user on the broker once their request completed,
+	 * reads that complete in between would cache the old state otherwise.
+	 */
+	private void invalidate(final IUser user) throws OpenShiftException {
+		userInfoCache.invalidate(user.getRhlogin());
+		ModelSnapshotWarmStart warmStart = this.warmStart;
+		if (warmStart != null) {
+			warmStart.invalidate(user.getRhlogin());
+		}
+	}
+
+	protected List<ICartridge> requestCartridges(final IUser user) throws OpenShiftException {
 		ListCartridgesRequest listCartridgesRequest =
 				new ListCartridgesRequest(ListCartridgesRequest.CartridgeType.STANDALONE, user.getRhlogin(), true);
 		String url = listCartridgesRequest.getUrlString(getServiceUrl());
 		String request =
 				new ListCartridgesRequestJsonMarshaller().marshall(listCartridgesRequest);
-		String response = sendRequest(request, url, user.getPassword(), user.getAuthKey(), user.getAuthIV(),
+		String response = sendRequest(request, url, listCartridgesRequest.getResourcePath(), user,
 				MessageFormat.format("Could not list embeddable cartridges at \"{0}\"", url));
 		OpenShiftResponse<List<ICartridge>> cartridgesResponse =
 				new ListCartridgesResponseUnmarshaller().unmarshall(response);
@@ -166,15 +328,19 @@ public class OpenShiftService implements IOpenShiftService {
 
 	protected IDomain requestDomainAction(final AbstractDomainRequest domainRequest, final IUser user)
 			throws OpenShiftException {
-		String url = domainRequest.getUrlString(getServiceUrl());
-		String request = new DomainRequestJsonMarshaller().marshall(domainRequest);
-		String response =
-				sendRequest(
-						request, url, user.getPassword(), user.getAuthKey(), user.getAuthIV(),
-						MessageFormat.format("Could not {0}", domainRequest.getOperation()));
-		OpenShiftResponse<IDomain> domainResponse =
-				new DomainResponseUnmarshaller(domainRequest.getName(), user, this).unmarshall(response);
-		return domainResponse.getOpenShiftObject();
+		try {
+			String url = domainRequest.getUrlString(getServiceUrl());
+			String request = new DomainRequestJsonMarshaller().marshall(domainRequest);
+			String response =
+					sendRequest(
+							request, url, domainRequest.getResourcePath(), user,
+							MessageFormat.format("Could not {0}", domainRequest.getOperation()));
+			OpenShiftResponse<IDomain> domainResponse =
+					new DomainResponseUnmarshaller(domainRequest.getName(), user, this).unmarshall(response);
+			return domainResponse.getOpenShiftObject();
+		} finally {
+			invalidate(user);
+		}
 	}
 
 	public IApplication createApplication(final String name, final ICartridge cartridge, final IUser user)
@@ -250,12 +416,23 @@ public class OpenShiftService implements IOpenShiftService {
 
 	public String getStatus(final String applicationName, final ICartridge cartridge, final IUser user)
 			throws OpenShiftException {
+		return requestCoalescer.execute(createRequestKey("status", user, applicationName, cartridge),
+				new Callable<String>() {
+
+					public String call() throws Exception {
+						return requestStatus(applicationName, cartridge, user);
+					}
+				});
+	}
+
+	protected String requestStatus(final String applicationName, final ICartridge cartridge, final IUser user)
+			throws OpenShiftException {
 		ApplicationRequest applicationRequest =
 				new ApplicationRequest(applicationName, cartridge, ApplicationAction.STATUS, user.getRhlogin(), true);
 		String url = applicationRequest.getUrlString(getServiceUrl());
 		String request =
 				new ApplicationRequestJsonMarshaller().marshall(applicationRequest);
-		String response = sendRequest(request, url, user.getPassword(), user.getAuthKey(), user.getAuthIV(),
+		String response = sendRequest(request, url, applicationRequest.getResourcePath(), user,
 				MessageFormat.format("Could not {0} application \"{1}\" at \"{2}\"",
 						applicationRequest.getAction().getCommand(), applicationRequest.getName(), url));
 		OpenShiftResponse<String> openshiftResponse =
@@ -266,50 +443,97 @@ public class OpenShiftService implements IOpenShiftService {
 	public String getStatus(final String applicationName, final ICartridge cartridge, final IUser user,
 			final String logFile, final int numLines)
 			throws OpenShiftException {
-		try {
-			JSch jsch = new JSch();
-			String host = this.getServiceUrl().replace("https://", "").replace("/broker", "");
+		return requestCoalescer.execute(
+				createRequestKey("status", user, applicationName, cartridge, logFile, numLines),
+				new Callable<String>() {
 
-			Session session = jsch.getSession("root", host, 22);
+					public String call() throws Exception {
+						return requestStatus(applicationName, cartridge, user, logFile, numLines);
+					}
+				});
+	}
 
-			jsch.setKnownHosts(System.getProperty("KNOWN_HOSTS"));
-			jsch.addIdentity(System.getProperty("IDENTITY"));
+	protected String requestStatus(final String applicationName, final ICartridge cartridge, final IUser user,
+			final String logFile, final int numLines)
+			throws OpenShiftException {
+		return requestStatus(applicationName, logFile,
+				"tail -" + numLines + " " + getLogPath(applicationName, cartridge, user, logFile));
+	}
 
-			Properties config = new Properties();
-			config.put("StrictHostKeyChecking", "no");
-			session.setConfig(config);
+	public String getStatus(final String applicationName, final ICartridge cartridge, final IUser user,
+			final String logFile, final int numLines, final LogFilter filter) throws OpenShiftException {
+		if (filter == null) {
+			return getStatus(applicationName, cartridge, user, logFile, numLines);
+		}
+		final String command = filter.createCommand(getLogPath(applicationName, cartridge, user, logFile), numLines);
+		String log = requestCoalescer.execute(
+				createRequestKey("status", user, applicationName, cartridge, logFile, numLines, command),
+				new Callable<String>() {
 
-			session.connect();
+					public String call() throws Exception {
+						return requestStatus(applicationName, logFile, command);
+					}
+				});
+		// criteria that could not be pushed down
+		return filter.filter(log, numLines);
+	}
 
-			Channel channel = session.openChannel("exec");
-			((ChannelExec) channel).setErrStream(System.err);
-			InputStream in = channel.getInputStream();
+	protected String requestStatus(final String applicationName, final String logFile, final String command)
+			throws OpenShiftException {
+		try {
+			return sshSessionPool.execute(createSshSessionKey(getSshHost()), command);
+		} catch (Exception e) {
+			throw new OpenShiftException(e, "Unable to retrieve log {0} of application {1}", logFile, applicationName);
+		}
+	}
 
-			String logLocation = "/";
-			if (cartridge == Cartridge.JBOSSAS_7)
-				logLocation = "/jbossas-7.0/";
+	public StreamingLogReader getLogStream(final String applicationName, final ICartridge cartridge,
+			final IUser user, final String logFile) throws OpenShiftException {
+		return new StreamingLogReader(sshSessionPool, createSshSessionKey(getSshHost()),
+				getLogPath(applicationName, cartridge, user, logFile));
+	}
 
-			String command =
-					"tail "
-							+ "-" + numLines
-							+ " /var/lib/libra/" + applicationName
-							+ "-" + user.getDomain().getNamespace() + "/" + applicationName + logLocation + logFile;
+	String getSshHost() {
+		return getServiceUrl().replace("https://", "").replace("/broker", "");
+	}
 
-			((ChannelExec) channel).setCommand(command);
+	String getLogPath(final String applicationName, final ICartridge cartridge, final IUser user,
+			final String logFile) throws OpenShiftException {
+		String logLocation = "/";
+		if (cartridge == Cartridge.JBOSSAS_7)
+			logLocation = "/jbossas-7.0/";
+		return "/var/lib/libra/" + applicationName
+				+ "-" + user.getDomain().getNamespace() + "/" + applicationName + logLocation + logFile;
+	}
 
-			channel.connect();
+	/**
+	 * Creates the key of the ssh session to the given host. The identity and
+	 * known hosts are read from the system properties IDENTITY and
+	 * KNOWN_HOSTS.
+	 */
+	protected SshSessionKey createSshSessionKey(String host) {
+		return createSshSessionKey("root", host);
+	}
 
-			byte[] tmp = new byte[1024];
-			StringBuffer buff = new StringBuffer();
-			int read = 0;
-			while ((read = in.read(tmp)) > 0) {
-				buff.append(new String(tmp, 0, read - 1));
-			}
-			return buff.toString();
-		} catch (Exception e) {
-			e.printStackTrace();
-			throw new OpenShiftException(e, "Unable to reteive status log", applicationName);
-		}
+	/**
+	 * Creates the key of the ssh session of the given user to the given host.
+	 * 
+	 * @see #createSshSessionKey(String)
+	 */
+	protected SshSessionKey createSshSessionKey(String user, String host) {
+		return new SshSessionKey(user, host, System.getProperty("IDENTITY"), System.getProperty("KNOWN_HOSTS"));
+	}
+
+	/**
+	 * Sets the pool of the ssh sessions that logs are read with. All services
+	 * share the same pool by default.
+	 */
+	public void setSshSessionPool(SshSessionPool sshSessionPool) {
+		this.sshSessionPool = sshSessionPool;
+	}
+
+	public SshSessionPool getSshSessionPool() {
+		return sshSessionPool;
 	}
 
 	/*
@@ -332,56 +556,127 @@ public class OpenShiftService implements IOpenShiftService {
 
 	protected IApplication requestApplicationAction(final ApplicationRequest applicationRequest, final IUser user)
 			throws OpenShiftException {
-		String url = applicationRequest.getUrlString(getServiceUrl());
-		String request = new ApplicationRequestJsonMarshaller().marshall(applicationRequest);
-		String response = sendRequest(request, url, user.getPassword(), user.getAuthKey(), user.getAuthIV(),
-				MessageFormat.format("Could not {0} application \"{1}\" at \"{2}\"",
-						applicationRequest.getAction().getCommand(), applicationRequest.getName(), url));
-		OpenShiftResponse<IApplication> openshiftResponse =
-				new ApplicationResponseUnmarshaller(applicationRequest.getName(),
-						applicationRequest.getCartridge(), user, this).unmarshall(response);
-		return openshiftResponse.getOpenShiftObject();
+		try {
+			String url = applicationRequest.getUrlString(getServiceUrl());
+			String request = new ApplicationRequestJsonMarshaller().marshall(applicationRequest);
+			String response = sendRequest(request, url, applicationRequest.getResourcePath(), user,
+					MessageFormat.format("Could not {0} application \"{1}\" at \"{2}\"",
+							applicationRequest.getAction().getCommand(), applicationRequest.getName(), url));
+			OpenShiftResponse<IApplication> openshiftResponse =
+					new ApplicationResponseUnmarshaller(applicationRequest.getName(),
+							applicationRequest.getCartridge(), user, this).unmarshall(response);
+			return openshiftResponse.getOpenShiftObject();
+		} finally {
+			invalidate(user);
+		}
 	}
 
 	public boolean waitForApplication(final String healthCheckUrl, final long timeout)
 			throws OpenShiftException {
+		return getWaitResult(waitForApplicationAsync(healthCheckUrl, timeout, null));
+	}
+
+	public Future<Boolean> waitForApplicationAsync(final String healthCheckUrl, final long timeout,
+			IWaitCallback callback) throws OpenShiftException {
 		try {
-			IHttpClient client = createHttpClient(id, healthCheckUrl, false);
-			String response = null;
-			long startTime = System.currentTimeMillis();
-			while (!HEALTH_RESPONSE_OK.equals(response)
-					&& System.currentTimeMillis() < startTime + timeout) {
-				try {
-					Thread.sleep(APPLICATION_WAIT_DELAY);
-					response = client.get();
-				} catch (HttpClientException e) {
-					// not available yet
+			final IHttpClient client = createHttpClient(id, healthCheckUrl, false, PROBE_READ_TIMEOUT);
+			return waiter.waitFor(new ScheduledWaiter.ICondition() {
+
+				public boolean isMet() throws Exception {
+					return HEALTH_RESPONSE_OK.equals(client.get());
 				}
-			}
-			return HEALTH_RESPONSE_OK.equals(response);
-		} catch (InterruptedException e) {
-			return false;
+			}, timeout, callback);
 		} catch (MalformedURLException e) {
 			throw new OpenShiftException(e, MALFORMED_URL_EXCEPTION_MSG, healthCheckUrl);
 		}
 	}
 
 	public boolean waitForHostResolves(final String url, final long timeout) throws OpenShiftException {
+		return getWaitResult(waitForHostResolvesAsync(url, timeout, null));
+	}
+
+	public Future<Boolean> waitForHostResolvesAsync(final String url, final long timeout, IWaitCallback callback)
+			throws OpenShiftException {
 		try {
-			long startTime = System.currentTimeMillis();
-			boolean canResolv = false;
-			while (!(canResolv = HostUtils.canResolv(url))
-					&& System.currentTimeMillis() < startTime + timeout) {
-				Thread.sleep(APPLICATION_WAIT_DELAY);
-			}
-			return canResolv;
-		} catch (InterruptedException e) {
-			return false;
+			new URL(url);
+			return waiter.waitFor(new ScheduledWaiter.ICondition() {
+
+				public boolean isMet() throws Exception {
+					return HostUtils.canResolv(url);
+				}
+			}, timeout, callback);
 		} catch (MalformedURLException e) {
 			throw new OpenShiftException(e, MALFORMED_URL_EXCEPTION_MSG, url);
 		}
 	}
 
+	private boolean getWaitResult(Future<Boolean> wait) {
+		try {
+			return wait.get();
+		} catch (InterruptedException e) {
+			wait.cancel(false);
+			Thread.currentThread().interrupt();
+			return false;
+		} catch (ExecutionException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Sets the waiter that probes applications and hosts while waiting for
+	 * them. All services share the same waiter by default.
+	 */
+	public void setWaiter(ScheduledWaiter waiter) {
+		this.waiter = waiter;
+	}
+
+	/**
+	 * Sets the scheduler that limits the number of concurrent broker requests
+	 * and shares them fairly among users. The scheduler's adaptive limit, if
+	 * any, is fed with the latency and the overload errors of the requests.
+	 * Passing <code>null</code> removes any limit.
+	 */
+	public void setScheduler(FairScheduler scheduler) {
+		this.scheduler = scheduler;
+	}
+
+	public FairScheduler getScheduler() {
+		return scheduler;
+	}
+
+	/**
+	 * Sets the limiter that keeps the requests within the quotas of the
+	 * broker. Passing <code>null</code> removes any limit.
+	 * 
+	 * @param rateLimiter
+	 *            the limiter
+	 * @param block
+	 *            whether requests wait for the limiter to let them through or
+	 *            fail with a {@link RateLimitedOpenShiftException}
+	 * 
+	 * @see com.openshift.express.internal.client.concurrent.TokenBucketRateLimiter
+	 */
+	public void setRateLimiter(IRateLimiter rateLimiter, boolean block) {
+		this.blockOnRateLimit = block;
+		this.rateLimiter = rateLimiter;
+	}
+
+	public IRateLimiter getRateLimiter() {
+		return rateLimiter;
+	}
+
+	/**
+	 * Sets the cache that shares the cartridges of this broker among all
+	 * users. Passing <code>null</code> requests them each time.
+	 */
+	public void setCatalogCache(CatalogCache catalogCache) {
+		this.catalogCache = catalogCache;
+	}
+
+	public CatalogCache getCatalogCache() {
+		return catalogCache;
+	}
+
 	public IEmbeddableCartridge addEmbeddedCartridge(final String applicationName,
 			final IEmbeddableCartridge cartridge,
 			IUser user) throws OpenShiftException {
@@ -399,23 +694,54 @@ public class OpenShiftService implements IOpenShiftService {
 
 	protected IEmbeddableCartridge requestEmbedAction(final EmbedRequest embedRequest, final IUser user)
 			throws OpenShiftException {
-		String url = embedRequest.getUrlString(getServiceUrl());
-		String request = new EmbedRequestJsonMarshaller().marshall(embedRequest);
-		String response = sendRequest(request, url, user.getPassword(), user.getAuthKey(), user.getAuthIV(),
-				MessageFormat.format("Could not {0} application \"{1}\" at \"{2}\"",
-						embedRequest.getAction().getCommand(), embedRequest.getName(), url));
-		OpenShiftResponse<IEmbeddableCartridge> openshiftResponse =
-				new EmbedResponseUnmarshaller(embedRequest.getEmbeddableCartridge())
-						.unmarshall(response);
-		return openshiftResponse.getOpenShiftObject();
+		try {
+			String url = embedRequest.getUrlString(getServiceUrl());
+			String request = new EmbedRequestJsonMarshaller().marshall(embedRequest);
+			String response = sendRequest(request, url, embedRequest.getResourcePath(), user,
+					MessageFormat.format("Could not {0} application \"{1}\" at \"{2}\"",
+							embedRequest.getAction().getCommand(), embedRequest.getName(), url));
+			OpenShiftResponse<IEmbeddableCartridge> openshiftResponse =
+					new EmbedResponseUnmarshaller(embedRequest.getEmbeddableCartridge())
+							.unmarshall(response);
+			return openshiftResponse.getOpenShiftObject();
+		} finally {
+			invalidate(user);
+		}
+	}
+
+	private String sendRequest(final String request, final String url, final String operation, final IUser user,
+			final String errorMessage) throws OpenShiftException {
+		return JsonSanitizer.sanitize(postRequest(request, url, operation, user, errorMessage));
 	}
 
-	private String sendRequest(final String request, final String url, final String password, final String authKey,
-			final String authIV, final String errorMessage) throws OpenShiftException {
+	/**
+	 * Posts the given request and returns the raw, unsanitized response.
+	 */
+	private String postRequest(final String request, final String url, final String operation, final IUser user,
+			final String errorMessage) throws OpenShiftException {
+		FairScheduler scheduler = this.scheduler;
 		try {
-			String requestMessage = new OpenShiftEnvelopeFactory(password, authKey, authIV, request).createString();
-			String response = createHttpClient(id, url, this.doSSLChecks).post(requestMessage);
-			return JsonSanitizer.sanitize(response);
+			acquireRate(url, operation, user);
+			String requestMessage = new OpenShiftEnvelopeFactory(
+					user.getPassword(), user.getAuthKey(), user.getAuthIV(), request).createString();
+			IHttpClient client = createHttpClient(id, url, this.doSSLChecks);
+			if (scheduler == null) {
+				return client.post(requestMessage);
+			}
+			scheduler.acquire(user.getRhlogin());
+			long start = System.currentTimeMillis();
+			boolean failed = false;
+			try {
+				return client.post(requestMessage);
+			} catch (HttpClientException e) {
+				failed = AimdLimit.isOverload(e);
+				throw e;
+			} finally {
+				scheduler.release(operation, start, failed);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new OpenShiftException(e, "Interrupted while waiting to post to \"{0}\"", url);
 		} catch (MalformedURLException e) {
 			throw new OpenShiftException(e, errorMessage);
 		} catch (UnauthorizedException e) {
@@ -427,10 +753,49 @@ public class OpenShiftService implements IOpenShiftService {
 		}
 	}
 
+	private void acquireRate(final String url, final String operation, final IUser user)
+			throws OpenShiftException, InterruptedException {
+		IRateLimiter rateLimiter = this.rateLimiter;
+		if (rateLimiter == null) {
+			return;
+		}
+		if (blockOnRateLimit) {
+			rateLimiter.acquire(user.getRhlogin(), operation);
+		} else if (!rateLimiter.tryAcquire(user.getRhlogin(), operation)) {
+			throw new RateLimitedOpenShiftException(url, user.getRhlogin(), operation);
+		}
+	}
+
+	/**
+	 * Creates the key that identifies identical read requests. Credentials are
+	 * part of the key so that users with different credentials never share
+	 * results.
+	 */
+	private RequestCoalescer.Key createRequestKey(String operation, IUser user, Object... arguments)
+			throws OpenShiftException {
+		Object[] keyArguments = new Object[arguments.length + 4];
+		keyArguments[0] = user.getRhlogin();
+		keyArguments[1] = user.getPassword();
+		keyArguments[2] = user.getAuthKey();
+		keyArguments[3] = user.getAuthIV();
+		System.arraycopy(arguments, 0, keyArguments, 4, arguments.length);
+		return RequestCoalescer.createKey(operation, keyArguments);
+	}
+
 	protected IHttpClient createHttpClient(final String id, final String url, final boolean verifyHostnames)
 			throws MalformedURLException {
+		return createHttpClient(id, url, verifyHostnames, 0);
+	}
+
+	/**
+	 * @param readTimeout
+	 *            the max time in milliseconds to wait for the response,
+	 *            <code>0</code> to wait forever
+	 */
+	protected IHttpClient createHttpClient(final String id, final String url, final boolean verifyHostnames,
+			int readTimeout) throws MalformedURLException {
 		String userAgent = MessageFormat.format(USERAGENT_FORMAT, VERSION, id);
-		return new UrlConnectionHttpClient(userAgent, new URL(url), verifyHostnames);
+		return new UrlConnectionHttpClient(userAgent, new URL(url), verifyHostnames, readTimeout);
 	}
 
 }
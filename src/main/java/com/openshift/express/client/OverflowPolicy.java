@@ -0,0 +1,27 @@
+/******************************************************************************* 
+ * Copyright (c) 2011 Red Hat, Inc. 
+ * Distributed under license by Red Hat, Inc. All rights reserved. 
+ * This program is made available under the terms of the 
+ * Eclipse Public License v1.0 which accompanies this distribution, 
+ * and is available at http://www.eclipse.org/legal/epl-v10.html 
+ * 
+ * Contributors: 
+ * Red Hat, Inc. - initial API and implementation 
+ ******************************************************************************/
+package com.openshift.express.client;
+
+/**
+ * What a bounded log buffer does with log output that does not fit.
+ * 
+ * @author agent
+ * 
+ * @see BoundedLogReader
+ */
+public enum OverflowPolicy {
+	/** the producer waits until the consumer made room */
+	BLOCK,
+	/** the oldest lines are dropped to make room */
+	DROP_OLDEST,
+	/** the new line is dropped */
+	DROP_NEWEST
+}
@@ -0,0 +1,28 @@
+/******************************************************************************* 
+ * Copyright (c) 2011 Red Hat, Inc. 
+ * Distributed under license by Red Hat, Inc. All rights reserved. 
+ * This program is made available under the terms of the 
+ * Eclipse Public License v1.0 which accompanies this distribution, 
+ * and is available at http://www.eclipse.org/legal/epl-v10.html 
+ * 
+ * Contributors: 
+ * Red Hat, Inc. - initial API and implementation 
+ ******************************************************************************/
+package com.openshift.express.client;
+
+
+/**
+ * Thrown if a request was not sent since the request quota of the user was
+ * exhausted.
+ * 
+ * @author agent
+ */
+public class RateLimitedOpenShiftException extends OpenShiftEndpointException {
+
+	private static final long serialVersionUID = 1L;
+
+	public RateLimitedOpenShiftException(String url, String rhlogin, String operation) {
+		super(url, null, "Request quota of user \"{0}\" for \"{1}\" is exhausted, did not post to \"{2}\"",
+				rhlogin, operation, url);
+	}
+}
@@ -0,0 +1,99 @@
+/******************************************************************************* 
+ * Copyright (c) 2011 Red Hat, Inc. 
+ * Distributed under license by Red Hat, Inc. All rights reserved. 
+ * This program is made available under the terms of the 
+ * Eclipse Public License v1.0 which accompanies this distribution, 
+ * and is available at http://www.eclipse.org/legal/epl-v10.html 
+ * 
+ * Contributors: 
+ * Red Hat, Inc. - initial API and implementation 
+ ******************************************************************************/
+package com.openshift.express.client;
+
+/**
+ * The result of a remote command on a single target.
+ * 
+ * @author agent
+ * 
+ * @see RemoteCommandRunner
+ */
+public class RemoteCommandResult {
+
+	/** the exit code if the command did not exit */
+	public static final int NO_EXIT_CODE = -1;
+
+	private final RemoteCommandTarget target;
+	private final int exitCode;
+	private final boolean timedOut;
+	private final Exception failure;
+	private final String output;
+	private final boolean truncated;
+	private final long duration;
+
+	public RemoteCommandResult(RemoteCommandTarget target, int exitCode, boolean timedOut, Exception failure,
+			String output, boolean truncated, long duration) {
+		this.target = target;
+		this.exitCode = exitCode;
+		this.timedOut = timedOut;
+		this.failure = failure;
+		this.output = output;
+		this.truncated = truncated;
+		this.duration = duration;
+	}
+
+	public RemoteCommandTarget getTarget() {
+		return target;
+	}
+
+	/**
+	 * Returns the exit code of the command or {@link #NO_EXIT_CODE} if it
+	 * timed out or could not be run.
+	 */
+	public int getExitCode() {
+		return exitCode;
+	}
+
+	public boolean isTimedOut() {
+		return timedOut;
+	}
+
+	/**
+	 * Returns the failure that prevented the command from being run or
+	 * <code>null</code>.
+	 */
+	public Exception getFailure() {
+		return failure;
+	}
+
+	/**
+	 * Returns the output of the command, stdout and stderr interleaved. Only
+	 * the end of the output is kept if it exceeds the retained size.
+	 * 
+	 * @see #isTruncated()
+	 */
+	public String getOutput() {
+		return output;
+	}
+
+	public boolean isTruncated() {
+		return truncated;
+	}
+
+	/**
+	 * Returns the time the command took, in milliseconds.
+	 */
+	public long getDuration() {
+		return duration;
+	}
+
+	public boolean isSuccessful() {
+		return exitCode == 0
+				&& !timedOut
+				&& failure == null;
+	}
+
+	public String toString() {
+		return "RemoteCommandResult [target=" + target.getName() + ", exitCode=" + exitCode + ", timedOut=" + timedOut
+				+ ", failure=" + failure + ", duration=" + duration + "]";
+	}
+}
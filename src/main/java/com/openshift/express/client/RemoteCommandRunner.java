@@ -0,0 +1,392 @@
+/******************************************************************************* 
+ * Copyright (c) 2011 Red Hat, Inc. 
+ * Distributed under license by Red Hat, Inc. All rights reserved. 
+ * This program is made available under the terms of the 
+ * Eclipse Public License v1.0 which accompanies this distribution, 
+ * and is available at http://www.eclipse.org/legal/epl-v10.html 
+ * 
+ * Contributors: 
+ * Red Hat, Inc. - initial API and implementation 
+ ******************************************************************************/
+package com.openshift.express.client;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeoutException;
+
+import com.jcraft.jsch.ChannelExec;
+import com.jcraft.jsch.JSchException;
+import com.jcraft.jsch.Session;
+import com.openshift.express.internal.client.concurrent.DaemonThreadFactory;
+import com.openshift.express.internal.client.ssh.SshSessionPool;
+
+/**
+ * Runs a command on many targets concurrently, ex. a diagnostic on all gears
+ * of a fleet. The commands run on a bounded number of threads over pooled ssh
+ * sessions. The output of each target is streamed to a listener line by line
+ * while the command runs, the end of it is kept in the result along with the
+ * exit code. Each target gets its own timeout, which includes connecting.
+ * <p>
+ * Memory per target is bounded: lines longer than the max line length are
+ * split at a character boundary and only the last bytes of output are
+ * retained in the result.
+ * 
+ * <pre>
+ * RemoteCommandRunner runner = new RemoteCommandRunner(service);
+ * List&lt;RemoteCommandTarget&gt; targets = new ArrayList&lt;RemoteCommandTarget&gt;();
+ * for (IApplication application : user.getApplications()) {
+ * 	targets.add(runner.createTarget(application));
+ * }
+ * List&lt;RemoteCommandResult&gt; results = runner.run(targets, &quot;df -h .&quot;, 30 * 1000, listener);
+ * </pre>
+ * 
+ * @author agent
+ */
+public class RemoteCommandRunner {
+
+	public static final int DEFAULT_PARALLELISM = 32;
+	public static final int DEFAULT_MAX_LINE_LENGTH = 8 * 1024;
+	public static final int DEFAULT_RETAINED_OUTPUT = 64 * 1024;
+
+	private static final String CHARSET = "UTF-8";
+	private static final long POLL_DELAY = 10;
+	private static final int READ_BUFFER_SIZE = 4 * 1024;
+
+	private final SshSessionPool pool;
+	private OpenShiftService service;
+	private int parallelism;
+	private int maxLineLength = DEFAULT_MAX_LINE_LENGTH;
+	private int retainedOutput = DEFAULT_RETAINED_OUTPUT;
+
+	/**
+	 * Creates a runner that runs the commands over the ssh sessions of the
+	 * given service.
+	 */
+	public RemoteCommandRunner(OpenShiftService service) {
+		this(service.getSshSessionPool(), DEFAULT_PARALLELISM);
+		this.service = service;
+	}
+
+	/**
+	 * @param pool
+	 *            the pool to get the ssh sessions from
+	 * @param parallelism
+	 *            the max number of commands that run concurrently
+	 */
+	public RemoteCommandRunner(SshSessionPool pool, int parallelism) {
+		this.pool = pool;
+		this.parallelism = parallelism;
+	}
+
+	/**
+	 * Returns the target for the gear of the given application. Only
+	 * available if the runner was created for a service.
+	 */
+	public RemoteCommandTarget createTarget(IApplication application) throws OpenShiftException {
+		if (service == null) {
+			throw new OpenShiftException("Runner was not created for a service, cannot run on application \"{0}\"",
+					application.getName());
+		}
+		try {
+			String host = new URL(application.getApplicationUrl()).getHost();
+			return new RemoteCommandTarget(application.getName(),
+					service.createSshSessionKey(application.getUUID(), host));
+		} catch (MalformedURLException e) {
+			throw new OpenShiftException(e, "Could not get host of application \"{0}\"", application.getName());
+		}
+	}
+
+	public void setParallelism(int parallelism) {
+		this.parallelism = parallelism;
+	}
+
+	/**
+	 * Sets the max length of a line in bytes, longer lines are split before
+	 * the character that exceeds it.
+	 */
+	public void setMaxLineLength(int maxLineLength) {
+		this.maxLineLength = maxLineLength;
+	}
+
+	/**
+	 * Sets the number of characters of output that are kept in the result of
+	 * each target.
+	 */
+	public void setRetainedOutput(int retainedOutput) {
+		this.retainedOutput = retainedOutput;
+	}
+
+	/**
+	 * Runs the given command on all given targets and returns once it
+	 * completed on all of them.
+	 * 
+	 * @param targets
+	 *            the targets to run the command on
+	 * @param command
+	 *            the command to run
+	 * @param timeout
+	 *            the max time the command may take on a target, in
+	 *            milliseconds
+	 * @param listener
+	 *            the listener that gets the output, may be <code>null</code>
+	 * @return the results, in the order of the given targets
+	 * @throws OpenShiftException
+	 *             if the runner was interrupted
+	 */
+	public List<RemoteCommandResult> run(List<RemoteCommandTarget> targets, final String command,
+			final long timeout, final IRemoteCommandListener listener) throws OpenShiftException {
+		List<RemoteCommandResult> results = new ArrayList<RemoteCommandResult>(targets.size());
+		if (targets.isEmpty()) {
+			return results;
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(
+				Math.min(parallelism, targets.size()), new DaemonThreadFactory("remote-command"));
+		try {
+			List<Future<RemoteCommandResult>> futures = new ArrayList<Future<RemoteCommandResult>>(targets.size());
+			for (final RemoteCommandTarget target : targets) {
+				futures.add(executor.submit(new Callable<RemoteCommandResult>() {
+
+					public RemoteCommandResult call() throws Exception {
+						RemoteCommandResult result = run(target, command, timeout, listener);
+						if (listener != null) {
+							listener.done(result);
+						}
+						return result;
+					}
+				}));
+			}
+			for (Future<RemoteCommandResult> future : futures) {
+				results.add(future.get());
+			}
+			return results;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new OpenShiftException(e, "Interrupted while running \"{0}\" on {1} targets", command,
+					targets.size());
+		} catch (ExecutionException e) {
+			throw new OpenShiftException(e.getCause(), "Could not run \"{0}\"", command);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private RemoteCommandResult run(RemoteCommandTarget target, String command, long timeout,
+			IRemoteCommandListener listener) {
+		long start = System.currentTimeMillis();
+		long deadline = start + timeout;
+		Output output = new Output(target, listener);
+		Session session = null;
+		ChannelExec channel = null;
+		try {
+			session = pool.acquire(target.getKey(), getRemainingTime(deadline));
+			channel = (ChannelExec) session.openChannel("exec");
+			channel.setCommand(command);
+			InputStream stdout = channel.getInputStream();
+			InputStream stderr = channel.getErrStream();
+			channel.connect(getRemainingTime(deadline));
+			byte[] buffer = new byte[READ_BUFFER_SIZE];
+			while (true) {
+				boolean read = output.read(stdout, buffer, false) | output.read(stderr, buffer, true);
+				if (channel.isClosed()) {
+					// drain what arrived while closing
+					output.read(stdout, buffer, false);
+					output.read(stderr, buffer, true);
+					output.flush();
+					return output.createResult(channel.getExitStatus(), false, null, start);
+				}
+				if (System.currentTimeMillis() >= deadline) {
+					output.flush();
+					return output.createResult(RemoteCommandResult.NO_EXIT_CODE, true, null, start);
+				}
+				if (!read) {
+					Thread.sleep(POLL_DELAY);
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return output.createResult(RemoteCommandResult.NO_EXIT_CODE, false, e, start);
+		} catch (TimeoutException e) {
+			return output.createResult(RemoteCommandResult.NO_EXIT_CODE, true, null, start);
+		} catch (Exception e) {
+			if (session != null
+					&& !session.isConnected()) {
+				pool.invalidate(target.getKey());
+			}
+			return output.createResult(RemoteCommandResult.NO_EXIT_CODE, false, e, start);
+		} finally {
+			if (channel != null) {
+				channel.disconnect();
+			}
+			if (session != null) {
+				pool.release(target.getKey());
+			}
+		}
+	}
+
+	/**
+	 * Returns the milliseconds until the given deadline.
+	 * 
+	 * @throws TimeoutException
+	 *             if the deadline passed. Jsch would read a timeout of 0 as
+	 *             no timeout.
+	 */
+	private int getRemainingTime(long deadline) throws TimeoutException {
+		long remaining = deadline - System.currentTimeMillis();
+		if (remaining <= 0) {
+			throw new TimeoutException();
+		}
+		return (int) Math.min(remaining, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Returns the number of the given bytes that end at a character boundary,
+	 * so that a utf-8 sequence that is cut at the end can be moved to the next
+	 * line. Returns all bytes if the sequence fills them.
+	 */
+	private static int getCharacterBoundary(byte[] bytes) {
+		int lead = bytes.length - 1;
+		// utf-8 sequences have up to 3 continuation bytes 10xxxxxx
+		while (lead > 0
+				&& bytes.length - lead < 4
+				&& (bytes[lead] & 0xC0) == 0x80) {
+			lead--;
+		}
+		if (lead > 0
+				&& lead + getSequenceLength(bytes[lead]) > bytes.length) {
+			return lead;
+		}
+		return bytes.length;
+	}
+
+	private static int getSequenceLength(byte lead) {
+		if ((lead & 0xE0) == 0xC0) {
+			return 2;
+		} else if ((lead & 0xF0) == 0xE0) {
+			return 3;
+		} else if ((lead & 0xF8) == 0xF0) {
+			return 4;
+		}
+		return 1;
+	}
+
+	/**
+	 * Splits the output of a target into lines and keeps its end.
+	 */
+	private class Output {
+
+		private final RemoteCommandTarget target;
+		private final IRemoteCommandListener listener;
+		private final Line stdoutLine = new Line(false);
+		private final Line stderrLine = new Line(true);
+		private final StringBuilder retained = new StringBuilder();
+		private boolean truncated;
+
+		private Output(RemoteCommandTarget target, IRemoteCommandListener listener) {
+			this.target = target;
+			this.listener = listener;
+		}
+
+		/**
+		 * Reads the bytes that are available without blocking.
+		 * 
+		 * @return <code>true</code> if any bytes were read
+		 */
+		private boolean read(InputStream in, byte[] buffer, boolean stderr) throws IOException {
+			boolean read = false;
+			Line line = stderr ? stderrLine : stdoutLine;
+			while (in.available() > 0) {
+				int length = in.read(buffer, 0, Math.min(buffer.length, in.available()));
+				if (length <= 0) {
+					break;
+				}
+				read = true;
+				for (int i = 0; i < length; i++) {
+					if (buffer[i] == '\n') {
+						if (!line.split
+								|| line.bytes.size() > 0) {
+							lineRead(line);
+						}
+						line.split = false;
+					} else {
+						line.bytes.write(buffer[i]);
+						if (line.bytes.size() >= maxLineLength) {
+							splitLine(line);
+							// the line terminator that may follow ends no line
+							line.split = true;
+						}
+					}
+				}
+			}
+			return read;
+		}
+
+		/**
+		 * Reports the given line up to the last character boundary, the bytes
+		 * of a cut character start the next line.
+		 */
+		private void splitLine(Line line) throws UnsupportedEncodingException {
+			byte[] bytes = line.bytes.toByteArray();
+			int length = getCharacterBoundary(bytes);
+			line.bytes.reset();
+			line.bytes.write(bytes, 0, length);
+			lineRead(line);
+			line.bytes.write(bytes, length, bytes.length - length);
+		}
+
+		private void lineRead(Line line) throws UnsupportedEncodingException {
+			String text = line.bytes.toString(CHARSET);
+			line.bytes.reset();
+			retained.append(text).append('\n');
+			if (retained.length() > retainedOutput) {
+				retained.delete(0, retained.length() - retainedOutput);
+				this.truncated = true;
+			}
+			if (listener != null) {
+				listener.lineRead(target, text, line.stderr);
+			}
+		}
+
+		/**
+		 * Reports the unterminated last lines.
+		 */
+		private void flush() throws UnsupportedEncodingException {
+			if (stdoutLine.bytes.size() > 0) {
+				lineRead(stdoutLine);
+			}
+			if (stderrLine.bytes.size() > 0) {
+				lineRead(stderrLine);
+			}
+		}
+
+		private RemoteCommandResult createResult(int exitCode, boolean timedOut, Exception failure, long start) {
+			return new RemoteCommandResult(target, exitCode, timedOut, failure, retained.toString(), truncated,
+					System.currentTimeMillis() - start);
+		}
+	}
+
+	/**
+	 * The bytes of the line of stdout or stderr that is being read.
+	 */
+	private static class Line {
+
+		private final boolean stderr;
+		private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		/** whether the line was split at the max length */
+		private boolean split;
+
+		private Line(boolean stderr) {
+			this.stderr = stderr;
+		}
+	}
+}
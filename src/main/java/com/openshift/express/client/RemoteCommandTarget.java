@@ -0,0 +1,50 @@
+/******************************************************************************* 
+ * Copyright (c) 2011 Red Hat, Inc. 
+ * Distributed under license by Red Hat, Inc. All rights reserved. 
+ * This program is made available under the terms of the 
+ * Eclipse Public License v1.0 which accompanies this distribution, 
+ * and is available at http://www.eclipse.org/legal/epl-v10.html 
+ * 
+ * Contributors: 
+ * Red Hat, Inc. - initial API and implementation 
+ ******************************************************************************/
+package com.openshift.express.client;
+
+import com.openshift.express.internal.client.ssh.SshSessionKey;
+
+/**
+ * A host that a remote command is run on, ex. the gear of an application.
+ * 
+ * @author agent
+ * 
+ * @see RemoteCommandRunner
+ */
+public class RemoteCommandTarget {
+
+	private final String name;
+	private final SshSessionKey key;
+
+	/**
+	 * @param name
+	 *            the name that the output and the result are reported with,
+	 *            ex. the application name
+	 * @param key
+	 *            the ssh session to run the command in
+	 */
+	public RemoteCommandTarget(String name, SshSessionKey key) {
+		this.name = name;
+		this.key = key;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public SshSessionKey getKey() {
+		return key;
+	}
+
+	public String toString() {
+		return name + " (" + key + ")";
+	}
+}
@@ -0,0 +1,157 @@
+/******************************************************************************* 
+ * Copyright (c) 2011 Red Hat, Inc. 
+ * Distributed under license by Red Hat, Inc. All rights reserved. 
+ * This program is made available under the terms of the 
+ * Eclipse Public License v1.0 which accompanies this distribution, 
+ * and is available at http://www.eclipse.org/legal/epl-v10.html 
+ * 
+ * Contributors: 
+ * Red Hat, Inc. - initial API and implementation 
+ ******************************************************************************/
+package com.openshift.express.client;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.openshift.express.client.configuration.OpenShiftConfiguration;
+import com.openshift.express.internal.client.cache.CatalogCache;
+import com.openshift.express.internal.client.concurrent.AimdLimit;
+import com.openshift.express.internal.client.concurrent.FairScheduler;
+
+/**
+ * Hands out users that share one service per broker. Users of the same
+ * broker thus share the cartridge catalog, the coalescing of identical
+ * requests and a limit on the concurrent requests to the broker. The limit
+ * backs off when the broker gets slow or fails and grows again up to the
+ * given max once it recovers. Free request slots are handed out round robin
+ * across users so that a user with many requests cannot starve the others.
+ * 
+ * <pre>
+ * SessionManager sessions = new SessionManager("my-tool");
+ * IUser user = sessions.getUser("toolsjboss@gmail.com", "password", "https://openshift.redhat.com");
+ * </pre>
+ * 
+ * @author agent
+ */
+public class SessionManager {
+
+	public static final int DEFAULT_CONCURRENT_REQUESTS = 16;
+
+	private final String id;
+	private final int concurrentRequests;
+	private final ConcurrentMap<String, OpenShiftService> servicesByUrl =
+			new ConcurrentHashMap<String, OpenShiftService>();
+	private final ConcurrentMap<String, IUser> usersByKey = new ConcurrentHashMap<String, IUser>();
+
+	public SessionManager(String id) {
+		this(id, DEFAULT_CONCURRENT_REQUESTS);
+	}
+
+	/**
+	 * @param id
+	 *            the id of the client that's sent to the broker
+	 * @param concurrentRequests
+	 *            the max number of concurrent requests to a broker
+	 */
+	public SessionManager(String id, int concurrentRequests) {
+		this.id = id;
+		this.concurrentRequests = concurrentRequests;
+	}
+
+	/**
+	 * Returns the user for the given login at the broker that's configured in
+	 * the OpenShift configuration.
+	 * 
+	 * @see OpenShiftConfiguration#getLibraServer()
+	 */
+	public IUser getUser(String rhlogin, String password) throws OpenShiftException, IOException {
+		return getUser(rhlogin, password, new OpenShiftConfiguration().getLibraServer());
+	}
+
+	/**
+	 * Returns the user for the given login at the given broker. The same user
+	 * instance is returned for the same login and password, a new one if the
+	 * password changed.
+	 * 
+	 * @param rhlogin
+	 *            the login of the user
+	 * @param password
+	 *            the password of the user
+	 * @param url
+	 *            the url of the broker
+	 * @return the user
+	 */
+	public IUser getUser(String rhlogin, String password, String url) {
+		String key = createKey(rhlogin, url);
+		while (true) {
+			IUser user = usersByKey.get(key);
+			if (user != null
+					&& equals(password, user.getPassword())) {
+				return user;
+			}
+			IUser newUser = new User(rhlogin, password, id, getService(url));
+			if (user == null) {
+				if (usersByKey.putIfAbsent(key, newUser) == null) {
+					return newUser;
+				}
+			} else if (usersByKey.replace(key, user, newUser)) {
+				return newUser;
+			}
+			// another thread was faster, retry
+		}
+	}
+
+	/**
+	 * Returns the service that all users of the given broker share.
+	 * 
+	 * @param url
+	 *            the url of the broker
+	 * @return the shared service
+	 */
+	public OpenShiftService getService(String url) {
+		OpenShiftService service = servicesByUrl.get(url);
+		if (service == null) {
+			OpenShiftService newService = createService(url);
+			newService.setCatalogCache(new CatalogCache());
+			newService.setScheduler(createScheduler());
+			service = servicesByUrl.putIfAbsent(url, newService);
+			if (service == null) {
+				service = newService;
+			}
+		}
+		return service;
+	}
+
+	private FairScheduler createScheduler() {
+		FairScheduler scheduler = new FairScheduler(concurrentRequests);
+		scheduler.setAdaptiveLimit(new AimdLimit(concurrentRequests, AimdLimit.DEFAULT_MIN_LIMIT, concurrentRequests));
+		return scheduler;
+	}
+
+	protected OpenShiftService createService(String url) {
+		return new OpenShiftService(id, url);
+	}
+
+	/**
+	 * Forgets the user with the given login at the given broker.
+	 */
+	public void remove(String rhlogin, String url) {
+		usersByKey.remove(createKey(rhlogin, url));
+	}
+
+	public int getUserCount() {
+		return usersByKey.size();
+	}
+
+	private String createKey(String rhlogin, String url) {
+		return url + '\n' + rhlogin;
+	}
+
+	private boolean equals(String thisPassword, String thatPassword) {
+		if (thisPassword == null) {
+			return thatPassword == null;
+		}
+		return thisPassword.equals(thatPassword);
+	}
+}
@@ -0,0 +1,278 @@
+/******************************************************************************* 
+ * Copyright (c) 2011 Red Hat, Inc. 
+ * Distributed under license by Red Hat, Inc. All rights reserved. 
+ * This program is made available under the terms of the 
+ * Eclipse Public License v1.0 which accompanies this distribution, 
+ * and is available at http://www.eclipse.org/legal/epl-v10.html 
+ * 
+ * Contributors: 
+ * Red Hat, Inc. - initial API and implementation 
+ ******************************************************************************/
+package com.openshift.express.client;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.jcraft.jsch.ChannelExec;
+import com.jcraft.jsch.JSchException;
+import com.jcraft.jsch.Session;
+import com.openshift.express.internal.client.ssh.SshSessionKey;
+import com.openshift.express.internal.client.ssh.SshSessionPool;
+
+/**
+ * Reads a log file as it grows. Keeps a <code>tail -F</code> open on a
+ * channel of a pooled ssh session and hands out the bytes as soon as they
+ * arrive, there's no polling. If the channel or the session drops, the
+ * reader reconnects and resumes at the byte offset it had read up to. A log
+ * that was replaced (another inode) or that shrank was rotated and is read
+ * from its start. Since <code>tail -F</code> follows a rotation while
+ * connected, lines of the new log that were read before reconnecting may be
+ * read again, none are skipped. The log is decoded as UTF-8.
+ * 
+ * @author agent
+ * 
+ * @see IApplication#getStreamingLogReader(String)
+ */
+public class StreamingLogReader extends Reader {
+
+	/** starts reading at the current end of the log */
+	public static final long START_AT_END = -1;
+
+	private static final long MIN_RECONNECT_DELAY = 500;
+	private static final long MAX_RECONNECT_DELAY = 30 * 1000;
+	private static final int BUFFER_SIZE = 8 * 1024;
+	private static final String CHARSET = "UTF-8";
+	private static final long UNKNOWN_INODE = -1;
+
+	private final SshSessionPool pool;
+	private final SshSessionKey key;
+	private final String path;
+	private final CharsetDecoder decoder = Charset.forName(CHARSET).newDecoder()
+			.onMalformedInput(CodingErrorAction.REPLACE)
+			.onUnmappableCharacter(CodingErrorAction.REPLACE);
+	private final ByteBuffer bytes = ByteBuffer.allocate(BUFFER_SIZE);
+	private final CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE);
+
+	private long offset;
+	/** the inode of the log that the offset refers to */
+	private long inode = UNKNOWN_INODE;
+	private long minReconnectDelay = MIN_RECONNECT_DELAY;
+	private long reconnectDelay;
+	private volatile boolean closed;
+	private final AtomicBoolean leased = new AtomicBoolean();
+	private volatile ChannelExec channel;
+	private InputStream in;
+
+	public StreamingLogReader(SshSessionPool pool, SshSessionKey key, String path) {
+		this(pool, key, path, START_AT_END);
+	}
+
+	/**
+	 * @param pool
+	 *            the pool to get the ssh session from
+	 * @param key
+	 *            the ssh session to read with
+	 * @param path
+	 *            the path of the log on the remote host
+	 * @param offset
+	 *            the byte offset to start reading at or {@link #START_AT_END}
+	 */
+	public StreamingLogReader(SshSessionPool pool, SshSessionKey key, String path, long offset) {
+		this.pool = pool;
+		this.key = key;
+		this.path = path;
+		this.offset = offset;
+		this.reconnectDelay = minReconnectDelay;
+		chars.flip();
+	}
+
+	/**
+	 * Blocks until log output is available and reads it. Returns
+	 * <code>-1</code> once the reader was closed or the reading thread was
+	 * interrupted.
+	 */
+	public synchronized int read(char[] cbuf, int off, int len) throws IOException {
+		if (len == 0) {
+			return 0;
+		}
+		while (!chars.hasRemaining()) {
+			if (!fill()) {
+				return -1;
+			}
+		}
+		int read = Math.min(len, chars.remaining());
+		chars.get(cbuf, off, read);
+		return read;
+	}
+
+	/**
+	 * Reads and decodes the next bytes, reconnecting if needed.
+	 * 
+	 * @return <code>false</code> if the reader was closed or interrupted
+	 */
+	private boolean fill() {
+		while (!closed) {
+			try {
+				if (in == null) {
+					open();
+					if (closed) {
+						disconnect();
+						break;
+					}
+				}
+				int read = in.read(bytes.array(), bytes.position(), bytes.remaining());
+				if (read == -1) {
+					throw new IOException("tail of " + path + " ended");
+				}
+				bytes.position(bytes.position() + read);
+				decode();
+				this.reconnectDelay = minReconnectDelay;
+				return true;
+			} catch (Exception e) {
+				disconnect();
+				if (closed
+						|| !waitToReconnect()) {
+					return false;
+				}
+			}
+		}
+		return false;
+	}
+
+	private void decode() {
+		bytes.flip();
+		chars.compact();
+		int start = bytes.position();
+		decoder.decode(bytes, chars, false);
+		// bytes of an incomplete character stay in the buffer
+		offset += bytes.position() - start;
+		bytes.compact();
+		chars.flip();
+	}
+
+	private void open() throws JSchException, IOException {
+		long[] stat = stat();
+		long inode = stat[0];
+		long size = stat[1];
+		if (offset == START_AT_END) {
+			this.offset = size;
+		} else if ((this.inode != UNKNOWN_INODE && inode != this.inode)
+				|| size < offset) {
+			// log was rotated
+			this.offset = 0;
+		}
+		this.inode = inode;
+		bytes.clear();
+		decoder.reset();
+		Session session = pool.acquire(key);
+		leased.set(true);
+		try {
+			this.channel = (ChannelExec) session.openChannel("exec");
+			channel.setCommand("tail -c +" + (offset + 1) + " -F " + path);
+			this.in = channel.getInputStream();
+			channel.connect();
+		} catch (JSchException e) {
+			disconnect();
+			if (!session.isConnected()) {
+				pool.invalidate(key);
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Returns the inode and the size of the log, zeros if it does not exist.
+	 */
+	private long[] stat() throws JSchException, IOException {
+		String stat = pool.execute(key, "stat -c '%i %s' " + path + " 2>/dev/null || echo '0 0'").trim();
+		String[] values = stat.split(" ");
+		if (values.length != 2) {
+			return new long[] { 0, 0 };
+		}
+		try {
+			return new long[] { Long.parseLong(values[0]), Long.parseLong(values[1]) };
+		} catch (NumberFormatException e) {
+			return new long[] { 0, 0 };
+		}
+	}
+
+	private boolean waitToReconnect() {
+		try {
+			Thread.sleep(reconnectDelay);
+			this.reconnectDelay = Math.min(MAX_RECONNECT_DELAY, reconnectDelay * 2);
+			return true;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+
+	private void disconnect() {
+		ChannelExec channel = this.channel;
+		if (channel != null) {
+			channel.disconnect();
+			this.channel = null;
+		}
+		this.in = null;
+		releaseSession();
+	}
+
+	private void releaseSession() {
+		if (leased.compareAndSet(true, false)) {
+			pool.release(key);
+		}
+	}
+
+	/**
+	 * Opens the tail if it is not open yet. A reader that starts at the end
+	 * of the log only reads the output that is written after it was opened,
+	 * so it has to be opened before the output is triggered.
+	 */
+	public synchronized void connect() throws IOException {
+		if (in != null) {
+			return;
+		}
+		try {
+			open();
+		} catch (JSchException e) {
+			throw new IOException(e);
+		}
+	}
+
+	/**
+	 * Returns the byte offset in the log up to which it was read.
+	 */
+	public synchronized long getOffset() {
+		return offset;
+	}
+
+	/**
+	 * Sets the delay before the first attempt to reconnect, it doubles with
+	 * each failed attempt.
+	 */
+	public synchronized void setReconnectDelay(long delay) {
+		this.minReconnectDelay = delay;
+		this.reconnectDelay = delay;
+	}
+
+	/**
+	 * Stops the tail. A thread that blocks in {@link #read(char[], int, int)}
+	 * returns <code>-1</code>.
+	 */
+	public void close() throws IOException {
+		this.closed = true;
+		ChannelExec channel = this.channel;
+		if (channel != null) {
+			// unblocks a reading thread
+			channel.disconnect();
+		}
+		releaseSession();
+	}
+}
@@ -0,0 +1,253 @@
+/******************************************************************************* 
+ * Copyright (c) 2011 Red Hat, Inc. 
+ * Distributed under license by Red Hat, Inc. All rights reserved. 
+ * This program is made available under the terms of the 
+ * Eclipse Public License v1.0 which accompanies this distribution, 
+ * and is available at http://www.eclipse.org/legal/epl-v10.html 
+ * 
+ * Contributors: 
+ * Red Hat, Inc. - initial API and implementation 
+ ******************************************************************************/
+package com.openshift.express.client.archive;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import com.openshift.express.client.LogLine;
+import com.openshift.express.client.OpenShiftException;
+import com.openshift.express.internal.client.archive.LogSegment;
+
+/**
+ * Keeps the recent log lines of an application in a local directory and
+ * searches them by time and keywords. The lines are appended to memory mapped
+ * segment files, once the archive exceeds its max size the oldest segments
+ * are deleted. Each segment has a sparse time index and a token index, so
+ * that a query only reads the parts of the segments that may match instead
+ * of loading the segments onto the heap.
+ * 
+ * <pre>
+ * LogArchive archive = new LogArchive(&quot;myapp&quot;, new File(&quot;/var/tmp/myapp&quot;), 1024 * 1024 * 1024);
+ * archive.archive(application.getStreamingLogReader(&quot;logs/server.log&quot;));
+ * ...
+ * List&lt;LogLine&gt; lines = archive.query(from, to, 100, &quot;NullPointerException&quot;);
+ * </pre>
+ * 
+ * @author agent
+ */
+public class LogArchive {
+
+	public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+	private static final String SEGMENT_SUFFIX = ".segment";
+	/** zero padded numbers that fit into a long */
+	private static final Pattern SEGMENT_NAME = Pattern.compile("0*[0-9]{1,18}\\.segment");
+	private static final int SEGMENT_NAME_DIGITS = 20;
+
+	private final String name;
+	private final File directory;
+	private final long maxSize;
+	private final int segmentSize;
+	private final LinkedList<LogSegment> segments = new LinkedList<LogSegment>();
+	private long nextSegment;
+
+	public LogArchive(String name, File directory, long maxSize) throws OpenShiftException {
+		this(name, directory, maxSize, DEFAULT_SEGMENT_SIZE);
+	}
+
+	/**
+	 * Opens the archive in the given directory. Segments that exist in the
+	 * directory are reopened.
+	 * 
+	 * @param name
+	 *            the name to tag the lines with, ex. the application name
+	 * @param directory
+	 *            the directory to keep the segments in
+	 * @param maxSize
+	 *            the max number of bytes that the segments may take
+	 * @param segmentSize
+	 *            the size of a segment in bytes
+	 */
+	public LogArchive(String name, File directory, long maxSize, int segmentSize) throws OpenShiftException {
+		this.name = name;
+		this.directory = directory;
+		this.maxSize = maxSize;
+		this.segmentSize = segmentSize;
+		open();
+	}
+
+	private void open() throws OpenShiftException {
+		if (!directory.isDirectory()
+				&& !directory.mkdirs()) {
+			throw new OpenShiftException("Could not create log archive directory {0}", directory);
+		}
+		String[] segmentNames = directory.list(new FilenameFilter() {
+
+			public boolean accept(File dir, String name) {
+				// skip files that were not written by the archive
+				return SEGMENT_NAME.matcher(name).matches();
+			}
+		});
+		Arrays.sort(segmentNames);
+		try {
+			for (String segmentName : segmentNames) {
+				segments.add(new LogSegment(new File(directory, segmentName), segmentSize));
+				this.nextSegment =
+						Long.parseLong(segmentName.substring(0, segmentName.length() - SEGMENT_SUFFIX.length())) + 1;
+			}
+		} catch (IOException e) {
+			throw new OpenShiftException(e, "Could not open log archive {0}", directory);
+		}
+	}
+
+	/**
+	 * Appends the given line.
+	 * 
+	 * @param timestamp
+	 *            the time of the line in milliseconds. Lines are kept in the
+	 *            order they are appended, a line older than the previous one
+	 *            gets the timestamp of the previous one.
+	 */
+	public synchronized void append(long timestamp, String line) throws OpenShiftException {
+		try {
+			if (!segments.isEmpty()) {
+				// a new segment does not know the timestamps of the previous one
+				timestamp = Math.max(timestamp, segments.getLast().getLastTimestamp());
+			}
+			if (segments.isEmpty()
+					|| !segments.getLast().append(timestamp, line)) {
+				LogSegment segment = createSegment();
+				if (!segment.append(timestamp, line)) {
+					throw new OpenShiftException("Line of {0} characters does not fit into a segment of {1} bytes",
+							line.length(), segmentSize);
+				}
+				deleteExceedingSegments();
+			}
+		} catch (IOException e) {
+			throw new OpenShiftException(e, "Could not append to log archive {0}", directory);
+		}
+	}
+
+	/**
+	 * Appends the lines of the given log reader until it ends, with the time
+	 * they were read at. Blocks while the reader waits for output.
+	 * 
+	 * @return the number of lines that were archived
+	 */
+	public long archive(Reader logReader) throws OpenShiftException {
+		BufferedReader reader = new BufferedReader(logReader);
+		long lines = 0;
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				append(System.currentTimeMillis(), line);
+				lines++;
+			}
+			return lines;
+		} catch (IOException e) {
+			throw new OpenShiftException(e, "Could not read log to archive in {0}", directory);
+		}
+	}
+
+	private LogSegment createSegment() throws IOException {
+		String segmentName = String.format("%0" + SEGMENT_NAME_DIGITS + "d", nextSegment++) + SEGMENT_SUFFIX;
+		LogSegment segment = new LogSegment(new File(directory, segmentName), segmentSize);
+		if (!segments.isEmpty()) {
+			segments.getLast().flush();
+		}
+		segments.add(segment);
+		return segment;
+	}
+
+	/**
+	 * Deletes the oldest segments while the segments exceed the max size. The
+	 * segment that is appended to is kept.
+	 */
+	private void deleteExceedingSegments() throws IOException {
+		while (segments.size() > 1
+				&& (long) segments.size() * segmentSize > maxSize) {
+			segments.removeFirst().delete();
+		}
+	}
+
+	/**
+	 * Returns the lines within the given time range that contain all words of
+	 * the given keywords, oldest first. Words are runs of letters and digits
+	 * and match ignoring case, ex. the keyword "java.lang.NullPointerException"
+	 * matches lines that contain the words "java", "lang" and
+	 * "nullpointerexception".
+	 * 
+	 * @param from
+	 *            the start of the range in milliseconds, inclusive
+	 * @param to
+	 *            the end of the range in milliseconds, exclusive
+	 * @param limit
+	 *            the max number of lines to return
+	 * @param keywords
+	 *            the keywords the lines have to contain
+	 */
+	public synchronized List<LogLine> query(long from, long to, int limit, String... keywords)
+			throws OpenShiftException {
+		Set<String> tokens = new HashSet<String>();
+		for (String keyword : keywords) {
+			tokens.addAll(LogSegment.tokenize(keyword));
+		}
+		List<LogLine> lines = new ArrayList<LogLine>();
+		try {
+			for (LogSegment segment : segments) {
+				segment.query(from, to, tokens, name, lines, limit);
+				if (lines.size() >= limit) {
+					break;
+				}
+			}
+		} catch (IOException e) {
+			throw new OpenShiftException(e, "Could not query log archive {0}", directory);
+		}
+		return Collections.unmodifiableList(lines);
+	}
+
+	/**
+	 * Returns the number of bytes that the archived lines take.
+	 */
+	public synchronized long getSize() {
+		long size = 0;
+		for (LogSegment segment : segments) {
+			size += segment.getSize();
+		}
+		return size;
+	}
+
+	public synchronized int getSegmentCount() {
+		return segments.size();
+	}
+
+	/**
+	 * Writes the archived lines to disk.
+	 */
+	public synchronized void flush() {
+		for (LogSegment segment : segments) {
+			segment.flush();
+		}
+	}
+
+	public synchronized void close() throws OpenShiftException {
+		try {
+			for (LogSegment segment : segments) {
+				segment.close();
+			}
+			segments.clear();
+		} catch (IOException e) {
+			throw new OpenShiftException(e, "Could not close log archive {0}", directory);
+		}
+	}
+}
@@ -25,6 +25,15 @@ public class UserConfiguration extends AbstractOpenshiftConfiguration {
 	private static final String PROPERTY_USERHOME = "user.home";
 	
 	public UserConfiguration(SystemConfiguration systemConfiguration) throws OpenShiftException, IOException {
-		super(new File(System.getProperty(PROPERTY_USERHOME) + File.separatorChar + CONFIGURATION_FOLDER, CONFIGURATION_FILE), systemConfiguration);
+		super(new File(getConfigurationFolder(), CONFIGURATION_FILE), systemConfiguration);
+	}
+
+	/**
+	 * Returns the folder that holds the user configuration (~/.openshift).
+	 * 
+	 * @return the user configuration folder
+	 */
+	public static File getConfigurationFolder() {
+		return new File(System.getProperty(PROPERTY_USERHOME) + File.separatorChar + CONFIGURATION_FOLDER);
 	}
 }
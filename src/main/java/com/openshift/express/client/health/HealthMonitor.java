@@ -0,0 +1,655 @@
+/******************************************************************************* 
+ * Copyright (c) 2011 Red Hat, Inc. 
+ * Distributed under license by Red Hat, Inc. All rights reserved. 
+ * This program is made available under the terms of the 
+ * Eclipse Public License v1.0 which accompanies this distribution, 
+ * and is available at http://www.eclipse.org/legal/epl-v10.html 
+ * 
+ * Contributors: 
+ * Red Hat, Inc. - initial API and implementation 
+ ******************************************************************************/
+package com.openshift.express.client.health;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.MalformedURLException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.UnresolvedAddressException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+import com.openshift.express.client.IApplication;
+import com.openshift.express.client.OpenShiftException;
+import com.openshift.express.internal.client.concurrent.DaemonThreadFactory;
+
+/**
+ * Continuously probes the health check urls of many applications. All probes
+ * run on a single thread over non-blocking sockets that are kept alive
+ * between probes, so thousands of applications may be monitored every few
+ * seconds. Records the latency and the up/down transitions of each
+ * application. Host names are looked up by a few resolver threads so that a
+ * slow name service never stalls the probes of other applications.
+ * <p>
+ * Probes speak plain http. Https urls (as returned by
+ * {@link IApplication#getHealthCheckUrl()}) are probed on their http port.
+ *
+ * <pre>
+ * HealthMonitor monitor = new HealthMonitor(5 * 1000, 2 * 1000);
+ * monitor.add(application);
+ * monitor.start();
+ * ...
+ * monitor.getStatistics(application.getUUID()).getLatencyPercentile(99);
+ * </pre>
+ *
+ * @author agent
+ */
+public class HealthMonitor {
+
+	public static final int DEFAULT_SAMPLES = 128;
+	private static final int READ_BUFFER_SIZE = 8 * 1024;
+	private static final int RESOLVER_THREADS = 4;
+
+	private final long interval;
+	private final long timeout;
+	private final int samples;
+
+	private final Map<String, HealthProbe> probes = new ConcurrentHashMap<String, HealthProbe>();
+	private final Queue<HealthProbe> added = new ConcurrentLinkedQueue<HealthProbe>();
+	private final Queue<HealthProbe> removed = new ConcurrentLinkedQueue<HealthProbe>();
+	private final Queue<Resolved> resolved = new ConcurrentLinkedQueue<Resolved>();
+	private final List<IHealthListener> listeners = new CopyOnWriteArrayList<IHealthListener>();
+
+	/** monitor thread only */
+	private final PriorityQueue<HealthProbe> scheduled = new PriorityQueue<HealthProbe>(64,
+			new Comparator<HealthProbe>() {
+
+				public int compare(HealthProbe thisProbe, HealthProbe thatProbe) {
+					if (thisProbe.nextProbeAt < thatProbe.nextProbeAt) {
+						return -1;
+					} else if (thisProbe.nextProbeAt > thatProbe.nextProbeAt) {
+						return 1;
+					}
+					return 0;
+				}
+			});
+	/** monitor thread only */
+	private final Set<HealthProbe> inFlight = new HashSet<HealthProbe>();
+	private final ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+
+	private Selector selector;
+	private ExecutorService resolver;
+	private Thread thread;
+	private volatile boolean running;
+
+	/**
+	 * Creates a monitor that probes each application every given interval.
+	 *
+	 * @param interval
+	 *            the time between 2 probes of the same application in
+	 *            milliseconds
+	 * @param timeout
+	 *            the time after which a probe is considered as failed
+	 */
+	public HealthMonitor(long interval, long timeout) {
+		this(interval, timeout, DEFAULT_SAMPLES);
+	}
+
+	/**
+	 * @param samples
+	 *            the number of recent latencies kept per application for the
+	 *            percentiles
+	 */
+	public HealthMonitor(long interval, long timeout, int samples) {
+		this.interval = interval;
+		this.timeout = timeout;
+		this.samples = samples;
+	}
+
+	/**
+	 * Monitors the given application, using its uuid as id.
+	 *
+	 * @throws OpenShiftException
+	 *             if the application has no health check url
+	 */
+	public void add(IApplication application) throws OpenShiftException {
+		String url = application.getHealthCheckUrl();
+		if (url == null) {
+			throw new OpenShiftException("Application \"{0}\" has no health check url", application.getName());
+		}
+		add(application.getUUID(), url);
+	}
+
+	/**
+	 * Monitors the given health check url. Replaces the url that was
+	 * monitored for the given id before.
+	 *
+	 * @param id
+	 *            the id that the statistics are reported for
+	 * @param url
+	 *            the url that answers "1" if the application is healthy
+	 * @throws OpenShiftException
+	 *             if the url is malformed
+	 */
+	public void add(String id, String url) throws OpenShiftException {
+		try {
+			HealthProbe probe = new HealthProbe(id, url, samples);
+			HealthProbe previous = probes.put(id, probe);
+			if (previous != null) {
+				removed.add(previous);
+			}
+			added.add(probe);
+			wakeup();
+		} catch (MalformedURLException e) {
+			throw new OpenShiftException(e, "Could not monitor malformed url \"{0}\"", url);
+		}
+	}
+
+	public void remove(String id) {
+		HealthProbe probe = probes.remove(id);
+		if (probe != null) {
+			removed.add(probe);
+			wakeup();
+		}
+	}
+
+	public void addListener(IHealthListener listener) {
+		listeners.add(listener);
+	}
+
+	public void removeListener(IHealthListener listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * Returns the statistics for the given id or <code>null</code> if it's
+	 * not monitored.
+	 */
+	public HealthStatistics getStatistics(String id) {
+		HealthProbe probe = probes.get(id);
+		if (probe == null) {
+			return null;
+		}
+		return probe.getStatistics();
+	}
+
+	public List<HealthStatistics> getStatistics() {
+		List<HealthStatistics> statistics = new ArrayList<HealthStatistics>(probes.size());
+		for (HealthProbe probe : probes.values()) {
+			statistics.add(probe.getStatistics());
+		}
+		return statistics;
+	}
+
+	/**
+	 * Returns the number of monitored applications whose last probe
+	 * succeeded.
+	 */
+	public int getUpCount() {
+		int up = 0;
+		for (HealthProbe probe : probes.values()) {
+			if (probe.isProbed()
+					&& probe.isUp()) {
+				up++;
+			}
+		}
+		return up;
+	}
+
+	/**
+	 * Returns the number of monitored applications whose last probe failed.
+	 */
+	public int getDownCount() {
+		int down = 0;
+		for (HealthProbe probe : probes.values()) {
+			if (probe.isProbed()
+					&& !probe.isUp()) {
+				down++;
+			}
+		}
+		return down;
+	}
+
+	/**
+	 * Returns the given percentile of the recent latencies across all
+	 * monitored applications or -1 if no probe succeeded yet.
+	 */
+	public long getLatencyPercentile(double percentile) {
+		List<long[]> all = new ArrayList<long[]>(probes.size());
+		int size = 0;
+		for (HealthProbe probe : probes.values()) {
+			long[] latencies = probe.getLatencies().toSortedArray();
+			all.add(latencies);
+			size += latencies.length;
+		}
+		long[] merged = new long[size];
+		int position = 0;
+		for (long[] latencies : all) {
+			System.arraycopy(latencies, 0, merged, position, latencies.length);
+			position += latencies.length;
+		}
+		Arrays.sort(merged);
+		return LatencySamples.getPercentile(merged, percentile);
+	}
+
+	public synchronized void start() throws OpenShiftException {
+		if (running) {
+			return;
+		}
+		try {
+			this.selector = Selector.open();
+		} catch (IOException e) {
+			throw new OpenShiftException(e, "Could not open selector for health monitor");
+		}
+		this.resolver = Executors.newFixedThreadPool(RESOLVER_THREADS,
+				new DaemonThreadFactory("health-monitor-resolver"));
+		added.clear();
+		added.addAll(probes.values());
+		resolved.clear();
+		this.running = true;
+		this.thread = new Thread(new Runnable() {
+
+			public void run() {
+				monitor();
+			}
+		}, "health-monitor");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	public synchronized void stop() {
+		if (!running) {
+			return;
+		}
+		this.running = false;
+		selector.wakeup();
+		try {
+			thread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	public boolean isRunning() {
+		return running;
+	}
+
+	private void wakeup() {
+		Selector selector = this.selector;
+		if (selector != null) {
+			selector.wakeup();
+		}
+	}
+
+	private void monitor() {
+		try {
+			while (running) {
+				processRemoved();
+				processAdded();
+				processResolved();
+				long now = System.currentTimeMillis();
+				startDueProbes(now);
+				failTimedOut(now);
+				selector.select(getSelectTimeout(System.currentTimeMillis()));
+				processSelected();
+			}
+		} catch (IOException e) {
+			// selector failed, monitor can't continue
+		} finally {
+			try {
+				closeAll();
+			} finally {
+				// also reached if an unexpected exception ends the monitor
+				this.running = false;
+			}
+		}
+	}
+
+	private void processAdded() {
+		HealthProbe probe;
+		while ((probe = added.poll()) != null) {
+			if (!probe.removed
+					&& !probe.inFlight
+					&& !scheduled.contains(probe)) {
+				probe.nextProbeAt = System.currentTimeMillis();
+				scheduled.add(probe);
+			}
+		}
+	}
+
+	private void processRemoved() {
+		HealthProbe probe;
+		while ((probe = removed.poll()) != null) {
+			probe.removed = true;
+			scheduled.remove(probe);
+			inFlight.remove(probe);
+			probe.inFlight = false;
+			close(probe);
+		}
+	}
+
+	private void processResolved() {
+		Resolved resolution;
+		while ((resolution = resolved.poll()) != null) {
+			HealthProbe probe = resolution.probe;
+			probe.resolving = false;
+			probe.setAddress(resolution.address);
+			if (!probe.awaitingAddress) {
+				continue;
+			}
+			probe.awaitingAddress = false;
+			if (!probe.inFlight) {
+				continue;
+			}
+			if (resolution.address.isUnresolved()) {
+				probe.forgetAddress();
+				fail(probe, "unknown host " + probe.getHost());
+				continue;
+			}
+			sendRequest(probe);
+		}
+	}
+
+	private void startDueProbes(long now) {
+		while (!scheduled.isEmpty()
+				&& scheduled.peek().nextProbeAt <= now) {
+			startProbe(scheduled.poll(), now);
+		}
+	}
+
+	private void startProbe(HealthProbe probe, long now) {
+		probe.inFlight = true;
+		probe.probeStart = now;
+		probe.deadline = now + timeout;
+		probe.retried = false;
+		inFlight.add(probe);
+		sendRequest(probe);
+	}
+
+	/**
+	 * Sends the request on the kept-alive connection of the given probe or on
+	 * a new connection if there is none. Resolves the address first if it is
+	 * not known yet.
+	 */
+	private void sendRequest(HealthProbe probe) {
+		probe.parser.reset();
+		probe.getRequest().rewind();
+		try {
+			if (probe.channel != null
+					&& probe.channel.isOpen()) {
+				probe.reused = true;
+				probe.key.interestOps(SelectionKey.OP_WRITE);
+			} else {
+				probe.reused = false;
+				InetSocketAddress address = probe.getAddress();
+				if (address == null) {
+					resolve(probe);
+				} else {
+					connect(probe, address);
+				}
+			}
+		} catch (IOException e) {
+			fail(probe, e.getMessage());
+		} catch (UnresolvedAddressException e) {
+			probe.forgetAddress();
+			fail(probe, "unknown host " + probe.getHost());
+		}
+	}
+
+	/**
+	 * Looks the address of the given probe up on a resolver thread. The probe
+	 * continues once the result is handed back in {@link #processResolved()}
+	 * or times out as any other probe.
+	 */
+	private void resolve(final HealthProbe probe) {
+		probe.awaitingAddress = true;
+		if (probe.resolving) {
+			return;
+		}
+		probe.resolving = true;
+		try {
+			resolver.execute(new Runnable() {
+
+				public void run() {
+					resolved.add(new Resolved(probe, probe.resolve()));
+					wakeup();
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			probe.resolving = false;
+			probe.awaitingAddress = false;
+			fail(probe, "could not resolve host " + probe.getHost());
+		}
+	}
+
+	private void connect(HealthProbe probe, InetSocketAddress address) throws IOException {
+		SocketChannel channel = SocketChannel.open();
+		probe.channel = channel;
+		channel.configureBlocking(false);
+		channel.socket().setTcpNoDelay(true);
+		channel.socket().setKeepAlive(true);
+		int interest = SelectionKey.OP_CONNECT;
+		if (channel.connect(address)) {
+			interest = SelectionKey.OP_WRITE;
+		}
+		probe.key = channel.register(selector, interest, probe);
+	}
+
+	private void failTimedOut(long now) {
+		List<HealthProbe> timedOut = new ArrayList<HealthProbe>();
+		for (HealthProbe probe : inFlight) {
+			if (probe.deadline <= now) {
+				timedOut.add(probe);
+			}
+		}
+		for (HealthProbe probe : timedOut) {
+			fail(probe, "timed out after " + timeout + " ms");
+		}
+	}
+
+	private long getSelectTimeout(long now) {
+		long next = Long.MAX_VALUE;
+		if (!scheduled.isEmpty()) {
+			next = scheduled.peek().nextProbeAt;
+		}
+		for (HealthProbe probe : inFlight) {
+			next = Math.min(next, probe.deadline);
+		}
+		if (next == Long.MAX_VALUE) {
+			// 0 would block forever, wake up regularly instead
+			return interval;
+		}
+		return Math.max(1, next - now);
+	}
+
+	private void processSelected() {
+		Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
+		while (iterator.hasNext()) {
+			SelectionKey key = iterator.next();
+			iterator.remove();
+			HealthProbe probe = (HealthProbe) key.attachment();
+			if (!key.isValid()
+					|| !probe.inFlight) {
+				if (key.isValid() && key.isReadable()) {
+					// server closed an idle kept-alive connection
+					close(probe);
+				}
+				continue;
+			}
+			try {
+				if (key.isConnectable()) {
+					onConnectable(probe);
+				} else if (key.isWritable()) {
+					onWritable(probe);
+				} else if (key.isReadable()) {
+					onReadable(probe);
+				}
+			} catch (IOException e) {
+				onConnectionFailure(probe, e.getMessage());
+			} catch (HealthProbeException e) {
+				fail(probe, e.getMessage());
+			}
+		}
+	}
+
+	private void onConnectable(HealthProbe probe) throws IOException {
+		if (probe.channel.finishConnect()) {
+			probe.key.interestOps(SelectionKey.OP_WRITE);
+		}
+	}
+
+	private void onWritable(HealthProbe probe) throws IOException {
+		probe.channel.write(probe.getRequest());
+		if (!probe.getRequest().hasRemaining()) {
+			probe.key.interestOps(SelectionKey.OP_READ);
+		}
+	}
+
+	private void onReadable(HealthProbe probe) throws IOException, HealthProbeException {
+		readBuffer.clear();
+		int read = probe.channel.read(readBuffer);
+		if (read < 0) {
+			if (probe.parser.endOfStream()) {
+				close(probe);
+				succeed(probe);
+			} else {
+				onConnectionFailure(probe, "connection closed by server");
+			}
+			return;
+		}
+		readBuffer.flip();
+		if (probe.parser.feed(readBuffer)) {
+			if (probe.parser.isKeepAlive()) {
+				probe.key.interestOps(SelectionKey.OP_READ);
+			} else {
+				close(probe);
+			}
+			succeed(probe);
+		}
+	}
+
+	/**
+	 * Retries on a new connection if a kept-alive connection was closed by
+	 * the server before it answered, fails the probe otherwise.
+	 */
+	private void onConnectionFailure(HealthProbe probe, String message) {
+		close(probe);
+		if (probe.reused
+				&& !probe.retried
+				&& probe.parser.getBytesRead() == 0) {
+			probe.retried = true;
+			sendRequest(probe);
+		} else {
+			probe.forgetAddress();
+			fail(probe, message);
+		}
+	}
+
+	private void succeed(HealthProbe probe) {
+		boolean healthy = probe.isHealthy();
+		String failure = null;
+		if (!healthy) {
+			failure = "unexpected response " + probe.parser.getStatusCode() + " \"" + probe.parser.getBody() + "\"";
+		}
+		done(probe, healthy, failure);
+	}
+
+	private void fail(HealthProbe probe, String message) {
+		close(probe);
+		done(probe, false, message);
+	}
+
+	private void done(HealthProbe probe, boolean healthy, String failure) {
+		if (!probe.inFlight) {
+			return;
+		}
+		long now = System.currentTimeMillis();
+		probe.inFlight = false;
+		inFlight.remove(probe);
+		boolean changed = probe.record(healthy, now - probe.probeStart, failure, now);
+		if (!probe.removed) {
+			probe.nextProbeAt = probe.probeStart + interval;
+			scheduled.add(probe);
+		}
+		if (changed) {
+			notifyListeners(probe.getStatistics());
+		}
+	}
+
+	private void notifyListeners(HealthStatistics statistics) {
+		for (IHealthListener listener : listeners) {
+			try {
+				listener.healthChanged(statistics);
+			} catch (RuntimeException e) {
+				// a failing listener must not stop the monitor
+			}
+		}
+	}
+
+	private void close(HealthProbe probe) {
+		if (probe.key != null) {
+			probe.key.cancel();
+			probe.key = null;
+		}
+		if (probe.channel != null) {
+			try {
+				probe.channel.close();
+			} catch (IOException e) {
+				// ignore
+			}
+			probe.channel = null;
+		}
+	}
+
+	private void closeAll() {
+		for (SelectionKey key : selector.keys()) {
+			close((HealthProbe) key.attachment());
+		}
+		for (HealthProbe probe : inFlight) {
+			probe.inFlight = false;
+		}
+		inFlight.clear();
+		scheduled.clear();
+		resolver.shutdownNow();
+		resolved.clear();
+		for (HealthProbe probe : probes.values()) {
+			probe.resolving = false;
+			probe.awaitingAddress = false;
+		}
+		try {
+			selector.close();
+		} catch (IOException e) {
+			// ignore
+		}
+	}
+
+	/**
+	 * The address that a resolver thread looked up for a probe.
+	 */
+	private static class Resolved {
+
+		private final HealthProbe probe;
+		private final InetSocketAddress address;
+
+		private Resolved(HealthProbe probe, InetSocketAddress address) {
+			this.probe = probe;
+			this.address = address;
+		}
+	}
+}
@@ -0,0 +1,181 @@
+/******************************************************************************* 
+ * Copyright (c) 2011 Red Hat, Inc. 
+ * Distributed under license by Red Hat, Inc. All rights reserved. 
+ * This program is made available under the terms of the 
+ * Eclipse Public License v1.0 which accompanies this distribution, 
+ * and is available at http://www.eclipse.org/legal/epl-v10.html 
+ * 
+ * Contributors: 
+ * Red Hat, Inc. - initial API and implementation 
+ ******************************************************************************/
+package com.openshift.express.client.health;
+
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.Date;
+
+/**
+ * The state of a monitored application: its address, its kept-alive
+ * connection, the probe that is in flight and the recorded health. Mutated
+ * by the monitor thread only, read by others through
+ * {@link #getStatistics()}.
+ * 
+ * @author agent
+ */
+class HealthProbe {
+
+	private static final String HEALTH_RESPONSE_OK = "1";
+	private static final int DEFAULT_HTTP_PORT = 80;
+
+	final String id;
+	final String url;
+	private final String host;
+	private final int port;
+	private final ByteBuffer request;
+	final HealthResponseParser parser = new HealthResponseParser();
+	private final LatencySamples latencies;
+
+	private InetSocketAddress address;
+	/** the address is being resolved by the resolver */
+	boolean resolving;
+	/** the probe waits for the address to be resolved */
+	boolean awaitingAddress;
+	SocketChannel channel;
+	SelectionKey key;
+	/** the probe reuses a kept-alive connection */
+	boolean reused;
+	/** the probe was retried on a fresh connection */
+	boolean retried;
+	boolean inFlight;
+	long probeStart;
+	long deadline;
+	long nextProbeAt;
+	boolean removed;
+
+	private volatile boolean up;
+	private volatile boolean probed;
+	private volatile Date lastChange;
+	private volatile String lastFailure;
+	private volatile long probes;
+	private volatile long failures;
+	private volatile long transitions;
+	private volatile long lastLatency = -1;
+
+	HealthProbe(String id, String url, int samples) throws MalformedURLException {
+		this.id = id;
+		this.url = url;
+		URL parsed = new URL(url);
+		this.host = parsed.getHost();
+		// probes speak plain http, https urls are probed on their http port
+		this.port = "http".equals(parsed.getProtocol()) && parsed.getPort() > 0 ? parsed.getPort() : DEFAULT_HTTP_PORT;
+		this.request = createRequest(parsed);
+		this.latencies = new LatencySamples(samples);
+	}
+
+	private ByteBuffer createRequest(URL url) {
+		String path = url.getFile();
+		if (path == null
+				|| path.length() == 0) {
+			path = "/";
+		}
+		String request = "GET " + path + " HTTP/1.1\r\n"
+				+ "Host: " + url.getHost() + "\r\n"
+				+ "Connection: keep-alive\r\n"
+				+ "User-Agent: openshift-java-client health monitor\r\n"
+				+ "\r\n";
+		try {
+			return ByteBuffer.wrap(request.getBytes("US-ASCII"));
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Returns the resolved address to connect to or <code>null</code> if it
+	 * was not resolved yet.
+	 */
+	InetSocketAddress getAddress() {
+		if (address == null
+				|| address.isUnresolved()) {
+			return null;
+		}
+		return address;
+	}
+
+	void setAddress(InetSocketAddress address) {
+		this.address = address;
+	}
+
+	/**
+	 * Looks the host up. Blocks while the name service is queried and must
+	 * therefore not be called by the monitor thread.
+	 */
+	InetSocketAddress resolve() {
+		return new InetSocketAddress(host, port);
+	}
+
+	String getHost() {
+		return host;
+	}
+
+	void forgetAddress() {
+		this.address = null;
+	}
+
+	ByteBuffer getRequest() {
+		return request;
+	}
+
+	boolean isHealthy() {
+		return parser.getStatusCode() == 200
+				&& HEALTH_RESPONSE_OK.equals(parser.getBody().trim());
+	}
+
+	/**
+	 * Records the outcome of a probe.
+	 * 
+	 * @return <code>true</code> if the health changed
+	 */
+	boolean record(boolean healthy, long latency, String failure, long now) {
+		this.probes++;
+		if (healthy) {
+			latencies.add(latency);
+			this.lastLatency = latency;
+		} else {
+			this.failures++;
+			this.lastFailure = failure;
+		}
+		boolean changed = !probed || up != healthy;
+		if (changed) {
+			if (probed) {
+				this.transitions++;
+			}
+			this.lastChange = new Date(now);
+		}
+		this.up = healthy;
+		this.probed = true;
+		return changed;
+	}
+
+	boolean isUp() {
+		return up;
+	}
+
+	boolean isProbed() {
+		return probed;
+	}
+
+	LatencySamples getLatencies() {
+		return latencies;
+	}
+
+	HealthStatistics getStatistics() {
+		return new HealthStatistics(id, url, up, lastChange, lastFailure, probes, failures, transitions,
+				lastLatency, latencies.toSortedArray());
+	}
+}
@@ -0,0 +1,280 @@
+/******************************************************************************* 
+ * Copyright (c) 2011 Red Hat, Inc. 
+ * Distributed under license by Red Hat, Inc. All rights reserved. 
+ * This program is made available under the terms of the 
+ * Eclipse Public License v1.0 which accompanies this distribution, 
+ * and is available at http://www.eclipse.org/legal/epl-v10.html 
+ * 
+ * Contributors: 
+ * Red Hat, Inc. - initial API and implementation 
+ ******************************************************************************/
+package com.openshift.express.client.health;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Parses an http response incrementally, as its bytes arrive on a
+ * non-blocking channel. Only the status and the first bytes of the body are
+ * kept, the rest of the body is skipped. Understands content length, chunked
+ * and read-until-close bodies so that kept-alive connections may be reused.
+ * 
+ * @author agent
+ */
+class HealthResponseParser {
+
+	static final int MAX_BODY = 64;
+	private static final int MAX_LINE = 8 * 1024;
+
+	private static final int STATUS_LINE = 0;
+	private static final int HEADERS = 1;
+	private static final int BODY = 2;
+	private static final int CHUNK_SIZE = 3;
+	private static final int CHUNK_DATA = 4;
+	private static final int CHUNK_END = 5;
+	private static final int TRAILERS = 6;
+	private static final int BODY_UNTIL_CLOSE = 7;
+	private static final int DONE = 8;
+
+	private int state;
+	private StringBuilder line = new StringBuilder();
+	private StringBuilder body = new StringBuilder();
+	private int statusCode;
+	private boolean http11;
+	private boolean connectionClose;
+	private boolean connectionKeepAlive;
+	private boolean chunked;
+	private long contentLength;
+	private long remaining;
+	private long bytesRead;
+
+	HealthResponseParser() {
+		reset();
+	}
+
+	void reset() {
+		this.state = STATUS_LINE;
+		line.setLength(0);
+		body.setLength(0);
+		this.statusCode = -1;
+		this.http11 = false;
+		this.connectionClose = false;
+		this.connectionKeepAlive = false;
+		this.chunked = false;
+		this.contentLength = -1;
+		this.remaining = 0;
+		this.bytesRead = 0;
+	}
+
+	/**
+	 * Consumes the bytes that are available in the given buffer.
+	 * 
+	 * @return <code>true</code> if the response is complete
+	 * @throws HealthProbeException
+	 *             if the response is malformed
+	 */
+	boolean feed(ByteBuffer buffer) throws HealthProbeException {
+		while (buffer.hasRemaining()
+				&& state != DONE) {
+			switch (state) {
+			case STATUS_LINE:
+			case HEADERS:
+			case CHUNK_SIZE:
+			case CHUNK_END:
+			case TRAILERS:
+				if (readLine(buffer)) {
+					onLine(line.toString());
+					line.setLength(0);
+				}
+				break;
+			case BODY:
+			case CHUNK_DATA:
+				readBody(buffer);
+				break;
+			case BODY_UNTIL_CLOSE:
+				remaining = buffer.remaining();
+				readBody(buffer);
+				break;
+			}
+		}
+		return state == DONE;
+	}
+
+	/**
+	 * Signals that the server closed the connection.
+	 * 
+	 * @return <code>true</code> if the response is complete
+	 */
+	boolean endOfStream() {
+		if (state == BODY_UNTIL_CLOSE) {
+			this.state = DONE;
+		}
+		return state == DONE;
+	}
+
+	private boolean readLine(ByteBuffer buffer) throws HealthProbeException {
+		while (buffer.hasRemaining()) {
+			char character = (char) (buffer.get() & 0xff);
+			bytesRead++;
+			if (character == '\n') {
+				int length = line.length();
+				if (length > 0
+						&& line.charAt(length - 1) == '\r') {
+					line.setLength(length - 1);
+				}
+				return true;
+			}
+			if (line.length() >= MAX_LINE) {
+				throw new HealthProbeException("Response line exceeds {0} bytes", MAX_LINE);
+			}
+			line.append(character);
+		}
+		return false;
+	}
+
+	private void readBody(ByteBuffer buffer) {
+		int length = (int) Math.min(remaining, buffer.remaining());
+		for (int i = 0; i < length; i++) {
+			byte character = buffer.get();
+			if (body.length() < MAX_BODY) {
+				body.append((char) (character & 0xff));
+			}
+		}
+		bytesRead += length;
+		remaining -= length;
+		if (remaining == 0) {
+			switch (state) {
+			case BODY:
+				this.state = DONE;
+				break;
+			case CHUNK_DATA:
+				this.state = CHUNK_END;
+				break;
+			}
+		}
+	}
+
+	private void onLine(String line) throws HealthProbeException {
+		switch (state) {
+		case STATUS_LINE:
+			onStatusLine(line);
+			break;
+		case HEADERS:
+			if (line.length() == 0) {
+				onHeadersEnd();
+			} else {
+				onHeader(line);
+			}
+			break;
+		case CHUNK_SIZE:
+			onChunkSize(line);
+			break;
+		case CHUNK_END:
+			this.state = CHUNK_SIZE;
+			break;
+		case TRAILERS:
+			if (line.length() == 0) {
+				this.state = DONE;
+			}
+			break;
+		}
+	}
+
+	private void onStatusLine(String line) throws HealthProbeException {
+		// HTTP/1.1 200 OK
+		String[] tokens = line.split(" ", 3);
+		if (tokens.length < 2
+				|| !tokens[0].startsWith("HTTP/")) {
+			throw new HealthProbeException("Invalid status line \"{0}\"", line);
+		}
+		this.http11 = "HTTP/1.1".equals(tokens[0]);
+		try {
+			this.statusCode = Integer.parseInt(tokens[1]);
+		} catch (NumberFormatException e) {
+			throw new HealthProbeException("Invalid status line \"{0}\"", line);
+		}
+		this.state = HEADERS;
+	}
+
+	private void onHeader(String line) throws HealthProbeException {
+		int colon = line.indexOf(':');
+		if (colon < 0) {
+			return;
+		}
+		String name = line.substring(0, colon).trim();
+		String value = line.substring(colon + 1).trim();
+		if ("Content-Length".equalsIgnoreCase(name)) {
+			try {
+				this.contentLength = Long.parseLong(value);
+			} catch (NumberFormatException e) {
+				throw new HealthProbeException("Invalid content length \"{0}\"", value);
+			}
+		} else if ("Transfer-Encoding".equalsIgnoreCase(name)) {
+			this.chunked = value.toLowerCase().indexOf("chunked") >= 0;
+		} else if ("Connection".equalsIgnoreCase(name)) {
+			this.connectionClose = "close".equalsIgnoreCase(value);
+			this.connectionKeepAlive = "keep-alive".equalsIgnoreCase(value);
+		}
+	}
+
+	private void onHeadersEnd() {
+		if (statusCode == 204
+				|| statusCode == 304
+				|| (statusCode >= 100 && statusCode < 200)) {
+			this.state = DONE;
+		} else if (chunked) {
+			this.state = CHUNK_SIZE;
+		} else if (contentLength >= 0) {
+			this.remaining = contentLength;
+			this.state = contentLength == 0 ? DONE : BODY;
+		} else {
+			this.state = BODY_UNTIL_CLOSE;
+		}
+	}
+
+	private void onChunkSize(String line) throws HealthProbeException {
+		int extension = line.indexOf(';');
+		String size = (extension >= 0 ? line.substring(0, extension) : line).trim();
+		try {
+			this.remaining = Long.parseLong(size, 16);
+		} catch (NumberFormatException e) {
+			throw new HealthProbeException("Invalid chunk size \"{0}\"", line);
+		}
+		this.state = remaining == 0 ? TRAILERS : CHUNK_DATA;
+	}
+
+	boolean isDone() {
+		return state == DONE;
+	}
+
+	int getStatusCode() {
+		return statusCode;
+	}
+
+	/**
+	 * Returns the first {@link #MAX_BODY} characters of the body.
+	 */
+	String getBody() {
+		return body.toString();
+	}
+
+	long getBytesRead() {
+		return bytesRead;
+	}
+
+	/**
+	 * Returns <code>true</code> if the connection may be reused for the next
+	 * request.
+	 */
+	boolean isKeepAlive() {
+		if (chunked == false
+				&& contentLength < 0
+				&& statusCode != 204
+				&& statusCode != 304) {
+			return false;
+		}
+		if (http11) {
+			return !connectionClose;
+		}
+		return connectionKeepAlive;
+	}
+}
@@ -0,0 +1,113 @@
+/******************************************************************************* 
+ * Copyright (c) 2011 Red Hat, Inc. 
+ * Distributed under license by Red Hat, Inc. All rights reserved. 
+ * This program is made available under the terms of the 
+ * Eclipse Public License v1.0 which accompanies this distribution, 
+ * and is available at http://www.eclipse.org/legal/epl-v10.html 
+ * 
+ * Contributors: 
+ * Red Hat, Inc. - initial API and implementation 
+ ******************************************************************************/
+package com.openshift.express.client.health;
+
+import java.util.Date;
+
+/**
+ * A snapshot of the health of a monitored application.
+ * 
+ * @author agent
+ */
+public class HealthStatistics {
+
+	private String id;
+	private String url;
+	private boolean up;
+	private Date lastChange;
+	private String lastFailure;
+	private long probes;
+	private long failures;
+	private long transitions;
+	private long lastLatency;
+	private long[] latencies;
+
+	HealthStatistics(String id, String url, boolean up, Date lastChange, String lastFailure, long probes,
+			long failures, long transitions, long lastLatency, long[] latencies) {
+		this.id = id;
+		this.url = url;
+		this.up = up;
+		this.lastChange = lastChange;
+		this.lastFailure = lastFailure;
+		this.probes = probes;
+		this.failures = failures;
+		this.transitions = transitions;
+		this.lastLatency = lastLatency;
+		this.latencies = latencies;
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	public String getUrl() {
+		return url;
+	}
+
+	/**
+	 * Returns <code>true</code> if the last probe succeeded.
+	 */
+	public boolean isUp() {
+		return up;
+	}
+
+	/**
+	 * Returns the time of the last up/down transition or <code>null</code>
+	 * if the application was not probed yet.
+	 */
+	public Date getLastChange() {
+		return lastChange;
+	}
+
+	/**
+	 * Returns why the last failed probe failed or <code>null</code> if no
+	 * probe failed yet.
+	 */
+	public String getLastFailure() {
+		return lastFailure;
+	}
+
+	public long getProbes() {
+		return probes;
+	}
+
+	public long getFailures() {
+		return failures;
+	}
+
+	/**
+	 * Returns how many times the application went up or down.
+	 */
+	public long getTransitions() {
+		return transitions;
+	}
+
+	/**
+	 * Returns the latency of the last successful probe in milliseconds or -1
+	 * if no probe succeeded yet.
+	 */
+	public long getLastLatency() {
+		return lastLatency;
+	}
+
+	/**
+	 * Returns the given percentile (ex. 99) of the latencies of the recent
+	 * successful probes in milliseconds or -1 if no probe succeeded yet.
+	 */
+	public long getLatencyPercentile(double percentile) {
+		return LatencySamples.getPercentile(latencies, percentile);
+	}
+
+	public String toString() {
+		return "HealthStatistics [id=" + id + ", up=" + up + ", probes=" + probes + ", failures=" + failures
+				+ ", p50=" + getLatencyPercentile(50) + ", p99=" + getLatencyPercentile(99) + "]";
+	}
+}
@@ -0,0 +1,31 @@
+/******************************************************************************* 
+ * Copyright (c) 2011 Red Hat, Inc. 
+ * Distributed under license by Red Hat, Inc. All rights reserved. 
+ * This program is made available under the terms of the 
+ * Eclipse Public License v1.0 which accompanies this distribution, 
+ * and is available at http://www.eclipse.org/legal/epl-v10.html 
+ * 
+ * Contributors: 
+ * Red Hat, Inc. - initial API and implementation 
+ ******************************************************************************/
+package com.openshift.express.client.health;
+
+/**
+ * Gets notified when a monitored application goes up or down. Notifications
+ * are sent from the monitor thread and should return quickly.
+ * 
+ * @author agent
+ * 
+ * @see HealthMonitor#addListener(IHealthListener)
+ */
+public interface IHealthListener {
+
+	/**
+	 * Called when the health of an application changed, including the very
+	 * first probe of an application.
+	 * 
+	 * @param statistics
+	 *            the statistics of the application after the change
+	 */
+	public void healthChanged(HealthStatistics statistics);
+}
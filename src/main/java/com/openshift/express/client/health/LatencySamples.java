@@ -0,0 +1,59 @@
+/******************************************************************************* 
+ * Copyright (c) 2011 Red Hat, Inc. 
+ * Distributed under license by Red Hat, Inc. All rights reserved. 
+ * This program is made available under the terms of the 
+ * Eclipse Public License v1.0 which accompanies this distribution, 
+ * and is available at http://www.eclipse.org/legal/epl-v10.html 
+ * 
+ * Contributors: 
+ * Red Hat, Inc. - initial API and implementation 
+ ******************************************************************************/
+package com.openshift.express.client.health;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the most recent latencies in a fixed size ring.
+ * 
+ * @author agent
+ */
+class LatencySamples {
+
+	private final long[] samples;
+	private int next;
+	private int size;
+
+	LatencySamples(int capacity) {
+		this.samples = new long[capacity];
+	}
+
+	synchronized void add(long latency) {
+		samples[next] = latency;
+		next = (next + 1) % samples.length;
+		if (size < samples.length) {
+			size++;
+		}
+	}
+
+	/**
+	 * Returns a sorted copy of the samples.
+	 */
+	synchronized long[] toSortedArray() {
+		long[] sorted = new long[size];
+		System.arraycopy(samples, 0, sorted, 0, size);
+		Arrays.sort(sorted);
+		return sorted;
+	}
+
+	/**
+	 * Returns the given percentile of the given sorted samples using the
+	 * nearest rank method or -1 if there are no samples.
+	 */
+	static long getPercentile(long[] sorted, double percentile) {
+		if (sorted.length == 0) {
+			return -1;
+		}
+		int rank = (int) Math.ceil(percentile / 100d * sorted.length);
+		return sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))];
+	}
+}
@@ -0,0 +1,62 @@
+/******************************************************************************* 
+ * Copyright (c) 2011 Red Hat, Inc. 
+ * Distributed under license by Red Hat, Inc. All rights reserved. 
+ * This program is made available under the terms of the 
+ * Eclipse Public License v1.0 which accompanies this distribution, 
+ * and is available at http://www.eclipse.org/legal/epl-v10.html 
+ * 
+ * Contributors: 
+ * Red Hat, Inc. - initial API and implementation 
+ ******************************************************************************/
+package com.openshift.express.client.inventory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Maps strings to dense int codes and back. Codes are never reused.
+ * 
+ * @author agent
+ */
+class Dictionary {
+
+	static final int NO_CODE = -1;
+
+	private final Map<String, Integer> codes = new HashMap<String, Integer>();
+	private final List<String> values = new ArrayList<String>();
+
+	int encode(String value) {
+		Integer code = codes.get(value);
+		if (code == null) {
+			code = values.size();
+			codes.put(value, code);
+			values.add(value);
+		}
+		return code;
+	}
+
+	/**
+	 * Returns the code of the given value or {@link #NO_CODE} if it was never
+	 * encoded.
+	 */
+	int lookup(String value) {
+		Integer code = codes.get(value);
+		if (code == null) {
+			return NO_CODE;
+		}
+		return code;
+	}
+
+	String decode(int code) {
+		if (code == NO_CODE) {
+			return null;
+		}
+		return values.get(code);
+	}
+
+	int size() {
+		return values.size();
+	}
+}
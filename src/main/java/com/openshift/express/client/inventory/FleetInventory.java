@@ -0,0 +1,401 @@
+/******************************************************************************* 
+ * Copyright (c) 2011 Red Hat, Inc. 
+ * Distributed under license by Red Hat, Inc. All rights reserved. 
+ * This program is made available under the terms of the 
+ * Eclipse Public License v1.0 which accompanies this distribution, 
+ * and is available at http://www.eclipse.org/legal/epl-v10.html 
+ * 
+ * Contributors: 
+ * Red Hat, Inc. - initial API and implementation 
+ ******************************************************************************/
+package com.openshift.express.client.inventory;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import com.openshift.express.client.ICartridge;
+import com.openshift.express.internal.client.ApplicationInfo;
+import com.openshift.express.internal.client.EmbeddableCartridgeInfo;
+import com.openshift.express.internal.client.UserInfo;
+
+/**
+ * An in-memory index of the applications of many users. Applications are
+ * stored column-wise in primitive arrays, cartridges, namespaces and logins
+ * are dictionary encoded and embedded cartridges are kept as one bitmap of
+ * rows per cartridge. This keeps millions of applications cheap to hold and
+ * to scan.
+ * <p>
+ * Ingesting the user info of a user that was ingested before replaces all
+ * the applications of that user. Replaced rows are only marked as deleted, call
+ * {@link #compact()} to reclaim their space.
+ *
+ * @author agent
+ *
+ * @see #query()
+ */
+public class FleetInventory {
+
+	public static final long NO_CREATION_TIME = Long.MIN_VALUE;
+
+	private static final int INITIAL_CAPACITY = 64;
+	/** matches any code, used for criteria that were not set */
+	private static final int ANY = -2;
+
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+	private final Dictionary logins = new Dictionary();
+	private final Dictionary namespaces = new Dictionary();
+	private final Dictionary cartridges = new Dictionary();
+	private final Dictionary embeddedCartridges = new Dictionary();
+
+	private int rows;
+	private int[] loginColumn = new int[INITIAL_CAPACITY];
+	private int[] namespaceColumn = new int[INITIAL_CAPACITY];
+	private int[] cartridgeColumn = new int[INITIAL_CAPACITY];
+	private long[] creationTimeColumn = new long[INITIAL_CAPACITY];
+	private String[] nameColumn = new String[INITIAL_CAPACITY];
+	private String[] uuidColumn = new String[INITIAL_CAPACITY];
+
+	/** rows per embedded cartridge code */
+	private final List<BitSet> embeddedPostings = new ArrayList<BitSet>();
+	/** rows that were not replaced */
+	private BitSet live = new BitSet();
+	/** rows per login code */
+	private final Map<Integer, BitSet> loginRows = new HashMap<Integer, BitSet>();
+
+	/**
+	 * Adds all applications of the given user to this inventory, replacing the
+	 * applications that were ingested for this user before.
+	 *
+	 * @param userInfo
+	 *            the user info to ingest
+	 */
+	public void ingest(UserInfo userInfo) {
+		if (userInfo == null) {
+			return;
+		}
+		lock.writeLock().lock();
+		try {
+			int login = logins.encode(userInfo.getRhLogin());
+			removeRows(login);
+			int namespace = namespaces.encode(userInfo.getNamespace());
+			List<ApplicationInfo> applicationInfos = userInfo.getApplicationInfos();
+			if (applicationInfos == null) {
+				return;
+			}
+			ensureCapacity(rows + applicationInfos.size());
+			BitSet rowsOfLogin = new BitSet();
+			for (ApplicationInfo applicationInfo : applicationInfos) {
+				addRow(login, namespace, applicationInfo);
+				rowsOfLogin.set(rows - 1);
+			}
+			loginRows.put(login, rowsOfLogin);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Removes all applications of the given user.
+	 *
+	 * @param rhlogin
+	 *            the login of the user to remove
+	 */
+	public void remove(String rhlogin) {
+		lock.writeLock().lock();
+		try {
+			int login = logins.lookup(rhlogin);
+			if (login != Dictionary.NO_CODE) {
+				removeRows(login);
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	private void removeRows(int login) {
+		BitSet rowsOfLogin = loginRows.remove(login);
+		if (rowsOfLogin != null) {
+			live.andNot(rowsOfLogin);
+		}
+	}
+
+	private void addRow(int login, int namespace, ApplicationInfo applicationInfo) {
+		int row = rows++;
+		loginColumn[row] = login;
+		namespaceColumn[row] = namespace;
+		cartridgeColumn[row] = cartridges.encode(getCartridgeName(applicationInfo.getCartridge()));
+		creationTimeColumn[row] = applicationInfo.getCreationTimeMillis();
+		nameColumn[row] = applicationInfo.getName();
+		uuidColumn[row] = applicationInfo.getUuid();
+		for (EmbeddableCartridgeInfo embedded : applicationInfo.getEmbeddedCartridges()) {
+			getPostings(embeddedCartridges.encode(embedded.getName())).set(row);
+		}
+		live.set(row);
+	}
+
+	private String getCartridgeName(ICartridge cartridge) {
+		if (cartridge == null) {
+			return null;
+		}
+		return cartridge.getName();
+	}
+
+	private BitSet getPostings(int embeddedCartridge) {
+		while (embeddedPostings.size() <= embeddedCartridge) {
+			embeddedPostings.add(new BitSet());
+		}
+		return embeddedPostings.get(embeddedCartridge);
+	}
+
+	private void ensureCapacity(int capacity) {
+		if (capacity <= loginColumn.length) {
+			return;
+		}
+		int newCapacity = Math.max(capacity, loginColumn.length + (loginColumn.length >> 1));
+		loginColumn = grow(loginColumn, newCapacity);
+		namespaceColumn = grow(namespaceColumn, newCapacity);
+		cartridgeColumn = grow(cartridgeColumn, newCapacity);
+		long[] newCreationTimes = new long[newCapacity];
+		System.arraycopy(creationTimeColumn, 0, newCreationTimes, 0, rows);
+		creationTimeColumn = newCreationTimes;
+		nameColumn = grow(nameColumn, newCapacity);
+		uuidColumn = grow(uuidColumn, newCapacity);
+	}
+
+	private int[] grow(int[] column, int capacity) {
+		int[] newColumn = new int[capacity];
+		System.arraycopy(column, 0, newColumn, 0, rows);
+		return newColumn;
+	}
+
+	private String[] grow(String[] column, int capacity) {
+		String[] newColumn = new String[capacity];
+		System.arraycopy(column, 0, newColumn, 0, rows);
+		return newColumn;
+	}
+
+	/**
+	 * Rewrites the columns without the rows that were replaced or removed.
+	 */
+	public void compact() {
+		lock.writeLock().lock();
+		try {
+			int[] newRows = new int[rows];
+			int newRow = 0;
+			for (int row = 0; row < rows; row++) {
+				if (live.get(row)) {
+					newRows[row] = newRow;
+					loginColumn[newRow] = loginColumn[row];
+					namespaceColumn[newRow] = namespaceColumn[row];
+					cartridgeColumn[newRow] = cartridgeColumn[row];
+					creationTimeColumn[newRow] = creationTimeColumn[row];
+					nameColumn[newRow] = nameColumn[row];
+					uuidColumn[newRow] = uuidColumn[row];
+					newRow++;
+				} else {
+					newRows[row] = -1;
+				}
+			}
+			for (int i = 0; i < embeddedPostings.size(); i++) {
+				embeddedPostings.set(i, remap(embeddedPostings.get(i), newRows));
+			}
+			for (Map.Entry<Integer, BitSet> entry : loginRows.entrySet()) {
+				entry.setValue(remap(entry.getValue(), newRows));
+			}
+			for (int row = newRow; row < rows; row++) {
+				nameColumn[row] = null;
+				uuidColumn[row] = null;
+			}
+			rows = newRow;
+			live = new BitSet(rows);
+			live.set(0, rows);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	private BitSet remap(BitSet bits, int[] newRows) {
+		BitSet remapped = new BitSet();
+		for (int row = bits.nextSetBit(0); row >= 0; row = bits.nextSetBit(row + 1)) {
+			if (newRows[row] >= 0) {
+				remapped.set(newRows[row]);
+			}
+		}
+		return remapped;
+	}
+
+	/**
+	 * Returns the number of applications in this inventory.
+	 */
+	public int size() {
+		lock.readLock().lock();
+		try {
+			return live.cardinality();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Returns a new query that matches all applications in this inventory
+	 * until it gets restricted.
+	 */
+	public InventoryQuery query() {
+		return new InventoryQuery(this);
+	}
+
+	/**
+	 * Returns the rows that match the given query. The caller must hold the
+	 * read lock.
+	 */
+	private BitSet match(InventoryQuery query) {
+		BitSet matches = (BitSet) live.clone();
+		for (String embedded : query.getEmbeddedCartridges()) {
+			int code = embeddedCartridges.lookup(embedded);
+			if (code == Dictionary.NO_CODE) {
+				return new BitSet();
+			}
+			matches.and(embeddedPostings.get(code));
+		}
+		int cartridge = lookup(cartridges, query.getCartridge());
+		int namespace = lookup(namespaces, query.getNamespace());
+		int login = lookup(logins, query.getRhlogin());
+		if (cartridge == Dictionary.NO_CODE
+				|| namespace == Dictionary.NO_CODE
+				|| login == Dictionary.NO_CODE) {
+			return new BitSet();
+		}
+		if (login != ANY) {
+			BitSet rowsOfLogin = loginRows.get(login);
+			if (rowsOfLogin == null) {
+				return new BitSet();
+			}
+			matches.and(rowsOfLogin);
+		}
+		long createdAfter = query.getCreatedAfter();
+		long createdBefore = query.getCreatedBefore();
+		boolean filterCreationTime = createdAfter != Long.MIN_VALUE || createdBefore != Long.MAX_VALUE;
+		if (cartridge == ANY && namespace == ANY && !filterCreationTime) {
+			return matches;
+		}
+		for (int row = matches.nextSetBit(0); row >= 0; row = matches.nextSetBit(row + 1)) {
+			if ((cartridge != ANY && cartridgeColumn[row] != cartridge)
+					|| (namespace != ANY && namespaceColumn[row] != namespace)
+					|| (filterCreationTime && !isCreatedWithin(creationTimeColumn[row], createdAfter, createdBefore))) {
+				matches.clear(row);
+			}
+		}
+		return matches;
+	}
+
+	private int lookup(Dictionary dictionary, String value) {
+		if (value == null) {
+			return ANY;
+		}
+		return dictionary.lookup(value);
+	}
+
+	private boolean isCreatedWithin(long creationTime, long createdAfter, long createdBefore) {
+		return creationTime != NO_CREATION_TIME
+				&& creationTime >= createdAfter
+				&& creationTime < createdBefore;
+	}
+
+	int count(InventoryQuery query) {
+		lock.readLock().lock();
+		try {
+			return match(query).cardinality();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	List<InventoryEntry> select(InventoryQuery query) {
+		lock.readLock().lock();
+		try {
+			BitSet matches = match(query);
+			List<InventoryEntry> entries = new ArrayList<InventoryEntry>(matches.cardinality());
+			for (int row = matches.nextSetBit(0); row >= 0; row = matches.nextSetBit(row + 1)) {
+				entries.add(createEntry(row));
+			}
+			return entries;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	private InventoryEntry createEntry(int row) {
+		List<String> embedded = new ArrayList<String>();
+		for (int code = 0; code < embeddedPostings.size(); code++) {
+			if (embeddedPostings.get(code).get(row)) {
+				embedded.add(embeddedCartridges.decode(code));
+			}
+		}
+		return new InventoryEntry(
+				logins.decode(loginColumn[row]),
+				namespaces.decode(namespaceColumn[row]),
+				nameColumn[row],
+				uuidColumn[row],
+				cartridges.decode(cartridgeColumn[row]),
+				creationTimeColumn[row],
+				Collections.unmodifiableList(embedded));
+	}
+
+	Map<String, Integer> countByCartridge(InventoryQuery query) {
+		lock.readLock().lock();
+		try {
+			return countBy(match(query), cartridgeColumn, cartridges);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	Map<String, Integer> countByNamespace(InventoryQuery query) {
+		lock.readLock().lock();
+		try {
+			return countBy(match(query), namespaceColumn, namespaces);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	Map<String, Integer> countByEmbeddedCartridge(InventoryQuery query) {
+		lock.readLock().lock();
+		try {
+			BitSet matches = match(query);
+			Map<String, Integer> counts = new HashMap<String, Integer>();
+			for (int code = 0; code < embeddedPostings.size(); code++) {
+				BitSet embedded = (BitSet) embeddedPostings.get(code).clone();
+				embedded.and(matches);
+				int count = embedded.cardinality();
+				if (count > 0) {
+					counts.put(embeddedCartridges.decode(code), count);
+				}
+			}
+			return counts;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	private Map<String, Integer> countBy(BitSet matches, int[] column, Dictionary dictionary) {
+		int[] counts = new int[dictionary.size()];
+		for (int row = matches.nextSetBit(0); row >= 0; row = matches.nextSetBit(row + 1)) {
+			counts[column[row]]++;
+		}
+		Map<String, Integer> countsByValue = new HashMap<String, Integer>();
+		for (int code = 0; code < counts.length; code++) {
+			if (counts[code] > 0) {
+				countsByValue.put(dictionary.decode(code), counts[code]);
+			}
+		}
+		return countsByValue;
+	}
+}
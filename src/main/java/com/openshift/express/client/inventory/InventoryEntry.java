@@ -0,0 +1,85 @@
+/******************************************************************************* 
+ * Copyright (c) 2011 Red Hat, Inc. 
+ * Distributed under license by Red Hat, Inc. All rights reserved. 
+ * This program is made available under the terms of the 
+ * Eclipse Public License v1.0 which accompanies this distribution, 
+ * and is available at http://www.eclipse.org/legal/epl-v10.html 
+ * 
+ * Contributors: 
+ * Red Hat, Inc. - initial API and implementation 
+ ******************************************************************************/
+package com.openshift.express.client.inventory;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * An application that matched an inventory query.
+ * 
+ * @author agent
+ * 
+ * @see InventoryQuery#select()
+ */
+public class InventoryEntry {
+
+	private String rhlogin;
+	private String namespace;
+	private String name;
+	private String uuid;
+	private String cartridge;
+	private long creationTime;
+	private List<String> embeddedCartridges;
+
+	InventoryEntry(String rhlogin, String namespace, String name, String uuid, String cartridge, long creationTime,
+			List<String> embeddedCartridges) {
+		this.rhlogin = rhlogin;
+		this.namespace = namespace;
+		this.name = name;
+		this.uuid = uuid;
+		this.cartridge = cartridge;
+		this.creationTime = creationTime;
+		this.embeddedCartridges = embeddedCartridges;
+	}
+
+	public String getRhlogin() {
+		return rhlogin;
+	}
+
+	public String getNamespace() {
+		return namespace;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public String getUuid() {
+		return uuid;
+	}
+
+	/**
+	 * Returns the name of the cartridge the application is running on.
+	 */
+	public String getCartridge() {
+		return cartridge;
+	}
+
+	public Date getCreationTime() {
+		if (creationTime == FleetInventory.NO_CREATION_TIME) {
+			return null;
+		}
+		return new Date(creationTime);
+	}
+
+	/**
+	 * Returns the names of the cartridges that are embedded into the
+	 * application.
+	 */
+	public List<String> getEmbeddedCartridges() {
+		return embeddedCartridges;
+	}
+
+	public String toString() {
+		return "InventoryEntry [rhlogin=" + rhlogin + ", namespace=" + namespace + ", name=" + name + "]";
+	}
+}
@@ -0,0 +1,153 @@
+/******************************************************************************* 
+ * Copyright (c) 2011 Red Hat, Inc. 
+ * Distributed under license by Red Hat, Inc. All rights reserved. 
+ * This program is made available under the terms of the 
+ * Eclipse Public License v1.0 which accompanies this distribution, 
+ * and is available at http://www.eclipse.org/legal/epl-v10.html 
+ * 
+ * Contributors: 
+ * Red Hat, Inc. - initial API and implementation 
+ ******************************************************************************/
+package com.openshift.express.client.inventory;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import com.openshift.express.client.ICartridge;
+import com.openshift.express.client.IEmbeddableCartridge;
+
+/**
+ * A query on a {@link FleetInventory}. All criteria that are set have to
+ * match, criteria that are not set match any application.
+ * 
+ * <pre>
+ * int count = inventory.query()
+ * 		.cartridge(ICartridge.JBOSSAS_7)
+ * 		.embedded(IEmbeddableCartridge.MYSQL_51)
+ * 		.createdAfter(lastWeek)
+ * 		.count();
+ * </pre>
+ * 
+ * @author agent
+ */
+public class InventoryQuery {
+
+	private FleetInventory inventory;
+	private String rhlogin;
+	private String namespace;
+	private String cartridge;
+	private List<String> embeddedCartridges = new ArrayList<String>();
+	private long createdAfter = Long.MIN_VALUE;
+	private long createdBefore = Long.MAX_VALUE;
+
+	InventoryQuery(FleetInventory inventory) {
+		this.inventory = inventory;
+	}
+
+	public InventoryQuery rhlogin(String rhlogin) {
+		this.rhlogin = rhlogin;
+		return this;
+	}
+
+	public InventoryQuery namespace(String namespace) {
+		this.namespace = namespace;
+		return this;
+	}
+
+	public InventoryQuery cartridge(String cartridge) {
+		this.cartridge = cartridge;
+		return this;
+	}
+
+	public InventoryQuery cartridge(ICartridge cartridge) {
+		return cartridge(cartridge.getName());
+	}
+
+	/**
+	 * Restricts this query to the applications that have the given cartridge
+	 * embedded. May be called several times to require several embedded
+	 * cartridges.
+	 */
+	public InventoryQuery embedded(String embeddedCartridge) {
+		embeddedCartridges.add(embeddedCartridge);
+		return this;
+	}
+
+	public InventoryQuery embedded(IEmbeddableCartridge embeddedCartridge) {
+		return embedded(embeddedCartridge.getName());
+	}
+
+	/**
+	 * Restricts this query to the applications that were created at or after
+	 * the given date. Applications with an unknown creation time never match
+	 * a creation time criteria.
+	 */
+	public InventoryQuery createdAfter(Date date) {
+		this.createdAfter = date.getTime();
+		return this;
+	}
+
+	/**
+	 * Restricts this query to the applications that were created before the
+	 * given date.
+	 */
+	public InventoryQuery createdBefore(Date date) {
+		this.createdBefore = date.getTime();
+		return this;
+	}
+
+	public int count() {
+		return inventory.count(this);
+	}
+
+	public List<InventoryEntry> select() {
+		return inventory.select(this);
+	}
+
+	/**
+	 * Returns the number of matching applications per cartridge.
+	 */
+	public Map<String, Integer> countByCartridge() {
+		return inventory.countByCartridge(this);
+	}
+
+	/**
+	 * Returns the number of matching applications per namespace.
+	 */
+	public Map<String, Integer> countByNamespace() {
+		return inventory.countByNamespace(this);
+	}
+
+	/**
+	 * Returns the number of matching applications per embedded cartridge.
+	 */
+	public Map<String, Integer> countByEmbeddedCartridge() {
+		return inventory.countByEmbeddedCartridge(this);
+	}
+
+	String getRhlogin() {
+		return rhlogin;
+	}
+
+	String getNamespace() {
+		return namespace;
+	}
+
+	String getCartridge() {
+		return cartridge;
+	}
+
+	List<String> getEmbeddedCartridges() {
+		return embeddedCartridges;
+	}
+
+	long getCreatedAfter() {
+		return createdAfter;
+	}
+
+	long getCreatedBefore() {
+		return createdBefore;
+	}
+}
@@ -0,0 +1,93 @@
+/******************************************************************************* 
+ * Copyright (c) 2011 Red Hat, Inc. 
+ * Distributed under license by Red Hat, Inc. All rights reserved. 
+ * This program is made available under the terms of the 
+ * Eclipse Public License v1.0 which accompanies this distribution, 
+ * and is available at http://www.eclipse.org/legal/epl-v10.html 
+ * 
+ * Contributors: 
+ * Red Hat, Inc. - initial API and implementation 
+ ******************************************************************************/
+package com.openshift.express.client.threaddump;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A thread in a thread dump.
+ * 
+ * @author agent
+ * 
+ * @see ThreadDump
+ */
+public class DumpedThread {
+
+	private final String name;
+	private final boolean daemon;
+	private final int priority;
+	private Thread.State state;
+	private final List<String> stack = new ArrayList<String>();
+	private final List<String> locks = new ArrayList<String>();
+
+	public DumpedThread(String name, boolean daemon, int priority) {
+		this.name = name;
+		this.daemon = daemon;
+		this.priority = priority;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public boolean isDaemon() {
+		return daemon;
+	}
+
+	/**
+	 * Returns the priority or <code>-1</code> if it is not known.
+	 */
+	public int getPriority() {
+		return priority;
+	}
+
+	/**
+	 * Returns the state or <code>null</code> for threads of the vm that have
+	 * no java state.
+	 */
+	public Thread.State getState() {
+		return state;
+	}
+
+	void setState(Thread.State state) {
+		this.state = state;
+	}
+
+	/**
+	 * Returns the stack frames, the innermost first, ex.
+	 * <code>java.lang.Object.wait(Native Method)</code>.
+	 */
+	public List<String> getStack() {
+		return Collections.unmodifiableList(stack);
+	}
+
+	void addFrame(String frame) {
+		stack.add(frame);
+	}
+
+	/**
+	 * Returns the monitors and locks that the thread holds or waits for, ex.
+	 * <code>locked &lt;0x00000000e0a0e2a8&gt; (a java.lang.Object)</code>.
+	 */
+	public List<String> getLocks() {
+		return Collections.unmodifiableList(locks);
+	}
+
+	void addLock(String lock) {
+		locks.add(lock);
+	}
+
+	public String toString() {
+		return "DumpedThread [name=" + name + ", state=" + state + ", frames=" + stack.size() + "]";
+	}
+}
@@ -0,0 +1,25 @@
+/******************************************************************************* 
+ * Copyright (c) 2011 Red Hat, Inc. 
+ * Distributed under license by Red Hat, Inc. All rights reserved. 
+ * This program is made available under the terms of the 
+ * Eclipse Public License v1.0 which accompanies this distribution, 
+ * and is available at http://www.eclipse.org/legal/epl-v10.html 
+ * 
+ * Contributors: 
+ * Red Hat, Inc. - initial API and implementation 
+ ******************************************************************************/
+package com.openshift.express.client.threaddump;
+
+/**
+ * @author agent
+ * 
+ * @see ThreadDumpParser
+ */
+public interface IThreadDumpListener {
+
+	/**
+	 * Called for each thread once it was parsed, while the rest of the dump
+	 * is still being read.
+	 */
+	public void threadParsed(DumpedThread thread);
+}
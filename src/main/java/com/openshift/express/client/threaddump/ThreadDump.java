@@ -0,0 +1,73 @@
+/******************************************************************************* 
+ * Copyright (c) 2011 Red Hat, Inc. 
+ * Distributed under license by Red Hat, Inc. All rights reserved. 
+ * This program is made available under the terms of the 
+ * Eclipse Public License v1.0 which accompanies this distribution, 
+ * and is available at http://www.eclipse.org/legal/epl-v10.html 
+ * 
+ * Contributors: 
+ * Red Hat, Inc. - initial API and implementation 
+ ******************************************************************************/
+package com.openshift.express.client.threaddump;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A thread dump of a java vm.
+ * 
+ * @author agent
+ * 
+ * @see ThreadDumpParser
+ */
+public class ThreadDump {
+
+	private final String vm;
+	private final List<DumpedThread> threads = new ArrayList<DumpedThread>();
+
+	public ThreadDump(String vm) {
+		this.vm = vm;
+	}
+
+	/**
+	 * Returns the vm the dump was taken of, ex.
+	 * <code>OpenJDK 64-Bit Server VM (20.0-b12 mixed mode)</code>.
+	 */
+	public String getVm() {
+		return vm;
+	}
+
+	public List<DumpedThread> getThreads() {
+		return Collections.unmodifiableList(threads);
+	}
+
+	void add(DumpedThread thread) {
+		threads.add(thread);
+	}
+
+	/**
+	 * Returns the thread with the given name or <code>null</code>.
+	 */
+	public DumpedThread getThread(String name) {
+		for (DumpedThread thread : threads) {
+			if (thread.getName().equals(name)) {
+				return thread;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the threads in the given state.
+	 */
+	public List<DumpedThread> getThreads(Thread.State state) {
+		List<DumpedThread> threadsInState = new ArrayList<DumpedThread>();
+		for (DumpedThread thread : threads) {
+			if (thread.getState() == state) {
+				threadsInState.add(thread);
+			}
+		}
+		return threadsInState;
+	}
+}
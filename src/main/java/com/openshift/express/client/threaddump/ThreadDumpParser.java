@@ -0,0 +1,138 @@
+/******************************************************************************* 
+ * Copyright (c) 2011 Red Hat, Inc. 
+ * Distributed under license by Red Hat, Inc. All rights reserved. 
+ * This program is made available under the terms of the 
+ * Eclipse Public License v1.0 which accompanies this distribution, 
+ * and is available at http://www.eclipse.org/legal/epl-v10.html 
+ * 
+ * Contributors: 
+ * Red Hat, Inc. - initial API and implementation 
+ ******************************************************************************/
+package com.openshift.express.client.threaddump;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Parses a HotSpot thread dump line by line as it is read from a log. Lines
+ * before the dump are skipped and reading stops at the end of the dump, so
+ * the reader may be a tail of a log that keeps growing. Only the thread that
+ * is parsed is held as text, stack frames that several threads share are
+ * held once.
+ * 
+ * @author agent
+ */
+public class ThreadDumpParser {
+
+	private static final String DUMP_START = "Full thread dump ";
+	private static final String DUMP_END = "JNI global references:";
+	private static final String HEAP = "Heap";
+	private static final String STATE = "java.lang.Thread.State: ";
+	private static final String FRAME = "at ";
+	private static final String LOCK = "- ";
+	private static final Pattern THREAD_HEADER = Pattern.compile("^\"(.*)\"( daemon)?(?: prio=(\\d+))?.*$");
+
+	private IThreadDumpListener listener;
+	private final Map<String, String> frames = new HashMap<String, String>();
+
+	public ThreadDumpParser() {
+		this(null);
+	}
+
+	/**
+	 * @param listener
+	 *            the listener that gets the threads while they are parsed,
+	 *            may be <code>null</code>
+	 */
+	public ThreadDumpParser(IThreadDumpListener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * Reads the given reader until a thread dump was parsed.
+	 * 
+	 * @return the dump or <code>null</code> if the reader ended before the
+	 *         dump did
+	 */
+	public ThreadDump parse(Reader reader) throws IOException {
+		BufferedReader lines = new BufferedReader(reader);
+		ThreadDump dump = null;
+		DumpedThread thread = null;
+		String line;
+		while ((line = lines.readLine()) != null) {
+			if (dump == null) {
+				int start = line.indexOf(DUMP_START);
+				if (start >= 0) {
+					dump = new ThreadDump(getVm(line.substring(start + DUMP_START.length())));
+				}
+				continue;
+			}
+			if (line.startsWith(DUMP_END)
+					|| line.equals(HEAP)) {
+				threadParsed(thread, dump);
+				return dump;
+			}
+			Matcher matcher = THREAD_HEADER.matcher(line);
+			if (matcher.matches()) {
+				threadParsed(thread, dump);
+				thread = new DumpedThread(matcher.group(1), matcher.group(2) != null,
+						matcher.group(3) == null ? -1 : Integer.parseInt(matcher.group(3)));
+				continue;
+			}
+			if (thread != null) {
+				parseThreadLine(line.trim(), thread);
+			}
+		}
+		return null;
+	}
+
+	private void parseThreadLine(String line, DumpedThread thread) {
+		if (line.startsWith(STATE)) {
+			thread.setState(getState(line.substring(STATE.length())));
+		} else if (line.startsWith(FRAME)) {
+			thread.addFrame(intern(line.substring(FRAME.length())));
+		} else if (line.startsWith(LOCK)) {
+			thread.addLock(line.substring(LOCK.length()));
+		}
+	}
+
+	private Thread.State getState(String state) {
+		int end = state.indexOf(' ');
+		try {
+			return Thread.State.valueOf(end == -1 ? state : state.substring(0, end));
+		} catch (IllegalArgumentException e) {
+			return null;
+		}
+	}
+
+	private String getVm(String vm) {
+		if (vm.endsWith(":")) {
+			return vm.substring(0, vm.length() - 1);
+		}
+		return vm;
+	}
+
+	private String intern(String frame) {
+		String interned = frames.get(frame);
+		if (interned == null) {
+			frames.put(frame, frame);
+			interned = frame;
+		}
+		return interned;
+	}
+
+	private void threadParsed(DumpedThread thread, ThreadDump dump) {
+		if (thread == null) {
+			return;
+		}
+		dump.add(thread);
+		if (listener != null) {
+			listener.threadParsed(thread);
+		}
+	}
+}
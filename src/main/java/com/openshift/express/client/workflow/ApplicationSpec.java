@@ -0,0 +1,58 @@
+/******************************************************************************* 
+ * Copyright (c) 2011 Red Hat, Inc. 
+ * Distributed under license by Red Hat, Inc. All rights reserved. 
+ * This program is made available under the terms of the 
+ * Eclipse Public License v1.0 which accompanies this distribution, 
+ * and is available at http://www.eclipse.org/legal/epl-v10.html 
+ * 
+ * Contributors: 
+ * Red Hat, Inc. - initial API and implementation 
+ ******************************************************************************/
+package com.openshift.express.client.workflow;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.openshift.express.client.ICartridge;
+import com.openshift.express.client.IEmbeddableCartridge;
+
+/**
+ * Describes an application that a workflow shall create.
+ * 
+ * @author agent
+ */
+public class ApplicationSpec {
+
+	private String name;
+	private ICartridge cartridge;
+	private List<IEmbeddableCartridge> embeddedCartridges;
+
+	public ApplicationSpec(String name, ICartridge cartridge, IEmbeddableCartridge... embeddedCartridges) {
+		this.name = name;
+		this.cartridge = cartridge;
+		this.embeddedCartridges = new ArrayList<IEmbeddableCartridge>();
+		for (IEmbeddableCartridge embeddedCartridge : embeddedCartridges) {
+			this.embeddedCartridges.add(embeddedCartridge);
+		}
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public ICartridge getCartridge() {
+		return cartridge;
+	}
+
+	/**
+	 * Returns the cartridges to embed, in the order they are embedded.
+	 */
+	public List<IEmbeddableCartridge> getEmbeddedCartridges() {
+		return Collections.unmodifiableList(embeddedCartridges);
+	}
+
+	public String toString() {
+		return "ApplicationSpec [name=" + name + ", cartridge=" + cartridge + "]";
+	}
+}
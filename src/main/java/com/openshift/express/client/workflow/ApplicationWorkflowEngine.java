@@ -0,0 +1,332 @@
+/******************************************************************************* 
+ * Copyright (c) 2011 Red Hat, Inc. 
+ * Distributed under license by Red Hat, Inc. All rights reserved. 
+ * This program is made available under the terms of the 
+ * Eclipse Public License v1.0 which accompanies this distribution, 
+ * and is available at http://www.eclipse.org/legal/epl-v10.html 
+ * 
+ * Contributors: 
+ * Red Hat, Inc. - initial API and implementation 
+ ******************************************************************************/
+package com.openshift.express.client.workflow;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.openshift.express.client.IApplication;
+import com.openshift.express.client.IOpenShiftService;
+import com.openshift.express.client.IUser;
+import com.openshift.express.client.IWaitCallback;
+import com.openshift.express.client.OpenShiftException;
+import com.openshift.express.client.OpenShiftService;
+import com.openshift.express.internal.client.concurrent.AimdLimit;
+import com.openshift.express.internal.client.concurrent.DaemonThreadFactory;
+import com.openshift.express.internal.client.concurrent.FairScheduler;
+
+/**
+ * Creates applications and gets them serving: each application is created,
+ * gets its cartridges embedded, its host resolved and its health check
+ * probed. The phases overlap wherever they are independent:
+ * <ul>
+ * <li>the host is resolved while the cartridges are embedded</li>
+ * <li>the health check of an application is probed while the next
+ * applications are created and embedded</li>
+ * </ul>
+ * Broker requests (create, embed) run on a bounded pool of threads, resolving
+ * and probing run on the service's shared waiter and hold no thread. Each
+ * application gets a report with the timeline of its phases.
+ *
+ * @author agent
+ */
+public class ApplicationWorkflowEngine {
+
+	public static final int DEFAULT_PARALLELISM = 4;
+
+	private IUser user;
+	private IOpenShiftService service;
+	private int parallelism;
+	private long waitTimeout;
+	private volatile FairScheduler concurrencyLimiter;
+
+	/**
+	 * @param user
+	 *            the user to create the applications for
+	 * @param service
+	 *            the service to resolve and probe the applications with
+	 * @param waitTimeout
+	 *            the max time to wait for the host to resolve and for the
+	 *            health check to succeed, in milliseconds
+	 */
+	public ApplicationWorkflowEngine(IUser user, IOpenShiftService service, long waitTimeout) {
+		this(user, service, DEFAULT_PARALLELISM, waitTimeout);
+	}
+
+	/**
+	 * @param parallelism
+	 *            the max number of concurrent broker requests
+	 */
+	public ApplicationWorkflowEngine(IUser user, IOpenShiftService service, int parallelism, long waitTimeout) {
+		this.user = user;
+		this.service = service;
+		this.parallelism = parallelism;
+		this.waitTimeout = waitTimeout;
+	}
+
+	/**
+	 * Limits the concurrent broker requests (create, embed) with the given
+	 * limiter on top of the parallelism. A limiter with an {@link AimdLimit}
+	 * backs off when the broker gets slow or fails and may be shared by
+	 * several workflows and bulk operations. The scheduler of an
+	 * {@link OpenShiftService} is ignored since the service acquires it for
+	 * each request already.
+	 */
+	public void setConcurrencyLimiter(FairScheduler concurrencyLimiter) {
+		this.concurrencyLimiter = concurrencyLimiter;
+	}
+
+	/**
+	 * Runs the workflow for all given applications and returns once all of
+	 * them are serving or failed.
+	 *
+	 * @param specs
+	 *            the applications to create
+	 * @return the reports, in the order of the given specs
+	 * @throws OpenShiftException
+	 *             if the workflow was interrupted
+	 */
+	public List<WorkflowReport> run(List<ApplicationSpec> specs) throws OpenShiftException {
+		List<WorkflowReport> reports = new ArrayList<WorkflowReport>(specs.size());
+		if (specs.isEmpty()) {
+			return reports;
+		}
+		CountDownLatch done = new CountDownLatch(specs.size());
+		ExecutorService executor = Executors.newFixedThreadPool(
+				Math.min(parallelism, specs.size()), new DaemonThreadFactory("workflow"));
+		try {
+			for (ApplicationSpec spec : specs) {
+				Workflow workflow = new Workflow(spec, done);
+				reports.add(workflow.report);
+				executor.execute(workflow);
+			}
+			done.await();
+			return reports;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new OpenShiftException(e, "Interrupted while creating {0} applications", specs.size());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * The workflow of a single application. Runs the broker phases on a pool
+	 * thread and continues on the waiter's callbacks. Each phase records
+	 * unexpected runtime exceptions as its failure so that the workflow
+	 * always finishes.
+	 */
+	private class Workflow implements Runnable {
+
+		private final ApplicationSpec spec;
+		private final WorkflowReport report;
+		private final CountDownLatch done;
+		/** embed and resolve have to complete before the health check */
+		private final AtomicInteger pendingBeforeHealth = new AtomicInteger(2);
+		private final AtomicBoolean finished = new AtomicBoolean();
+		private IApplication application;
+
+		private Workflow(ApplicationSpec spec, CountDownLatch done) {
+			this.spec = spec;
+			this.report = new WorkflowReport(spec, System.currentTimeMillis());
+			this.done = done;
+		}
+
+		public void run() {
+			boolean created = false;
+			try {
+				created = create();
+				if (created) {
+					resolve();
+					embed();
+					readyForHealth();
+				}
+			} finally {
+				if (!created) {
+					finish();
+				}
+			}
+		}
+
+		private boolean create() {
+			long start = System.currentTimeMillis();
+			try {
+				FairScheduler limiter = acquire();
+				long requestStart = System.currentTimeMillis();
+				boolean failed = false;
+				try {
+					this.application = user.createApplication(spec.getName(), spec.getCartridge());
+				} catch (OpenShiftException e) {
+					failed = AimdLimit.isOverload(e);
+					throw e;
+				} finally {
+					release(limiter, WorkflowPhase.CREATE, requestStart, failed);
+				}
+				report.setApplication(application);
+				record(WorkflowPhase.CREATE, start, true, null);
+				return true;
+			} catch (OpenShiftException e) {
+				record(WorkflowPhase.CREATE, start, false, e.getMessage());
+				return false;
+			} catch (RuntimeException e) {
+				record(WorkflowPhase.CREATE, start, false, e.toString());
+				return false;
+			}
+		}
+
+		private void resolve() {
+			final long start = System.currentTimeMillis();
+			try {
+				service.waitForHostResolvesAsync(application.getApplicationUrl(), waitTimeout, new IWaitCallback() {
+
+					public void done(boolean successful) {
+						try {
+							record(WorkflowPhase.RESOLVE, start, successful,
+									successful ? null : "host did not resolve within " + waitTimeout + " ms");
+						} finally {
+							readyForHealth();
+						}
+					}
+				});
+			} catch (OpenShiftException e) {
+				record(WorkflowPhase.RESOLVE, start, false, e.getMessage());
+				readyForHealth();
+			} catch (RuntimeException e) {
+				record(WorkflowPhase.RESOLVE, start, false, e.toString());
+				readyForHealth();
+			}
+		}
+
+		private void embed() {
+			if (spec.getEmbeddedCartridges().isEmpty()) {
+				return;
+			}
+			long start = System.currentTimeMillis();
+			try {
+				FairScheduler limiter = acquire();
+				long requestStart = System.currentTimeMillis();
+				boolean failed = false;
+				try {
+					application.addEmbbedCartridges(spec.getEmbeddedCartridges());
+				} catch (OpenShiftException e) {
+					failed = AimdLimit.isOverload(e);
+					throw e;
+				} finally {
+					release(limiter, WorkflowPhase.EMBED, requestStart, failed);
+				}
+				record(WorkflowPhase.EMBED, start, true, null);
+			} catch (OpenShiftException e) {
+				record(WorkflowPhase.EMBED, start, false, e.getMessage());
+			} catch (RuntimeException e) {
+				record(WorkflowPhase.EMBED, start, false, e.toString());
+			}
+		}
+
+		/**
+		 * Called once embedding and once resolving is done, starts the health
+		 * check on the second call.
+		 */
+		private void readyForHealth() {
+			if (pendingBeforeHealth.decrementAndGet() > 0) {
+				return;
+			}
+			if (!report.isSuccessful()) {
+				finish();
+				return;
+			}
+			final long start = System.currentTimeMillis();
+			try {
+				String healthCheckUrl = application.getHealthCheckUrl();
+				if (healthCheckUrl == null) {
+					finish();
+					return;
+				}
+				service.waitForApplicationAsync(healthCheckUrl, waitTimeout, new IWaitCallback() {
+
+					public void done(boolean successful) {
+						try {
+							record(WorkflowPhase.HEALTH, start, successful,
+									successful ? null : "not accessible within " + waitTimeout + " ms");
+						} finally {
+							finish();
+						}
+					}
+				});
+			} catch (OpenShiftException e) {
+				record(WorkflowPhase.HEALTH, start, false, e.getMessage());
+				finish();
+			} catch (RuntimeException e) {
+				record(WorkflowPhase.HEALTH, start, false, e.toString());
+				finish();
+			}
+		}
+
+		/**
+		 * Waits for the limiter, if any, to admit a broker request and returns
+		 * it.
+		 */
+		private FairScheduler acquire() throws OpenShiftException {
+			FairScheduler limiter = concurrencyLimiter;
+			if (limiter == null
+					|| isServiceScheduler(limiter)) {
+				return null;
+			}
+			try {
+				limiter.acquire(user.getRhlogin());
+				return limiter;
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new OpenShiftException(e, "Interrupted while waiting to request application \"{0}\"",
+						spec.getName());
+			}
+		}
+
+		/**
+		 * Returns <code>true</code> if the given limiter is the scheduler of
+		 * the service. Acquiring it around a request would have each workflow
+		 * hold 2 slots and deadlock once all slots are held by workflows.
+		 */
+		private boolean isServiceScheduler(FairScheduler limiter) {
+			return service instanceof OpenShiftService
+					&& limiter == ((OpenShiftService) service).getScheduler();
+		}
+
+		private void release(FairScheduler limiter, WorkflowPhase phase, long start, boolean failed) {
+			if (limiter != null) {
+				limiter.release(phase.toString(), start, failed);
+			}
+		}
+
+		private void record(WorkflowPhase phase, long start, boolean successful, String message) {
+			report.add(new PhaseTiming(phase, start, System.currentTimeMillis(), successful, message));
+		}
+
+		/**
+		 * Completes the report and releases {@link ApplicationWorkflowEngine#run(List)}.
+		 * Only the first call counts.
+		 */
+		private void finish() {
+			if (!finished.compareAndSet(false, true)) {
+				return;
+			}
+			try {
+				report.done(System.currentTimeMillis());
+			} finally {
+				done.countDown();
+			}
+		}
+	}
+}
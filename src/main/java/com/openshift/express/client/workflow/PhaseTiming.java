@@ -0,0 +1,71 @@
+/******************************************************************************* 
+ * Copyright (c) 2011 Red Hat, Inc. 
+ * Distributed under license by Red Hat, Inc. All rights reserved. 
+ * This program is made available under the terms of the 
+ * Eclipse Public License v1.0 which accompanies this distribution, 
+ * and is available at http://www.eclipse.org/legal/epl-v10.html 
+ * 
+ * Contributors: 
+ * Red Hat, Inc. - initial API and implementation 
+ ******************************************************************************/
+package com.openshift.express.client.workflow;
+
+/**
+ * When a workflow phase of an application started and ended and how it
+ * went.
+ * 
+ * @author agent
+ */
+public class PhaseTiming {
+
+	private WorkflowPhase phase;
+	private long start;
+	private long end;
+	private boolean successful;
+	private String message;
+
+	PhaseTiming(WorkflowPhase phase, long start, long end, boolean successful, String message) {
+		this.phase = phase;
+		this.start = start;
+		this.end = end;
+		this.successful = successful;
+		this.message = message;
+	}
+
+	public WorkflowPhase getPhase() {
+		return phase;
+	}
+
+	/**
+	 * Returns the start of this phase in milliseconds since the epoch.
+	 */
+	public long getStart() {
+		return start;
+	}
+
+	/**
+	 * Returns the end of this phase in milliseconds since the epoch.
+	 */
+	public long getEnd() {
+		return end;
+	}
+
+	public long getDuration() {
+		return end - start;
+	}
+
+	public boolean isSuccessful() {
+		return successful;
+	}
+
+	/**
+	 * Returns why this phase failed or <code>null</code> if it succeeded.
+	 */
+	public String getMessage() {
+		return message;
+	}
+
+	public String toString() {
+		return phase + " " + getDuration() + "ms" + (successful ? "" : " failed: " + message);
+	}
+}
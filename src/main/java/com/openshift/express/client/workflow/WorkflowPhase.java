@@ -0,0 +1,30 @@
+/******************************************************************************* 
+ * Copyright (c) 2011 Red Hat, Inc. 
+ * Distributed under license by Red Hat, Inc. All rights reserved. 
+ * This program is made available under the terms of the 
+ * Eclipse Public License v1.0 which accompanies this distribution, 
+ * and is available at http://www.eclipse.org/legal/epl-v10.html 
+ * 
+ * Contributors: 
+ * Red Hat, Inc. - initial API and implementation 
+ ******************************************************************************/
+package com.openshift.express.client.workflow;
+
+/**
+ * The phases an application goes through in a workflow, in order. Resolve
+ * runs while the cartridges are embedded.
+ * 
+ * @author agent
+ * 
+ * @see ApplicationWorkflowEngine
+ */
+public enum WorkflowPhase {
+	/** the application is created on the broker */
+	CREATE,
+	/** the cartridges are embedded into the application */
+	EMBED,
+	/** the host name of the application is resolved */
+	RESOLVE,
+	/** the health check url of the application is probed */
+	HEALTH
+}
@@ -0,0 +1,123 @@
+/******************************************************************************* 
+ * Copyright (c) 2011 Red Hat, Inc. 
+ * Distributed under license by Red Hat, Inc. All rights reserved. 
+ * This program is made available under the terms of the 
+ * Eclipse Public License v1.0 which accompanies this distribution, 
+ * and is available at http://www.eclipse.org/legal/epl-v10.html 
+ * 
+ * Contributors: 
+ * Red Hat, Inc. - initial API and implementation 
+ ******************************************************************************/
+package com.openshift.express.client.workflow;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import com.openshift.express.client.IApplication;
+
+/**
+ * The outcome and the per-phase timeline of the workflow of one application.
+ * 
+ * @author agent
+ */
+public class WorkflowReport {
+
+	private ApplicationSpec spec;
+	private IApplication application;
+	private List<PhaseTiming> timeline = new ArrayList<PhaseTiming>();
+	private String failure;
+	private long start;
+	private long end;
+
+	WorkflowReport(ApplicationSpec spec, long start) {
+		this.spec = spec;
+		this.start = start;
+	}
+
+	synchronized void setApplication(IApplication application) {
+		this.application = application;
+	}
+
+	synchronized void add(PhaseTiming timing) {
+		timeline.add(timing);
+		if (!timing.isSuccessful()
+				&& failure == null) {
+			this.failure = timing.getPhase() + ": " + timing.getMessage();
+		}
+	}
+
+	synchronized void done(long end) {
+		this.end = end;
+	}
+
+	public ApplicationSpec getSpec() {
+		return spec;
+	}
+
+	/**
+	 * Returns the created application or <code>null</code> if it could not
+	 * be created.
+	 */
+	public synchronized IApplication getApplication() {
+		return application;
+	}
+
+	/**
+	 * Returns the phases the application went through, ordered by their
+	 * start.
+	 */
+	public synchronized List<PhaseTiming> getTimeline() {
+		List<PhaseTiming> sorted = new ArrayList<PhaseTiming>(timeline);
+		Collections.sort(sorted, new Comparator<PhaseTiming>() {
+
+			public int compare(PhaseTiming thisTiming, PhaseTiming thatTiming) {
+				if (thisTiming.getStart() < thatTiming.getStart()) {
+					return -1;
+				} else if (thisTiming.getStart() > thatTiming.getStart()) {
+					return 1;
+				}
+				return thisTiming.getPhase().compareTo(thatTiming.getPhase());
+			}
+		});
+		return sorted;
+	}
+
+	/**
+	 * Returns the timing of the given phase or <code>null</code> if the
+	 * application did not go through it.
+	 */
+	public synchronized PhaseTiming getTiming(WorkflowPhase phase) {
+		for (PhaseTiming timing : timeline) {
+			if (timing.getPhase() == phase) {
+				return timing;
+			}
+		}
+		return null;
+	}
+
+	public synchronized boolean isSuccessful() {
+		return failure == null;
+	}
+
+	/**
+	 * Returns the phase that failed first and why or <code>null</code> if
+	 * the workflow succeeded.
+	 */
+	public synchronized String getFailure() {
+		return failure;
+	}
+
+	/**
+	 * Returns the time from submitting the application to the end of its
+	 * last phase.
+	 */
+	public synchronized long getDuration() {
+		return end - start;
+	}
+
+	public synchronized String toString() {
+		return "WorkflowReport [application=" + spec.getName() + ", timeline=" + getTimeline() + "]";
+	}
+}
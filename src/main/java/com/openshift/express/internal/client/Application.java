@@ -10,19 +10,27 @@
  ******************************************************************************/
 package com.openshift.express.internal.client;
 
+import java.io.Reader;
+import java.io.StringReader;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import com.openshift.express.client.ApplicationLogReader;
+import com.openshift.express.client.EmbedReport;
 import com.openshift.express.client.IApplication;
 import com.openshift.express.client.ICartridge;
 import com.openshift.express.client.IDomain;
 import com.openshift.express.client.IEmbeddableCartridge;
 import com.openshift.express.client.IOpenShiftService;
+import com.openshift.express.client.LogFilter;
+import com.openshift.express.client.MergedLogReader;
 import com.openshift.express.client.OpenShiftException;
+import com.openshift.express.client.StreamingLogReader;
 import com.openshift.express.internal.client.utils.Assert;
 
 /**
@@ -123,6 +131,24 @@ public class Application extends UserInfoAware implements IApplication {
 		return logReader;
 	}
 
+	public ApplicationLogReader getLogReader(String logFile, LogFilter filter) throws OpenShiftException {
+		return new ApplicationLogReader(this, getUser(), service, logFile, filter);
+	}
+
+	public StreamingLogReader getStreamingLogReader(String logFile) throws OpenShiftException {
+		return service.getLogStream(name, cartridge, getUser(), logFile);
+	}
+
+	public MergedLogReader getMergedLogReader(int numLines, String timestampFormat, String... logFiles)
+			throws OpenShiftException {
+		// the tails are held in memory, numLines bounds them
+		Map<String, Reader> logs = new LinkedHashMap<String, Reader>();
+		for (String logFile : logFiles) {
+			logs.put(logFile, new StringReader(service.getStatus(name, cartridge, getUser(), logFile, numLines)));
+		}
+		return new MergedLogReader(logs, timestampFormat);
+	}
+
 	public String getGitUri() throws OpenShiftException {
 		IDomain domain = getUser().getDomain();
 		if (domain == null) {
@@ -141,6 +167,9 @@ public class Application extends UserInfoAware implements IApplication {
 	}
 
 	public String getHealthCheckUrl() throws OpenShiftException {
+		if (healthCheckPath == null) {
+			return null;
+		}
 		return getApplicationUrl() + '/' + healthCheckPath;
 	}
 
@@ -148,15 +177,13 @@ public class Application extends UserInfoAware implements IApplication {
 		service.addEmbeddedCartridge(getName(), embeddedCartridge, getUser());
 		Assert.isTrue(embeddedCartridge instanceof EmbeddableCartridge);
 		((EmbeddableCartridge) embeddedCartridge).setApplication(this);
-		this.embeddedCartridges.add(embeddedCartridge);
+		getEmbeddedCartridges().add(embeddedCartridge);
 	}
 
 	public void addEmbbedCartridges(List<IEmbeddableCartridge> embeddedCartridges) throws OpenShiftException {
-		for (IEmbeddableCartridge cartridge : embeddedCartridges) {
-			// TODO: catch exceptions when removing cartridges, contine removing
-			// and report the exceptions that occurred<
-			addEmbbedCartridge(cartridge);
-		}
+		EmbedReport report = new EmbedReport();
+		new BulkEmbedOperation(true, embeddedCartridges, report, getUser(), service).embed(this);
+		report.assertSuccessful();
 	}
 
 	public void removeEmbbedCartridge(IEmbeddableCartridge embeddedCartridge) throws OpenShiftException {
@@ -169,11 +196,9 @@ public class Application extends UserInfoAware implements IApplication {
 	}
 
 	public void removeEmbbedCartridges(List<IEmbeddableCartridge> embeddedCartridges) throws OpenShiftException {
-		for (IEmbeddableCartridge cartridge : embeddedCartridges) {
-			// TODO: catch exceptions when removing cartridges, contine removing
-			// and report the exceptions that occurred<
-			removeEmbbedCartridge(cartridge);
-		}
+		EmbedReport report = new EmbedReport();
+		new BulkEmbedOperation(false, embeddedCartridges, report, getUser(), service).embed(this);
+		report.assertSuccessful();
 	}
 
 	public List<IEmbeddableCartridge> getEmbeddedCartridges() throws OpenShiftException {
@@ -10,36 +10,65 @@
  ******************************************************************************/
 package com.openshift.express.internal.client;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 
 import com.openshift.express.client.ICartridge;
+import com.openshift.express.internal.client.utils.Interner;
 
 /**
+ * Holds the application data reported by user_info. The layout is kept compact
+ * since clients may hold the infos of many accounts: the creation time is kept
+ * as epoch millis, embedded cartridges are held in an array and cartridges are
+ * canonical instances shared across all infos.
+ * 
  * @author André Dietisheim
  */
 public class ApplicationInfo {
 
-	private String name;
-	private String uuid;
-	private List<EmbeddableCartridgeInfo> embeddedCartridges;
-	private ICartridge cartridge;
-	private Date creationTime;
+	private static final long NO_CREATION_TIME = Long.MIN_VALUE;
+	private static final EmbeddableCartridgeInfo[] NO_EMBEDDED_CARTRIDGES = new EmbeddableCartridgeInfo[0];
+
+	private final String name;
+	private final String uuid;
+	private final EmbeddableCartridgeInfo[] embeddedCartridges;
+	private final ICartridge cartridge;
+	private final long creationTime;
 
 	public ApplicationInfo(String name, String uuid, List<EmbeddableCartridgeInfo> embeddedCartridges, ICartridge cartridge, Date creationTime) {
+		this(name, uuid, toArray(embeddedCartridges), cartridge,
+				creationTime == null ? NO_CREATION_TIME : creationTime.getTime());
+	}
+
+	public ApplicationInfo(String name, String uuid, EmbeddableCartridgeInfo[] embeddedCartridges, ICartridge cartridge,
+			long creationTime) {
 		this.name = name;
 		this.uuid = uuid;
-		this.embeddedCartridges = embeddedCartridges;
-		this.cartridge = cartridge;
+		this.embeddedCartridges =
+				embeddedCartridges == null || embeddedCartridges.length == 0 ? NO_EMBEDDED_CARTRIDGES : embeddedCartridges;
+		this.cartridge = Interner.CARTRIDGES.intern(cartridge);
 		this.creationTime = creationTime;
 	}
 
+	private static EmbeddableCartridgeInfo[] toArray(List<EmbeddableCartridgeInfo> embeddedCartridges) {
+		if (embeddedCartridges == null) {
+			return NO_EMBEDDED_CARTRIDGES;
+		}
+		return embeddedCartridges.toArray(new EmbeddableCartridgeInfo[embeddedCartridges.size()]);
+	}
+
 	public String getName() {
 		return name;
 	}
 
 	public List<EmbeddableCartridgeInfo> getEmbeddedCartridges() {
-		return embeddedCartridges;
+		return Collections.unmodifiableList(Arrays.asList(embeddedCartridges));
+	}
+
+	public int getEmbeddedCartridgesCount() {
+		return embeddedCartridges.length;
 	}
 
 	public EmbeddableCartridgeInfo getEmbeddedCartridge(String name) {
@@ -61,7 +90,27 @@ public class ApplicationInfo {
 		return cartridge;
 	}
 
+	/**
+	 * Returns the creation time. A new date instance is returned on each call.
+	 * 
+	 * @return the creation time or <code>null</code> if it's unknown
+	 * 
+	 * @see #getCreationTimeMillis()
+	 */
 	public Date getCreationTime() {
+		if (creationTime == NO_CREATION_TIME) {
+			return null;
+		}
+		return new Date(creationTime);
+	}
+
+	/**
+	 * Returns the creation time in milliseconds since the epoch or
+	 * {@link Long#MIN_VALUE} if it's unknown.
+	 * 
+	 * @return the creation time
+	 */
+	public long getCreationTimeMillis() {
 		return creationTime;
 	}
 
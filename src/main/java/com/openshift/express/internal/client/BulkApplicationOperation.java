@@ -0,0 +1,218 @@
+/******************************************************************************* 
+ * Copyright (c) 2011 Red Hat, Inc. 
+ * Distributed under license by Red Hat, Inc. All rights reserved. 
+ * This program is made available under the terms of the 
+ * Eclipse Public License v1.0 which accompanies this distribution, 
+ * and is available at http://www.eclipse.org/legal/epl-v10.html 
+ * 
+ * Contributors: 
+ * Red Hat, Inc. - initial API and implementation 
+ ******************************************************************************/
+package com.openshift.express.internal.client;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.openshift.express.client.BulkOptions;
+import com.openshift.express.client.BulkResult;
+import com.openshift.express.client.IApplication;
+import com.openshift.express.client.IBulkProgressListener;
+import com.openshift.express.client.ICartridge;
+import com.openshift.express.client.IOpenShiftService;
+import com.openshift.express.client.IUser;
+import com.openshift.express.client.OpenShiftException;
+import com.openshift.express.client.OpenShiftService;
+import com.openshift.express.internal.client.concurrent.AimdLimit;
+import com.openshift.express.internal.client.concurrent.DaemonThreadFactory;
+import com.openshift.express.internal.client.concurrent.FairScheduler;
+
+/**
+ * Performs an operation on several applications with a bounded number of
+ * concurrent requests. Failures are collected per application and do not stop
+ * the remaining applications from being operated on.
+ *
+ * @author agent
+ */
+public abstract class BulkApplicationOperation {
+
+	private String name;
+	private IUser user;
+	private IOpenShiftService service;
+
+	/**
+	 * @param user
+	 *            the user that owns the applications, the concurrency limiter
+	 *            is shared fairly among users
+	 * @param service
+	 *            the service that the operations go through
+	 */
+	protected BulkApplicationOperation(String name, IUser user, IOpenShiftService service) {
+		this.name = name;
+		this.user = user;
+		this.service = service;
+	}
+
+	public BulkResult execute(List<IApplication> applications, BulkOptions options) throws OpenShiftException {
+		BulkResult result = new BulkResult();
+		if (applications == null
+				|| applications.isEmpty()) {
+			return result;
+		}
+		if (options == null) {
+			options = new BulkOptions();
+		}
+		// copy, the given list may be a view on the applications that we remove
+		List<IApplication> toOperateOn = new ArrayList<IApplication>(applications);
+		int total = toOperateOn.size();
+		ExecutorService executor = Executors.newFixedThreadPool(
+				Math.min(options.getParallelism(), total), new DaemonThreadFactory("bulk-" + name));
+		try {
+			int done = 0;
+			for (List<IApplication> group : createGroups(toOperateOn, options.getCartridgeOrder())) {
+				done = execute(group, executor, result, done, total, options);
+			}
+			return result;
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private int execute(List<IApplication> group, ExecutorService executor, BulkResult result, int done, int total,
+			BulkOptions options) throws OpenShiftException {
+		final FairScheduler limiter = getConcurrencyLimiter(options);
+		IBulkProgressListener listener = options.getProgressListener();
+		CompletionService<IApplication> completionService = new ExecutorCompletionService<IApplication>(executor);
+		Map<Future<IApplication>, IApplication> applicationsByFuture =
+				new LinkedHashMap<Future<IApplication>, IApplication>();
+		for (final IApplication application : group) {
+			Future<IApplication> future = completionService.submit(new Callable<IApplication>() {
+
+				public IApplication call() throws Exception {
+					if (limiter == null) {
+						execute(application);
+					} else {
+						executeLimited(application, limiter);
+					}
+					return application;
+				}
+			});
+			applicationsByFuture.put(future, application);
+		}
+		for (int i = 0; i < group.size(); i++) {
+			Future<IApplication> future = take(completionService);
+			IApplication application = applicationsByFuture.get(future);
+			OpenShiftException failure = getFailure(future, application);
+			if (failure == null) {
+				result.addSuccess(application);
+				succeeded(application);
+			} else {
+				result.addFailure(application, failure);
+			}
+			if (listener != null) {
+				listener.done(application, failure, ++done, total);
+			}
+		}
+		return done;
+	}
+
+	/**
+	 * Returns the limiter of the given options or <code>null</code> if it is
+	 * the scheduler of the service: the service acquires it for each request
+	 * already, acquiring it around the operation too would have each
+	 * operation hold 2 slots and deadlock once all slots are held by
+	 * operations.
+	 */
+	private FairScheduler getConcurrencyLimiter(BulkOptions options) {
+		FairScheduler limiter = options.getConcurrencyLimiter();
+		if (limiter != null
+				&& service instanceof OpenShiftService
+				&& limiter == ((OpenShiftService) service).getScheduler()) {
+			return null;
+		}
+		return limiter;
+	}
+
+	private void executeLimited(IApplication application, FairScheduler limiter)
+			throws OpenShiftException, InterruptedException {
+		limiter.acquire(user.getRhlogin());
+		long start = System.currentTimeMillis();
+		boolean failed = false;
+		try {
+			execute(application);
+		} catch (OpenShiftException e) {
+			failed = AimdLimit.isOverload(e);
+			throw e;
+		} finally {
+			limiter.release(name, start, failed);
+		}
+	}
+
+	private Future<IApplication> take(CompletionService<IApplication> completionService) throws OpenShiftException {
+		try {
+			return completionService.take();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new OpenShiftException(e, "Interrupted while waiting for {0} to complete", name);
+		}
+	}
+
+	private OpenShiftException getFailure(Future<IApplication> future, IApplication application) {
+		try {
+			future.get();
+			return null;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return new OpenShiftException(e, "Interrupted while waiting for {0} of application \"{1}\"",
+					name, application.getName());
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof OpenShiftException) {
+				return (OpenShiftException) e.getCause();
+			}
+			return new OpenShiftException(e.getCause(), "Could not {0} application \"{1}\"",
+					name, application.getName());
+		}
+	}
+
+	private List<List<IApplication>> createGroups(List<IApplication> applications, List<ICartridge> cartridgeOrder) {
+		List<List<IApplication>> groups = new ArrayList<List<IApplication>>();
+		List<IApplication> remaining = applications;
+		for (ICartridge cartridge : cartridgeOrder) {
+			List<IApplication> group = new ArrayList<IApplication>();
+			for (IApplication application : remaining) {
+				if (cartridge.equals(application.getCartridge())) {
+					group.add(application);
+				}
+			}
+			if (!group.isEmpty()) {
+				remaining.removeAll(group);
+				groups.add(group);
+			}
+		}
+		if (!remaining.isEmpty()) {
+			groups.add(remaining);
+		}
+		return groups;
+	}
+
+	/**
+	 * Performs the operation on the given application. Called concurrently
+	 * from several threads.
+	 */
+	protected abstract void execute(IApplication application) throws OpenShiftException;
+
+	/**
+	 * Called from the thread that started the bulk operation once the
+	 * operation succeeded for the given application.
+	 */
+	protected void succeeded(IApplication application) {
+	}
+}
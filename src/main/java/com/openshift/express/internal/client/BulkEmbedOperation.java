@@ -0,0 +1,143 @@
+/******************************************************************************* 
+ * Copyright (c) 2011 Red Hat, Inc. 
+ * Distributed under license by Red Hat, Inc. All rights reserved. 
+ * This program is made available under the terms of the 
+ * Eclipse Public License v1.0 which accompanies this distribution, 
+ * and is available at http://www.eclipse.org/legal/epl-v10.html 
+ * 
+ * Contributors: 
+ * Red Hat, Inc. - initial API and implementation 
+ ******************************************************************************/
+package com.openshift.express.internal.client;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.openshift.express.client.EmbedReport;
+import com.openshift.express.client.IApplication;
+import com.openshift.express.client.IEmbeddableCartridge;
+import com.openshift.express.client.IOpenShiftService;
+import com.openshift.express.client.IUser;
+import com.openshift.express.client.OpenShiftException;
+
+/**
+ * Adds or removes embedded cartridges on several applications. The
+ * cartridges of one application are processed one after the other since the
+ * broker does not allow concurrent changes to the same application, the
+ * applications are processed in parallel. Cartridges are added in the given
+ * order and removed in reverse order so that dependent cartridges (ex.
+ * phpmyadmin) are removed before the cartridge they depend on (ex. mysql).
+ * A dependent cartridge is skipped if the cartridge it depends on could not
+ * be added, a cartridge is kept if a cartridge that depends on it could not
+ * be removed. Each application gets its own cartridge instance since an
+ * embedded cartridge is bound to the application it was added to.
+ * 
+ * @author agent
+ */
+public class BulkEmbedOperation extends BulkApplicationOperation {
+
+	/** the cartridges that a cartridge depends on, by name */
+	private static final Map<String, String> PREREQUISITES = new HashMap<String, String>();
+
+	static {
+		PREREQUISITES.put(IEmbeddableCartridge.PHPMYADMIN_34.getName(), IEmbeddableCartridge.MYSQL_51.getName());
+	}
+
+	private boolean add;
+	private List<IEmbeddableCartridge> cartridges;
+	private EmbedReport report;
+
+	public BulkEmbedOperation(boolean add, List<IEmbeddableCartridge> cartridges, EmbedReport report, IUser user,
+			IOpenShiftService service) {
+		super(add ? "embed" : "remove embedded", user, service);
+		this.add = add;
+		this.cartridges = getOrdered(add, cartridges);
+		this.report = report;
+	}
+
+	private List<IEmbeddableCartridge> getOrdered(boolean add, List<IEmbeddableCartridge> cartridges) {
+		List<IEmbeddableCartridge> ordered = new ArrayList<IEmbeddableCartridge>(cartridges);
+		if (!add) {
+			Collections.reverse(ordered);
+		}
+		return ordered;
+	}
+
+	protected void execute(IApplication application) throws OpenShiftException {
+		OpenShiftException failure = embed(application);
+		if (failure != null) {
+			throw failure;
+		}
+	}
+
+	/**
+	 * Adds or removes all cartridges on the given application and reports
+	 * the outcome for each of them. Cartridges whose dependencies failed are
+	 * reported as skipped.
+	 * 
+	 * @return the first failure or <code>null</code> if all cartridges were
+	 *         processed successfully
+	 */
+	public OpenShiftException embed(IApplication application) {
+		OpenShiftException firstFailure = null;
+		// cartridges that failed or were skipped
+		Set<String> unprocessed = new HashSet<String>();
+		for (IEmbeddableCartridge requested : cartridges) {
+			IEmbeddableCartridge cartridge = getCartridge(requested);
+			if (dependsOnUnprocessed(cartridge, unprocessed)) {
+				unprocessed.add(cartridge.getName());
+				report.addSkipped(application, cartridge);
+				continue;
+			}
+			try {
+				if (add) {
+					application.addEmbbedCartridge(cartridge);
+				} else {
+					application.removeEmbbedCartridge(cartridge);
+				}
+				report.addSuccess(application, cartridge);
+			} catch (OpenShiftException e) {
+				unprocessed.add(cartridge.getName());
+				report.addFailure(application, cartridge, e);
+				if (firstFailure == null) {
+					firstFailure = e;
+				}
+			}
+		}
+		return firstFailure;
+	}
+
+	/**
+	 * Returns the cartridge to process on one application. A new instance is
+	 * added to each application so that the given (usually shared) cartridge
+	 * is not bound to any of them.
+	 */
+	private IEmbeddableCartridge getCartridge(IEmbeddableCartridge cartridge) {
+		if (!add) {
+			return cartridge;
+		}
+		return new EmbeddableCartridge(cartridge.getName());
+	}
+
+	/**
+	 * Returns <code>true</code> if the given cartridge may not be processed
+	 * since a cartridge that it depends on could not be added or, when
+	 * removing, a cartridge that depends on it could not be removed.
+	 */
+	private boolean dependsOnUnprocessed(IEmbeddableCartridge cartridge, Set<String> unprocessed) {
+		if (add) {
+			return unprocessed.contains(PREREQUISITES.get(cartridge.getName()));
+		}
+		for (String dependent : unprocessed) {
+			if (cartridge.getName().equals(PREREQUISITES.get(dependent))) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
@@ -10,9 +10,18 @@
  ******************************************************************************/
 package com.openshift.express.internal.client;
 
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import com.openshift.express.client.IApplication;
 import com.openshift.express.client.IDomain;
 import com.openshift.express.client.IOpenShiftService;
+import com.openshift.express.client.IWaitCallback;
 import com.openshift.express.client.OpenShiftException;
 
 
@@ -59,11 +68,82 @@ public class Domain extends UserInfoAware implements IDomain {
 	}
 
 	public boolean waitForAccessible(long timeout) throws OpenShiftException {
-		boolean accessible = true;
-		for (IApplication application : getUser().getApplications()) {
-			accessible |= service.waitForHostResolves(application.getApplicationUrl(), timeout);
+		List<IApplication> applications = getUser().getApplications();
+		if (applications.isEmpty()) {
+			return true;
+		}
+		return !waitForResolves(applications, timeout, true).isEmpty();
+	}
+
+	public Map<IApplication, Boolean> waitForApplicationsResolve(long timeout) throws OpenShiftException {
+		List<IApplication> applications = getUser().getApplications();
+		Map<IApplication, Boolean> readiness = new LinkedHashMap<IApplication, Boolean>();
+		for (IApplication application : applications) {
+			readiness.put(application, Boolean.FALSE);
+		}
+		for (IApplication application : waitForResolves(applications, timeout, false).keySet()) {
+			readiness.put(application, Boolean.TRUE);
+		}
+		return readiness;
+	}
+
+	/**
+	 * Waits for the hosts of the given applications to resolve, all of them
+	 * at the same time and within the same deadline. The hosts are probed by
+	 * the service's shared waiter, no thread is spent per application.
+	 * 
+	 * @return the applications whose host resolved
+	 */
+	private Map<IApplication, Boolean> waitForResolves(List<IApplication> applications, long timeout,
+			final boolean returnOnFirst) throws OpenShiftException {
+		Map<IApplication, Boolean> resolved = new LinkedHashMap<IApplication, Boolean>();
+		if (applications.isEmpty()) {
+			return resolved;
+		}
+		final CountDownLatch latch = new CountDownLatch(1);
+		final AtomicInteger pending = new AtomicInteger(applications.size());
+		Map<IApplication, Future<Boolean>> waits = new LinkedHashMap<IApplication, Future<Boolean>>();
+		try {
+			for (IApplication application : applications) {
+				waits.put(application, service.waitForHostResolvesAsync(
+						application.getApplicationUrl(), timeout, new IWaitCallback() {
+
+							public void done(boolean successful) {
+								if (pending.decrementAndGet() == 0
+										|| (returnOnFirst && successful)) {
+									latch.countDown();
+								}
+							}
+						}));
+			}
+			latch.await();
+			for (Map.Entry<IApplication, Future<Boolean>> entry : waits.entrySet()) {
+				if (isResolved(entry.getValue())) {
+					resolved.put(entry.getKey(), Boolean.TRUE);
+				}
+			}
+			return resolved;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new OpenShiftException(e, "Interrupted while waiting for domain {0} to become accessible", namespace);
+		} finally {
+			for (Future<Boolean> wait : waits.values()) {
+				wait.cancel(false);
+			}
+		}
+	}
+
+	private boolean isResolved(Future<Boolean> wait) {
+		try {
+			return wait.isDone()
+					&& !wait.isCancelled()
+					&& wait.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		} catch (ExecutionException e) {
+			return false;
 		}
-		return accessible;
 	}
 	
     public void destroy() throws OpenShiftException {
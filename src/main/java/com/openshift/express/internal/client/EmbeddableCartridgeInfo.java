@@ -10,6 +10,8 @@
  ******************************************************************************/
 package com.openshift.express.internal.client;
 
+import com.openshift.express.internal.client.utils.Interner;
+
 /**
  * A cartridge info that is reported by {@link ApplicationInfo#getEmbeddedCartridge(String)} and holds the data reported
  * by the paas.
@@ -18,11 +20,11 @@ package com.openshift.express.internal.client;
  */
 public class EmbeddableCartridgeInfo {
 
-	private String name;
-	private String url;
+	private final String name;
+	private final String url;
 
 	public EmbeddableCartridgeInfo(String name, String url) {
-		this.name = name;
+		this.name = Interner.STRINGS.intern(name);
 		this.url = url;
 	}
 
@@ -16,6 +16,9 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 
+import com.openshift.express.client.BulkOptions;
+import com.openshift.express.client.BulkResult;
+import com.openshift.express.client.EmbedReport;
 import com.openshift.express.client.IApplication;
 import com.openshift.express.client.ICartridge;
 import com.openshift.express.client.IDomain;
@@ -195,10 +198,14 @@ public class InternalUser implements IUser {
 	}
 
 	public List<IApplication> getApplications() throws OpenShiftException {
-		if (getUserInfo().getApplicationInfos().size() > applications.size()) {
-			update(getUserInfo().getApplicationInfos());
+		List<ApplicationInfo> applicationInfos = getUserInfo().getApplicationInfos();
+		synchronized (applications) {
+			if (applicationInfos.size() > applications.size()) {
+				update(applicationInfos);
+			}
+			// copy, applications may get added or removed concurrently
+			return Collections.unmodifiableList(new ArrayList<IApplication>(applications));
 		}
-		return Collections.unmodifiableList(applications);
 	}
 
 	public IApplication getApplicationByName(String name) throws OpenShiftException {
@@ -235,7 +242,9 @@ public class InternalUser implements IUser {
 	}
 
 	protected void add(IApplication application) {
-		applications.add(application);
+		synchronized (applications) {
+			applications.add(application);
+		}
 	}
 
 	protected void destroy(IApplication application) throws OpenShiftException {
@@ -244,8 +253,70 @@ public class InternalUser implements IUser {
 	}
 	
 	protected void remove(IApplication application) {
-		applications.remove(application);
-		this.userInfo.removeApplicationInfo(application.getName());
+		synchronized (applications) {
+			applications.remove(application);
+			if (userInfo != null) {
+				userInfo.removeApplicationInfo(application.getName());
+			}
+		}
+	}
+
+	public BulkResult startApplications(List<IApplication> applications, BulkOptions options)
+			throws OpenShiftException {
+		return new BulkApplicationOperation("start", this, service) {
+
+			protected void execute(IApplication application) throws OpenShiftException {
+				service.startApplication(application.getName(), application.getCartridge(), InternalUser.this);
+			}
+		}.execute(applications, options);
+	}
+
+	public BulkResult stopApplications(List<IApplication> applications, BulkOptions options)
+			throws OpenShiftException {
+		return new BulkApplicationOperation("stop", this, service) {
+
+			protected void execute(IApplication application) throws OpenShiftException {
+				service.stopApplication(application.getName(), application.getCartridge(), InternalUser.this);
+			}
+		}.execute(applications, options);
+	}
+
+	public BulkResult restartApplications(List<IApplication> applications, BulkOptions options)
+			throws OpenShiftException {
+		return new BulkApplicationOperation("restart", this, service) {
+
+			protected void execute(IApplication application) throws OpenShiftException {
+				service.restartApplication(application.getName(), application.getCartridge(), InternalUser.this);
+			}
+		}.execute(applications, options);
+	}
+
+	public BulkResult destroyApplications(List<IApplication> applications, BulkOptions options)
+			throws OpenShiftException {
+		return new BulkApplicationOperation("destroy", this, service) {
+
+			protected void execute(IApplication application) throws OpenShiftException {
+				service.destroyApplication(application.getName(), application.getCartridge(), InternalUser.this);
+			}
+
+			protected void succeeded(IApplication application) {
+				remove(application);
+			}
+		}.execute(applications, options);
+	}
+
+	public EmbedReport addEmbeddedCartridges(List<IApplication> applications, List<IEmbeddableCartridge> cartridges,
+			BulkOptions options) throws OpenShiftException {
+		EmbedReport report = new EmbedReport();
+		new BulkEmbedOperation(true, cartridges, report, this, service).execute(applications, options);
+		return report;
+	}
+
+	public EmbedReport removeEmbeddedCartridges(List<IApplication> applications,
+			List<IEmbeddableCartridge> cartridges, BulkOptions options) throws OpenShiftException {
+		EmbedReport report = new EmbedReport();
+		new BulkEmbedOperation(false, cartridges, report, this, service).execute(applications, options);
+		return report;
 	}
 
 	public void setSshPublicKey(ISSHPublicKey key) {
@@ -10,10 +10,20 @@
  ******************************************************************************/
 package com.openshift.express.internal.client;
 
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
 import com.openshift.express.client.ICartridge;
 import com.openshift.express.client.IJBossASApplication;
 import com.openshift.express.client.IOpenShiftService;
 import com.openshift.express.client.OpenShiftException;
+import com.openshift.express.client.StreamingLogReader;
+import com.openshift.express.client.threaddump.IThreadDumpListener;
+import com.openshift.express.client.threaddump.ThreadDump;
+import com.openshift.express.client.threaddump.ThreadDumpParser;
+import com.openshift.express.internal.client.concurrent.DaemonThreadFactory;
 
 /**
  * @author William DeCoste
@@ -21,6 +31,8 @@ import com.openshift.express.client.OpenShiftException;
  */
 public class JBossASApplication extends Application implements IJBossASApplication {
 
+	private static final String THREAD_DUMP_LOG = "stdout.log";
+
 	public JBossASApplication(String name, String uuid, String creationLog, String healthCheckPath, ICartridge cartridge,
 			InternalUser user,
 			IOpenShiftService service) {
@@ -35,7 +47,47 @@ public class JBossASApplication extends Application implements IJBossASApplicati
 	public String threadDump() throws OpenShiftException {
 		service.threadDumpApplication(name, cartridge, getUser());
 		
-		return "stdout.log";
+		return THREAD_DUMP_LOG;
+	}
+
+	public ThreadDump captureThreadDump(long timeout) throws OpenShiftException {
+		return captureThreadDump(null, timeout);
+	}
+
+	public ThreadDump captureThreadDump(IThreadDumpListener listener, long timeout) throws OpenShiftException {
+		final StreamingLogReader reader = service.getLogStream(name, cartridge, getUser(), THREAD_DUMP_LOG);
+		ScheduledExecutorService timer =
+				Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("thread-dump-timeout"));
+		try {
+			// tail before triggering so that the dump is not missed
+			reader.connect();
+			service.threadDumpApplication(name, cartridge, getUser());
+			timer.schedule(new Runnable() {
+
+				public void run() {
+					close(reader);
+				}
+			}, timeout, TimeUnit.MILLISECONDS);
+			ThreadDump dump = new ThreadDumpParser(listener).parse(reader);
+			if (dump == null) {
+				throw new OpenShiftException("Thread dump of application {0} was not read within {1} ms", name,
+						timeout);
+			}
+			return dump;
+		} catch (IOException e) {
+			throw new OpenShiftException(e, "Could not read thread dump of application {0}", name);
+		} finally {
+			timer.shutdownNow();
+			close(reader);
+		}
+	}
+
+	private void close(StreamingLogReader reader) {
+		try {
+			reader.close();
+		} catch (IOException e) {
+			// ignore
+		}
 	}
 
 }
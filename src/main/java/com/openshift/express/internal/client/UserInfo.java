@@ -15,6 +15,7 @@ import java.util.List;
 
 import com.openshift.express.client.OpenShiftUnknonwSSHKeyTypeException;
 import com.openshift.express.client.SSHPublicKey;
+import com.openshift.express.internal.client.utils.Interner;
 
 /**
  * @author André Dietisheim
@@ -33,7 +34,7 @@ public class UserInfo {
 		this.rhLogin = rhLogin;
 		this.uuid = uuid;
 		this.sshPublicKey = new SSHPublicKey(sshPublicKey, sshKeyType);
-		this.rhcDomain = rhcDomain;
+		this.rhcDomain = Interner.STRINGS.intern(rhcDomain);
 		this.namespace = namespace;
 		this.applicationInfos = applicationInfos;
 	}
@@ -0,0 +1,399 @@
+/******************************************************************************* 
+ * Copyright (c) 2011 Red Hat, Inc. 
+ * Distributed under license by Red Hat, Inc. All rights reserved. 
+ * This program is made available under the terms of the 
+ * Eclipse Public License v1.0 which accompanies this distribution, 
+ * and is available at http://www.eclipse.org/legal/epl-v10.html 
+ * 
+ * Contributors: 
+ * Red Hat, Inc. - initial API and implementation 
+ ******************************************************************************/
+package com.openshift.express.internal.client.archive;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import com.openshift.express.client.LogLine;
+
+/**
+ * A file of log lines of fixed capacity that is memory mapped. Each line is
+ * stored as a record of its timestamp, its length and its utf-8 bytes.
+ * Timestamps never decrease within a segment.
+ * <p>
+ * A segment keeps two indices on the heap, both rebuilt when it is opened:
+ * <ul>
+ * <li>a sparse time index that holds the timestamp and position of the first
+ * record of each block of {@link #INDEX_INTERVAL} bytes</li>
+ * <li>a token index that holds the blocks each token occurs in. Tokens with
+ * digits (numbers, ids, timestamps) or of more than
+ * {@link #MAX_INDEXED_TOKEN_LENGTH} characters are not indexed and at most
+ * {@link #MAX_INDEXED_TOKENS} distinct tokens are indexed per segment, so
+ * that the index stays small however varied the lines are.</li>
+ * </ul>
+ * Queries only decode the records of the blocks that may match, tokens that
+ * are not indexed are matched against all blocks.
+ * 
+ * @author agent
+ */
+public class LogSegment {
+
+	public static final int INDEX_INTERVAL = 4 * 1024;
+	public static final int MAX_INDEXED_TOKENS = 16 * 1024;
+	public static final int MAX_INDEXED_TOKEN_LENGTH = 32;
+
+	private static final String CHARSET = "UTF-8";
+	/** timestamp and length */
+	private static final int RECORD_HEADER = 8 + 4;
+
+	private final File file;
+	private final RandomAccessFile randomAccessFile;
+	private final MappedByteBuffer buffer;
+	private final int capacity;
+	private int position;
+	private long firstTimestamp = Long.MAX_VALUE;
+	private long lastTimestamp = Long.MIN_VALUE;
+	private long[] indexTimestamps = new long[16];
+	private int[] indexPositions = new int[16];
+	private int indexSize;
+	private final Map<String, BitSet> tokenIndex = new HashMap<String, BitSet>();
+	/** tokens were left out of the index since it was full */
+	private boolean tokenIndexFull;
+	private boolean deleted;
+
+	/**
+	 * Opens the segment in the given file, creates the file if it does not
+	 * exist.
+	 * 
+	 * @param capacity
+	 *            the capacity of a new segment in bytes. An existing segment
+	 *            keeps its capacity.
+	 */
+	public LogSegment(File file, int capacity) throws IOException {
+		this.file = file;
+		this.randomAccessFile = new RandomAccessFile(file, "rw");
+		long length = randomAccessFile.length();
+		this.capacity = length > 0 ? (int) Math.min(length, Integer.MAX_VALUE) : capacity;
+		this.buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, this.capacity);
+		recover();
+	}
+
+	/**
+	 * Scans the records and rebuilds the indices. A length of 0 marks the
+	 * end, the mapped file is zero filled beyond the last record.
+	 */
+	private void recover() throws UnsupportedEncodingException {
+		ByteBuffer records = buffer.duplicate();
+		while (position + RECORD_HEADER <= capacity) {
+			long timestamp = records.getLong(position);
+			int length = records.getInt(position + 8) - 1;
+			if (length < 0
+					|| position + RECORD_HEADER + length > capacity) {
+				break;
+			}
+			byte[] line = new byte[length];
+			records.position(position + RECORD_HEADER);
+			records.get(line);
+			index(timestamp, new String(line, CHARSET));
+			position += RECORD_HEADER + length;
+		}
+	}
+
+	/**
+	 * Appends the given line.
+	 * 
+	 * @param timestamp
+	 *            the timestamp of the line, is raised to the timestamp of the
+	 *            last line if it is older
+	 * @return <code>false</code> if the segment is full
+	 */
+	public synchronized boolean append(long timestamp, String line) throws UnsupportedEncodingException {
+		if (deleted) {
+			return false;
+		}
+		byte[] bytes = line.getBytes(CHARSET);
+		if (position + RECORD_HEADER + bytes.length > capacity) {
+			return false;
+		}
+		timestamp = Math.max(timestamp, lastTimestamp);
+		buffer.putLong(position, timestamp);
+		buffer.putInt(position + 8, bytes.length + 1);
+		ByteBuffer records = buffer.duplicate();
+		records.position(position + RECORD_HEADER);
+		records.put(bytes);
+		index(timestamp, line);
+		position += RECORD_HEADER + bytes.length;
+		return true;
+	}
+
+	private void index(long timestamp, String line) {
+		if (indexSize == 0
+				|| position >= indexPositions[indexSize - 1] + INDEX_INTERVAL) {
+			addIndexEntry(timestamp, position);
+		}
+		int block = indexSize - 1;
+		for (String token : tokenize(line)) {
+			if (!isIndexable(token)) {
+				continue;
+			}
+			BitSet blocks = tokenIndex.get(token);
+			if (blocks == null) {
+				if (tokenIndex.size() >= MAX_INDEXED_TOKENS) {
+					this.tokenIndexFull = true;
+					continue;
+				}
+				blocks = new BitSet();
+				tokenIndex.put(token, blocks);
+			}
+			blocks.set(block);
+		}
+		this.firstTimestamp = Math.min(firstTimestamp, timestamp);
+		this.lastTimestamp = timestamp;
+	}
+
+	/**
+	 * Returns <code>true</code> if the given token is worth indexing. Tokens
+	 * with digits are mostly unique (counters, ids, addresses) and would grow
+	 * the index with every line.
+	 */
+	private static boolean isIndexable(String token) {
+		if (token.length() > MAX_INDEXED_TOKEN_LENGTH) {
+			return false;
+		}
+		for (int i = 0; i < token.length(); i++) {
+			if (Character.isDigit(token.charAt(i))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void addIndexEntry(long timestamp, int position) {
+		if (indexSize == indexTimestamps.length) {
+			long[] timestamps = new long[indexSize * 2];
+			System.arraycopy(indexTimestamps, 0, timestamps, 0, indexSize);
+			this.indexTimestamps = timestamps;
+			int[] positions = new int[indexSize * 2];
+			System.arraycopy(indexPositions, 0, positions, 0, indexSize);
+			this.indexPositions = positions;
+		}
+		indexTimestamps[indexSize] = timestamp;
+		indexPositions[indexSize] = position;
+		indexSize++;
+	}
+
+	/**
+	 * Adds the lines within the given time range that contain all given
+	 * tokens to the given results.
+	 * 
+	 * @param from
+	 *            the start of the range, inclusive
+	 * @param to
+	 *            the end of the range, exclusive
+	 * @param tokens
+	 *            the tokens, as returned by {@link #tokenize(String)}
+	 * @param source
+	 *            the source to tag the lines with
+	 * @param limit
+	 *            the max number of results
+	 */
+	public synchronized void query(long from, long to, Set<String> tokens, String source,
+			List<LogLine> results, int limit) throws UnsupportedEncodingException {
+		if (deleted
+				|| indexSize == 0
+				|| lastTimestamp < from
+				|| firstTimestamp >= to) {
+			return;
+		}
+		BitSet candidates = getCandidateBlocks(tokens);
+		ByteBuffer records = buffer.duplicate();
+		for (int block = candidates.nextSetBit(getFirstBlock(from));
+				block >= 0 && block < indexSize;
+				block = candidates.nextSetBit(block + 1)) {
+			if (indexTimestamps[block] >= to) {
+				return;
+			}
+			int end = block + 1 < indexSize ? indexPositions[block + 1] : position;
+			for (int recordPosition = indexPositions[block]; recordPosition < end;) {
+				long timestamp = records.getLong(recordPosition);
+				int length = records.getInt(recordPosition + 8) - 1;
+				if (timestamp >= to) {
+					return;
+				}
+				if (timestamp >= from) {
+					byte[] bytes = new byte[length];
+					records.position(recordPosition + RECORD_HEADER);
+					records.get(bytes);
+					String line = new String(bytes, CHARSET);
+					if (tokens.isEmpty()
+							|| tokenize(line).containsAll(tokens)) {
+						results.add(new LogLine(source, line, timestamp));
+						if (results.size() >= limit) {
+							return;
+						}
+					}
+				}
+				recordPosition += RECORD_HEADER + length;
+			}
+		}
+	}
+
+	/**
+	 * Returns the blocks that may contain all given tokens. Tokens that are
+	 * not indexed do not narrow the candidates.
+	 */
+	private BitSet getCandidateBlocks(Set<String> tokens) {
+		BitSet candidates = new BitSet(indexSize);
+		candidates.set(0, indexSize);
+		for (String token : tokens) {
+			BitSet blocks = tokenIndex.get(token);
+			if (blocks != null) {
+				candidates.and(blocks);
+			} else if (isIndexable(token)
+					&& !tokenIndexFull) {
+				// would have been indexed, does not occur in this segment
+				return new BitSet();
+			}
+		}
+		return candidates;
+	}
+
+	/**
+	 * Returns the last block that starts before the given time, the blocks
+	 * before it only hold older records.
+	 */
+	private int getFirstBlock(long from) {
+		int low = 0;
+		int high = indexSize - 1;
+		int block = 0;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			if (indexTimestamps[middle] < from) {
+				block = middle;
+				low = middle + 1;
+			} else {
+				high = middle - 1;
+			}
+		}
+		return block;
+	}
+
+	/**
+	 * Splits the given text into lower case tokens of letters and digits.
+	 */
+	public static Set<String> tokenize(String text) {
+		Set<String> tokens = new HashSet<String>();
+		int start = -1;
+		for (int i = 0; i <= text.length(); i++) {
+			boolean tokenCharacter = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+			if (tokenCharacter
+					&& start == -1) {
+				start = i;
+			} else if (!tokenCharacter
+					&& start != -1) {
+				tokens.add(text.substring(start, i).toLowerCase(Locale.ENGLISH));
+				start = -1;
+			}
+		}
+		return tokens;
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * Returns the number of bytes that the records take.
+	 */
+	public synchronized int getSize() {
+		return position;
+	}
+
+	public synchronized long getFirstTimestamp() {
+		return firstTimestamp;
+	}
+
+	public synchronized long getLastTimestamp() {
+		return lastTimestamp;
+	}
+
+	public synchronized boolean isEmpty() {
+		return position == 0;
+	}
+
+	public synchronized void flush() {
+		if (!deleted) {
+			buffer.force();
+		}
+	}
+
+	public void close() throws IOException {
+		flush();
+		randomAccessFile.close();
+	}
+
+	/**
+	 * Closes the segment, unmaps it and deletes its file. The segment must not
+	 * be used any more.
+	 * 
+	 * @throws IOException
+	 *             if the file could not be deleted
+	 */
+	public synchronized void delete() throws IOException {
+		if (deleted) {
+			return;
+		}
+		this.deleted = true;
+		randomAccessFile.close();
+		unmap(buffer);
+		if (!file.delete()
+				&& file.exists()) {
+			throw new IOException("Could not delete log segment " + file);
+		}
+	}
+
+	/**
+	 * Releases the mapping of the given buffer right away instead of once it
+	 * is garbage collected, which also lets the file be deleted on platforms
+	 * that refuse to delete mapped files. There's no public api for it, the
+	 * mapping is left to the garbage collector if the jvm does not offer one
+	 * of the known internal ones.
+	 */
+	private static void unmap(MappedByteBuffer buffer) {
+		try {
+			// java 9 and later
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+			Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+			theUnsafe.setAccessible(true);
+			invokeCleaner.invoke(theUnsafe.get(null), buffer);
+			return;
+		} catch (Exception e) {
+			// not available, try the cleaner of the buffer
+		}
+		try {
+			// java 8 and earlier
+			Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+			cleanerMethod.setAccessible(true);
+			Object cleaner = cleanerMethod.invoke(buffer);
+			if (cleaner != null) {
+				cleaner.getClass().getMethod("clean").invoke(cleaner);
+			}
+		} catch (Exception e) {
+			// left to the garbage collector
+		}
+	}
+}
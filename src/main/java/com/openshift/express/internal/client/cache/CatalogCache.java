@@ -0,0 +1,94 @@
+/******************************************************************************* 
+ * Copyright (c) 2011 Red Hat, Inc. 
+ * Distributed under license by Red Hat, Inc. All rights reserved. 
+ * This program is made available under the terms of the 
+ * Eclipse Public License v1.0 which accompanies this distribution, 
+ * and is available at http://www.eclipse.org/legal/epl-v10.html 
+ * 
+ * Contributors: 
+ * Red Hat, Inc. - initial API and implementation 
+ ******************************************************************************/
+package com.openshift.express.internal.client.cache;
+
+import java.util.List;
+
+import com.openshift.express.client.ICartridge;
+import com.openshift.express.client.IEmbeddableCartridge;
+
+/**
+ * Holds the cartridges that a broker offers. They are the same for all users
+ * of a broker and change rarely, the cache may thus be shared by all users
+ * and only expires after the given time to live.
+ * 
+ * @author agent
+ */
+public class CatalogCache {
+
+	public static final long DEFAULT_TIME_TO_LIVE = 10 * 60 * 1000;
+
+	private final long timeToLive;
+	private volatile Entry<List<ICartridge>> cartridges;
+	private volatile Entry<List<IEmbeddableCartridge>> embeddableCartridges;
+
+	public CatalogCache() {
+		this(DEFAULT_TIME_TO_LIVE);
+	}
+
+	/**
+	 * @param timeToLive
+	 *            the time in milliseconds after which cached cartridges are
+	 *            requested again
+	 */
+	public CatalogCache(long timeToLive) {
+		this.timeToLive = timeToLive;
+	}
+
+	/**
+	 * @return the cached cartridges or <code>null</code> if there are none or
+	 *         they expired
+	 */
+	public List<ICartridge> getCartridges() {
+		return get(cartridges);
+	}
+
+	public void setCartridges(List<ICartridge> cartridges) {
+		this.cartridges = new Entry<List<ICartridge>>(cartridges, System.currentTimeMillis());
+	}
+
+	/**
+	 * @return the cached embeddable cartridges or <code>null</code> if there
+	 *         are none or they expired
+	 */
+	public List<IEmbeddableCartridge> getEmbeddableCartridges() {
+		return get(embeddableCartridges);
+	}
+
+	public void setEmbeddableCartridges(List<IEmbeddableCartridge> embeddableCartridges) {
+		this.embeddableCartridges =
+				new Entry<List<IEmbeddableCartridge>>(embeddableCartridges, System.currentTimeMillis());
+	}
+
+	public void clear() {
+		this.cartridges = null;
+		this.embeddableCartridges = null;
+	}
+
+	private <T> T get(Entry<T> entry) {
+		if (entry == null
+				|| System.currentTimeMillis() - entry.timestamp > timeToLive) {
+			return null;
+		}
+		return entry.value;
+	}
+
+	private static class Entry<T> {
+
+		private final T value;
+		private final long timestamp;
+
+		private Entry(T value, long timestamp) {
+			this.value = value;
+			this.timestamp = timestamp;
+		}
+	}
+}
@@ -0,0 +1,73 @@
+/******************************************************************************* 
+ * Copyright (c) 2011 Red Hat, Inc. 
+ * Distributed under license by Red Hat, Inc. All rights reserved. 
+ * This program is made available under the terms of the 
+ * Eclipse Public License v1.0 which accompanies this distribution, 
+ * and is available at http://www.eclipse.org/legal/epl-v10.html 
+ * 
+ * Contributors: 
+ * Red Hat, Inc. - initial API and implementation 
+ ******************************************************************************/
+package com.openshift.express.internal.client.cache;
+
+import java.util.List;
+
+import com.openshift.express.client.ICartridge;
+import com.openshift.express.client.IEmbeddableCartridge;
+import com.openshift.express.internal.client.UserInfo;
+
+/**
+ * The client model (user info and cartridge catalogs) of a user as it was
+ * reported by a broker at a given time.
+ * 
+ * @author agent
+ * 
+ * @see ModelSnapshotStore
+ */
+public class ModelSnapshot {
+
+	private String brokerUrl;
+	private String rhlogin;
+	private long timestamp;
+	private UserInfo userInfo;
+	private List<ICartridge> cartridges;
+	private List<IEmbeddableCartridge> embeddableCartridges;
+
+	public ModelSnapshot(String brokerUrl, String rhlogin, long timestamp, UserInfo userInfo,
+			List<ICartridge> cartridges, List<IEmbeddableCartridge> embeddableCartridges) {
+		this.brokerUrl = brokerUrl;
+		this.rhlogin = rhlogin;
+		this.timestamp = timestamp;
+		this.userInfo = userInfo;
+		this.cartridges = cartridges;
+		this.embeddableCartridges = embeddableCartridges;
+	}
+
+	public String getBrokerUrl() {
+		return brokerUrl;
+	}
+
+	public String getRhlogin() {
+		return rhlogin;
+	}
+
+	/**
+	 * Returns the time (in milliseconds since the epoch) at which the model
+	 * was fetched from the broker.
+	 */
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	public UserInfo getUserInfo() {
+		return userInfo;
+	}
+
+	public List<ICartridge> getCartridges() {
+		return cartridges;
+	}
+
+	public List<IEmbeddableCartridge> getEmbeddableCartridges() {
+		return embeddableCartridges;
+	}
+}
@@ -0,0 +1,346 @@
+/******************************************************************************* 
+ * Copyright (c) 2011 Red Hat, Inc. 
+ * Distributed under license by Red Hat, Inc. All rights reserved. 
+ * This program is made available under the terms of the 
+ * Eclipse Public License v1.0 which accompanies this distribution, 
+ * and is available at http://www.eclipse.org/legal/epl-v10.html 
+ * 
+ * Contributors: 
+ * Red Hat, Inc. - initial API and implementation 
+ ******************************************************************************/
+package com.openshift.express.internal.client.cache;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.openshift.express.client.Cartridge;
+import com.openshift.express.client.ICartridge;
+import com.openshift.express.client.IEmbeddableCartridge;
+import com.openshift.express.client.OpenShiftUnknonwSSHKeyTypeException;
+import com.openshift.express.client.SSHPublicKey;
+import com.openshift.express.client.configuration.UserConfiguration;
+import com.openshift.express.internal.client.ApplicationInfo;
+import com.openshift.express.internal.client.EmbeddableCartridge;
+import com.openshift.express.internal.client.EmbeddableCartridgeInfo;
+import com.openshift.express.internal.client.UserInfo;
+import com.openshift.express.internal.client.utils.StreamUtils;
+
+/**
+ * Persists model snapshots in a compact binary format next to the user
+ * configuration (~/.openshift/express.conf). Snapshots are read with a memory
+ * mapped read and are only returned if they were taken from the expected broker
+ * and are not older than the maximum age.
+ * 
+ * @author agent
+ * 
+ * @see ModelSnapshot
+ */
+public class ModelSnapshotStore {
+
+	public static final long DEFAULT_MAX_AGE = 24 * 60 * 60 * 1000;
+
+	private static final int MAGIC = 0x4f534d53; // "OSMS"
+	private static final short FORMAT_VERSION = 1;
+	private static final String FILE_PREFIX = "express-";
+	private static final String FILE_SUFFIX = ".snapshot";
+	private static final String ENCODING = "UTF-8";
+	private static final int NULL_LENGTH = -1;
+
+	private File folder;
+	private long maxAge;
+
+	public ModelSnapshotStore() {
+		this(UserConfiguration.getConfigurationFolder(), DEFAULT_MAX_AGE);
+	}
+
+	public ModelSnapshotStore(File folder, long maxAge) {
+		this.folder = folder;
+		this.maxAge = maxAge;
+	}
+
+	/**
+	 * Returns the snapshot that was stored for the given broker and login.
+	 * Returns <code>null</code> if there's none, if it's older than the max
+	 * age, if it was taken from another broker or if it cannot be read.
+	 * 
+	 * @param brokerUrl
+	 *            the broker the snapshot has to be taken from
+	 * @param rhlogin
+	 *            the login the snapshot has to be taken for
+	 * @return the snapshot or <code>null</code>
+	 */
+	public ModelSnapshot load(String brokerUrl, String rhlogin) {
+		File file = getFile(rhlogin);
+		if (!file.canRead()) {
+			return null;
+		}
+		FileInputStream inputStream = null;
+		try {
+			inputStream = new FileInputStream(file);
+			FileChannel channel = inputStream.getChannel();
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			return read(buffer, brokerUrl, rhlogin);
+		} catch (IOException e) {
+			return null;
+		} catch (RuntimeException e) {
+			// truncated or corrupt snapshot
+			return null;
+		} catch (OpenShiftUnknonwSSHKeyTypeException e) {
+			return null;
+		} finally {
+			try {
+				StreamUtils.close(inputStream);
+			} catch (IOException e) {
+				// ignore
+			}
+		}
+	}
+
+	/**
+	 * Stores the given snapshot. The snapshot is written to a temporary file
+	 * first so that concurrent readers never see a partially written snapshot.
+	 * 
+	 * @param snapshot
+	 *            the snapshot to store
+	 * @throws IOException
+	 */
+	public void save(ModelSnapshot snapshot) throws IOException {
+		if (!folder.exists()
+				&& !folder.mkdirs()) {
+			throw new IOException("Could not create folder " + folder.getAbsolutePath());
+		}
+		File file = getFile(snapshot.getRhlogin());
+		File tmpFile = new File(folder, file.getName() + ".tmp");
+		DataOutputStream out = null;
+		try {
+			out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)));
+			write(snapshot, out);
+		} finally {
+			StreamUtils.close(out);
+		}
+		tmpFile.setReadable(false, false);
+		tmpFile.setReadable(true, true);
+		if (!tmpFile.renameTo(file)) {
+			file.delete();
+			if (!tmpFile.renameTo(file)) {
+				tmpFile.delete();
+				throw new IOException("Could not write snapshot " + file.getAbsolutePath());
+			}
+		}
+	}
+
+	public void delete(String rhlogin) {
+		getFile(rhlogin).delete();
+	}
+
+	protected File getFile(String rhlogin) {
+		StringBuilder builder = new StringBuilder(FILE_PREFIX);
+		for (int i = 0; i < rhlogin.length(); i++) {
+			char character = rhlogin.charAt(i);
+			if (Character.isLetterOrDigit(character)
+					|| character == '.'
+					|| character == '-') {
+				builder.append(character);
+			} else {
+				builder.append('_');
+			}
+		}
+		builder.append('-').append(Integer.toHexString(rhlogin.hashCode())).append(FILE_SUFFIX);
+		return new File(folder, builder.toString());
+	}
+
+	private ModelSnapshot read(MappedByteBuffer buffer, String brokerUrl, String rhlogin)
+			throws UnsupportedEncodingException, OpenShiftUnknonwSSHKeyTypeException {
+		if (buffer.getInt() != MAGIC
+				|| buffer.getShort() != FORMAT_VERSION) {
+			return null;
+		}
+		String snapshotBrokerUrl = readString(buffer);
+		String snapshotRhlogin = readString(buffer);
+		long timestamp = buffer.getLong();
+		if (!equals(brokerUrl, snapshotBrokerUrl)
+				|| !equals(rhlogin, snapshotRhlogin)
+				|| System.currentTimeMillis() - timestamp > maxAge) {
+			return null;
+		}
+		return new ModelSnapshot(snapshotBrokerUrl, snapshotRhlogin, timestamp,
+				readUserInfo(buffer), readCartridges(buffer), readEmbeddableCartridges(buffer));
+	}
+
+	private UserInfo readUserInfo(MappedByteBuffer buffer)
+			throws UnsupportedEncodingException, OpenShiftUnknonwSSHKeyTypeException {
+		String rhlogin = readString(buffer);
+		String uuid = readString(buffer);
+		String sshPublicKey = readString(buffer);
+		String sshKeyType = readString(buffer);
+		String rhcDomain = readString(buffer);
+		String namespace = readString(buffer);
+		int numberOfApplications = readCount(buffer);
+		List<ApplicationInfo> applicationInfos = new ArrayList<ApplicationInfo>(numberOfApplications);
+		for (int i = 0; i < numberOfApplications; i++) {
+			applicationInfos.add(readApplicationInfo(buffer));
+		}
+		return new UserInfo(rhlogin, uuid, sshPublicKey, rhcDomain, namespace, applicationInfos, sshKeyType);
+	}
+
+	private ApplicationInfo readApplicationInfo(MappedByteBuffer buffer) throws UnsupportedEncodingException {
+		String name = readString(buffer);
+		String uuid = readString(buffer);
+		String cartridge = readString(buffer);
+		long creationTime = buffer.getLong();
+		int numberOfEmbedded = readCount(buffer);
+		EmbeddableCartridgeInfo[] embeddedCartridges = new EmbeddableCartridgeInfo[numberOfEmbedded];
+		for (int i = 0; i < numberOfEmbedded; i++) {
+			embeddedCartridges[i] = new EmbeddableCartridgeInfo(readString(buffer), readString(buffer));
+		}
+		return new ApplicationInfo(name, uuid, embeddedCartridges, cartridge == null ? null : new Cartridge(cartridge),
+				creationTime);
+	}
+
+	private List<ICartridge> readCartridges(MappedByteBuffer buffer) throws UnsupportedEncodingException {
+		int numberOfCartridges = buffer.getInt();
+		if (numberOfCartridges == NULL_LENGTH) {
+			return null;
+		}
+		checkLength(numberOfCartridges, buffer);
+		List<ICartridge> cartridges = new ArrayList<ICartridge>(numberOfCartridges);
+		for (int i = 0; i < numberOfCartridges; i++) {
+			cartridges.add(new Cartridge(readString(buffer)));
+		}
+		return cartridges;
+	}
+
+	private List<IEmbeddableCartridge> readEmbeddableCartridges(MappedByteBuffer buffer)
+			throws UnsupportedEncodingException {
+		int numberOfCartridges = buffer.getInt();
+		if (numberOfCartridges == NULL_LENGTH) {
+			return null;
+		}
+		checkLength(numberOfCartridges, buffer);
+		List<IEmbeddableCartridge> cartridges = new ArrayList<IEmbeddableCartridge>(numberOfCartridges);
+		for (int i = 0; i < numberOfCartridges; i++) {
+			cartridges.add(new EmbeddableCartridge(readString(buffer)));
+		}
+		return cartridges;
+	}
+
+	private String readString(MappedByteBuffer buffer) throws UnsupportedEncodingException {
+		int length = buffer.getInt();
+		if (length == NULL_LENGTH) {
+			return null;
+		}
+		checkLength(length, buffer);
+		byte[] bytes = new byte[length];
+		buffer.get(bytes);
+		return new String(bytes, ENCODING);
+	}
+
+	private int readCount(MappedByteBuffer buffer) {
+		int count = buffer.getInt();
+		checkLength(count, buffer);
+		return count;
+	}
+
+	/**
+	 * Checks a length or count that was read against the bytes that remain,
+	 * each element takes at least a byte.
+	 * 
+	 * @throws IllegalStateException
+	 *             if the snapshot is corrupt
+	 */
+	private void checkLength(int length, MappedByteBuffer buffer) {
+		if (length < 0
+				|| length > buffer.remaining()) {
+			throw new IllegalStateException("Corrupt snapshot, length " + length + " exceeds the remaining "
+					+ buffer.remaining() + " bytes");
+		}
+	}
+
+	private void write(ModelSnapshot snapshot, DataOutputStream out) throws IOException {
+		out.writeInt(MAGIC);
+		out.writeShort(FORMAT_VERSION);
+		writeString(snapshot.getBrokerUrl(), out);
+		writeString(snapshot.getRhlogin(), out);
+		out.writeLong(snapshot.getTimestamp());
+		writeUserInfo(snapshot.getUserInfo(), out);
+		writeCartridges(snapshot.getCartridges(), out);
+		writeEmbeddableCartridges(snapshot.getEmbeddableCartridges(), out);
+	}
+
+	private void writeUserInfo(UserInfo userInfo, DataOutputStream out) throws IOException {
+		writeString(userInfo.getRhLogin(), out);
+		writeString(userInfo.getUuid(), out);
+		SSHPublicKey sshPublicKey = userInfo.getSshPublicKey();
+		writeString(sshPublicKey.getPublicKey(), out);
+		writeString(sshPublicKey.getKeyType().getTypeId(), out);
+		writeString(userInfo.getRhcDomain(), out);
+		writeString(userInfo.getNamespace(), out);
+		List<ApplicationInfo> applicationInfos = userInfo.getApplicationInfos();
+		out.writeInt(applicationInfos.size());
+		for (ApplicationInfo applicationInfo : applicationInfos) {
+			writeApplicationInfo(applicationInfo, out);
+		}
+	}
+
+	private void writeApplicationInfo(ApplicationInfo applicationInfo, DataOutputStream out) throws IOException {
+		writeString(applicationInfo.getName(), out);
+		writeString(applicationInfo.getUuid(), out);
+		writeString(applicationInfo.getCartridge() == null ? null : applicationInfo.getCartridge().getName(), out);
+		out.writeLong(applicationInfo.getCreationTimeMillis());
+		List<EmbeddableCartridgeInfo> embeddedCartridges = applicationInfo.getEmbeddedCartridges();
+		out.writeInt(embeddedCartridges.size());
+		for (EmbeddableCartridgeInfo embeddedCartridge : embeddedCartridges) {
+			writeString(embeddedCartridge.getName(), out);
+			writeString(embeddedCartridge.getUrl(), out);
+		}
+	}
+
+	private void writeCartridges(List<ICartridge> cartridges, DataOutputStream out) throws IOException {
+		if (cartridges == null) {
+			out.writeInt(NULL_LENGTH);
+			return;
+		}
+		out.writeInt(cartridges.size());
+		for (ICartridge cartridge : cartridges) {
+			writeString(cartridge.getName(), out);
+		}
+	}
+
+	private void writeEmbeddableCartridges(List<IEmbeddableCartridge> cartridges, DataOutputStream out)
+			throws IOException {
+		if (cartridges == null) {
+			out.writeInt(NULL_LENGTH);
+			return;
+		}
+		out.writeInt(cartridges.size());
+		for (IEmbeddableCartridge cartridge : cartridges) {
+			writeString(cartridge.getName(), out);
+		}
+	}
+
+	private void writeString(String value, DataOutputStream out) throws IOException {
+		if (value == null) {
+			out.writeInt(NULL_LENGTH);
+			return;
+		}
+		byte[] bytes = value.getBytes(ENCODING);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private boolean equals(String thisString, String otherString) {
+		if (thisString == null) {
+			return otherString == null;
+		}
+		return thisString.equals(otherString);
+	}
+}
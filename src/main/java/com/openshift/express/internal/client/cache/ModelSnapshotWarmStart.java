@@ -0,0 +1,160 @@
+/******************************************************************************* 
+ * Copyright (c) 2011 Red Hat, Inc. 
+ * Distributed under license by Red Hat, Inc. All rights reserved. 
+ * This program is made available under the terms of the 
+ * Eclipse Public License v1.0 which accompanies this distribution, 
+ * and is available at http://www.eclipse.org/legal/epl-v10.html 
+ * 
+ * Contributors: 
+ * Red Hat, Inc. - initial API and implementation 
+ ******************************************************************************/
+package com.openshift.express.internal.client.cache;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.openshift.express.internal.client.concurrent.DaemonThreadFactory;
+
+/**
+ * Serves the model of a user from its persisted snapshot until the model was
+ * fetched from the broker for the first time in this jvm. The first request
+ * for a login loads the snapshot and triggers a refresh in the background. The
+ * refreshed model is persisted and the snapshot is not served any further. If
+ * the refresh fails the snapshot is still served and the next request triggers
+ * a new refresh.
+ * 
+ * @author agent
+ * 
+ * @see ModelSnapshotStore
+ */
+public class ModelSnapshotWarmStart {
+
+	private static final Object NO_SNAPSHOT = new Object();
+
+	private final ModelSnapshotStore store;
+	private final String brokerUrl;
+	/** login -> WarmStartEntry or NO_SNAPSHOT */
+	private final ConcurrentHashMap<String, Object> snapshots = new ConcurrentHashMap<String, Object>();
+	/** login -> number of invalidations, a refresh that was overtaken by one is not saved */
+	private final ConcurrentHashMap<String, AtomicLong> generations = new ConcurrentHashMap<String, AtomicLong>();
+	private ExecutorService refresher;
+
+	public ModelSnapshotWarmStart(ModelSnapshotStore store, String brokerUrl) {
+		this.store = store;
+		this.brokerUrl = brokerUrl;
+	}
+
+	/**
+	 * Returns the snapshot for the given login if it is still to be served.
+	 * Loads the snapshot and starts the background refresh on the first
+	 * request for a login.
+	 * 
+	 * @param rhlogin
+	 *            the login to get the snapshot for
+	 * @param refresh
+	 *            fetches the current model from the broker
+	 * @return the snapshot or <code>null</code> if there's none (anymore)
+	 */
+	public ModelSnapshot get(String rhlogin, Callable<ModelSnapshot> refresh) {
+		if (rhlogin == null) {
+			return null;
+		}
+		Object value = snapshots.get(rhlogin);
+		if (value == null) {
+			value = load(rhlogin, refresh);
+		}
+		if (value == NO_SNAPSHOT) {
+			return null;
+		}
+		WarmStartEntry entry = (WarmStartEntry) value;
+		if (entry.refreshing.compareAndSet(false, true)) {
+			scheduleRefresh(rhlogin, entry, refresh);
+		}
+		return entry.snapshot;
+	}
+
+	/**
+	 * Stops serving the snapshot for the given login and removes it from disk.
+	 * Should be called whenever the model of the given login is altered.
+	 * 
+	 * @param rhlogin
+	 */
+	public void invalidate(String rhlogin) {
+		if (rhlogin == null) {
+			return;
+		}
+		synchronized (generations) {
+			getGeneration(rhlogin).incrementAndGet();
+			snapshots.put(rhlogin, NO_SNAPSHOT);
+			store.delete(rhlogin);
+		}
+	}
+
+	private AtomicLong getGeneration(String rhlogin) {
+		AtomicLong generation = generations.get(rhlogin);
+		if (generation == null) {
+			AtomicLong existing = generations.putIfAbsent(rhlogin, generation = new AtomicLong());
+			if (existing != null) {
+				generation = existing;
+			}
+		}
+		return generation;
+	}
+
+	private Object load(String rhlogin, Callable<ModelSnapshot> refresh) {
+		ModelSnapshot snapshot = store.load(brokerUrl, rhlogin);
+		if (snapshot != null) {
+			Object existing = snapshots.putIfAbsent(rhlogin, new WarmStartEntry(snapshot));
+			return existing == null ? snapshots.get(rhlogin) : existing;
+		}
+		if (snapshots.putIfAbsent(rhlogin, NO_SNAPSHOT) == null) {
+			// no (valid) snapshot yet, create one for the next jvm
+			scheduleRefresh(rhlogin, null, refresh);
+		}
+		return NO_SNAPSHOT;
+	}
+
+	private synchronized void scheduleRefresh(final String rhlogin, final WarmStartEntry entry,
+			final Callable<ModelSnapshot> refresh) {
+		if (refresher == null) {
+			this.refresher = Executors.newSingleThreadExecutor(new DaemonThreadFactory("openshift-snapshot"));
+		}
+		refresher.submit(new Runnable() {
+
+			public void run() {
+				try {
+					AtomicLong generation = getGeneration(rhlogin);
+					long fetchedGeneration = generation.get();
+					ModelSnapshot snapshot = refresh.call();
+					synchronized (generations) {
+						// a snapshot that was fetched before an invalidation may be outdated
+						if (snapshot != null
+								&& fetchedGeneration == generation.get()) {
+							store.save(snapshot);
+						}
+					}
+					snapshots.replace(rhlogin, entry == null ? NO_SNAPSHOT : entry, NO_SNAPSHOT);
+				} catch (Exception e) {
+					// the snapshot is an optimization only, retry on the next request
+					if (entry != null) {
+						entry.refreshing.set(false);
+					}
+				}
+			}
+		});
+	}
+
+	private static class WarmStartEntry {
+
+		private final ModelSnapshot snapshot;
+		private final AtomicBoolean refreshing = new AtomicBoolean();
+
+		private WarmStartEntry(ModelSnapshot snapshot) {
+			this.snapshot = snapshot;
+		}
+	}
+}
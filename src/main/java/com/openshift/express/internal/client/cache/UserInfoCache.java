@@ -0,0 +1,127 @@
+/******************************************************************************* 
+ * Copyright (c) 2011 Red Hat, Inc. 
+ * Distributed under license by Red Hat, Inc. All rights reserved. 
+ * This program is made available under the terms of the 
+ * Eclipse Public License v1.0 which accompanies this distribution, 
+ * and is available at http://www.eclipse.org/legal/epl-v10.html 
+ * 
+ * Contributors: 
+ * Red Hat, Inc. - initial API and implementation 
+ ******************************************************************************/
+package com.openshift.express.internal.client.cache;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.openshift.express.internal.client.UserInfo;
+
+/**
+ * Remembers the last raw user_info response (as a digest) and the user info
+ * that was parsed from it, per rhlogin. Allows to skip sanitizing and
+ * unmarshalling if the broker reports the very same response again.
+ * 
+ * @author agent
+ */
+public class UserInfoCache {
+
+	private static final long FNV64_OFFSET_BASIS = 0xcbf29ce484222325L;
+	private static final long FNV64_PRIME = 0x100000001b3L;
+
+	private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	/**
+	 * Returns the user info that was parsed from the given response if it's
+	 * identical to the last response that was cached for the given rhlogin.
+	 * Returns <code>null</code> otherwise.
+	 * 
+	 * @param rhlogin
+	 *            the login the response was requested for
+	 * @param response
+	 *            the raw (unsanitized) response
+	 * @return the cached user info or <code>null</code>
+	 */
+	public UserInfo get(String rhlogin, String response) {
+		if (rhlogin == null
+				|| response == null) {
+			return null;
+		}
+		Entry entry = entries.get(rhlogin);
+		if (entry != null
+				&& entry.matches(response.length(), digest(response))) {
+			hits.incrementAndGet();
+			return entry.userInfo;
+		}
+		misses.incrementAndGet();
+		return null;
+	}
+
+	public void put(String rhlogin, String response, UserInfo userInfo) {
+		if (rhlogin == null
+				|| response == null
+				|| userInfo == null) {
+			return;
+		}
+		entries.put(rhlogin, new Entry(response.length(), digest(response), userInfo));
+	}
+
+	/**
+	 * Drops the cached response for the given rhlogin. Should be called
+	 * whenever an operation alters the state that user_info reports.
+	 * 
+	 * @param rhlogin
+	 */
+	public void invalidate(String rhlogin) {
+		if (rhlogin == null) {
+			return;
+		}
+		entries.remove(rhlogin);
+	}
+
+	public void clear() {
+		entries.clear();
+	}
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * 64bit FNV-1a hash of the given string. Fast and good enough to detect
+	 * changes in a response, not meant to be cryptographically secure.
+	 */
+	protected static long digest(String value) {
+		long hash = FNV64_OFFSET_BASIS;
+		for (int i = 0; i < value.length(); i++) {
+			char character = value.charAt(i);
+			hash ^= (character & 0xff);
+			hash *= FNV64_PRIME;
+			hash ^= (character >>> 8);
+			hash *= FNV64_PRIME;
+		}
+		return hash;
+	}
+
+	private static class Entry {
+
+		private final int length;
+		private final long digest;
+		private final UserInfo userInfo;
+
+		private Entry(int length, long digest, UserInfo userInfo) {
+			this.length = length;
+			this.digest = digest;
+			this.userInfo = userInfo;
+		}
+
+		private boolean matches(int length, long digest) {
+			return this.length == length
+					&& this.digest == digest;
+		}
+	}
+}
@@ -0,0 +1,186 @@
+/******************************************************************************* 
+ * Copyright (c) 2011 Red Hat, Inc. 
+ * Distributed under license by Red Hat, Inc. All rights reserved. 
+ * This program is made available under the terms of the 
+ * Eclipse Public License v1.0 which accompanies this distribution, 
+ * and is available at http://www.eclipse.org/legal/epl-v10.html 
+ * 
+ * Contributors: 
+ * Red Hat, Inc. - initial API and implementation 
+ ******************************************************************************/
+package com.openshift.express.internal.client.concurrent;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.openshift.express.internal.client.httpclient.HttpClientException;
+import com.openshift.express.internal.client.httpclient.InternalServerErrorException;
+
+/**
+ * Adapts a concurrency limit to the load the broker can take (additive
+ * increase, multiplicative decrease). Each completed request is reported as
+ * a sample. The limit grows by one per limit's worth of requests that
+ * succeed in time and shrinks by a fixed ratio when a request fails with an
+ * overload error or takes much longer than the baseline latency. The
+ * baseline is the lowest latency seen, slowly drifting towards the latest
+ * latencies so that it follows a broker that got slower for good. Requests
+ * of different operations take very different times (reading the user info
+ * vs. creating an application), each operation therefore has its own
+ * baseline.
+ * 
+ * @author agent
+ * 
+ * @see FairScheduler#setAdaptiveLimit(AimdLimit)
+ */
+public class AimdLimit {
+
+	public static final int DEFAULT_MIN_LIMIT = 1;
+	public static final int DEFAULT_MAX_LIMIT = 64;
+
+	private static final double BACKOFF_RATIO = 0.75;
+	private static final double LATENCY_TOLERANCE = 2.0;
+	/** latency increases below this many milliseconds are considered jitter */
+	private static final long MIN_LATENCY_INCREASE = 50;
+	private static final double BASELINE_DRIFT = 0.01;
+	private static final double ERROR_RATE_WEIGHT = 0.1;
+
+	private final int minLimit;
+	private final int maxLimit;
+	private double limit;
+	private Map<String, Double> baselineLatencies = new HashMap<String, Double>();
+	private long lastDecrease = Long.MIN_VALUE;
+	private double errorRate;
+
+	public AimdLimit(int initialLimit) {
+		this(initialLimit, DEFAULT_MIN_LIMIT, DEFAULT_MAX_LIMIT);
+	}
+
+	public AimdLimit(int initialLimit, int minLimit, int maxLimit) {
+		if (minLimit < 1
+				|| maxLimit < minLimit) {
+			throw new IllegalArgumentException("limits must satisfy 1 <= min <= max");
+		}
+		this.minLimit = minLimit;
+		this.maxLimit = maxLimit;
+		this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+	}
+
+	/**
+	 * Reports a completed request and returns the new limit.
+	 * 
+	 * @param start
+	 *            the time the request was sent at, in milliseconds
+	 * @param end
+	 *            the time the request completed at, in milliseconds
+	 * @param failed
+	 *            whether the request failed because the broker was overloaded
+	 * @param inFlight
+	 *            the number of requests that were in flight, including the
+	 *            reported one
+	 * @return the new limit
+	 */
+	public synchronized int onSample(long start, long end, boolean failed, int inFlight) {
+		return onSample(null, start, end, failed, inFlight);
+	}
+
+	/**
+	 * Reports a completed request of the given operation and returns the new
+	 * limit. The latency of the request is only compared to the latencies of
+	 * requests of the same operation.
+	 * 
+	 * @param operation
+	 *            the operation that was requested (ex. the resource path), may
+	 *            be <code>null</code>
+	 * @see #onSample(long, long, boolean, int)
+	 */
+	public synchronized int onSample(String operation, long start, long end, boolean failed, int inFlight) {
+		long latency = end - start;
+		errorRate += ((failed ? 1 : 0) - errorRate) * ERROR_RATE_WEIGHT;
+		if (failed
+				|| isSlow(operation, latency)) {
+			// requests sent before the last decrease saw the old limit
+			if (start >= lastDecrease) {
+				this.limit = Math.max(minLimit, limit * BACKOFF_RATIO);
+				this.lastDecrease = end;
+			}
+		} else if (inFlight * 2 >= (int) limit) {
+			// only grow if the limit was actually used
+			this.limit = Math.min(maxLimit, limit + 1 / limit);
+		}
+		if (!failed) {
+			updateBaseline(operation, latency);
+		}
+		return getLimit();
+	}
+
+	private boolean isSlow(String operation, long latency) {
+		Double baselineLatency = baselineLatencies.get(operation);
+		return baselineLatency != null
+				&& latency > baselineLatency * LATENCY_TOLERANCE
+				&& latency - baselineLatency > MIN_LATENCY_INCREASE;
+	}
+
+	private void updateBaseline(String operation, long latency) {
+		Double baselineLatency = baselineLatencies.get(operation);
+		if (baselineLatency == null
+				|| latency < baselineLatency) {
+			baselineLatencies.put(operation, (double) latency);
+		} else {
+			baselineLatencies.put(operation, baselineLatency + (latency - baselineLatency) * BASELINE_DRIFT);
+		}
+	}
+
+	public synchronized int getLimit() {
+		return (int) limit;
+	}
+
+	/**
+	 * Returns the share of recent requests that failed because the broker was
+	 * overloaded, weighted towards the latest requests.
+	 * 
+	 * @return the error rate between 0 and 1
+	 */
+	public synchronized double getErrorRate() {
+		return errorRate;
+	}
+
+	/**
+	 * Returns the baseline latency of the requests that were reported without
+	 * an operation, in milliseconds, or -1 if none of them succeeded yet.
+	 */
+	public synchronized long getBaselineLatency() {
+		return getBaselineLatency(null);
+	}
+
+	/**
+	 * Returns the baseline latency of the given operation in milliseconds or
+	 * -1 if no request of it succeeded yet.
+	 */
+	public synchronized long getBaselineLatency(String operation) {
+		Double baselineLatency = baselineLatencies.get(operation);
+		if (baselineLatency == null) {
+			return -1;
+		}
+		return Math.round(baselineLatency);
+	}
+
+	/**
+	 * Returns <code>true</code> if the given failure hints at an overloaded
+	 * broker: server errors and failed connections. Client errors like
+	 * invalid credentials or unknown applications are not overload errors.
+	 */
+	public static boolean isOverload(Throwable failure) {
+		for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+			if (cause instanceof InternalServerErrorException
+					|| cause.getClass() == HttpClientException.class) {
+				return true;
+			} else if (cause instanceof HttpClientException) {
+				return false;
+			} else if (cause instanceof IOException) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
@@ -0,0 +1,229 @@
+/******************************************************************************* 
+ * Copyright (c) 2011 Red Hat, Inc. 
+ * Distributed under license by Red Hat, Inc. All rights reserved. 
+ * This program is made available under the terms of the 
+ * Eclipse Public License v1.0 which accompanies this distribution, 
+ * and is available at http://www.eclipse.org/legal/epl-v10.html 
+ * 
+ * Contributors: 
+ * Red Hat, Inc. - initial API and implementation 
+ ******************************************************************************/
+package com.openshift.express.internal.client.concurrent;
+
+import java.nio.ByteBuffer;
+
+import com.openshift.express.client.OverflowPolicy;
+
+/**
+ * A fixed size buffer of lines, in bytes, that a single producer writes to and
+ * a single consumer reads from. Lines that do not fit are handled as the
+ * {@link OverflowPolicy} says, lines are dropped as a whole. A line that the
+ * consumer started to read is never dropped: when dropping the oldest lines
+ * its rest is kept and the lines after it are dropped. The bytes may be held
+ * off-heap.
+ * 
+ * @author agent
+ */
+public class ByteRingBuffer {
+
+	private static final byte LINE_DELIMITER = '\n';
+
+	private final ByteBuffer buffer;
+	private final int capacity;
+	private final OverflowPolicy policy;
+	/** index of the oldest byte */
+	private int head;
+	private int size;
+	/** whether the consumer read up to the start of a line */
+	private boolean atLineStart = true;
+	private boolean closed;
+	private long writtenBytes;
+	private long droppedBytes;
+	private long droppedLines;
+
+	public ByteRingBuffer(int capacity, OverflowPolicy policy) {
+		this(capacity, policy, false);
+	}
+
+	/**
+	 * @param direct
+	 *            whether the bytes are held off-heap
+	 */
+	public ByteRingBuffer(int capacity, OverflowPolicy policy, boolean direct) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("capacity must be positive: " + capacity);
+		}
+		this.buffer = direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+		this.capacity = capacity;
+		this.policy = policy;
+	}
+
+	/**
+	 * Writes the given line, which is expected to end with a line delimiter.
+	 * Lines larger than the buffer are always dropped.
+	 * 
+	 * @return <code>true</code> if the line was buffered, <code>false</code>
+	 *         if it was dropped or the buffer was closed
+	 * @throws InterruptedException
+	 *             if the producer was interrupted while waiting for room
+	 */
+	public synchronized boolean write(byte[] line, int off, int len) throws InterruptedException {
+		if (closed) {
+			return false;
+		}
+		if (len > capacity) {
+			drop(len, 1);
+			return false;
+		}
+		while (capacity - size < len) {
+			switch (policy) {
+			case BLOCK:
+				wait();
+				if (closed) {
+					return false;
+				}
+				break;
+			case DROP_NEWEST:
+				drop(len, 1);
+				return false;
+			case DROP_OLDEST:
+				if (!dropOldest(len - (capacity - size))) {
+					// only the rest of the line being read is left
+					drop(len, 1);
+					return false;
+				}
+				break;
+			}
+		}
+		int tail = (head + size) % capacity;
+		int firstChunk = Math.min(len, capacity - tail);
+		put(tail, line, off, firstChunk);
+		put(0, line, off + firstChunk, len - firstChunk);
+		size += len;
+		writtenBytes += len;
+		notifyAll();
+		return true;
+	}
+
+	/**
+	 * Blocks until bytes are available and reads them.
+	 * 
+	 * @return the number of bytes read or <code>-1</code> if the buffer was
+	 *         closed and all bytes were read
+	 */
+	public synchronized int read(byte[] bytes, int off, int len) throws InterruptedException {
+		while (size == 0
+				&& !closed) {
+			wait();
+		}
+		if (size == 0) {
+			return -1;
+		}
+		int read = Math.min(len, size);
+		int firstChunk = Math.min(read, capacity - head);
+		get(head, bytes, off, firstChunk);
+		get(0, bytes, off + firstChunk, read - firstChunk);
+		head = (head + read) % capacity;
+		size -= read;
+		atLineStart = bytes[off + read - 1] == LINE_DELIMITER;
+		notifyAll();
+		return read;
+	}
+
+	/**
+	 * Drops the oldest whole lines until at least the given number of bytes
+	 * were dropped. The rest of a line that the consumer started to read is
+	 * kept, the lines after it are dropped.
+	 * 
+	 * @return <code>false</code> if not enough lines could be dropped
+	 */
+	private boolean dropOldest(int bytes) {
+		int partial = atLineStart ? 0 : getLineLength(head, size);
+		int start = (head + partial) % capacity;
+		int dropped = 0;
+		int lines = 0;
+		while (dropped < bytes
+				&& partial + dropped < size) {
+			dropped += getLineLength((start + dropped) % capacity, size - partial - dropped);
+			lines++;
+		}
+		if (partial > 0
+				&& dropped > 0) {
+			// move the rest of the line being read up to the kept lines
+			byte[] rest = new byte[partial];
+			int firstChunk = Math.min(partial, capacity - head);
+			get(head, rest, 0, firstChunk);
+			get(0, rest, firstChunk, partial - firstChunk);
+			int target = (head + dropped) % capacity;
+			firstChunk = Math.min(partial, capacity - target);
+			put(target, rest, 0, firstChunk);
+			put(0, rest, firstChunk, partial - firstChunk);
+		}
+		head = (head + dropped) % capacity;
+		size -= dropped;
+		drop(dropped, lines);
+		return dropped >= bytes;
+	}
+
+	/**
+	 * Returns the length of the line that starts at the given index,
+	 * including its delimiter, but at most the given number of bytes.
+	 */
+	private int getLineLength(int index, int max) {
+		int length = 0;
+		while (length < max) {
+			byte b = buffer.get((index + length) % capacity);
+			length++;
+			if (b == LINE_DELIMITER) {
+				break;
+			}
+		}
+		return length;
+	}
+
+	private void drop(int bytes, int lines) {
+		droppedBytes += bytes;
+		droppedLines += lines;
+	}
+
+	private void put(int index, byte[] bytes, int off, int len) {
+		ByteBuffer target = buffer.duplicate();
+		target.position(index);
+		target.put(bytes, off, len);
+	}
+
+	private void get(int index, byte[] bytes, int off, int len) {
+		ByteBuffer source = buffer.duplicate();
+		source.position(index);
+		source.get(bytes, off, len);
+	}
+
+	/**
+	 * Closes the buffer. Waiting producers return, the consumer reads the
+	 * remaining bytes.
+	 */
+	public synchronized void close() {
+		this.closed = true;
+		notifyAll();
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	public synchronized int getSize() {
+		return size;
+	}
+
+	public synchronized long getWrittenBytes() {
+		return writtenBytes;
+	}
+
+	public synchronized long getDroppedBytes() {
+		return droppedBytes;
+	}
+
+	public synchronized long getDroppedLines() {
+		return droppedLines;
+	}
+}
@@ -0,0 +1,215 @@
+/******************************************************************************* 
+ * Copyright (c) 2011 Red Hat, Inc. 
+ * Distributed under license by Red Hat, Inc. All rights reserved. 
+ * This program is made available under the terms of the 
+ * Eclipse Public License v1.0 which accompanies this distribution, 
+ * and is available at http://www.eclipse.org/legal/epl-v10.html 
+ * 
+ * Contributors: 
+ * Red Hat, Inc. - initial API and implementation 
+ ******************************************************************************/
+package com.openshift.express.internal.client.concurrent;
+
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Queue;
+
+/**
+ * Limits the number of concurrent requests and hands out free slots round
+ * robin across tenants. A tenant that queues many requests therefore only
+ * gets its turn like any other tenant and cannot starve the others. The
+ * limit is either fixed or adapts to the reported requests if an
+ * {@link AimdLimit} is set.
+ * 
+ * <pre>
+ * scheduler.acquire(rhlogin);
+ * long start = System.currentTimeMillis();
+ * boolean failed = false;
+ * try {
+ * 	// send request
+ * } catch (Exception e) {
+ * 	failed = AimdLimit.isOverload(e);
+ * } finally {
+ * 	scheduler.release(start, failed);
+ * }
+ * </pre>
+ * 
+ * @author agent
+ */
+public class FairScheduler {
+
+	private int limit;
+	private int inFlight;
+	private int waiting;
+	private AimdLimit adaptiveLimit;
+	/** tenants that have waiting requests, in the order they get their turn */
+	private final Queue<Object> turns = new LinkedList<Object>();
+	private final Map<Object, Queue<Slot>> slotsByTenant = new HashMap<Object, Queue<Slot>>();
+
+	public FairScheduler(int limit) {
+		setLimit(limit);
+	}
+
+	/**
+	 * Blocks until the given tenant may send a request. Each call has to be
+	 * followed by a call to {@link #release()}.
+	 * 
+	 * @param tenant
+	 *            the tenant that sends the request
+	 * @throws InterruptedException
+	 *             if the thread was interrupted while waiting. No slot is
+	 *             held in this case.
+	 */
+	public synchronized void acquire(Object tenant) throws InterruptedException {
+		if (waiting == 0
+				&& inFlight < limit) {
+			inFlight++;
+			return;
+		}
+		Slot slot = enqueue(tenant);
+		try {
+			while (!slot.granted) {
+				wait();
+			}
+		} catch (InterruptedException e) {
+			if (slot.granted) {
+				release();
+			} else {
+				dequeue(tenant, slot);
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Frees the slot of a request that completed and hands it to the tenant
+	 * whose turn it is.
+	 */
+	public synchronized void release() {
+		inFlight--;
+		grant();
+	}
+
+	/**
+	 * Frees the slot of a request that completed and reports it to the
+	 * adaptive limit, if any.
+	 * 
+	 * @param start
+	 *            the time the request was sent at, in milliseconds
+	 * @param failed
+	 *            whether the request failed because the broker was overloaded
+	 * 
+	 * @see AimdLimit#isOverload(Throwable)
+	 */
+	public synchronized void release(long start, boolean failed) {
+		release(null, start, failed);
+	}
+
+	/**
+	 * Frees the slot of a request of the given operation that completed and
+	 * reports it to the adaptive limit, if any. The adaptive limit only
+	 * compares the latency to requests of the same operation.
+	 * 
+	 * @param operation
+	 *            the operation that was requested, may be <code>null</code>
+	 * 
+	 * @see #release(long, boolean)
+	 */
+	public synchronized void release(String operation, long start, boolean failed) {
+		if (adaptiveLimit != null) {
+			this.limit = adaptiveLimit.onSample(operation, start, System.currentTimeMillis(), failed, inFlight);
+		}
+		release();
+	}
+
+	private void grant() {
+		boolean granted = false;
+		while (inFlight < limit
+				&& !turns.isEmpty()) {
+			Object tenant = turns.poll();
+			Queue<Slot> slots = slotsByTenant.get(tenant);
+			slots.poll().granted = true;
+			waiting--;
+			inFlight++;
+			granted = true;
+			if (slots.isEmpty()) {
+				slotsByTenant.remove(tenant);
+			} else {
+				turns.add(tenant);
+			}
+		}
+		if (granted) {
+			notifyAll();
+		}
+	}
+
+	private Slot enqueue(Object tenant) {
+		Queue<Slot> slots = slotsByTenant.get(tenant);
+		if (slots == null) {
+			slots = new LinkedList<Slot>();
+			slotsByTenant.put(tenant, slots);
+			turns.add(tenant);
+		}
+		Slot slot = new Slot();
+		slots.add(slot);
+		waiting++;
+		return slot;
+	}
+
+	private void dequeue(Object tenant, Slot slot) {
+		Queue<Slot> slots = slotsByTenant.get(tenant);
+		slots.remove(slot);
+		waiting--;
+		if (slots.isEmpty()) {
+			slotsByTenant.remove(tenant);
+			turns.remove(tenant);
+		}
+	}
+
+	/**
+	 * Sets the max number of concurrent requests. Waiting requests are
+	 * granted at once if the limit was raised, requests in flight are not
+	 * affected if it was lowered. An adaptive limit overrides the given limit
+	 * with the next reported request.
+	 */
+	public synchronized void setLimit(int limit) {
+		if (limit < 1) {
+			throw new IllegalArgumentException("limit must be at least 1");
+		}
+		this.limit = limit;
+		grant();
+	}
+
+	/**
+	 * Lets the limit adapt to the latency and the failures of the requests
+	 * that are reported on {@link #release(long, boolean)}. Passing
+	 * <code>null</code> keeps the current limit fixed.
+	 */
+	public synchronized void setAdaptiveLimit(AimdLimit adaptiveLimit) {
+		this.adaptiveLimit = adaptiveLimit;
+		if (adaptiveLimit != null) {
+			setLimit(adaptiveLimit.getLimit());
+		}
+	}
+
+	public synchronized AimdLimit getAdaptiveLimit() {
+		return adaptiveLimit;
+	}
+
+	public synchronized int getLimit() {
+		return limit;
+	}
+
+	public synchronized int getInFlight() {
+		return inFlight;
+	}
+
+	public synchronized int getWaiting() {
+		return waiting;
+	}
+
+	private static class Slot {
+		private boolean granted;
+	}
+}
@@ -0,0 +1,42 @@
+/******************************************************************************* 
+ * Copyright (c) 2011 Red Hat, Inc. 
+ * Distributed under license by Red Hat, Inc. All rights reserved. 
+ * This program is made available under the terms of the 
+ * Eclipse Public License v1.0 which accompanies this distribution, 
+ * and is available at http://www.eclipse.org/legal/epl-v10.html 
+ * 
+ * Contributors: 
+ * Red Hat, Inc. - initial API and implementation 
+ ******************************************************************************/
+package com.openshift.express.internal.client.concurrent;
+
+/**
+ * Limits the rate of the requests that are sent to the broker.
+ * 
+ * @author agent
+ */
+public interface IRateLimiter {
+
+	/**
+	 * Blocks until the given user may send a request of the given operation.
+	 * 
+	 * @param rhlogin
+	 *            the user that sends the request
+	 * @param operation
+	 *            the operation that's requested
+	 * @throws InterruptedException
+	 *             if the thread was interrupted while waiting
+	 */
+	public void acquire(String rhlogin, String operation) throws InterruptedException;
+
+	/**
+	 * Returns <code>true</code> if the given user may send a request of the
+	 * given operation right now, <code>false</code> otherwise. Never blocks.
+	 * 
+	 * @param rhlogin
+	 *            the user that sends the request
+	 * @param operation
+	 *            the operation that's requested
+	 */
+	public boolean tryAcquire(String rhlogin, String operation);
+}
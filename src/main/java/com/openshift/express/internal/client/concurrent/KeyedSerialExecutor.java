@@ -0,0 +1,165 @@
+/******************************************************************************* 
+ * Copyright (c) 2011 Red Hat, Inc. 
+ * Distributed under license by Red Hat, Inc. All rights reserved. 
+ * This program is made available under the terms of the 
+ * Eclipse Public License v1.0 which accompanies this distribution, 
+ * and is available at http://www.eclipse.org/legal/epl-v10.html 
+ * 
+ * Contributors: 
+ * Red Hat, Inc. - initial API and implementation 
+ ******************************************************************************/
+package com.openshift.express.internal.client.concurrent;
+
+import java.util.LinkedList;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Runs tasks one after the other per key and in parallel across keys. Each
+ * key gets a mailbox that is drained by a shared executor, one task per turn,
+ * so that a key with many queued tasks does not hold a worker while other
+ * keys are waiting. Mailboxes are discarded once they are empty. If the
+ * executor stops accepting turns, a mailbox that is being drained is emptied
+ * on the current thread so that no queued task is left behind.
+ * 
+ * @author agent
+ */
+public class KeyedSerialExecutor<K> {
+
+	private final Executor executor;
+	private final ConcurrentMap<K, Mailbox> mailboxes = new ConcurrentHashMap<K, Mailbox>();
+
+	public KeyedSerialExecutor(Executor executor) {
+		this.executor = executor;
+	}
+
+	/**
+	 * Queues the given task in the mailbox of the given key. It runs once all
+	 * tasks that were queued for the same key before are done.
+	 * 
+	 * @throws RejectedExecutionException
+	 *             if the executor does not accept the mailbox of an idle key
+	 */
+	public <V> Future<V> submit(K key, Callable<V> task) {
+		FutureTask<V> future = new FutureTask<V>(task);
+		while (!getMailbox(key).offer(future)) {
+			// mailbox was discarded concurrently, retry with a new one
+		}
+		return future;
+	}
+
+	private Mailbox getMailbox(K key) {
+		Mailbox mailbox = mailboxes.get(key);
+		if (mailbox == null) {
+			Mailbox newMailbox = new Mailbox(key);
+			mailbox = mailboxes.putIfAbsent(key, newMailbox);
+			if (mailbox == null) {
+				mailbox = newMailbox;
+			}
+		}
+		return mailbox;
+	}
+
+	/**
+	 * Returns the number of tasks that are queued for the given key,
+	 * excluding the one that is running.
+	 */
+	public int getPending(K key) {
+		Mailbox mailbox = mailboxes.get(key);
+		if (mailbox == null) {
+			return 0;
+		}
+		return mailbox.size();
+	}
+
+	/**
+	 * Returns the number of keys that have queued or running tasks.
+	 */
+	public int getActiveKeys() {
+		return mailboxes.size();
+	}
+
+	private class Mailbox implements Runnable {
+
+		private final K key;
+		private final Queue<Runnable> tasks = new LinkedList<Runnable>();
+		private boolean scheduled;
+		private boolean discarded;
+
+		private Mailbox(K key) {
+			this.key = key;
+		}
+
+		private synchronized boolean offer(Runnable task) {
+			if (discarded) {
+				return false;
+			}
+			tasks.add(task);
+			if (!scheduled) {
+				this.scheduled = true;
+				try {
+					executor.execute(this);
+				} catch (RejectedExecutionException e) {
+					tasks.remove(task);
+					this.scheduled = false;
+					discard();
+					throw e;
+				}
+			}
+			return true;
+		}
+
+		private synchronized int size() {
+			return tasks.size();
+		}
+
+		public void run() {
+			boolean next = true;
+			while (next) {
+				Runnable task;
+				synchronized (this) {
+					task = tasks.poll();
+				}
+				try {
+					if (task != null) {
+						task.run();
+					}
+				} finally {
+					next = !scheduleNext();
+				}
+			}
+		}
+
+		/**
+		 * Hands the next turn to the executor or discards the mailbox if it is
+		 * empty.
+		 * 
+		 * @return <code>false</code> if the executor rejected the turn and
+		 *         the current thread has to run it
+		 */
+		private synchronized boolean scheduleNext() {
+			if (tasks.isEmpty()) {
+				this.scheduled = false;
+				discard();
+				return true;
+			}
+			try {
+				executor.execute(this);
+				return true;
+			} catch (RejectedExecutionException e) {
+				return false;
+			}
+		}
+
+		private void discard() {
+			this.discarded = true;
+			mailboxes.remove(key, this);
+		}
+	}
+}
@@ -0,0 +1,135 @@
+/******************************************************************************* 
+ * Copyright (c) 2011 Red Hat, Inc. 
+ * Distributed under license by Red Hat, Inc. All rights reserved. 
+ * This program is made available under the terms of the 
+ * Eclipse Public License v1.0 which accompanies this distribution, 
+ * and is available at http://www.eclipse.org/legal/epl-v10.html 
+ * 
+ * Contributors: 
+ * Red Hat, Inc. - initial API and implementation 
+ ******************************************************************************/
+package com.openshift.express.internal.client.concurrent;
+
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import com.openshift.express.client.OpenShiftException;
+
+/**
+ * Coalesces concurrent identical requests: while a request for a given key is
+ * in flight, further callers with the same key do not execute their own
+ * request but wait for the one in flight and share its result (or exception).
+ * Should only be used for read-only requests.
+ * 
+ * @author agent
+ */
+public class RequestCoalescer {
+
+	private final ConcurrentHashMap<Key, FutureTask<?>> inFlight = new ConcurrentHashMap<Key, FutureTask<?>>();
+
+	/**
+	 * Executes the given request unless an identical request (same key) is
+	 * already in flight. Waits for and returns the result of the request in
+	 * flight otherwise.
+	 * 
+	 * @param key
+	 *            the key that identifies identical requests
+	 * @param request
+	 *            the request to execute
+	 * @return the result of the request
+	 * @throws OpenShiftException
+	 *             if the request failed
+	 * 
+	 * @see #createKey(String, Object...)
+	 */
+	@SuppressWarnings("unchecked")
+	public <V> V execute(Key key, Callable<V> request) throws OpenShiftException {
+		FutureTask<V> task = new FutureTask<V>(request);
+		FutureTask<V> runningTask = (FutureTask<V>) inFlight.putIfAbsent(key, task);
+		if (runningTask != null) {
+			return await(runningTask, key);
+		}
+		try {
+			task.run();
+			return await(task, key);
+		} finally {
+			inFlight.remove(key, task);
+		}
+	}
+
+	/**
+	 * Returns the number of requests that are currently in flight.
+	 */
+	public int getInFlight() {
+		return inFlight.size();
+	}
+
+	private <V> V await(Future<V> future, Key key) throws OpenShiftException {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new OpenShiftException(e, "Interrupted while waiting for request {0}", key);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof OpenShiftException) {
+				throw (OpenShiftException) cause;
+			} else if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			} else if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new OpenShiftException(cause, "Could not execute request {0}", key);
+		}
+	}
+
+	public static Key createKey(String operation, Object... arguments) {
+		return new Key(operation, arguments);
+	}
+
+	public static class Key {
+
+		private final String operation;
+		private final Object[] arguments;
+
+		private Key(String operation, Object[] arguments) {
+			this.operation = operation;
+			this.arguments = arguments;
+		}
+
+		public int hashCode() {
+			final int prime = 31;
+			int result = 1;
+			result = prime * result + ((operation == null) ? 0 : operation.hashCode());
+			result = prime * result + Arrays.hashCode(arguments);
+			return result;
+		}
+
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (obj == null)
+				return false;
+			if (getClass() != obj.getClass())
+				return false;
+			Key other = (Key) obj;
+			if (operation == null) {
+				if (other.operation != null)
+					return false;
+			} else if (!operation.equals(other.operation))
+				return false;
+			return Arrays.equals(arguments, other.arguments);
+		}
+
+		/**
+		 * Only reports the operation, arguments may hold credentials.
+		 */
+		public String toString() {
+			return operation;
+		}
+	}
+}
@@ -0,0 +1,236 @@
+/******************************************************************************* 
+ * Copyright (c) 2011 Red Hat, Inc. 
+ * Distributed under license by Red Hat, Inc. All rights reserved. 
+ * This program is made available under the terms of the 
+ * Eclipse Public License v1.0 which accompanies this distribution, 
+ * and is available at http://www.eclipse.org/legal/epl-v10.html 
+ * 
+ * Contributors: 
+ * Red Hat, Inc. - initial API and implementation 
+ ******************************************************************************/
+package com.openshift.express.internal.client.concurrent;
+
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.openshift.express.client.IWaitCallback;
+
+/**
+ * Waits for conditions to be met by probing them with an exponentially
+ * growing, jittered delay. A single scheduler thread serves all pending
+ * waits, the probes themselves run on a small pool of threads that die when
+ * idle. Hundreds of concurrent waits therefore cost a handful of threads and
+ * do not flood the probed hosts. A wait is over once its timeout is reached,
+ * even if a probe is still queued or blocked: queued probes of expired waits
+ * are dropped, the result of a late probe is ignored.
+ * 
+ * @author agent
+ */
+public class ScheduledWaiter {
+
+	public static final long DEFAULT_INITIAL_DELAY = 100;
+	public static final long DEFAULT_MAX_DELAY = 3 * 1000;
+	private static final int DEFAULT_PROBE_THREADS = 4;
+	private static final long PROBE_THREAD_KEEPALIVE = 30 * 1000;
+
+	private static ScheduledWaiter defaultWaiter;
+
+	private final long initialDelay;
+	private final long maxDelay;
+	private final Random random = new Random();
+	private final ScheduledExecutorService scheduler;
+	private final ThreadPoolExecutor probeExecutor;
+
+	/**
+	 * A condition that is probed until it is met.
+	 */
+	public static interface ICondition {
+
+		/**
+		 * Returns <code>true</code> if the condition is met. Exceptions are
+		 * treated as if the condition was not met yet.
+		 */
+		public boolean isMet() throws Exception;
+	}
+
+	public static synchronized ScheduledWaiter getDefault() {
+		if (defaultWaiter == null) {
+			defaultWaiter = new ScheduledWaiter(DEFAULT_INITIAL_DELAY, DEFAULT_MAX_DELAY, DEFAULT_PROBE_THREADS);
+		}
+		return defaultWaiter;
+	}
+
+	public ScheduledWaiter(long initialDelay, long maxDelay, int probeThreads) {
+		this.initialDelay = initialDelay;
+		this.maxDelay = maxDelay;
+		ScheduledThreadPoolExecutor scheduler =
+				new ScheduledThreadPoolExecutor(1, new DaemonThreadFactory("waiter-scheduler"));
+		this.scheduler = scheduler;
+		this.probeExecutor = new ThreadPoolExecutor(probeThreads, probeThreads,
+				PROBE_THREAD_KEEPALIVE, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(),
+				new DaemonThreadFactory("waiter-probe"));
+		probeExecutor.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * Probes the given condition until it is met or the timeout is reached.
+	 * The first probe is performed right away.
+	 * 
+	 * @param condition
+	 *            the condition to probe
+	 * @param timeout
+	 *            the max time to wait for in milliseconds
+	 * @param callback
+	 *            notified once the wait is over, may be <code>null</code>
+	 * @return a future that is <code>true</code> if the condition was met,
+	 *         <code>false</code> if the timeout was reached
+	 */
+	public Future<Boolean> waitFor(ICondition condition, long timeout, IWaitCallback callback) {
+		final Wait wait = new Wait(condition, System.currentTimeMillis() + timeout, callback);
+		wait.expiry = scheduler.schedule(new Runnable() {
+
+			public void run() {
+				wait.complete(false);
+			}
+		}, timeout, TimeUnit.MILLISECONDS);
+		probeExecutor.execute(wait);
+		return wait;
+	}
+
+	/**
+	 * Returns the delay to wait for after the given delay: twice as long, at
+	 * most {@link #maxDelay}, with half of it randomized so that waits that
+	 * started together don't probe together.
+	 */
+	private long getNextDelay(long delay) {
+		long next = Math.min(delay * 2, maxDelay);
+		long half = next / 2;
+		return half + (long) (random.nextDouble() * (next - half));
+	}
+
+	private class Wait implements Runnable, Future<Boolean> {
+
+		private final ICondition condition;
+		private final long deadline;
+		private final IWaitCallback callback;
+		private final CountDownLatch latch = new CountDownLatch(1);
+		private final AtomicBoolean done = new AtomicBoolean();
+		private volatile boolean met;
+		private volatile boolean cancelled;
+		private long delay = initialDelay;
+		private volatile Future<?> expiry;
+
+		private Wait(ICondition condition, long deadline, IWaitCallback callback) {
+			this.condition = condition;
+			this.deadline = deadline;
+			this.callback = callback;
+		}
+
+		public void run() {
+			if (done.get()) {
+				return;
+			}
+			if (deadline - System.currentTimeMillis() <= 0) {
+				// queued for too long, don't probe any more
+				complete(false);
+				return;
+			}
+			if (probe()) {
+				complete(true);
+				return;
+			}
+			long remaining = deadline - System.currentTimeMillis();
+			if (remaining <= 0) {
+				complete(false);
+				return;
+			}
+			this.delay = getNextDelay(delay);
+			scheduler.schedule(new Runnable() {
+
+				public void run() {
+					probeExecutor.execute(Wait.this);
+				}
+			}, Math.min(delay, remaining), TimeUnit.MILLISECONDS);
+		}
+
+		private boolean probe() {
+			try {
+				return condition.isMet();
+			} catch (Exception e) {
+				// not met yet
+				return false;
+			}
+		}
+
+		private void complete(boolean met) {
+			if (!done.compareAndSet(false, true)) {
+				return;
+			}
+			cancelExpiry();
+			this.met = met;
+			try {
+				if (callback != null) {
+					callback.done(met);
+				}
+			} finally {
+				// callback first so that it is done once the future returns
+				latch.countDown();
+			}
+		}
+
+		public boolean cancel(boolean mayInterruptIfRunning) {
+			if (!done.compareAndSet(false, true)) {
+				return false;
+			}
+			cancelExpiry();
+			this.cancelled = true;
+			latch.countDown();
+			return true;
+		}
+
+		private void cancelExpiry() {
+			Future<?> expiry = this.expiry;
+			if (expiry != null) {
+				expiry.cancel(false);
+			}
+		}
+
+		public boolean isCancelled() {
+			return cancelled;
+		}
+
+		public boolean isDone() {
+			return done.get();
+		}
+
+		public Boolean get() throws InterruptedException, ExecutionException {
+			latch.await();
+			return getResult();
+		}
+
+		public Boolean get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException,
+				TimeoutException {
+			if (!latch.await(timeout, unit)) {
+				throw new TimeoutException();
+			}
+			return getResult();
+		}
+
+		private Boolean getResult() {
+			if (cancelled) {
+				throw new CancellationException();
+			}
+			return met;
+		}
+	}
+}
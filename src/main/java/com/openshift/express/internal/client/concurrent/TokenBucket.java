@@ -0,0 +1,93 @@
+/******************************************************************************* 
+ * Copyright (c) 2011 Red Hat, Inc. 
+ * Distributed under license by Red Hat, Inc. All rights reserved. 
+ * This program is made available under the terms of the 
+ * Eclipse Public License v1.0 which accompanies this distribution, 
+ * and is available at http://www.eclipse.org/legal/epl-v10.html 
+ * 
+ * Contributors: 
+ * Red Hat, Inc. - initial API and implementation 
+ ******************************************************************************/
+package com.openshift.express.internal.client.concurrent;
+
+/**
+ * A bucket that holds up to a given number of tokens and is refilled at a
+ * constant rate. Each request takes a token, bursts are thus allowed up to
+ * the capacity while the long term rate is bound by the refill rate. Tokens
+ * may be reserved in advance: the bucket then goes into debt and tells the
+ * caller how long to wait, later callers queue up behind.
+ * 
+ * @author agent
+ */
+public class TokenBucket {
+
+	private static final double NANOS_PER_SECOND = 1000d * 1000d * 1000d;
+
+	private final int capacity;
+	private final double tokensPerNano;
+	private double tokens;
+	private long lastRefill;
+
+	/**
+	 * @param capacity
+	 *            the max number of tokens, the max burst
+	 * @param tokensPerSecond
+	 *            the rate the bucket is refilled at
+	 */
+	public TokenBucket(int capacity, double tokensPerSecond) {
+		if (capacity < 1
+				|| tokensPerSecond <= 0) {
+			throw new IllegalArgumentException("capacity and rate must be positive");
+		}
+		this.capacity = capacity;
+		this.tokensPerNano = tokensPerSecond / NANOS_PER_SECOND;
+		this.tokens = capacity;
+		this.lastRefill = System.nanoTime();
+	}
+
+	/**
+	 * Takes a token if there's one.
+	 * 
+	 * @return <code>true</code> if a token was taken
+	 */
+	public synchronized boolean tryAcquire() {
+		refill();
+		if (tokens < 1) {
+			return false;
+		}
+		tokens--;
+		return true;
+	}
+
+	/**
+	 * Takes a token, going into debt if there's none.
+	 * 
+	 * @return the nanoseconds to wait until the token is available
+	 */
+	public synchronized long reserve() {
+		refill();
+		tokens--;
+		if (tokens >= 0) {
+			return 0;
+		}
+		return (long) Math.ceil(-tokens / tokensPerNano);
+	}
+
+	/**
+	 * Returns a token that was taken but not used.
+	 */
+	public synchronized void refund() {
+		tokens = Math.min(capacity, tokens + 1);
+	}
+
+	public synchronized double getTokens() {
+		refill();
+		return tokens;
+	}
+
+	private void refill() {
+		long now = System.nanoTime();
+		tokens = Math.min(capacity, tokens + (now - lastRefill) * tokensPerNano);
+		lastRefill = now;
+	}
+}
@@ -0,0 +1,204 @@
+/******************************************************************************* 
+ * Copyright (c) 2011 Red Hat, Inc. 
+ * Distributed under license by Red Hat, Inc. All rights reserved. 
+ * This program is made available under the terms of the 
+ * Eclipse Public License v1.0 which accompanies this distribution, 
+ * and is available at http://www.eclipse.org/legal/epl-v10.html 
+ * 
+ * Contributors: 
+ * Red Hat, Inc. - initial API and implementation 
+ ******************************************************************************/
+package com.openshift.express.internal.client.concurrent;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits the requests with a token bucket per user and, for the operations
+ * that have a limit of their own, a token bucket per user and operation. A
+ * request has to get a token from both buckets. The limits should be set
+ * slightly below the quotas of the broker so that bursts (ex. log polling
+ * and bulk operations at the same time) are smoothed out by the client
+ * instead of being rejected by the broker.
+ * 
+ * <pre>
+ * TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(10, 2);
+ * limiter.setOperationLimit(&quot;cartridge&quot;, 4, 0.5);
+ * service.setRateLimiter(limiter, true);
+ * </pre>
+ * 
+ * @author agent
+ */
+public class TokenBucketRateLimiter implements IRateLimiter {
+
+	private final int capacity;
+	private final double tokensPerSecond;
+	private final ConcurrentMap<String, Limit> operationLimits = new ConcurrentHashMap<String, Limit>();
+	private final ConcurrentMap<String, TokenBucket> buckets = new ConcurrentHashMap<String, TokenBucket>();
+
+	private final AtomicLong acquired = new AtomicLong();
+	private final AtomicLong waits = new AtomicLong();
+	private final AtomicLong totalWaitNanos = new AtomicLong();
+	private final AtomicLong maxWaitNanos = new AtomicLong();
+	private final AtomicLong rejected = new AtomicLong();
+
+	/**
+	 * @param capacity
+	 *            the max burst of requests per user
+	 * @param tokensPerSecond
+	 *            the sustained requests per second per user
+	 * @throws IllegalArgumentException
+	 *             if the capacity or the rate is not positive
+	 */
+	public TokenBucketRateLimiter(int capacity, double tokensPerSecond) {
+		// validate now rather than on the first request
+		new TokenBucket(capacity, tokensPerSecond);
+		this.capacity = capacity;
+		this.tokensPerSecond = tokensPerSecond;
+	}
+
+	/**
+	 * Limits the requests of the given operation per user on top of the
+	 * limit for all requests of the user. Should be set before any request
+	 * is made.
+	 * 
+	 * @param operation
+	 *            the operation, the resource path of the request (ex.
+	 *            cartridge, embed_cartridge, userinfo)
+	 */
+	public void setOperationLimit(String operation, int capacity, double tokensPerSecond) {
+		// validate now rather than on the first request
+		new TokenBucket(capacity, tokensPerSecond);
+		operationLimits.put(operation, new Limit(capacity, tokensPerSecond));
+	}
+
+	/**
+	 * Reserves a token in both buckets and waits until they are available.
+	 * The tokens are returned if the thread is interrupted while waiting.
+	 */
+	public void acquire(String rhlogin, String operation) throws InterruptedException {
+		TokenBucket userBucket = getUserBucket(rhlogin);
+		long wait = userBucket.reserve();
+		TokenBucket operationBucket = getOperationBucket(rhlogin, operation);
+		if (operationBucket != null) {
+			wait = Math.max(wait, operationBucket.reserve());
+		}
+		if (wait > 0) {
+			waits.incrementAndGet();
+			totalWaitNanos.addAndGet(wait);
+			updateMaxWait(wait);
+			try {
+				TimeUnit.NANOSECONDS.sleep(wait);
+			} catch (InterruptedException e) {
+				userBucket.refund();
+				if (operationBucket != null) {
+					operationBucket.refund();
+				}
+				throw e;
+			}
+		}
+		acquired.incrementAndGet();
+	}
+
+	public boolean tryAcquire(String rhlogin, String operation) {
+		TokenBucket userBucket = getUserBucket(rhlogin);
+		if (!userBucket.tryAcquire()) {
+			rejected.incrementAndGet();
+			return false;
+		}
+		TokenBucket operationBucket = getOperationBucket(rhlogin, operation);
+		if (operationBucket != null
+				&& !operationBucket.tryAcquire()) {
+			userBucket.refund();
+			rejected.incrementAndGet();
+			return false;
+		}
+		acquired.incrementAndGet();
+		return true;
+	}
+
+	private TokenBucket getUserBucket(String rhlogin) {
+		return getBucket(rhlogin, capacity, tokensPerSecond);
+	}
+
+	private TokenBucket getOperationBucket(String rhlogin, String operation) {
+		Limit limit = operationLimits.get(operation);
+		if (limit == null) {
+			return null;
+		}
+		return getBucket(rhlogin + '\n' + operation, limit.capacity, limit.tokensPerSecond);
+	}
+
+	private TokenBucket getBucket(String key, int capacity, double tokensPerSecond) {
+		TokenBucket bucket = buckets.get(key);
+		if (bucket == null) {
+			TokenBucket newBucket = new TokenBucket(capacity, tokensPerSecond);
+			bucket = buckets.putIfAbsent(key, newBucket);
+			if (bucket == null) {
+				bucket = newBucket;
+			}
+		}
+		return bucket;
+	}
+
+	private void updateMaxWait(long wait) {
+		long max;
+		while (wait > (max = maxWaitNanos.get())
+				&& !maxWaitNanos.compareAndSet(max, wait)) {
+		}
+	}
+
+	/**
+	 * Returns the number of requests that were let through.
+	 */
+	public long getAcquiredCount() {
+		return acquired.get();
+	}
+
+	/**
+	 * Returns the number of requests that had to wait for a token.
+	 */
+	public long getWaitCount() {
+		return waits.get();
+	}
+
+	public long getTotalWaitMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(totalWaitNanos.get());
+	}
+
+	public long getMaxWaitMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get());
+	}
+
+	/**
+	 * Returns the average wait of the requests that had to wait, in
+	 * milliseconds.
+	 */
+	public long getAverageWaitMillis() {
+		long waits = this.waits.get();
+		if (waits == 0) {
+			return 0;
+		}
+		return TimeUnit.NANOSECONDS.toMillis(totalWaitNanos.get() / waits);
+	}
+
+	/**
+	 * Returns the number of requests that were rejected in try mode.
+	 */
+	public long getRejectedCount() {
+		return rejected.get();
+	}
+
+	private static class Limit {
+
+		private final int capacity;
+		private final double tokensPerSecond;
+
+		private Limit(int capacity, double tokensPerSecond) {
+			this.capacity = capacity;
+			this.tokensPerSecond = tokensPerSecond;
+		}
+	}
+}
@@ -45,15 +45,26 @@ public class UrlConnectionHttpClient implements IHttpClient {
 	private URL url;
 	private String userAgent;
 	private boolean doSSLChecks;
+	private int readTimeout;
 	
 	public UrlConnectionHttpClient(String userAgent, URL url) {
 		this(userAgent, url, false);
 	}
 
 	public UrlConnectionHttpClient(String userAgent, URL url, boolean verifyHostNames) {
+		this(userAgent, url, verifyHostNames, 0);
+	}
+
+	/**
+	 * @param readTimeout
+	 *            the max time in milliseconds to wait for data to be read,
+	 *            <code>0</code> to wait forever
+	 */
+	public UrlConnectionHttpClient(String userAgent, URL url, boolean verifyHostNames, int readTimeout) {
 		this.userAgent = userAgent;
 		this.url = url;
 		this.doSSLChecks = verifyHostNames;
+		this.readTimeout = readTimeout;
 	}
 	
 	
@@ -126,6 +137,7 @@ public class UrlConnectionHttpClient implements IHttpClient {
 		connection.setDoInput(true);
 		connection.setAllowUserInteraction(false);
 		connection.setConnectTimeout(TIMEOUT);
+		connection.setReadTimeout(readTimeout);
 		connection.setRequestProperty(PROPERTY_CONTENT_TYPE, "application/x-www-form-urlencoded");
 		connection.setInstanceFollowRedirects(true);
 		connection.setRequestProperty(USER_AGENT, userAgent);
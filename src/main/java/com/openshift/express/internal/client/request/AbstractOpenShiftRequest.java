@@ -48,6 +48,6 @@ public abstract class AbstractOpenShiftRequest implements IOpenShiftRequest {
 		return new UrlBuilder(baseUrl).path(getResourcePath()).toString();
 	}
 
-	protected abstract String getResourcePath();
+	public abstract String getResourcePath();
 	
 }
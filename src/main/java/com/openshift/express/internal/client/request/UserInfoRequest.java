@@ -23,7 +23,7 @@ public class UserInfoRequest extends AbstractOpenShiftRequest {
 		super(username, debug);
 	}
 
-	protected String getResourcePath() {
+	public String getResourcePath() {
 		return "userinfo";
 	}
 }
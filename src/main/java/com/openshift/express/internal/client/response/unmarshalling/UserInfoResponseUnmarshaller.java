@@ -11,8 +11,10 @@
 package com.openshift.express.internal.client.response.unmarshalling;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -70,12 +72,13 @@ public class UserInfoResponseUnmarshaller extends AbstractOpenShiftJsonResponseU
 	}
 
 	private List<ApplicationInfo> createApplicationInfos(ModelNode appInfoNode) throws DatatypeConfigurationException {
-		List<ApplicationInfo> applicationInfos = new ArrayList<ApplicationInfo>();
 		if (!isSet(appInfoNode)) {
-			return applicationInfos;
+			return new ArrayList<ApplicationInfo>();
 		}
 
-		for (String name : appInfoNode.keys()) {
+		Set<String> names = appInfoNode.keys();
+		List<ApplicationInfo> applicationInfos = new ArrayList<ApplicationInfo>(names.size());
+		for (String name : names) {
 			applicationInfos.add(createApplicationInfo(name, appInfoNode.get(name)));
 		}
 		return applicationInfos;
@@ -90,12 +93,13 @@ public class UserInfoResponseUnmarshaller extends AbstractOpenShiftJsonResponseU
 	}
 
 	protected List<EmbeddableCartridgeInfo> createEmbeddedCartridges(ModelNode appNode) {
-		List<EmbeddableCartridgeInfo> cartridges = new ArrayList<EmbeddableCartridgeInfo>();
 		ModelNode embeddedCartridgesNode = appNode.get(IOpenShiftJsonConstants.PROPERTY_EMBEDDED);
 		if (!isSet(embeddedCartridgesNode)) {
-			return cartridges;
+			return Collections.emptyList();
 		}
-		for (String name : embeddedCartridgesNode.keys()) {
+		Set<String> names = embeddedCartridgesNode.keys();
+		List<EmbeddableCartridgeInfo> cartridges = new ArrayList<EmbeddableCartridgeInfo>(names.size());
+		for (String name : names) {
 			cartridges.add(createEmbeddedCartridgeInfo(name, embeddedCartridgesNode.get(name)));
 		}
 		return cartridges;
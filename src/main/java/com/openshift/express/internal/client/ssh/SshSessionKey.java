@@ -0,0 +1,110 @@
+/******************************************************************************* 
+ * Copyright (c) 2011 Red Hat, Inc. 
+ * Distributed under license by Red Hat, Inc. All rights reserved. 
+ * This program is made available under the terms of the 
+ * Eclipse Public License v1.0 which accompanies this distribution, 
+ * and is available at http://www.eclipse.org/legal/epl-v10.html 
+ * 
+ * Contributors: 
+ * Red Hat, Inc. - initial API and implementation 
+ ******************************************************************************/
+package com.openshift.express.internal.client.ssh;
+
+/**
+ * Identifies the ssh sessions that may be shared: same user, host, port,
+ * identity and known hosts.
+ * 
+ * @author agent
+ */
+public class SshSessionKey {
+
+	public static final int DEFAULT_PORT = 22;
+
+	private final String user;
+	private final String host;
+	private final int port;
+	private final String identity;
+	private final String knownHosts;
+
+	public SshSessionKey(String user, String host, String identity, String knownHosts) {
+		this(user, host, DEFAULT_PORT, identity, knownHosts);
+	}
+
+	/**
+	 * @param user
+	 *            the user to log in as
+	 * @param host
+	 *            the host to connect to
+	 * @param port
+	 *            the port to connect to
+	 * @param identity
+	 *            the path to the private key or <code>null</code>
+	 * @param knownHosts
+	 *            the path to the known hosts or <code>null</code>
+	 */
+	public SshSessionKey(String user, String host, int port, String identity, String knownHosts) {
+		this.user = user;
+		this.host = host;
+		this.port = port;
+		this.identity = identity;
+		this.knownHosts = knownHosts;
+	}
+
+	public String getUser() {
+		return user;
+	}
+
+	public String getHost() {
+		return host;
+	}
+
+	public int getPort() {
+		return port;
+	}
+
+	public String getIdentity() {
+		return identity;
+	}
+
+	public String getKnownHosts() {
+		return knownHosts;
+	}
+
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + ((host == null) ? 0 : host.hashCode());
+		result = prime * result + ((identity == null) ? 0 : identity.hashCode());
+		result = prime * result + ((knownHosts == null) ? 0 : knownHosts.hashCode());
+		result = prime * result + port;
+		result = prime * result + ((user == null) ? 0 : user.hashCode());
+		return result;
+	}
+
+	public boolean equals(Object object) {
+		if (this == object) {
+			return true;
+		}
+		if (object == null
+				|| getClass() != object.getClass()) {
+			return false;
+		}
+		SshSessionKey other = (SshSessionKey) object;
+		return port == other.port
+				&& equals(host, other.host)
+				&& equals(user, other.user)
+				&& equals(identity, other.identity)
+				&& equals(knownHosts, other.knownHosts);
+	}
+
+	private static boolean equals(String thisValue, String thatValue) {
+		if (thisValue == null) {
+			return thatValue == null;
+		}
+		return thisValue.equals(thatValue);
+	}
+
+	public String toString() {
+		return user + "@" + host + ":" + port;
+	}
+}
@@ -0,0 +1,327 @@
+/******************************************************************************* 
+ * Copyright (c) 2011 Red Hat, Inc. 
+ * Distributed under license by Red Hat, Inc. All rights reserved. 
+ * This program is made available under the terms of the 
+ * Eclipse Public License v1.0 which accompanies this distribution, 
+ * and is available at http://www.eclipse.org/legal/epl-v10.html 
+ * 
+ * Contributors: 
+ * Red Hat, Inc. - initial API and implementation 
+ ******************************************************************************/
+package com.openshift.express.internal.client.ssh;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.jcraft.jsch.ChannelExec;
+import com.jcraft.jsch.JSch;
+import com.jcraft.jsch.JSchException;
+import com.jcraft.jsch.Session;
+import com.openshift.express.internal.client.concurrent.DaemonThreadFactory;
+
+/**
+ * Keeps ssh sessions open so that consecutive commands to the same host only
+ * pay the ssh handshake once. Sessions are shared per {@link SshSessionKey},
+ * concurrent commands run on channels of the same session. Open sessions are
+ * kept alive and disconnected once they were idle for the given time.
+ * Identities and known hosts are only read once per pool.
+ * 
+ * <pre>
+ * Session session = pool.acquire(key);
+ * try {
+ * 	// open channels
+ * } finally {
+ * 	pool.release(key);
+ * }
+ * </pre>
+ * 
+ * @author agent
+ */
+public class SshSessionPool {
+
+	public static final long DEFAULT_IDLE_TIMEOUT = 5 * 60 * 1000;
+	public static final int DEFAULT_KEEPALIVE_INTERVAL = 30 * 1000;
+	private static final int CONNECT_TIMEOUT = 30 * 1000;
+	private static final String CHARSET = "UTF-8";
+
+	private static SshSessionPool defaultPool;
+
+	private final long idleTimeout;
+	private final int keepAliveInterval;
+	private final Map<SshSessionKey, Entry> entries = new HashMap<SshSessionKey, Entry>();
+	private final Map<String, JSch> jschByIdentity = new HashMap<String, JSch>();
+	private ScheduledExecutorService evictor;
+
+	/**
+	 * Returns the pool that's shared by all services.
+	 */
+	public static synchronized SshSessionPool getDefault() {
+		if (defaultPool == null) {
+			defaultPool = new SshSessionPool();
+		}
+		return defaultPool;
+	}
+
+	public SshSessionPool() {
+		this(DEFAULT_IDLE_TIMEOUT, DEFAULT_KEEPALIVE_INTERVAL);
+	}
+
+	/**
+	 * @param idleTimeout
+	 *            the milliseconds after which unused sessions are
+	 *            disconnected
+	 * @param keepAliveInterval
+	 *            the milliseconds after which a keep-alive is sent if the
+	 *            server sent nothing
+	 */
+	public SshSessionPool(long idleTimeout, int keepAliveInterval) {
+		this.idleTimeout = idleTimeout;
+		this.keepAliveInterval = keepAliveInterval;
+	}
+
+	/**
+	 * Returns a connected session for the given key, connecting a new one if
+	 * there's none or if it was disconnected. Each call has to be followed by
+	 * a call to {@link #release(SshSessionKey)}.
+	 * 
+	 * @param key
+	 *            the session to get
+	 * @return the connected session
+	 * @throws JSchException
+	 *             if the session could not be connected
+	 */
+	public Session acquire(SshSessionKey key) throws JSchException {
+		return acquire(key, CONNECT_TIMEOUT);
+	}
+
+	/**
+	 * Returns a connected session for the given key, see
+	 * {@link #acquire(SshSessionKey)}.
+	 * 
+	 * @param connectTimeout
+	 *            the max time to connect a new session in milliseconds, is
+	 *            capped to the default connect timeout
+	 */
+	public Session acquire(SshSessionKey key, int connectTimeout) throws JSchException {
+		Entry entry;
+		synchronized (this) {
+			entry = entries.get(key);
+			if (entry == null) {
+				entry = new Entry();
+				entries.put(key, entry);
+				startEvictor();
+			}
+			entry.leases++;
+		}
+		try {
+			return entry.getSession(key, Math.min(connectTimeout, CONNECT_TIMEOUT));
+		} catch (JSchException e) {
+			release(key);
+			throw e;
+		}
+	}
+
+	/**
+	 * Returns a session that was acquired. The session stays connected until
+	 * it was unused for the idle timeout.
+	 */
+	public synchronized void release(SshSessionKey key) {
+		Entry entry = entries.get(key);
+		if (entry == null) {
+			return;
+		}
+		entry.leases--;
+		entry.lastUsed = System.currentTimeMillis();
+	}
+
+	/**
+	 * Disconnects the session for the given key, ex. because it failed. The
+	 * next call to {@link #acquire(SshSessionKey)} connects a new session.
+	 */
+	public void invalidate(SshSessionKey key) {
+		Entry entry;
+		synchronized (this) {
+			entry = entries.get(key);
+		}
+		if (entry != null) {
+			entry.disconnect();
+		}
+	}
+
+	/**
+	 * Runs the given command and returns its standard output.
+	 * 
+	 * @param key
+	 *            the session to run the command on
+	 * @param command
+	 *            the command to run
+	 * @return the standard output of the command, decoded as UTF-8
+	 */
+	public String execute(SshSessionKey key, String command) throws JSchException, IOException {
+		Session session = acquire(key);
+		try {
+			ChannelExec channel = (ChannelExec) session.openChannel("exec");
+			try {
+				channel.setCommand(command);
+				channel.setErrStream(System.err, true);
+				InputStream in = channel.getInputStream();
+				channel.connect(CONNECT_TIMEOUT);
+				return read(new InputStreamReader(in, CHARSET));
+			} finally {
+				channel.disconnect();
+			}
+		} catch (JSchException e) {
+			if (!session.isConnected()) {
+				invalidate(key);
+			}
+			throw e;
+		} finally {
+			release(key);
+		}
+	}
+
+	private String read(Reader reader) throws IOException {
+		StringBuilder builder = new StringBuilder();
+		char[] buffer = new char[4 * 1024];
+		int read;
+		while ((read = reader.read(buffer)) != -1) {
+			builder.append(buffer, 0, read);
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * Connects a new session for the given key within the given time in
+	 * milliseconds.
+	 */
+	protected Session connect(SshSessionKey key, int timeout) throws JSchException {
+		Session session = getJSch(key).getSession(key.getUser(), key.getHost(), key.getPort());
+		session.setConfig("StrictHostKeyChecking", "no");
+		session.setServerAliveInterval(keepAliveInterval);
+		session.connect(timeout);
+		return session;
+	}
+
+	private JSch getJSch(SshSessionKey key) throws JSchException {
+		// not locking the pool, sessions connect while holding their entry
+		synchronized (jschByIdentity) {
+			String jschKey = key.getIdentity() + '\n' + key.getKnownHosts();
+			JSch jsch = jschByIdentity.get(jschKey);
+			if (jsch == null) {
+				jsch = new JSch();
+				if (key.getKnownHosts() != null) {
+					jsch.setKnownHosts(key.getKnownHosts());
+				}
+				if (key.getIdentity() != null) {
+					jsch.addIdentity(key.getIdentity());
+				}
+				jschByIdentity.put(jschKey, jsch);
+			}
+			return jsch;
+		}
+	}
+
+	/**
+	 * Disconnects the sessions that are unused since the idle timeout or that
+	 * were disconnected by the server.
+	 * 
+	 * @return the number of sessions that were removed
+	 */
+	public int evictIdle() {
+		long now = System.currentTimeMillis();
+		Map<SshSessionKey, Entry> evicted = new HashMap<SshSessionKey, Entry>();
+		synchronized (this) {
+			for (Iterator<Map.Entry<SshSessionKey, Entry>> it = entries.entrySet().iterator(); it.hasNext();) {
+				Map.Entry<SshSessionKey, Entry> mapEntry = it.next();
+				Entry entry = mapEntry.getValue();
+				if (entry.leases == 0
+						&& (now - entry.lastUsed >= idleTimeout
+						|| !entry.isConnected())) {
+					it.remove();
+					evicted.put(mapEntry.getKey(), entry);
+				}
+			}
+		}
+		for (Entry entry : evicted.values()) {
+			entry.disconnect();
+		}
+		return evicted.size();
+	}
+
+	public synchronized int getSessionCount() {
+		return entries.size();
+	}
+
+	private void startEvictor() {
+		if (evictor != null) {
+			return;
+		}
+		this.evictor = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("ssh-evictor"));
+		long period = Math.max(1, idleTimeout / 2);
+		evictor.scheduleWithFixedDelay(new Runnable() {
+
+			public void run() {
+				evictIdle();
+			}
+		}, period, period, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Disconnects all sessions and stops evicting.
+	 */
+	public void shutdown() {
+		Map<SshSessionKey, Entry> all;
+		synchronized (this) {
+			all = new HashMap<SshSessionKey, Entry>(entries);
+			entries.clear();
+			if (evictor != null) {
+				evictor.shutdownNow();
+				this.evictor = null;
+			}
+		}
+		for (Entry entry : all.values()) {
+			entry.disconnect();
+		}
+	}
+
+	private class Entry {
+
+		private Session session;
+		/** guarded by the pool */
+		private int leases;
+		/** guarded by the pool */
+		private long lastUsed = System.currentTimeMillis();
+
+		/**
+		 * Connects the session if needed. Concurrent callers wait for one
+		 * connect instead of each connecting a session.
+		 */
+		private synchronized Session getSession(SshSessionKey key, int connectTimeout) throws JSchException {
+			if (session == null
+					|| !session.isConnected()) {
+				this.session = connect(key, connectTimeout);
+			}
+			return session;
+		}
+
+		private synchronized boolean isConnected() {
+			return session != null
+					&& session.isConnected();
+		}
+
+		private synchronized void disconnect() {
+			if (session != null) {
+				session.disconnect();
+				this.session = null;
+			}
+		}
+	}
+}
@@ -0,0 +1,46 @@
+/******************************************************************************* 
+ * Copyright (c) 2011 Red Hat, Inc. 
+ * Distributed under license by Red Hat, Inc. All rights reserved. 
+ * This program is made available under the terms of the 
+ * Eclipse Public License v1.0 which accompanies this distribution, 
+ * and is available at http://www.eclipse.org/legal/epl-v10.html 
+ * 
+ * Contributors: 
+ * Red Hat, Inc. - initial API and implementation 
+ ******************************************************************************/
+package com.openshift.express.internal.client.utils;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.openshift.express.client.ICartridge;
+
+/**
+ * Returns canonical instances for equal values so that values which are
+ * repeated across many model objects (cartridge names, the rhc domain) are
+ * held in memory once only. Canonical instances are never released, only
+ * values of low cardinality should therefore be interned.
+ * 
+ * @author agent
+ */
+public class Interner<T> {
+
+	public static final Interner<String> STRINGS = new Interner<String>();
+	public static final Interner<ICartridge> CARTRIDGES = new Interner<ICartridge>();
+
+	private final ConcurrentHashMap<T, T> values = new ConcurrentHashMap<T, T>();
+
+	public T intern(T value) {
+		if (value == null) {
+			return null;
+		}
+		T canonical = values.putIfAbsent(value, value);
+		if (canonical == null) {
+			return value;
+		}
+		return canonical;
+	}
+
+	public int size() {
+		return values.size();
+	}
+}
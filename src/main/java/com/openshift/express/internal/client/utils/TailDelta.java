@@ -0,0 +1,150 @@
+/******************************************************************************* 
+ * Copyright (c) 2011 Red Hat, Inc. 
+ * Distributed under license by Red Hat, Inc. All rights reserved. 
+ * This program is made available under the terms of the 
+ * Eclipse Public License v1.0 which accompanies this distribution, 
+ * and is available at http://www.eclipse.org/legal/epl-v10.html 
+ * 
+ * Contributors: 
+ * Red Hat, Inc. - initial API and implementation 
+ ******************************************************************************/
+package com.openshift.express.internal.client.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Turns consecutive tails of a log into the lines that were appended in
+ * between. The longest run of lines at the end of the previous tail that the
+ * new tail starts with is the overlap, only the lines that follow it are new.
+ * The overlap is found with a Knuth-Morris-Pratt search over the lines, lines
+ * are compared by hash first. If there's no overlap (the log was rotated or
+ * grew by more than a tail in between) the whole new tail is new.
+ * <p>
+ * The overlap is ambiguous if the log repeats lines (ex. periodic
+ * heartbeats): the tails then share runs of several lengths and nothing in
+ * the tails tells how many lines were appended. The longest run is taken,
+ * assuming that few lines are appended between polls. Appended lines that
+ * repeat the lines they follow are thus missed, ex. after
+ * <code>a,b,a,b</code> the tail <code>a,b,a,b</code> yields no new lines
+ * even if <code>a,b</code> was appended twice.
+ * <p>
+ * A last line that is not terminated yet is held back until a later tail
+ * has it complete.
+ * 
+ * @author agent
+ */
+public class TailDelta {
+
+	private static final Line[] NO_LINES = new Line[0];
+
+	private Line[] lines = NO_LINES;
+
+	/**
+	 * Returns the lines of the given tail that were not in the previous tail.
+	 * 
+	 * @param tail
+	 *            the tail of the log
+	 * @return the new lines, an empty string if there are none
+	 */
+	public synchronized String next(String tail) {
+		Line[] newLines = split(tail);
+		int overlap = getOverlap(lines, newLines);
+		this.lines = newLines;
+		if (overlap == newLines.length) {
+			return "";
+		}
+		StringBuilder builder = new StringBuilder();
+		for (int i = overlap; i < newLines.length; i++) {
+			builder.append(newLines[i].value);
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * Forgets the previous tail, the next tail is new as a whole.
+	 */
+	public synchronized void reset() {
+		this.lines = NO_LINES;
+	}
+
+	/**
+	 * Returns the length of the longest suffix of the previous lines that is
+	 * a prefix of the next lines.
+	 */
+	private static int getOverlap(Line[] previous, Line[] next) {
+		if (previous.length == 0
+				|| next.length == 0) {
+			return 0;
+		}
+		int[] failure = createFailureFunction(next);
+		int matched = 0;
+		// the overlap can't be longer than the next lines
+		for (int i = Math.max(0, previous.length - next.length); i < previous.length; i++) {
+			while (matched > 0
+					&& !previous[i].equals(next[matched])) {
+				matched = failure[matched - 1];
+			}
+			if (previous[i].equals(next[matched])) {
+				matched++;
+			}
+			if (matched == next.length
+					&& i < previous.length - 1) {
+				matched = failure[matched - 1];
+			}
+		}
+		return matched;
+	}
+
+	private static int[] createFailureFunction(Line[] lines) {
+		int[] failure = new int[lines.length];
+		int matched = 0;
+		for (int i = 1; i < lines.length; i++) {
+			while (matched > 0
+					&& !lines[i].equals(lines[matched])) {
+				matched = failure[matched - 1];
+			}
+			if (lines[i].equals(lines[matched])) {
+				matched++;
+			}
+			failure[i] = matched;
+		}
+		return failure;
+	}
+
+	private static Line[] split(String tail) {
+		if (tail == null
+				|| tail.length() == 0) {
+			return NO_LINES;
+		}
+		List<Line> lines = new ArrayList<Line>();
+		int start = 0;
+		int end;
+		while ((end = tail.indexOf('\n', start)) >= 0) {
+			lines.add(new Line(tail.substring(start, end + 1)));
+			start = end + 1;
+		}
+		return lines.toArray(new Line[lines.size()]);
+	}
+
+	private static class Line {
+
+		private final String value;
+		private final int hash;
+
+		private Line(String value) {
+			this.value = value;
+			this.hash = value.hashCode();
+		}
+
+		public boolean equals(Object object) {
+			Line other = (Line) object;
+			return hash == other.hash
+					&& value.equals(other.value);
+		}
+
+		public int hashCode() {
+			return hash;
+		}
+	}
+}
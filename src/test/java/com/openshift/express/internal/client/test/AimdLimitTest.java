@@ -0,0 +1,186 @@
+/******************************************************************************* 
+ * Copyright (c) 2011 Red Hat, Inc. 
+ * Distributed under license by Red Hat, Inc. All rights reserved. 
+ * This program is made available under the terms of the 
+ * Eclipse Public License v1.0 which accompanies this distribution, 
+ * and is available at http://www.eclipse.org/legal/epl-v10.html 
+ * 
+ * Contributors: 
+ * Red Hat, Inc. - initial API and implementation 
+ ******************************************************************************/
+package com.openshift.express.internal.client.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.openshift.express.client.BulkOptions;
+import com.openshift.express.client.BulkResult;
+import com.openshift.express.client.IApplication;
+import com.openshift.express.client.IUser;
+import com.openshift.express.client.InvalidCredentialsOpenShiftException;
+import com.openshift.express.client.OpenShiftEndpointException;
+import com.openshift.express.client.OpenShiftException;
+import com.openshift.express.internal.client.BulkApplicationOperation;
+import com.openshift.express.internal.client.concurrent.AimdLimit;
+import com.openshift.express.internal.client.concurrent.FairScheduler;
+import com.openshift.express.internal.client.httpclient.HttpClientException;
+import com.openshift.express.internal.client.httpclient.InternalServerErrorException;
+import com.openshift.express.internal.client.httpclient.UnauthorizedException;
+
+/**
+ * @author agent
+ */
+public class AimdLimitTest {
+
+	@Test
+	public void growsByAboutOnePerLimitSuccessfulRequests() {
+		AimdLimit limit = new AimdLimit(4);
+		for (int i = 0; i < 4; i++) {
+			limit.onSample(0, 100, false, 4);
+		}
+		assertEquals(4, limit.getLimit());
+		limit.onSample(0, 100, false, 4);
+		assertEquals(5, limit.getLimit());
+	}
+
+	@Test
+	public void doesNotGrowIfLimitIsNotUsed() {
+		AimdLimit limit = new AimdLimit(8);
+		for (int i = 0; i < 100; i++) {
+			limit.onSample(0, 100, false, 1);
+		}
+		assertEquals(8, limit.getLimit());
+	}
+
+	@Test
+	public void backsOffOnceForConcurrentFailures() {
+		AimdLimit limit = new AimdLimit(16);
+		limit.onSample(0, 100, true, 16);
+		assertEquals(12, limit.getLimit());
+		// sent before the decrease, no further decrease
+		limit.onSample(50, 110, true, 15);
+		assertEquals(12, limit.getLimit());
+		limit.onSample(120, 200, true, 12);
+		assertEquals(9, limit.getLimit());
+		assertTrue(limit.getErrorRate() > 0);
+	}
+
+	@Test
+	public void backsOffIfLatencyIncreases() {
+		AimdLimit limit = new AimdLimit(16);
+		limit.onSample(0, 100, false, 1);
+		assertEquals(16, limit.getLimit());
+		assertEquals(100, limit.getBaselineLatency());
+		limit.onSample(1000, 1500, false, 16);
+		assertEquals(12, limit.getLimit());
+	}
+
+	@Test
+	public void comparesLatenciesPerOperation() {
+		AimdLimit limit = new AimdLimit(4);
+		for (int i = 0; i < 40; i++) {
+			long start = i * 5000;
+			limit.onSample("userinfo", start, start + 20, false, 4);
+			limit.onSample("cartridge", start, start + 3000, false, 4);
+		}
+		// slow operations are not slow compared to fast ones
+		assertTrue(limit.getLimit() > 4);
+		assertEquals(20, limit.getBaselineLatency("userinfo"));
+		assertEquals(3000, limit.getBaselineLatency("cartridge"));
+		assertEquals(-1, limit.getBaselineLatency());
+
+		int before = limit.getLimit();
+		limit.onSample("cartridge", 300000, 309000, false, 4);
+		assertTrue(limit.getLimit() < before);
+	}
+
+	@Test
+	public void staysWithinBounds() {
+		AimdLimit limit = new AimdLimit(2, 2, 3);
+		for (int i = 0; i < 10; i++) {
+			limit.onSample(i * 1000, i * 1000 + 100, true, 2);
+		}
+		assertEquals(2, limit.getLimit());
+		for (int i = 0; i < 100; i++) {
+			limit.onSample(20000, 20100, false, 3);
+		}
+		assertEquals(3, limit.getLimit());
+	}
+
+	@Test
+	public void recognizesOverloadErrors() {
+		assertTrue(AimdLimit.isOverload(new OpenShiftEndpointException("url",
+				new InternalServerErrorException("error", null), "failed")));
+		assertTrue(AimdLimit.isOverload(new HttpClientException(new IOException("connection refused"))));
+		assertFalse(AimdLimit.isOverload(
+				new InvalidCredentialsOpenShiftException("url", new UnauthorizedException("error", null))));
+		assertFalse(AimdLimit.isOverload(new OpenShiftException("failed")));
+	}
+
+	@Test
+	public void schedulerFollowsAdaptiveLimit() throws InterruptedException {
+		FairScheduler scheduler = new FairScheduler(1);
+		scheduler.setAdaptiveLimit(new AimdLimit(8));
+		assertEquals(8, scheduler.getLimit());
+
+		scheduler.acquire("tenant");
+		scheduler.release(System.currentTimeMillis(), true);
+
+		assertEquals(6, scheduler.getLimit());
+		assertEquals(0, scheduler.getInFlight());
+	}
+
+	@Test
+	public void bulkOperationIsLimited() throws OpenShiftException {
+		final AtomicInteger concurrent = new AtomicInteger();
+		final AtomicInteger maxConcurrent = new AtomicInteger();
+		List<IApplication> applications = new ArrayList<IApplication>();
+		for (int i = 0; i < 12; i++) {
+			IApplication application = mock(IApplication.class);
+			when(application.getName()).thenReturn("app" + i);
+			applications.add(application);
+		}
+		Answer<Void> restart = new Answer<Void>() {
+
+			public Void answer(InvocationOnMock invocation) throws Throwable {
+				int current = concurrent.incrementAndGet();
+				synchronized (maxConcurrent) {
+					maxConcurrent.set(Math.max(maxConcurrent.get(), current));
+				}
+				Thread.sleep(10);
+				concurrent.decrementAndGet();
+				return null;
+			}
+		};
+		for (IApplication application : applications) {
+			doAnswer(restart).when(application).restart();
+		}
+		FairScheduler limiter = new FairScheduler(2);
+		IUser user = mock(IUser.class);
+		when(user.getRhlogin()).thenReturn("user");
+		BulkResult result = new BulkApplicationOperation("restart", user, null) {
+
+			protected void execute(IApplication application) throws OpenShiftException {
+				application.restart();
+			}
+		}.execute(applications, new BulkOptions().setParallelism(8).setConcurrencyLimiter(limiter));
+
+		assertTrue(result.isSuccessful());
+		assertEquals(12, result.getSucceeded().size());
+		assertTrue(maxConcurrent.get() <= 2);
+		assertEquals(0, limiter.getInFlight());
+	}
+}
@@ -0,0 +1,112 @@
+/******************************************************************************* 
+ * Copyright (c) 2011 Red Hat, Inc. 
+ * Distributed under license by Red Hat, Inc. All rights reserved. 
+ * This program is made available under the terms of the 
+ * Eclipse Public License v1.0 which accompanies this distribution, 
+ * and is available at http://www.eclipse.org/legal/epl-v10.html 
+ * 
+ * Contributors: 
+ * Red Hat, Inc. - initial API and implementation 
+ ******************************************************************************/
+package com.openshift.express.internal.client.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.openshift.express.client.Cartridge;
+import com.openshift.express.client.OpenShiftException;
+import com.openshift.express.internal.client.ApplicationInfo;
+import com.openshift.express.internal.client.EmbeddableCartridgeInfo;
+import com.openshift.express.internal.client.UserInfo;
+import com.openshift.express.internal.client.test.fakes.UserInfoResponseFake;
+
+/**
+ * @author agent
+ */
+public class ApplicationInfoFootprintTest {
+
+	@Test
+	public void sharesRepeatedValuesAcrossAccounts() throws OpenShiftException {
+		List<UserInfo> fleet = createFleet(2, 2);
+		ApplicationInfo application1 = fleet.get(0).getApplicationInfos().get(0);
+		ApplicationInfo application2 = fleet.get(1).getApplicationInfos().get(1);
+
+		assertSame(application1.getCartridge(), application2.getCartridge());
+		assertSame(fleet.get(0).getRhcDomain(), fleet.get(1).getRhcDomain());
+		assertSame(application1.getEmbeddedCartridges().get(0).getName(),
+				application2.getEmbeddedCartridges().get(0).getName());
+		assertEquals(application1.getCreationTimeMillis(), application1.getCreationTime().getTime());
+	}
+
+	@Test
+	public void sharesRepeatedValuesAcrossLargeFleet() throws OpenShiftException {
+		List<UserInfo> fleet = createFleet(100, 10);
+		ApplicationInfo first = fleet.get(0).getApplicationInfos().get(0);
+
+		for (UserInfo userInfo : fleet) {
+			assertSame(fleet.get(0).getRhcDomain(), userInfo.getRhcDomain());
+			for (ApplicationInfo applicationInfo : userInfo.getApplicationInfos()) {
+				assertSame(first.getCartridge(), applicationInfo.getCartridge());
+				assertSame(first.getEmbeddedCartridges().get(0).getName(),
+						applicationInfo.getEmbeddedCartridges().get(0).getName());
+			}
+		}
+	}
+
+	@Test
+	public void doesNotInternNamespaces() throws OpenShiftException {
+		String namespace = new String("namespace");
+		UserInfo userInfo1 = createUserInfo(namespace);
+		UserInfo userInfo2 = createUserInfo(new String(namespace));
+
+		assertSame(namespace, userInfo1.getNamespace());
+		assertEquals(userInfo1.getNamespace(), userInfo2.getNamespace());
+		assertNotSame(userInfo1.getNamespace(), userInfo2.getNamespace());
+	}
+
+	private UserInfo createUserInfo(String namespace) throws OpenShiftException {
+		return new UserInfo(
+				"user@redhat.com"
+				, "0"
+				, UserInfoResponseFake.SSH_KEY
+				, UserInfoResponseFake.RHC_DOMAIN
+				, namespace
+				, new ArrayList<ApplicationInfo>()
+				, UserInfoResponseFake.SSH_KEY_TYPE);
+	}
+
+	private List<UserInfo> createFleet(int users, int applicationsPerUser) throws OpenShiftException {
+		List<UserInfo> fleet = new ArrayList<UserInfo>(users);
+		for (int i = 0; i < users; i++) {
+			List<ApplicationInfo> applicationInfos = new ArrayList<ApplicationInfo>(applicationsPerUser);
+			for (int j = 0; j < applicationsPerUser; j++) {
+				List<EmbeddableCartridgeInfo> embedded = new ArrayList<EmbeddableCartridgeInfo>();
+				// new String: simulates strings that are parsed from distinct responses
+				embedded.add(new EmbeddableCartridgeInfo(
+						new String(UserInfoResponseFake.APP2_EMBEDDED_NAME), "mysql://127.1." + i + "." + j + ":3306/"));
+				applicationInfos.add(new ApplicationInfo(
+						"app" + j,
+						Long.toHexString(i) + "cafebabe" + Long.toHexString(j),
+						embedded,
+						new Cartridge(new String(UserInfoResponseFake.APP1_CARTRIDGE)),
+						new Date(System.currentTimeMillis())));
+			}
+			fleet.add(new UserInfo(
+					"user" + i + "@redhat.com"
+					, Integer.toHexString(i)
+					, UserInfoResponseFake.SSH_KEY
+					, new String(UserInfoResponseFake.RHC_DOMAIN)
+					, "namespace" + i
+					, applicationInfos
+					, UserInfoResponseFake.SSH_KEY_TYPE));
+		}
+		return fleet;
+	}
+}
@@ -27,6 +27,7 @@ import com.openshift.express.client.IOpenShiftService;
 import com.openshift.express.client.IUser;
 import com.openshift.express.client.OpenShiftException;
 import com.openshift.express.internal.client.Application;
+import com.openshift.express.internal.client.utils.TailDelta;
 import com.openshift.express.internal.client.test.fakes.NoopOpenShiftServiceFake;
 
 /**
@@ -108,6 +109,64 @@ public class ApplicationLogReaderTest {
 		}
 	}
 
+	@Test
+	public void logReaderSkipsLinesThatConsecutiveTailsShare() throws Exception {
+		ExecutorService executor = null;
+		try {
+			ApplicationLogReader logReader = application.getLogReader();
+			LogReaderRunnable logReaderRunnable = new LogReaderRunnable(logReader, LOGREADER_TIMEOUT);
+			executor = Executors.newSingleThreadExecutor();
+			executor.submit(logReaderRunnable);
+			logReaderRunnable.waitUntilNoNewLogentries();
+
+			// tail that still has the last lines of the initial log
+			String initialLogEnd = INITIAL_LOG.substring(INITIAL_LOG.indexOf("11:31:37,004"));
+			status = LOG_HEADER + initialLogEnd + LOG_CONTINUATION;
+			logReaderRunnable.waitUntilNoNewLogentries();
+
+			assertEquals(INITIAL_LOG + LOG_CONTINUATION, logReaderRunnable.getLog());
+		} finally {
+			if (executor != null) {
+				executor.shutdownNow();
+			}
+		}
+	}
+
+	@Test
+	public void tailDeltaReturnsAppendedLinesOnly() {
+		TailDelta delta = new TailDelta();
+		assertEquals("a\nb\nc\n", delta.next("a\nb\nc\n"));
+		assertEquals("d\ne\n", delta.next("b\nc\nd\ne\n"));
+		assertEquals("", delta.next("d\ne\n"));
+		// no overlap, log was rotated
+		assertEquals("x\ny\n", delta.next("x\ny\n"));
+	}
+
+	@Test
+	public void tailDeltaAssumesFewestAppendedLinesOfRepeatedLines() {
+		TailDelta delta = new TailDelta();
+		delta.next("a\nb\na\nb\na\n");
+		assertEquals("c\n", delta.next("b\na\nb\na\nc\n"));
+		assertEquals("a\n", delta.next("a\nc\na\n"));
+	}
+
+	@Test
+	public void tailDeltaMissesAppendedLinesThatRepeatTheTail() {
+		TailDelta delta = new TailDelta();
+		delta.next("a\nb\na\nb\n");
+		// "a\nb\n" appended twice, indistinguishable from nothing appended
+		assertEquals("", delta.next("a\nb\na\nb\n"));
+		// "a\nb\nc\n" appended, taken as "c\n" appended
+		assertEquals("c\n", delta.next("b\na\nb\nc\n"));
+	}
+
+	@Test
+	public void tailDeltaHoldsBackUnterminatedLine() {
+		TailDelta delta = new TailDelta();
+		assertEquals("a\n", delta.next("a\nb"));
+		assertEquals("bc\n", delta.next("a\nbc\n"));
+	}
+
 	private class ApplicationLogFake extends Application {
 
 		private ApplicationLogFake(IOpenShiftService service) {
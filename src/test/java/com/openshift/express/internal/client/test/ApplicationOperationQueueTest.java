@@ -0,0 +1,166 @@
+/******************************************************************************* 
+ * Copyright (c) 2011 Red Hat, Inc. 
+ * Distributed under license by Red Hat, Inc. All rights reserved. 
+ * This program is made available under the terms of the 
+ * Eclipse Public License v1.0 which accompanies this distribution, 
+ * and is available at http://www.eclipse.org/legal/epl-v10.html 
+ * 
+ * Contributors: 
+ * Red Hat, Inc. - initial API and implementation 
+ ******************************************************************************/
+package com.openshift.express.internal.client.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.openshift.express.client.ApplicationOperationQueue;
+import com.openshift.express.client.IApplication;
+import com.openshift.express.client.OpenShiftException;
+
+/**
+ * @author agent
+ */
+public class ApplicationOperationQueueTest {
+
+	private static final int APPLICATIONS = 6;
+	private static final int OPERATIONS = 20;
+
+	private ApplicationOperationQueue queue;
+
+	@Before
+	public void setUp() {
+		this.queue = new ApplicationOperationQueue(4);
+	}
+
+	@After
+	public void tearDown() {
+		queue.shutdown();
+	}
+
+	@Test
+	public void runsInOrderPerApplicationAndInParallelAcrossApplications() throws Exception {
+		final Map<IApplication, AtomicInteger> running = new ConcurrentHashMap<IApplication, AtomicInteger>();
+		final Map<IApplication, List<Integer>> executed = new ConcurrentHashMap<IApplication, List<Integer>>();
+		final AtomicInteger concurrent = new AtomicInteger();
+		final AtomicInteger maxConcurrent = new AtomicInteger();
+		final AtomicInteger maxPerApplication = new AtomicInteger();
+		List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+		for (int i = 0; i < APPLICATIONS; i++) {
+			IApplication application = createApplication("app" + i);
+			running.put(application, new AtomicInteger());
+			executed.put(application, Collections.synchronizedList(new ArrayList<Integer>()));
+		}
+		for (int operation = 0; operation < OPERATIONS; operation++) {
+			for (final IApplication application : running.keySet()) {
+				final int index = operation;
+				futures.add(queue.submit(application, new Callable<Integer>() {
+
+					public Integer call() throws Exception {
+						int perApplication = running.get(application).incrementAndGet();
+						setMax(maxPerApplication, perApplication);
+						setMax(maxConcurrent, concurrent.incrementAndGet());
+						Thread.sleep(1);
+						executed.get(application).add(index);
+						concurrent.decrementAndGet();
+						running.get(application).decrementAndGet();
+						return index;
+					}
+				}));
+			}
+		}
+		for (Future<Integer> future : futures) {
+			future.get();
+		}
+		assertEquals(1, maxPerApplication.get());
+		assertTrue(maxConcurrent.get() > 1);
+		for (List<Integer> operations : executed.values()) {
+			assertEquals(OPERATIONS, operations.size());
+			for (int i = 0; i < OPERATIONS; i++) {
+				assertEquals(Integer.valueOf(i), operations.get(i));
+			}
+		}
+	}
+
+	@Test
+	public void failingOperationDoesNotBlockFollowingOnes() throws Exception {
+		IApplication application = createApplication("app");
+		doThrow(new OpenShiftException("stop failed")).when(application).stop();
+		Future<Void> stop = queue.stop(application);
+		Future<Void> start = queue.start(application);
+		try {
+			stop.get();
+			fail("stop should have failed");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof OpenShiftException);
+		}
+		start.get();
+		assertEquals(0, queue.getPending(application));
+	}
+
+	@Test
+	public void runsQueuedOperationsAfterShutdown() throws Exception {
+		IApplication application = createApplication("app");
+		final CountDownLatch release = new CountDownLatch(1);
+		Future<Void> blocking = queue.submit(application, new Callable<Void>() {
+
+			public Void call() throws Exception {
+				release.await();
+				return null;
+			}
+		});
+		List<Future<Void>> queued = new ArrayList<Future<Void>>();
+		for (int i = 0; i < 3; i++) {
+			queued.add(queue.restart(application));
+		}
+		queue.shutdown();
+		release.countDown();
+
+		blocking.get(5, TimeUnit.SECONDS);
+		for (Future<Void> future : queued) {
+			future.get(5, TimeUnit.SECONDS);
+		}
+		verify(application, times(3)).restart();
+	}
+
+	@Test(expected = RejectedExecutionException.class)
+	public void rejectsOperationsAfterShutdown() {
+		queue.shutdown();
+		queue.restart(createApplication("app"));
+	}
+
+	private IApplication createApplication(String name) {
+		IApplication application = mock(IApplication.class);
+		when(application.getName()).thenReturn(name);
+		return application;
+	}
+
+	private void setMax(AtomicInteger max, int value) {
+		int current;
+		while (value > (current = max.get())
+				&& !max.compareAndSet(current, value)) {
+		}
+	}
+}
@@ -0,0 +1,275 @@
+/******************************************************************************* 
+ * Copyright (c) 2011 Red Hat, Inc. 
+ * Distributed under license by Red Hat, Inc. All rights reserved. 
+ * This program is made available under the terms of the 
+ * Eclipse Public License v1.0 which accompanies this distribution, 
+ * and is available at http://www.eclipse.org/legal/epl-v10.html 
+ * 
+ * Contributors: 
+ * Red Hat, Inc. - initial API and implementation 
+ ******************************************************************************/
+package com.openshift.express.internal.client.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Future;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.openshift.express.client.IApplication;
+import com.openshift.express.client.ICartridge;
+import com.openshift.express.client.IEmbeddableCartridge;
+import com.openshift.express.client.IOpenShiftService;
+import com.openshift.express.client.IUser;
+import com.openshift.express.client.IWaitCallback;
+import com.openshift.express.client.OpenShiftException;
+import com.openshift.express.client.OpenShiftService;
+import com.openshift.express.client.workflow.ApplicationSpec;
+import com.openshift.express.client.workflow.ApplicationWorkflowEngine;
+import com.openshift.express.client.workflow.PhaseTiming;
+import com.openshift.express.client.workflow.WorkflowPhase;
+import com.openshift.express.client.workflow.WorkflowReport;
+import com.openshift.express.internal.client.ApplicationInfo;
+import com.openshift.express.internal.client.EmbeddableCartridgeInfo;
+import com.openshift.express.internal.client.InternalUser;
+import com.openshift.express.internal.client.UserInfo;
+import com.openshift.express.internal.client.concurrent.FairScheduler;
+import com.openshift.express.internal.client.concurrent.ScheduledWaiter;
+import com.openshift.express.internal.client.test.fakes.UserInfoResponseFake;
+
+/**
+ * @author agent
+ */
+public class ApplicationWorkflowEngineTest {
+
+	private static final long CREATE_TIME = 60;
+	private static final long EMBED_TIME = 100;
+	private static final long RESOLVE_TIME = 80;
+	private static final long HEALTH_TIME = 100;
+	private static final String FAILING_EMBED = "failing";
+	private static final String CRASHING_CREATE = "crashingcreate";
+	private static final String CRASHING_EMBED = "crashingembed";
+
+	private IOpenShiftService service;
+	private IUser user;
+	private ScheduledWaiter waiter = new ScheduledWaiter(5, 20, 2);
+
+	@Before
+	public void setUp() throws OpenShiftException {
+		this.service = mock(OpenShiftService.class);
+		when(service.getUserInfo(any(IUser.class))).thenReturn(new UserInfo(UserInfoResponseFake.RHLOGIN
+				, UserInfoResponseFake.UUID
+				, UserInfoResponseFake.SSH_KEY
+				, UserInfoResponseFake.RHC_DOMAIN
+				, UserInfoResponseFake.NAMESPACE
+				, new ArrayList<ApplicationInfo>()
+				, UserInfoResponseFake.SSH_KEY_TYPE));
+		when(service.createApplication(anyString(), any(ICartridge.class), any(IUser.class))).thenAnswer(
+				new Answer<IApplication>() {
+
+					public IApplication answer(InvocationOnMock invocation) throws Throwable {
+						Thread.sleep(CREATE_TIME);
+						return createApplication((String) invocation.getArguments()[0]);
+					}
+				});
+		doThrow(new IllegalStateException("create crashed"))
+				.when(service).createApplication(eq(CRASHING_CREATE), any(ICartridge.class), any(IUser.class));
+		when(service.waitForHostResolvesAsync(anyString(), anyLong(), any(IWaitCallback.class)))
+				.thenAnswer(new WaitAnswer(RESOLVE_TIME));
+		when(service.waitForApplicationAsync(anyString(), anyLong(), any(IWaitCallback.class)))
+				.thenAnswer(new WaitAnswer(HEALTH_TIME));
+		this.user = new InternalUser(UserInfoResponseFake.RHLOGIN, UserInfoResponseFake.PASSWORD, service);
+	}
+
+	@Test
+	public void overlapsPhasesAndReportsTimeline() throws OpenShiftException {
+		List<ApplicationSpec> specs = new ArrayList<ApplicationSpec>();
+		for (int i = 0; i < 4; i++) {
+			specs.add(new ApplicationSpec("app" + i, ICartridge.JBOSSAS_7, IEmbeddableCartridge.MYSQL_51));
+		}
+
+		long start = System.currentTimeMillis();
+		List<WorkflowReport> reports = new ApplicationWorkflowEngine(user, service, 2, 5000).run(specs);
+		long duration = System.currentTimeMillis() - start;
+
+		assertEquals(4, reports.size());
+		for (WorkflowReport report : reports) {
+			assertTrue(report.getFailure(), report.isSuccessful());
+			assertNotNull(report.getApplication());
+			assertEquals(4, report.getTimeline().size());
+			assertEquals(WorkflowPhase.CREATE, report.getTimeline().get(0).getPhase());
+			PhaseTiming embed = report.getTiming(WorkflowPhase.EMBED);
+			PhaseTiming resolve = report.getTiming(WorkflowPhase.RESOLVE);
+			PhaseTiming health = report.getTiming(WorkflowPhase.HEALTH);
+			// resolving overlaps embedding
+			assertTrue(resolve.getStart() < embed.getEnd());
+			assertTrue(health.getStart() >= embed.getEnd());
+			assertTrue(health.getStart() >= resolve.getEnd());
+		}
+		assertEquals(4, user.getApplications().size());
+		// sequentially: 4 * (60 + 100 + 80 + 100) = 1360 ms
+		assertTrue("took " + duration + " ms", duration < 4 * (CREATE_TIME + EMBED_TIME + RESOLVE_TIME + HEALTH_TIME));
+	}
+
+	@Test
+	public void skipsHealthCheckIfEmbeddingFailed() throws OpenShiftException {
+		List<ApplicationSpec> specs = new ArrayList<ApplicationSpec>();
+		specs.add(new ApplicationSpec(FAILING_EMBED, ICartridge.JBOSSAS_7, IEmbeddableCartridge.MYSQL_51));
+		specs.add(new ApplicationSpec("app", ICartridge.JBOSSAS_7));
+
+		List<WorkflowReport> reports = new ApplicationWorkflowEngine(user, service, 5000).run(specs);
+
+		WorkflowReport failed = reports.get(0);
+		assertFalse(failed.isSuccessful());
+		assertTrue(failed.getFailure().startsWith(WorkflowPhase.EMBED.toString()));
+		assertNull(failed.getTiming(WorkflowPhase.HEALTH));
+		assertNotNull(failed.getTiming(WorkflowPhase.RESOLVE));
+
+		WorkflowReport succeeded = reports.get(1);
+		assertTrue(succeeded.isSuccessful());
+		assertNull(succeeded.getTiming(WorkflowPhase.EMBED));
+		assertNotNull(succeeded.getTiming(WorkflowPhase.HEALTH));
+	}
+
+	@Test(timeout = 5000)
+	public void finishesWorkflowsThatThrowRuntimeExceptions() throws OpenShiftException {
+		List<ApplicationSpec> specs = new ArrayList<ApplicationSpec>();
+		specs.add(new ApplicationSpec(CRASHING_CREATE, ICartridge.JBOSSAS_7));
+		specs.add(new ApplicationSpec(CRASHING_EMBED, ICartridge.JBOSSAS_7, IEmbeddableCartridge.MYSQL_51));
+
+		List<WorkflowReport> reports = new ApplicationWorkflowEngine(user, service, 5000).run(specs);
+
+		WorkflowReport crashedCreate = reports.get(0);
+		assertFalse(crashedCreate.isSuccessful());
+		assertTrue(crashedCreate.getFailure().startsWith(WorkflowPhase.CREATE.toString()));
+		assertTrue(crashedCreate.getFailure().contains("create crashed"));
+
+		WorkflowReport crashedEmbed = reports.get(1);
+		assertFalse(crashedEmbed.isSuccessful());
+		assertTrue(crashedEmbed.getFailure().startsWith(WorkflowPhase.EMBED.toString()));
+		assertNull(crashedEmbed.getTiming(WorkflowPhase.HEALTH));
+	}
+
+	@Test
+	public void acquiresLimiterPerUser() throws OpenShiftException {
+		RecordingScheduler limiter = new RecordingScheduler(1);
+		ApplicationWorkflowEngine engine = new ApplicationWorkflowEngine(user, service, 5000);
+		engine.setConcurrencyLimiter(limiter);
+
+		List<WorkflowReport> reports = engine.run(createSpecs(3));
+
+		for (WorkflowReport report : reports) {
+			assertTrue(report.getFailure(), report.isSuccessful());
+		}
+		// create and embed
+		assertEquals(6, limiter.getTenants().size());
+		for (Object tenant : limiter.getTenants()) {
+			assertEquals(UserInfoResponseFake.RHLOGIN, tenant);
+		}
+		assertEquals(0, limiter.getInFlight());
+	}
+
+	@Test(timeout = 5000)
+	public void doesNotAcquireSchedulerOfServiceAgain() throws OpenShiftException {
+		RecordingScheduler scheduler = new RecordingScheduler(1);
+		when(((OpenShiftService) service).getScheduler()).thenReturn(scheduler);
+		ApplicationWorkflowEngine engine = new ApplicationWorkflowEngine(user, service, 5000);
+		engine.setConcurrencyLimiter(scheduler);
+
+		List<WorkflowReport> reports = engine.run(createSpecs(3));
+
+		for (WorkflowReport report : reports) {
+			assertTrue(report.getFailure(), report.isSuccessful());
+		}
+		assertTrue(scheduler.getTenants().isEmpty());
+	}
+
+	private List<ApplicationSpec> createSpecs(int count) {
+		List<ApplicationSpec> specs = new ArrayList<ApplicationSpec>();
+		for (int i = 0; i < count; i++) {
+			specs.add(new ApplicationSpec("app" + i, ICartridge.JBOSSAS_7, IEmbeddableCartridge.MYSQL_51));
+		}
+		return specs;
+	}
+
+	@SuppressWarnings("unchecked")
+	private IApplication createApplication(String name) throws OpenShiftException {
+		IApplication application = mock(IApplication.class);
+		when(application.getName()).thenReturn(name);
+		when(application.getApplicationUrl()).thenReturn("http://" + name + "-ns.rhcloud.com/");
+		when(application.getHealthCheckUrl()).thenReturn("http://" + name + "-ns.rhcloud.com/health");
+		if (FAILING_EMBED.equals(name)) {
+			doThrow(new OpenShiftException("embed failed"))
+					.when(application).addEmbbedCartridges(anyListOf(IEmbeddableCartridge.class));
+		} else if (CRASHING_EMBED.equals(name)) {
+			doThrow(new IllegalStateException("embed crashed"))
+					.when(application).addEmbbedCartridges(anyListOf(IEmbeddableCartridge.class));
+		} else {
+			doAnswer(new Answer<Void>() {
+
+				public Void answer(InvocationOnMock invocation) throws Throwable {
+					Thread.sleep(EMBED_TIME);
+					return null;
+				}
+			}).when(application).addEmbbedCartridges(anyListOf(IEmbeddableCartridge.class));
+		}
+		return application;
+	}
+
+	private class WaitAnswer implements Answer<Future<Boolean>> {
+
+		private long duration;
+
+		private WaitAnswer(long duration) {
+			this.duration = duration;
+		}
+
+		public Future<Boolean> answer(InvocationOnMock invocation) throws Throwable {
+			final long metAt = System.currentTimeMillis() + duration;
+			return waiter.waitFor(new ScheduledWaiter.ICondition() {
+
+				public boolean isMet() throws Exception {
+					return System.currentTimeMillis() >= metAt;
+				}
+			}, (Long) invocation.getArguments()[1], (IWaitCallback) invocation.getArguments()[2]);
+		}
+	}
+
+	private static class RecordingScheduler extends FairScheduler {
+
+		private List<Object> tenants = Collections.synchronizedList(new ArrayList<Object>());
+
+		private RecordingScheduler(int limit) {
+			super(limit);
+		}
+
+		public void acquire(Object tenant) throws InterruptedException {
+			tenants.add(tenant);
+			super.acquire(tenant);
+		}
+
+		public List<Object> getTenants() {
+			return tenants;
+		}
+	}
+}
@@ -0,0 +1,218 @@
+/******************************************************************************* 
+ * Copyright (c) 2011 Red Hat, Inc. 
+ * Distributed under license by Red Hat, Inc. All rights reserved. 
+ * This program is made available under the terms of the 
+ * Eclipse Public License v1.0 which accompanies this distribution, 
+ * and is available at http://www.eclipse.org/legal/epl-v10.html 
+ * 
+ * Contributors: 
+ * Red Hat, Inc. - initial API and implementation 
+ ******************************************************************************/
+package com.openshift.express.internal.client.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.openshift.express.client.BoundedLogReader;
+import com.openshift.express.client.OverflowPolicy;
+import com.openshift.express.internal.client.concurrent.ByteRingBuffer;
+
+/**
+ * @author agent
+ */
+public class BoundedLogReaderTest {
+
+	@Test
+	public void ringBufferWrapsAround() throws Exception {
+		ByteRingBuffer buffer = new ByteRingBuffer(8, OverflowPolicy.DROP_NEWEST);
+		write(buffer, "abcde\n");
+		assertEquals("abc", read(buffer, 3));
+		write(buffer, "fgh\n");
+
+		assertEquals(7, buffer.getSize());
+		assertEquals("de\nfgh\n", read(buffer, 8));
+		assertEquals(0, buffer.getDroppedBytes());
+	}
+
+	@Test
+	public void ringBufferDropsNewestLine() throws Exception {
+		ByteRingBuffer buffer = new ByteRingBuffer(10, OverflowPolicy.DROP_NEWEST);
+		assertTrue(write(buffer, "aaaa\n"));
+		assertTrue(write(buffer, "bbbb\n"));
+		assertFalse(write(buffer, "cc\n"));
+
+		assertEquals("aaaa\nbbbb\n", read(buffer, 10));
+		assertEquals(3, buffer.getDroppedBytes());
+		assertEquals(1, buffer.getDroppedLines());
+	}
+
+	@Test
+	public void ringBufferDropsOldestWholeLines() throws Exception {
+		ByteRingBuffer buffer = new ByteRingBuffer(10, OverflowPolicy.DROP_OLDEST);
+		write(buffer, "aaaa\n");
+		write(buffer, "bbbb\n");
+		assertTrue(write(buffer, "cc\n"));
+
+		// the whole line "aaaa" was dropped although 3 bytes had been enough
+		assertEquals("bbbb\ncc\n", read(buffer, 10));
+		assertEquals(5, buffer.getDroppedBytes());
+		assertEquals(1, buffer.getDroppedLines());
+	}
+
+	@Test
+	public void ringBufferKeepsRestOfPartiallyReadLine() throws Exception {
+		ByteRingBuffer buffer = new ByteRingBuffer(16, OverflowPolicy.DROP_OLDEST);
+		byte[] line = "a\u00e9aaaa\n".getBytes("UTF-8");
+		buffer.write(line, 0, line.length);
+		write(buffer, "bbbbbbb\n");
+		byte[] bytes = new byte[16];
+		// read up to the middle of the multibyte character
+		assertEquals(2, buffer.read(bytes, 0, 2));
+		assertTrue(write(buffer, "cccccc\n"));
+
+		int read = buffer.read(bytes, 2, 14);
+		assertEquals("a\u00e9aaaa\ncccccc\n", new String(bytes, 0, 2 + read, "UTF-8"));
+		assertEquals(1, buffer.getDroppedLines());
+		assertEquals(8, buffer.getDroppedBytes());
+	}
+
+	@Test
+	public void ringBufferDropsNewLineIfOnlyPartiallyReadLineIsLeft() throws Exception {
+		ByteRingBuffer buffer = new ByteRingBuffer(10, OverflowPolicy.DROP_OLDEST);
+		write(buffer, "aaaaaaaaa\n");
+		assertEquals("aa", read(buffer, 2));
+		assertFalse(write(buffer, "bbbb\n"));
+
+		assertEquals("aaaaaaa\n", read(buffer, 10));
+		assertEquals(1, buffer.getDroppedLines());
+		assertEquals(5, buffer.getDroppedBytes());
+	}
+
+	@Test
+	public void ringBufferDropsLinesLargerThanCapacity() throws Exception {
+		ByteRingBuffer buffer = new ByteRingBuffer(4, OverflowPolicy.BLOCK);
+		assertFalse(write(buffer, "aaaaa\n"));
+
+		assertEquals(6, buffer.getDroppedBytes());
+		assertEquals(0, buffer.getSize());
+	}
+
+	@Test
+	public void ringBufferBlocksProducerUntilConsumerMadeRoom() throws Exception {
+		final ByteRingBuffer buffer = new ByteRingBuffer(6, OverflowPolicy.BLOCK, true);
+		write(buffer, "aaaa\n");
+		final CountDownLatch written = new CountDownLatch(1);
+		new Thread() {
+
+			public void run() {
+				try {
+					write(buffer, "bbbb\n");
+					written.countDown();
+				} catch (InterruptedException e) {
+					// ignore
+				}
+			}
+		}.start();
+
+		assertFalse(written.await(100, TimeUnit.MILLISECONDS));
+		assertEquals("aaaa\n", read(buffer, 5));
+		assertTrue(written.await(5, TimeUnit.SECONDS));
+		assertEquals("bbbb\n", read(buffer, 5));
+		assertEquals(0, buffer.getDroppedBytes());
+	}
+
+	@Test
+	public void ringBufferReturnsEndOnceClosedAndRead() throws Exception {
+		ByteRingBuffer buffer = new ByteRingBuffer(8, OverflowPolicy.BLOCK);
+		write(buffer, "a\n");
+		buffer.close();
+
+		assertEquals("a\n", read(buffer, 8));
+		assertEquals(-1, buffer.read(new byte[8], 0, 8));
+		assertFalse(write(buffer, "b\n"));
+	}
+
+	@Test
+	public void readerReadsWholeLogWhenBlocking() throws IOException {
+		StringBuilder log = new StringBuilder();
+		for (int i = 0; i < 1000; i++) {
+			log.append("line ").append(i).append('\n');
+		}
+		BoundedLogReader reader = new BoundedLogReader(new StringReader(log.toString()), 64, OverflowPolicy.BLOCK);
+
+		assertEquals(log.toString(), readAll(reader));
+		assertEquals(0, reader.getDroppedBytes());
+	}
+
+	@Test
+	public void readerDropsOldestLinesOfSlowConsumer() throws Exception {
+		BoundedLogReader reader =
+				new BoundedLogReader(new StringReader("aaaa\nbbbb\ncccc\n"), 10, OverflowPolicy.DROP_OLDEST);
+		for (int i = 0; i < 500 && reader.getDroppedLines() < 1; i++) {
+			Thread.sleep(10);
+		}
+
+		assertEquals("bbbb\ncccc\n", readAll(reader));
+		assertEquals(5, reader.getDroppedBytes());
+		assertEquals(1, reader.getDroppedLines());
+	}
+
+	@Test
+	public void readerDecodesMultibyteCharacters() throws IOException {
+		String log = "café\nüber\n";
+		BoundedLogReader reader = new BoundedLogReader(new StringReader(log), 16, OverflowPolicy.BLOCK);
+
+		assertEquals(log, readAll(reader));
+	}
+
+	@Test
+	public void readerRethrowsFailureOfLog() throws Exception {
+		Reader failingReader = new Reader() {
+
+			public int read(char[] cbuf, int off, int len) throws IOException {
+				throw new IOException("connection lost");
+			}
+
+			public void close() {
+			}
+		};
+		BoundedLogReader reader = new BoundedLogReader(failingReader, 16, OverflowPolicy.BLOCK);
+		try {
+			reader.read();
+		} catch (IOException e) {
+			assertEquals("connection lost", e.getMessage());
+			return;
+		}
+		throw new AssertionError("failure of the log was not rethrown");
+	}
+
+	private static boolean write(ByteRingBuffer buffer, String line) throws InterruptedException {
+		byte[] bytes = line.getBytes();
+		return buffer.write(bytes, 0, bytes.length);
+	}
+
+	private static String read(ByteRingBuffer buffer, int length) throws InterruptedException {
+		byte[] bytes = new byte[length];
+		int read = buffer.read(bytes, 0, length);
+		return new String(bytes, 0, read);
+	}
+
+	private String readAll(Reader reader) throws IOException {
+		StringBuilder builder = new StringBuilder();
+		char[] buffer = new char[7];
+		int read;
+		while ((read = reader.read(buffer)) != -1) {
+			builder.append(buffer, 0, read);
+		}
+		return builder.toString();
+	}
+}
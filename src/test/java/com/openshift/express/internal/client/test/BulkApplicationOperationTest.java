@@ -0,0 +1,230 @@
+/******************************************************************************* 
+ * Copyright (c) 2011 Red Hat, Inc. 
+ * Distributed under license by Red Hat, Inc. All rights reserved. 
+ * This program is made available under the terms of the 
+ * Eclipse Public License v1.0 which accompanies this distribution, 
+ * and is available at http://www.eclipse.org/legal/epl-v10.html 
+ * 
+ * Contributors: 
+ * Red Hat, Inc. - initial API and implementation 
+ ******************************************************************************/
+package com.openshift.express.internal.client.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.openshift.express.client.BulkOptions;
+import com.openshift.express.client.BulkResult;
+import com.openshift.express.client.IApplication;
+import com.openshift.express.client.IBulkProgressListener;
+import com.openshift.express.client.ICartridge;
+import com.openshift.express.client.IOpenShiftService;
+import com.openshift.express.client.IUser;
+import com.openshift.express.client.OpenShiftException;
+import com.openshift.express.client.OpenShiftService;
+import com.openshift.express.internal.client.ApplicationInfo;
+import com.openshift.express.internal.client.EmbeddableCartridgeInfo;
+import com.openshift.express.internal.client.InternalUser;
+import com.openshift.express.internal.client.UserInfo;
+import com.openshift.express.internal.client.concurrent.FairScheduler;
+import com.openshift.express.internal.client.test.fakes.UserInfoResponseFake;
+
+/**
+ * @author agent
+ */
+public class BulkApplicationOperationTest {
+
+	private static final int APPLICATIONS = 12;
+	private static final String FAILING_APPLICATION = "app3";
+
+	private IOpenShiftService service;
+	private IUser user;
+	private SlowAnswer answer;
+
+	@Before
+	public void setUp() throws OpenShiftException {
+		this.service = mock(IOpenShiftService.class);
+		when(service.getUserInfo(any(IUser.class))).thenReturn(createUserInfo());
+		this.answer = new SlowAnswer();
+		when(service.restartApplication(anyString(), any(ICartridge.class), any(IUser.class))).thenAnswer(answer);
+		when(service.restartApplication(eq(FAILING_APPLICATION), any(ICartridge.class), any(IUser.class)))
+				.thenThrow(new OpenShiftException("restart failed"));
+		this.user = new InternalUser(UserInfoResponseFake.RHLOGIN, UserInfoResponseFake.PASSWORD, service);
+	}
+
+	@Test
+	public void restartsWithBoundedParallelismAndCollectsFailures() throws OpenShiftException {
+		final List<Integer> progress = Collections.synchronizedList(new ArrayList<Integer>());
+		BulkResult result = user.restartApplications(user.getApplications(), new BulkOptions()
+				.setParallelism(3)
+				.setProgressListener(new IBulkProgressListener() {
+
+					public void done(IApplication application, OpenShiftException failure, int done, int total) {
+						assertEquals(APPLICATIONS, total);
+						progress.add(done);
+					}
+				}));
+
+		assertFalse(result.isSuccessful());
+		assertEquals(APPLICATIONS - 1, result.getSucceeded().size());
+		assertEquals(1, result.getFailures().size());
+		assertNotNull(result.getFailure(user.getApplicationByName(FAILING_APPLICATION)));
+		assertEquals(APPLICATIONS, progress.size());
+		assertEquals(Integer.valueOf(APPLICATIONS), progress.get(APPLICATIONS - 1));
+		assertTrue(answer.getMaxConcurrent() <= 3);
+		assertTrue(answer.getMaxConcurrent() > 1);
+	}
+
+	@Test
+	public void sharesConcurrencyLimiterAmongUsers() throws OpenShiftException {
+		RecordingScheduler limiter = new RecordingScheduler(2);
+		BulkResult result = user.restartApplications(user.getApplications(), new BulkOptions()
+				.setConcurrencyLimiter(limiter));
+
+		assertEquals(APPLICATIONS - 1, result.getSucceeded().size());
+		assertEquals(APPLICATIONS, limiter.getTenants().size());
+		for (Object tenant : limiter.getTenants()) {
+			assertEquals(UserInfoResponseFake.RHLOGIN, tenant);
+		}
+		assertEquals(0, limiter.getInFlight());
+	}
+
+	@Test
+	public void doesNotAcquireSchedulerOfServiceAgain() throws OpenShiftException {
+		RecordingScheduler scheduler = new RecordingScheduler(1);
+		OpenShiftService service = mock(OpenShiftService.class);
+		when(service.getUserInfo(any(IUser.class))).thenReturn(createUserInfo());
+		when(service.getScheduler()).thenReturn(scheduler);
+		IUser user = new InternalUser(UserInfoResponseFake.RHLOGIN, UserInfoResponseFake.PASSWORD, service);
+
+		BulkResult result = user.restartApplications(user.getApplications(), new BulkOptions()
+				.setConcurrencyLimiter(scheduler));
+
+		assertTrue(result.isSuccessful());
+		assertTrue(scheduler.getTenants().isEmpty());
+	}
+
+	@Test
+	public void operatesWithDefaultOptionsIfNoneGiven() throws OpenShiftException {
+		BulkResult result = user.restartApplications(user.getApplications(), null);
+
+		assertEquals(APPLICATIONS - 1, result.getSucceeded().size());
+		assertEquals(1, result.getFailures().size());
+	}
+
+	@Test
+	public void operatesOnCartridgeGroupsInOrder() throws OpenShiftException {
+		final List<String> cartridges = Collections.synchronizedList(new ArrayList<String>());
+		when(service.stopApplication(anyString(), any(ICartridge.class), any(IUser.class))).thenAnswer(
+				new Answer<IApplication>() {
+
+					public IApplication answer(InvocationOnMock invocation) throws Throwable {
+						Thread.sleep(10);
+						cartridges.add(((ICartridge) invocation.getArguments()[1]).getName());
+						return null;
+					}
+				});
+
+		BulkResult result = user.stopApplications(user.getApplications(), new BulkOptions()
+				.setParallelism(4)
+				.setCartridgeOrder(ICartridge.PHP_53));
+
+		assertTrue(result.isSuccessful());
+		assertEquals(APPLICATIONS, cartridges.size());
+		for (int i = 0; i < APPLICATIONS / 2; i++) {
+			assertEquals(ICartridge.PHP_53.getName(), cartridges.get(i));
+		}
+		for (int i = APPLICATIONS / 2; i < APPLICATIONS; i++) {
+			assertEquals(ICartridge.JBOSSAS_7.getName(), cartridges.get(i));
+		}
+	}
+
+	@Test
+	public void destroyRemovesDestroyedApplications() throws OpenShiftException {
+		BulkResult result = user.destroyApplications(user.getApplications(), new BulkOptions());
+
+		assertTrue(result.isSuccessful());
+		assertEquals(0, user.getApplications().size());
+	}
+
+	@Test(expected = OpenShiftException.class)
+	public void assertSuccessfulThrowsOnFailures() throws OpenShiftException {
+		user.restartApplications(user.getApplications(), new BulkOptions()).assertSuccessful();
+	}
+
+	private UserInfo createUserInfo() throws OpenShiftException {
+		List<ApplicationInfo> applicationInfos = new ArrayList<ApplicationInfo>();
+		for (int i = 0; i < APPLICATIONS; i++) {
+			ICartridge cartridge = i % 2 == 0 ? ICartridge.JBOSSAS_7 : ICartridge.PHP_53;
+			applicationInfos.add(new ApplicationInfo("app" + i, "uuid" + i,
+					new ArrayList<EmbeddableCartridgeInfo>(), cartridge, new Date()));
+		}
+		return new UserInfo(UserInfoResponseFake.RHLOGIN
+				, UserInfoResponseFake.UUID
+				, UserInfoResponseFake.SSH_KEY
+				, UserInfoResponseFake.RHC_DOMAIN
+				, UserInfoResponseFake.NAMESPACE
+				, applicationInfos
+				, UserInfoResponseFake.SSH_KEY_TYPE);
+	}
+
+	private static class RecordingScheduler extends FairScheduler {
+
+		private List<Object> tenants = Collections.synchronizedList(new ArrayList<Object>());
+
+		private RecordingScheduler(int limit) {
+			super(limit);
+		}
+
+		public void acquire(Object tenant) throws InterruptedException {
+			tenants.add(tenant);
+			super.acquire(tenant);
+		}
+
+		public List<Object> getTenants() {
+			return tenants;
+		}
+	}
+
+	private static class SlowAnswer implements Answer<IApplication> {
+
+		private AtomicInteger concurrent = new AtomicInteger();
+		private AtomicInteger maxConcurrent = new AtomicInteger();
+
+		public IApplication answer(InvocationOnMock invocation) throws Throwable {
+			int current = concurrent.incrementAndGet();
+			try {
+				int max;
+				while ((max = maxConcurrent.get()) < current
+						&& !maxConcurrent.compareAndSet(max, current)) {
+				}
+				Thread.sleep(50);
+				return null;
+			} finally {
+				concurrent.decrementAndGet();
+			}
+		}
+
+		public int getMaxConcurrent() {
+			return maxConcurrent.get();
+		}
+	}
+}
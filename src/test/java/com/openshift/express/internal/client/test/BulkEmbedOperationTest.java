@@ -0,0 +1,207 @@
+/******************************************************************************* 
+ * Copyright (c) 2011 Red Hat, Inc. 
+ * Distributed under license by Red Hat, Inc. All rights reserved. 
+ * This program is made available under the terms of the 
+ * Eclipse Public License v1.0 which accompanies this distribution, 
+ * and is available at http://www.eclipse.org/legal/epl-v10.html 
+ * 
+ * Contributors: 
+ * Red Hat, Inc. - initial API and implementation 
+ ******************************************************************************/
+package com.openshift.express.internal.client.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.openshift.express.client.BulkOptions;
+import com.openshift.express.client.EmbedReport;
+import com.openshift.express.client.IApplication;
+import com.openshift.express.client.ICartridge;
+import com.openshift.express.client.IEmbeddableCartridge;
+import com.openshift.express.client.IOpenShiftService;
+import com.openshift.express.client.IUser;
+import com.openshift.express.client.OpenShiftException;
+import com.openshift.express.internal.client.ApplicationInfo;
+import com.openshift.express.internal.client.EmbeddableCartridgeInfo;
+import com.openshift.express.internal.client.InternalUser;
+import com.openshift.express.internal.client.UserInfo;
+import com.openshift.express.internal.client.test.fakes.UserInfoResponseFake;
+
+/**
+ * @author agent
+ */
+public class BulkEmbedOperationTest {
+
+	private static final int APPLICATIONS = 6;
+	private static final String FAILING_APPLICATION = "app3";
+
+	private IOpenShiftService service;
+	private IUser user;
+
+	@Before
+	public void setUp() throws OpenShiftException {
+		this.service = mock(IOpenShiftService.class);
+		when(service.getUserInfo(any(IUser.class))).thenReturn(createUserInfo());
+		this.user = new InternalUser(UserInfoResponseFake.RHLOGIN, UserInfoResponseFake.PASSWORD, service);
+	}
+
+	@Test
+	public void embedsInOrderPerApplicationAndReportsFailures() throws OpenShiftException {
+		final Map<String, List<String>> embeddedByApplication = new ConcurrentHashMap<String, List<String>>();
+		when(service.addEmbeddedCartridge(anyString(), any(IEmbeddableCartridge.class), any(IUser.class)))
+				.thenAnswer(new Answer<IEmbeddableCartridge>() {
+
+					public IEmbeddableCartridge answer(InvocationOnMock invocation) throws Throwable {
+						String application = (String) invocation.getArguments()[0];
+						IEmbeddableCartridge cartridge = (IEmbeddableCartridge) invocation.getArguments()[1];
+						if (FAILING_APPLICATION.equals(application)
+								&& IEmbeddableCartridge.MYSQL_51.equals(cartridge)) {
+							throw new OpenShiftException("embed failed");
+						}
+						List<String> embedded = embeddedByApplication.get(application);
+						if (embedded == null) {
+							embedded = new ArrayList<String>();
+							embeddedByApplication.put(application, embedded);
+						}
+						embedded.add(cartridge.getName());
+						return cartridge;
+					}
+				});
+		List<IEmbeddableCartridge> cartridges = Arrays.asList(
+				IEmbeddableCartridge.MYSQL_51, IEmbeddableCartridge.PHPMYADMIN_34, IEmbeddableCartridge.JENKINS_14);
+
+		EmbedReport report = user.addEmbeddedCartridges(user.getApplications(), cartridges, new BulkOptions());
+
+		assertFalse(report.isSuccessful());
+		IApplication failing = user.getApplicationByName(FAILING_APPLICATION);
+		assertEquals(1, report.getFailedApplications().size());
+		assertTrue(report.getFailures(failing).containsKey(IEmbeddableCartridge.MYSQL_51));
+		// skipped the dependent cartridge, continued with the independent one
+		assertEquals(Arrays.asList(IEmbeddableCartridge.PHPMYADMIN_34), report.getSkipped(failing));
+		assertEquals(Arrays.asList(IEmbeddableCartridge.JENKINS_14), report.getSucceeded(failing));
+		for (IApplication application : user.getApplications()) {
+			if (application != failing) {
+				assertEquals(3, report.getSucceeded(application).size());
+				assertTrue(report.getSkipped(application).isEmpty());
+				assertEquals(Arrays.asList(IEmbeddableCartridge.MYSQL_51.getName(),
+						IEmbeddableCartridge.PHPMYADMIN_34.getName(), IEmbeddableCartridge.JENKINS_14.getName()),
+						embeddedByApplication.get(application.getName()));
+				assertEquals(3, application.getEmbeddedCartridges().size());
+			}
+		}
+	}
+
+	@Test
+	public void applicationSkipsDependentCartridgesAfterFailure() throws OpenShiftException {
+		when(service.addEmbeddedCartridge(anyString(), any(IEmbeddableCartridge.class), any(IUser.class)))
+				.thenThrow(new OpenShiftException("embed failed"))
+				.thenReturn(IEmbeddableCartridge.JENKINS_14);
+		IApplication application = user.getApplicationByName(FAILING_APPLICATION);
+		try {
+			application.addEmbbedCartridges(Arrays.asList(
+					IEmbeddableCartridge.MYSQL_51, IEmbeddableCartridge.PHPMYADMIN_34, IEmbeddableCartridge.JENKINS_14));
+			fail("expected an exception for the failed cartridge");
+		} catch (OpenShiftException e) {
+			assertTrue(e.getMessage().contains(IEmbeddableCartridge.MYSQL_51.getName()));
+			assertTrue(e.getMessage().contains(IEmbeddableCartridge.PHPMYADMIN_34.getName() + ": skipped"));
+		}
+		verify(service, never()).addEmbeddedCartridge(anyString(), eq(IEmbeddableCartridge.PHPMYADMIN_34),
+				any(IUser.class));
+		assertFalse(application.hasEmbeddedCartridge(IEmbeddableCartridge.PHPMYADMIN_34.getName()));
+		assertTrue(application.hasEmbeddedCartridge(IEmbeddableCartridge.JENKINS_14.getName()));
+	}
+
+	@Test
+	public void keepsPrerequisiteIfDependentCouldNotBeRemoved() throws OpenShiftException {
+		when(service.getUserInfo(any(IUser.class))).thenReturn(createUserInfo(
+				IEmbeddableCartridge.MYSQL_51.getName(), IEmbeddableCartridge.PHPMYADMIN_34.getName()));
+		this.user = new InternalUser(UserInfoResponseFake.RHLOGIN, UserInfoResponseFake.PASSWORD, service);
+		doThrow(new OpenShiftException("remove failed")).when(service).removeEmbeddedCartridge(
+				eq(FAILING_APPLICATION), eq(IEmbeddableCartridge.PHPMYADMIN_34), any(IUser.class));
+		List<IEmbeddableCartridge> cartridges =
+				Arrays.asList(IEmbeddableCartridge.MYSQL_51, IEmbeddableCartridge.PHPMYADMIN_34);
+
+		IApplication failing = user.getApplicationByName(FAILING_APPLICATION);
+		IApplication other = user.getApplicationByName("app1");
+
+		EmbedReport report = user.removeEmbeddedCartridges(user.getApplications(), cartridges, new BulkOptions());
+
+
+		assertTrue(report.getFailures(failing).containsKey(IEmbeddableCartridge.PHPMYADMIN_34));
+		assertEquals(Arrays.asList(IEmbeddableCartridge.MYSQL_51), report.getSkipped(failing));
+		assertTrue(failing.hasEmbeddedCartridge(IEmbeddableCartridge.MYSQL_51.getName()));
+		verify(service, never()).removeEmbeddedCartridge(eq(FAILING_APPLICATION), eq(IEmbeddableCartridge.MYSQL_51),
+				any(IUser.class));
+		assertEquals(Arrays.asList(IEmbeddableCartridge.PHPMYADMIN_34, IEmbeddableCartridge.MYSQL_51),
+				report.getSucceeded(other));
+		assertFalse(other.hasEmbeddedCartridge(IEmbeddableCartridge.MYSQL_51.getName()));
+	}
+
+	@Test
+	public void embedsOwnCartridgeInstancePerApplication() throws OpenShiftException {
+		when(service.getUserInfo(any(IUser.class))).thenReturn(createUserInfo(IEmbeddableCartridge.MYSQL_51.getName()));
+		this.user = new InternalUser(UserInfoResponseFake.RHLOGIN, UserInfoResponseFake.PASSWORD, service);
+
+		EmbedReport report = user.addEmbeddedCartridges(
+				user.getApplications(), Arrays.asList(IEmbeddableCartridge.MYSQL_51), new BulkOptions());
+
+		assertTrue(report.isSuccessful());
+		for (IApplication application : user.getApplications()) {
+			IEmbeddableCartridge embedded = report.getSucceeded(application).get(0);
+			assertNotSame(IEmbeddableCartridge.MYSQL_51, embedded);
+			assertTrue(application.getEmbeddedCartridges().contains(embedded));
+			assertEquals(createUrl(application.getName(), IEmbeddableCartridge.MYSQL_51.getName()), embedded.getUrl());
+		}
+	}
+
+	/**
+	 * @param embeddedCartridges
+	 *            the names of the cartridges that all applications have
+	 *            embedded
+	 */
+	private UserInfo createUserInfo(String... embeddedCartridges) throws OpenShiftException {
+		List<ApplicationInfo> applicationInfos = new ArrayList<ApplicationInfo>();
+		for (int i = 0; i < APPLICATIONS; i++) {
+			String name = "app" + i;
+			List<EmbeddableCartridgeInfo> embedded = new ArrayList<EmbeddableCartridgeInfo>();
+			for (String cartridge : embeddedCartridges) {
+				embedded.add(new EmbeddableCartridgeInfo(cartridge, createUrl(name, cartridge)));
+			}
+			applicationInfos.add(new ApplicationInfo(name, "uuid" + i, embedded, ICartridge.PHP_53, new Date()));
+		}
+		return new UserInfo(UserInfoResponseFake.RHLOGIN
+				, UserInfoResponseFake.UUID
+				, UserInfoResponseFake.SSH_KEY
+				, UserInfoResponseFake.RHC_DOMAIN
+				, UserInfoResponseFake.NAMESPACE
+				, applicationInfos
+				, UserInfoResponseFake.SSH_KEY_TYPE);
+	}
+
+	private String createUrl(String application, String cartridge) {
+		return "http://" + application + ".example.com/" + cartridge;
+	}
+}
@@ -11,20 +11,42 @@
 package com.openshift.express.internal.client.test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
 
 import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
+import com.openshift.express.client.IApplication;
+import com.openshift.express.client.ICartridge;
 import com.openshift.express.client.IDomain;
 import com.openshift.express.client.IOpenShiftService;
 import com.openshift.express.client.SSHKeyType;
 import com.openshift.express.client.OpenShiftException;
 import com.openshift.express.client.SSHKeyPair;
+import com.openshift.express.client.IUser;
+import com.openshift.express.client.IWaitCallback;
+import com.openshift.express.internal.client.ApplicationInfo;
+import com.openshift.express.internal.client.EmbeddableCartridgeInfo;
 import com.openshift.express.internal.client.InternalUser;
+import com.openshift.express.internal.client.UserInfo;
+import com.openshift.express.internal.client.concurrent.ScheduledWaiter;
 import com.openshift.express.internal.client.request.ChangeDomainRequest;
 import com.openshift.express.internal.client.request.CreateDomainRequest;
 import com.openshift.express.internal.client.request.OpenShiftEnvelopeFactory;
@@ -34,6 +56,7 @@ import com.openshift.express.internal.client.response.unmarshalling.DomainRespon
 import com.openshift.express.internal.client.response.unmarshalling.JsonSanitizer;
 import com.openshift.express.internal.client.test.fakes.NoopOpenShiftServiceFake;
 import com.openshift.express.internal.client.test.fakes.TestSSHKey;
+import com.openshift.express.internal.client.test.fakes.UserInfoResponseFake;
 
 /**
  * @author André Dietisheim
@@ -43,6 +66,9 @@ public class DomainTest {
 	private static final String RHLOGIN = "toolsjboss@gmail.com";
 	private static final String PASSWORD = "1q2w3e";
 	private static final String UUID = "0c82860dae904a4d87f8e5d87a5af840";
+	private static final long RESOLVE_TIMEOUT = 400;
+
+	private ScheduledWaiter waiter = new ScheduledWaiter(10, 50, 2);
 
 	@Test
 	public void canMarshallDomainCreateRequest() throws IOException, OpenShiftException {
@@ -90,6 +116,70 @@ public class DomainTest {
 		assertEquals(expectedRequestString, requestString);
 	}
 
+	@Test
+	public void waitsForAllApplicationsConcurrently() throws OpenShiftException {
+		IUser user = createUserWithResolvingApplications(3, "app2");
+		IDomain domain = user.getDomain();
+
+		long start = System.currentTimeMillis();
+		Map<IApplication, Boolean> readiness = domain.waitForApplicationsResolve(RESOLVE_TIMEOUT);
+		long duration = System.currentTimeMillis() - start;
+
+		assertEquals(3, readiness.size());
+		assertEquals(Boolean.TRUE, readiness.get(user.getApplicationByName("app0")));
+		assertEquals(Boolean.TRUE, readiness.get(user.getApplicationByName("app1")));
+		assertEquals(Boolean.FALSE, readiness.get(user.getApplicationByName("app2")));
+		// all applications share the same deadline
+		assertTrue(duration < 2 * RESOLVE_TIMEOUT);
+	}
+
+	@Test
+	public void isNotAccessibleIfNoApplicationResolves() throws OpenShiftException {
+		IUser user = createUserWithResolvingApplications(2, "app0", "app1");
+		assertFalse(user.getDomain().waitForAccessible(RESOLVE_TIMEOUT));
+
+		user = createUserWithResolvingApplications(2, "app1");
+		assertTrue(user.getDomain().waitForAccessible(RESOLVE_TIMEOUT));
+	}
+
+	private IUser createUserWithResolvingApplications(int applications, final String... unresolvable)
+			throws OpenShiftException {
+		List<ApplicationInfo> applicationInfos = new ArrayList<ApplicationInfo>();
+		for (int i = 0; i < applications; i++) {
+			applicationInfos.add(new ApplicationInfo("app" + i, "uuid" + i, new ArrayList<EmbeddableCartridgeInfo>(),
+					ICartridge.JBOSSAS_7, new Date()));
+		}
+		UserInfo userInfo = new UserInfo(UserInfoResponseFake.RHLOGIN
+				, UserInfoResponseFake.UUID
+				, UserInfoResponseFake.SSH_KEY
+				, UserInfoResponseFake.RHC_DOMAIN
+				, UserInfoResponseFake.NAMESPACE
+				, applicationInfos
+				, UserInfoResponseFake.SSH_KEY_TYPE);
+		IOpenShiftService service = mock(IOpenShiftService.class);
+		when(service.getUserInfo(any(IUser.class))).thenReturn(userInfo);
+		final long resolvesAt = System.currentTimeMillis() + RESOLVE_TIMEOUT / 4;
+		when(service.waitForHostResolvesAsync(anyString(), anyLong(), any(IWaitCallback.class))).thenAnswer(
+				new Answer<Future<Boolean>>() {
+
+					public Future<Boolean> answer(InvocationOnMock invocation) throws Throwable {
+						final String url = (String) invocation.getArguments()[0];
+						return waiter.waitFor(new ScheduledWaiter.ICondition() {
+
+							public boolean isMet() throws Exception {
+								for (String application : unresolvable) {
+									if (url.contains("//" + application + "-")) {
+										return false;
+									}
+								}
+								return System.currentTimeMillis() >= resolvesAt;
+							}
+						}, (Long) invocation.getArguments()[1], (IWaitCallback) invocation.getArguments()[2]);
+					}
+				});
+		return new InternalUser(UserInfoResponseFake.RHLOGIN, UserInfoResponseFake.PASSWORD, service);
+	}
+
 	private String createDomainRequestString(String password, String username, boolean debug, String namespace,
 			 boolean alter, String sshPublicKey, SSHKeyType sSHKeyType, boolean delete) throws UnsupportedEncodingException {
 		return "password="
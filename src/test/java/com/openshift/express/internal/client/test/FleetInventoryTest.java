@@ -0,0 +1,159 @@
+/******************************************************************************* 
+ * Copyright (c) 2011 Red Hat, Inc. 
+ * Distributed under license by Red Hat, Inc. All rights reserved. 
+ * This program is made available under the terms of the 
+ * Eclipse Public License v1.0 which accompanies this distribution, 
+ * and is available at http://www.eclipse.org/legal/epl-v10.html 
+ * 
+ * Contributors: 
+ * Red Hat, Inc. - initial API and implementation 
+ ******************************************************************************/
+package com.openshift.express.internal.client.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.openshift.express.client.ICartridge;
+import com.openshift.express.client.IEmbeddableCartridge;
+import com.openshift.express.client.OpenShiftException;
+import com.openshift.express.client.inventory.FleetInventory;
+import com.openshift.express.client.inventory.InventoryEntry;
+import com.openshift.express.internal.client.ApplicationInfo;
+import com.openshift.express.internal.client.EmbeddableCartridgeInfo;
+import com.openshift.express.internal.client.UserInfo;
+import com.openshift.express.internal.client.test.fakes.UserInfoResponseFake;
+
+/**
+ * @author agent
+ */
+public class FleetInventoryTest {
+
+	private static final long DAY = 24 * 60 * 60 * 1000;
+	private static final long NOW = 1320000000000l;
+
+	private FleetInventory inventory;
+
+	@Before
+	public void setUp() throws OpenShiftException {
+		this.inventory = new FleetInventory();
+		inventory.ingest(createUserInfo("user1@redhat.com", "ns1",
+				createApplicationInfo("jboss1", ICartridge.JBOSSAS_7, NOW - 10 * DAY, IEmbeddableCartridge.MYSQL_51),
+				createApplicationInfo("php1", ICartridge.PHP_53, NOW - 2 * DAY)));
+		inventory.ingest(createUserInfo("user2@redhat.com", "ns2",
+				createApplicationInfo("jboss2", ICartridge.JBOSSAS_7, NOW - 1 * DAY),
+				createApplicationInfo("jboss3", ICartridge.JBOSSAS_7, NOW,
+						IEmbeddableCartridge.MYSQL_51, IEmbeddableCartridge.PHPMYADMIN_34)));
+	}
+
+	@Test
+	public void canFilterByCartridgeAndEmbeddedCartridge() {
+		assertEquals(4, inventory.size());
+		assertEquals(3, inventory.query().cartridge(ICartridge.JBOSSAS_7).count());
+		assertEquals(2, inventory.query().embedded(IEmbeddableCartridge.MYSQL_51).count());
+		assertEquals(1, inventory.query()
+				.embedded(IEmbeddableCartridge.MYSQL_51)
+				.embedded(IEmbeddableCartridge.PHPMYADMIN_34)
+				.count());
+		assertEquals(0, inventory.query().cartridge(ICartridge.PHP_53).embedded(IEmbeddableCartridge.MYSQL_51).count());
+		assertEquals(0, inventory.query().cartridge("unknown-1.0").count());
+	}
+
+	@Test
+	public void canFilterByCreationTimeAndNamespace() {
+		List<InventoryEntry> entries = inventory.query()
+				.createdAfter(new Date(NOW - 5 * DAY))
+				.createdBefore(new Date(NOW))
+				.select();
+		assertEquals(2, entries.size());
+		assertEquals("php1", entries.get(0).getName());
+		assertEquals("jboss2", entries.get(1).getName());
+		assertEquals("ns2", entries.get(1).getNamespace());
+		assertEquals(new Date(NOW - 1 * DAY), entries.get(1).getCreationTime());
+
+		assertEquals(2, inventory.query().namespace("ns1").count());
+		assertEquals(1, inventory.query().rhlogin("user2@redhat.com").cartridge(ICartridge.JBOSSAS_7)
+				.embedded(IEmbeddableCartridge.MYSQL_51).count());
+	}
+
+	@Test
+	public void canAggregate() {
+		Map<String, Integer> byCartridge = inventory.query().countByCartridge();
+		assertEquals(Integer.valueOf(3), byCartridge.get(ICartridge.JBOSSAS_7.getName()));
+		assertEquals(Integer.valueOf(1), byCartridge.get(ICartridge.PHP_53.getName()));
+
+		Map<String, Integer> byEmbedded = inventory.query().cartridge(ICartridge.JBOSSAS_7).countByEmbeddedCartridge();
+		assertEquals(Integer.valueOf(2), byEmbedded.get(IEmbeddableCartridge.MYSQL_51.getName()));
+		assertEquals(Integer.valueOf(1), byEmbedded.get(IEmbeddableCartridge.PHPMYADMIN_34.getName()));
+
+		Map<String, Integer> byNamespace = inventory.query().embedded(IEmbeddableCartridge.MYSQL_51).countByNamespace();
+		assertEquals(Integer.valueOf(1), byNamespace.get("ns1"));
+		assertEquals(Integer.valueOf(1), byNamespace.get("ns2"));
+	}
+
+	@Test
+	public void reingestReplacesApplicationsOfUser() throws OpenShiftException {
+		inventory.ingest(createUserInfo("user1@redhat.com", "ns1",
+				createApplicationInfo("php2", ICartridge.PHP_53, NOW)));
+
+		assertEquals(3, inventory.size());
+		assertEquals(1, inventory.query().embedded(IEmbeddableCartridge.MYSQL_51).count());
+		assertEquals(1, inventory.query().namespace("ns1").count());
+
+		inventory.compact();
+		assertEquals(3, inventory.size());
+		List<InventoryEntry> entries = inventory.query().rhlogin("user1@redhat.com").select();
+		assertEquals(1, entries.size());
+		assertEquals("php2", entries.get(0).getName());
+		List<InventoryEntry> embedded = inventory.query().embedded(IEmbeddableCartridge.PHPMYADMIN_34).select();
+		assertEquals(1, embedded.size());
+		assertEquals("jboss3", embedded.get(0).getName());
+		assertTrue(embedded.get(0).getEmbeddedCartridges().contains(IEmbeddableCartridge.MYSQL_51.getName()));
+
+		inventory.remove("user2@redhat.com");
+		assertEquals(1, inventory.size());
+	}
+
+	@Test
+	public void growsBeyondInitialCapacity() throws OpenShiftException {
+		for (int i = 0; i < 100; i++) {
+			List<ApplicationInfo> applicationInfos = new ArrayList<ApplicationInfo>();
+			for (int j = 0; j < 50; j++) {
+				applicationInfos.add(createApplicationInfo("app" + j, ICartridge.JBOSSAS_7, NOW + j));
+			}
+			inventory.ingest(createUserInfo("fleet" + i + "@redhat.com", "fleet" + i,
+					applicationInfos.toArray(new ApplicationInfo[applicationInfos.size()])));
+		}
+		assertEquals(5004, inventory.size());
+		assertEquals(5003, inventory.query().cartridge(ICartridge.JBOSSAS_7).count());
+		assertEquals(100, inventory.query().createdAfter(new Date(NOW + 49)).count());
+	}
+
+	private UserInfo createUserInfo(String rhlogin, String namespace, ApplicationInfo... applicationInfos)
+			throws OpenShiftException {
+		return new UserInfo(rhlogin
+				, "0123456789abcdef"
+				, UserInfoResponseFake.SSH_KEY
+				, UserInfoResponseFake.RHC_DOMAIN
+				, namespace
+				, Arrays.asList(applicationInfos)
+				, UserInfoResponseFake.SSH_KEY_TYPE);
+	}
+
+	private ApplicationInfo createApplicationInfo(String name, ICartridge cartridge, long creationTime,
+			IEmbeddableCartridge... embeddedCartridges) {
+		List<EmbeddableCartridgeInfo> embedded = new ArrayList<EmbeddableCartridgeInfo>();
+		for (IEmbeddableCartridge embeddedCartridge : embeddedCartridges) {
+			embedded.add(new EmbeddableCartridgeInfo(embeddedCartridge.getName(), null));
+		}
+		return new ApplicationInfo(name, name + "-uuid", embedded, cartridge, new Date(creationTime));
+	}
+}
@@ -0,0 +1,155 @@
+/******************************************************************************* 
+ * Copyright (c) 2007 Red Hat, Inc. 
+ * Distributed under license by Red Hat, Inc. All rights reserved. 
+ * This program is made available under the terms of the 
+ * Eclipse Public License v1.0 which accompanies this distribution, 
+ * and is available at http://www.eclipse.org/legal/epl-v10.html 
+ * 
+ * Contributors: 
+ * Red Hat, Inc. - initial API and implementation 
+ ******************************************************************************/
+package com.openshift.express.internal.client.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.openshift.express.client.OpenShiftException;
+import com.openshift.express.client.health.HealthMonitor;
+import com.openshift.express.client.health.HealthStatistics;
+import com.openshift.express.client.health.IHealthListener;
+import com.openshift.express.internal.client.test.fakes.HealthCheckServerFake;
+
+/**
+ * @author agent
+ */
+public class HealthMonitorTest {
+
+	private static final long INTERVAL = 50;
+	private static final String APPLICATION = "app";
+
+	private HealthCheckServerFake server;
+	private HealthMonitor monitor;
+	private List<Boolean> transitions = Collections.synchronizedList(new ArrayList<Boolean>());
+
+	@Before
+	public void setUp() throws IOException, OpenShiftException {
+		this.server = new HealthCheckServerFake();
+		server.start();
+		this.monitor = new HealthMonitor(INTERVAL, 1000);
+		monitor.addListener(new IHealthListener() {
+
+			public void healthChanged(HealthStatistics statistics) {
+				transitions.add(statistics.isUp());
+			}
+		});
+		monitor.add(APPLICATION, server.getUrl());
+		monitor.start();
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		monitor.stop();
+		server.stop();
+	}
+
+	@Test
+	public void probesRepeatedlyOnKeptAliveConnection() throws InterruptedException {
+		waitForProbes(5);
+
+		HealthStatistics statistics = monitor.getStatistics(APPLICATION);
+		assertNotNull(statistics);
+		assertTrue(statistics.isUp());
+		assertEquals(0, statistics.getFailures());
+		assertTrue(statistics.getLatencyPercentile(50) >= 0);
+		assertTrue(statistics.getLatencyPercentile(99) >= statistics.getLatencyPercentile(50));
+		assertEquals(1, server.getConnections());
+		assertEquals(1, monitor.getUpCount());
+		assertTrue(monitor.getLatencyPercentile(90) >= 0);
+	}
+
+	@Test
+	public void recordsUpDownTransitions() throws InterruptedException {
+		waitForProbes(2);
+		server.setHealthy(false);
+		waitFor(false);
+		server.setHealthy(true);
+		waitFor(true);
+
+		HealthStatistics statistics = monitor.getStatistics(APPLICATION);
+		assertEquals(2, statistics.getTransitions());
+		assertTrue(statistics.getFailures() > 0);
+		assertNotNull(statistics.getLastFailure());
+		assertEquals(Boolean.TRUE, transitions.get(0));
+		assertEquals(Boolean.FALSE, transitions.get(1));
+		assertEquals(Boolean.TRUE, transitions.get(2));
+	}
+
+	@Test
+	public void reportsUnreachableApplicationAsDown() throws OpenShiftException, IOException, InterruptedException {
+		HealthCheckServerFake stopped = new HealthCheckServerFake();
+		stopped.start();
+		String url = stopped.getUrl();
+		stopped.stop();
+		monitor.add("unreachable", url);
+
+		long deadline = System.currentTimeMillis() + 5000;
+		while (monitor.getDownCount() == 0
+				&& System.currentTimeMillis() < deadline) {
+			Thread.sleep(INTERVAL);
+		}
+		assertFalse(monitor.getStatistics("unreachable").isUp());
+		assertTrue(monitor.getStatistics(APPLICATION).getProbes() > 0);
+	}
+
+	@Test
+	public void reportsUnresolvableHostAsDown() throws OpenShiftException, InterruptedException {
+		monitor.add("unresolvable", "http://unresolvable.invalid/health");
+
+		long deadline = System.currentTimeMillis() + 5000;
+		while (!isProbed("unresolvable")
+				&& System.currentTimeMillis() < deadline) {
+			Thread.sleep(INTERVAL);
+		}
+		assertFalse(monitor.getStatistics("unresolvable").isUp());
+		assertTrue(monitor.isRunning());
+		long probes = monitor.getStatistics(APPLICATION).getProbes();
+		waitForProbes(server.getRequests() + 2);
+		assertTrue(monitor.getStatistics(APPLICATION).getProbes() > probes);
+	}
+
+	private boolean isProbed(String id) {
+		return monitor.getStatistics(id).getProbes() > 0;
+	}
+
+	private void waitForProbes(int probes) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5000;
+		while (server.getRequests() < probes
+				&& System.currentTimeMillis() < deadline) {
+			Thread.sleep(INTERVAL);
+		}
+		// let the monitor record the last response
+		Thread.sleep(INTERVAL / 2);
+	}
+
+	private void waitFor(boolean up) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5000;
+		while (transitions.isEmpty()
+				|| transitions.get(transitions.size() - 1) != up) {
+			if (System.currentTimeMillis() > deadline) {
+				throw new AssertionError("application did not go " + (up ? "up" : "down"));
+			}
+			Thread.sleep(INTERVAL / 2);
+		}
+	}
+}
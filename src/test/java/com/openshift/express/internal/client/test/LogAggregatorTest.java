@@ -0,0 +1,276 @@
+/******************************************************************************* 
+ * Copyright (c) 2011 Red Hat, Inc. 
+ * Distributed under license by Red Hat, Inc. All rights reserved. 
+ * This program is made available under the terms of the 
+ * Eclipse Public License v1.0 which accompanies this distribution, 
+ * and is available at http://www.eclipse.org/legal/epl-v10.html 
+ * 
+ * Contributors: 
+ * Red Hat, Inc. - initial API and implementation 
+ ******************************************************************************/
+package com.openshift.express.internal.client.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.jcraft.jsch.ChannelExec;
+import com.jcraft.jsch.JSchException;
+import com.jcraft.jsch.Session;
+import com.openshift.express.client.ILogListener;
+import com.openshift.express.client.LogAggregator;
+import com.openshift.express.client.LogLine;
+import com.openshift.express.client.OverflowPolicy;
+import com.openshift.express.internal.client.ssh.SshSessionKey;
+import com.openshift.express.internal.client.ssh.SshSessionPool;
+
+/**
+ * @author agent
+ */
+public class LogAggregatorTest {
+
+	private static final SshSessionKey KEY = new SshSessionKey("root", "localhost", null, null);
+	private static final long TAKE_TIMEOUT = 10 * 1000;
+
+	private TailSshSessionPoolFake pool = new TailSshSessionPoolFake();
+	private LogAggregator aggregator = new LogAggregator(pool, KEY);
+
+	@After
+	public void tearDown() {
+		aggregator.stop();
+		pool.shutdown();
+	}
+
+	@Test(timeout = TAKE_TIMEOUT)
+	public void tagsLinesAndTakesRoundRobin() throws Exception {
+		pool.tails.add("==> /a <==\na1\na2\na3\n\n==> /b <==\nb1\n");
+		aggregator.add("app-a", "/a");
+		aggregator.add("app-b", "/b");
+		aggregator.setMaxChannels(1);
+		aggregator.start();
+		waitForBuffered("app-b", 1);
+
+		assertLine("app-a", "a1", aggregator.take());
+		assertLine("app-b", "b1", aggregator.take());
+		assertLine("app-a", "a2", aggregator.take());
+		// the empty line before the header was dropped
+		assertLine("app-a", "a3", aggregator.take());
+		assertEquals(0, aggregator.getBufferedLines("app-a"));
+	}
+
+	@Test(timeout = TAKE_TIMEOUT)
+	public void keepsEmptyLinesWithinLog() throws Exception {
+		pool.tails.add("==> /a <==\nx\n\ny\n");
+		aggregator.add("app-a", "/a");
+		aggregator.start();
+
+		assertLine("app-a", "x", aggregator.take());
+		assertLine("app-a", "", aggregator.take());
+		assertLine("app-a", "y", aggregator.take());
+	}
+
+	@Test
+	public void tailsSeveralLogsPerChannel() throws Exception {
+		aggregator.add("app-a", "/a");
+		aggregator.add("app-b", "/b");
+		aggregator.add("app-c", "/c");
+		aggregator.setMaxChannels(2);
+		aggregator.setReconnectDelay(1000);
+		aggregator.start();
+
+		assertEquals(2, aggregator.getChannelCount());
+		waitForCommands(2);
+		List<String> commands = new ArrayList<String>(pool.commands);
+		Collections.sort(commands);
+		assertEquals("tail -v -n 0 -F /a /b", commands.get(0));
+		assertEquals("tail -v -n 0 -F /c", commands.get(1));
+	}
+
+	@Test(timeout = TAKE_TIMEOUT)
+	public void dropsOldestLinesOfFullSourceWithoutHoldingBackOthers() throws Exception {
+		pool.tails.add("==> /a <==\n1\n2\n3\n4\n\n==> /b <==\nb1\n");
+		aggregator.add("app-a", "/a");
+		aggregator.add("app-b", "/b");
+		aggregator.setMaxChannels(1);
+		aggregator.setBufferedLines(2);
+		aggregator.start();
+		waitForBuffered("app-b", 1);
+
+		assertEquals(2, aggregator.getBufferedLines("app-a"));
+		assertEquals(2, aggregator.getDroppedLines("app-a"));
+		assertEquals(0, aggregator.getDroppedLines("app-b"));
+		assertLine("app-a", "3", aggregator.take());
+		assertLine("app-b", "b1", aggregator.take());
+		assertLine("app-a", "4", aggregator.take());
+	}
+
+	@Test(timeout = TAKE_TIMEOUT)
+	public void dropsNewestLinesOfFullSource() throws Exception {
+		pool.tails.add("==> /a <==\n1\n2\n3\n4\n\n==> /b <==\nb1\n");
+		aggregator.add("app-a", "/a");
+		aggregator.add("app-b", "/b");
+		aggregator.setMaxChannels(1);
+		aggregator.setBufferedLines(2);
+		aggregator.setOverflowPolicy(OverflowPolicy.DROP_NEWEST);
+		aggregator.start();
+		waitForBuffered("app-b", 1);
+
+		assertEquals(2, aggregator.getDroppedLines("app-a"));
+		assertLine("app-a", "1", aggregator.take());
+		assertLine("app-b", "b1", aggregator.take());
+		assertLine("app-a", "2", aggregator.take());
+	}
+
+	@Test(timeout = TAKE_TIMEOUT)
+	public void decodesLinesAsUtf8() throws Exception {
+		pool.tails.add("==> /a <==\nd\u00e9marr\u00e9 \u2713\n");
+		aggregator.add("app-a", "/a");
+		aggregator.start();
+
+		assertLine("app-a", "d\u00e9marr\u00e9 \u2713", aggregator.take());
+	}
+
+	@Test(timeout = TAKE_TIMEOUT)
+	public void blocksChannelWhenSourceIsFullIfPolicyIsBlock() throws Exception {
+		pool.tails.add("==> /a <==\n1\n2\n3\n4\n");
+		aggregator.add("app-a", "/a");
+		aggregator.setBufferedLines(2);
+		aggregator.setOverflowPolicy(OverflowPolicy.BLOCK);
+		aggregator.start();
+		waitForBuffered("app-a", 2);
+		Thread.sleep(100);
+		assertEquals(2, aggregator.getBufferedLines("app-a"));
+
+		assertLine("app-a", "1", aggregator.take());
+		assertLine("app-a", "2", aggregator.take());
+		assertLine("app-a", "3", aggregator.take());
+		assertLine("app-a", "4", aggregator.take());
+	}
+
+	@Test
+	public void deliversToListener() throws Exception {
+		pool.tails.add("==> /a <==\na1\n\n==> /b <==\nb1\n");
+		aggregator.add("app-a", "/a");
+		aggregator.add("app-b", "/b");
+		final List<LogLine> lines = Collections.synchronizedList(new ArrayList<LogLine>());
+		final CountDownLatch received = new CountDownLatch(2);
+		aggregator.setListener(new ILogListener() {
+
+			public void lineRead(LogLine line) {
+				lines.add(line);
+				received.countDown();
+			}
+		});
+		aggregator.start();
+
+		received.await(5, TimeUnit.SECONDS);
+		assertEquals(2, lines.size());
+		assertLine("app-a", "a1", lines.get(0));
+		assertLine("app-b", "b1", lines.get(1));
+	}
+
+	@Test(timeout = TAKE_TIMEOUT)
+	public void takeReturnsNullOnceStopped() throws Exception {
+		aggregator.add("app-a", "/a");
+		aggregator.start();
+		aggregator.stop();
+
+		assertNull(aggregator.take());
+	}
+
+	@Test(timeout = TAKE_TIMEOUT)
+	public void takeReturnsNullOnceChannelFailed() throws Exception {
+		Error error = new ExceptionInInitializerError("channel crashed");
+		pool.error = error;
+		aggregator.add("app-a", "/a");
+		aggregator.start();
+
+		assertNull(aggregator.take());
+		assertSame(error, aggregator.getFailure());
+	}
+
+	private void assertLine(String source, String line, LogLine logLine) {
+		assertEquals(source, logLine.getSource());
+		assertEquals(line, logLine.getLine());
+	}
+
+	private void waitForBuffered(String source, int lines) throws InterruptedException {
+		for (int i = 0; i < 500 && aggregator.getBufferedLines(source) < lines; i++) {
+			Thread.sleep(10);
+		}
+	}
+
+	private void waitForCommands(int count) throws InterruptedException {
+		for (int i = 0; i < 500 && pool.commands.size() < count; i++) {
+			Thread.sleep(10);
+		}
+	}
+
+	/**
+	 * Serves each tail with the next output, as if the tail dropped after
+	 * writing its output.
+	 */
+	private static class TailSshSessionPoolFake extends SshSessionPool {
+
+		private final Queue<String> tails = new LinkedList<String>();
+		private final List<String> commands = Collections.synchronizedList(new ArrayList<String>());
+		private volatile Error error;
+
+		protected Session connect(SshSessionKey key, int timeout) throws JSchException {
+			if (error != null) {
+				throw error;
+			}
+			Session session = mock(Session.class);
+			when(session.isConnected()).thenReturn(true);
+			when(session.openChannel("exec")).thenAnswer(new Answer<ChannelExec>() {
+
+				public ChannelExec answer(InvocationOnMock invocation) throws Throwable {
+					return createChannel();
+				}
+			});
+			return session;
+		}
+
+		private ChannelExec createChannel() throws IOException {
+			ChannelExec channel = mock(ChannelExec.class);
+			doAnswer(new Answer<Void>() {
+
+				public Void answer(InvocationOnMock invocation) throws Throwable {
+					commands.add((String) invocation.getArguments()[0]);
+					return null;
+				}
+			}).when(channel).setCommand(anyString());
+			when(channel.getInputStream()).thenAnswer(new Answer<InputStream>() {
+
+				public InputStream answer(InvocationOnMock invocation) throws Throwable {
+					String output;
+					synchronized (tails) {
+						output = tails.isEmpty() ? "" : tails.poll();
+					}
+					return new ByteArrayInputStream(output.getBytes("UTF-8"));
+				}
+			});
+			return channel;
+		}
+	}
+}
@@ -0,0 +1,206 @@
+/******************************************************************************* 
+ * Copyright (c) 2011 Red Hat, Inc. 
+ * Distributed under license by Red Hat, Inc. All rights reserved. 
+ * This program is made available under the terms of the 
+ * Eclipse Public License v1.0 which accompanies this distribution, 
+ * and is available at http://www.eclipse.org/legal/epl-v10.html 
+ * 
+ * Contributors: 
+ * Red Hat, Inc. - initial API and implementation 
+ ******************************************************************************/
+package com.openshift.express.internal.client.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.openshift.express.client.LogLine;
+import com.openshift.express.client.archive.LogArchive;
+import com.openshift.express.internal.client.archive.LogSegment;
+
+/**
+ * @author agent
+ */
+public class LogArchiveTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File directory;
+	private LogArchive archive;
+
+	@Before
+	public void setUp() throws Exception {
+		this.directory = new File(folder.getRoot(), "app");
+		this.archive = new LogArchive("app", directory, 1024 * 1024, 64 * 1024);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		archive.close();
+	}
+
+	@Test
+	public void queriesTimeRange() throws Exception {
+		for (int i = 0; i < 1000; i++) {
+			archive.append(i, "line " + i);
+		}
+
+		List<LogLine> lines = archive.query(500, 503, 100);
+
+		assertEquals(3, lines.size());
+		assertEquals("line 500", lines.get(0).getLine());
+		assertEquals(500, lines.get(0).getTimestamp());
+		assertEquals("app", lines.get(0).getSource());
+		assertEquals("line 502", lines.get(2).getLine());
+	}
+
+	@Test
+	public void queriesKeywordsWithinTimeRange() throws Exception {
+		for (int i = 0; i < 5000; i++) {
+			String line = i % 1000 == 7
+					? "ERROR java.lang.NullPointerException in request " + i
+					: "INFO served request " + i;
+			archive.append(i, line);
+		}
+
+		List<LogLine> lines = archive.query(1000, 4000, 100, "nullpointerexception");
+
+		assertEquals(3, lines.size());
+		assertEquals("ERROR java.lang.NullPointerException in request 1007", lines.get(0).getLine());
+		assertEquals("ERROR java.lang.NullPointerException in request 3007", lines.get(2).getLine());
+		assertEquals(1, archive.query(0, Long.MAX_VALUE, 100, "java.lang", "request 7").size());
+		assertEquals(0, archive.query(0, Long.MAX_VALUE, 100, "NullPointer").size());
+	}
+
+	@Test
+	public void limitsResults() throws Exception {
+		for (int i = 0; i < 100; i++) {
+			archive.append(i, "line " + i);
+		}
+
+		assertEquals(10, archive.query(0, Long.MAX_VALUE, 10).size());
+	}
+
+	@Test
+	public void raisesOutOfOrderTimestamps() throws Exception {
+		archive.append(100, "first");
+		archive.append(50, "second");
+
+		List<LogLine> lines = archive.query(100, 101, 10);
+		assertEquals(2, lines.size());
+		assertEquals("second", lines.get(1).getLine());
+	}
+
+	@Test
+	public void raisesOutOfOrderTimestampsAcrossSegments() throws Exception {
+		archive.close();
+		this.archive = new LogArchive("app", directory, 1024 * 1024, 4096);
+		archive.append(100, "first");
+		int i = 0;
+		while (archive.getSegmentCount() < 2) {
+			archive.append(50, "late request " + i++ + " served");
+		}
+
+		assertEquals(0, archive.query(0, 100, 10).size());
+		assertEquals(i + 1, archive.query(100, 101, i + 1).size());
+	}
+
+	@Test
+	public void rollsSegmentsAndDeletesOldest() throws Exception {
+		archive.close();
+		this.archive = new LogArchive("app", directory, 4 * 4096, 4096);
+		for (int i = 0; i < 1000; i++) {
+			archive.append(i, "request " + i + " served");
+		}
+
+		assertEquals(4, archive.getSegmentCount());
+		assertEquals(4, directory.list().length);
+		assertTrue(archive.getSize() <= 4 * 4096);
+		assertEquals(0, archive.query(0, 100, 10).size());
+		assertEquals("request 999 served", archive.query(999, 1000, 10, "served").get(0).getLine());
+	}
+
+	@Test
+	public void reopensSegments() throws Exception {
+		archive.append(1, "ERROR failed to deploy");
+		archive.append(2, "INFO deployed");
+		long size = archive.getSize();
+		archive.close();
+
+		this.archive = new LogArchive("app", directory, 1024 * 1024, 64 * 1024);
+		assertEquals(size, archive.getSize());
+		assertEquals("ERROR failed to deploy", archive.query(0, 10, 10, "error").get(0).getLine());
+		archive.append(3, "ERROR failed again");
+		assertEquals(2, archive.query(0, 10, 10, "error").size());
+		assertEquals(1, archive.getSegmentCount());
+	}
+
+	@Test
+	public void skipsForeignFilesWhenReopening() throws Exception {
+		archive.append(1, "INFO deployed");
+		archive.close();
+		assertTrue(new File(directory, "notes.segment").createNewFile());
+
+		this.archive = new LogArchive("app", directory, 1024 * 1024, 64 * 1024);
+		assertEquals(1, archive.getSegmentCount());
+		assertEquals(1, archive.query(0, 10, 10, "deployed").size());
+	}
+
+	@Test
+	public void queriesTokensWithDigits() throws Exception {
+		for (int i = 0; i < 1000; i++) {
+			archive.append(i, "INFO served request " + Integer.toHexString(i * 7919) + "cafe");
+		}
+
+		List<LogLine> lines = archive.query(0, Long.MAX_VALUE, 10, Integer.toHexString(500 * 7919) + "cafe");
+		assertEquals(1, lines.size());
+		assertEquals(500, lines.get(0).getTimestamp());
+	}
+
+	@Test
+	public void queriesTokensBeyondIndexedVocabulary() throws Exception {
+		LogSegment segment = new LogSegment(folder.newFile("vocabulary.segment"), 1024 * 1024);
+		int words = LogSegment.MAX_INDEXED_TOKENS + 10;
+		for (int i = 0; i < words; i++) {
+			assertTrue(segment.append(i, "word " + toLetters(i)));
+		}
+
+		List<LogLine> lines = new ArrayList<LogLine>();
+		segment.query(0, Long.MAX_VALUE, LogSegment.tokenize(toLetters(words - 1)), "app", lines, 10);
+		assertEquals(1, lines.size());
+		assertEquals(words - 1, lines.get(0).getTimestamp());
+		lines.clear();
+		segment.query(0, Long.MAX_VALUE, LogSegment.tokenize("absent"), "app", lines, 10);
+		assertEquals(0, lines.size());
+		segment.delete();
+		assertFalse(segment.getFile().exists());
+	}
+
+	@Test
+	public void archivesLogReader() throws Exception {
+		assertEquals(3, archive.archive(new StringReader("a\nb\nc\n")));
+
+		assertEquals(3, archive.query(0, Long.MAX_VALUE, 10).size());
+	}
+
+	private String toLetters(int number) {
+		StringBuilder builder = new StringBuilder();
+		do {
+			builder.append((char) ('a' + number % 26));
+			number /= 26;
+		} while (number > 0);
+		return builder.toString();
+	}
+}
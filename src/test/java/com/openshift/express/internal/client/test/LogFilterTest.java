@@ -0,0 +1,217 @@
+/******************************************************************************* 
+ * Copyright (c) 2011 Red Hat, Inc. 
+ * Distributed under license by Red Hat, Inc. All rights reserved. 
+ * This program is made available under the terms of the 
+ * Eclipse Public License v1.0 which accompanies this distribution, 
+ * and is available at http://www.eclipse.org/legal/epl-v10.html 
+ * 
+ * Contributors: 
+ * Red Hat, Inc. - initial API and implementation 
+ ******************************************************************************/
+package com.openshift.express.internal.client.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+import org.junit.Test;
+
+import com.openshift.express.client.Cartridge;
+import com.openshift.express.client.IDomain;
+import com.openshift.express.client.IUser;
+import com.openshift.express.client.LogFilter;
+import com.openshift.express.client.LogLevel;
+import com.openshift.express.client.OpenShiftService;
+import com.openshift.express.internal.client.ssh.SshSessionKey;
+import com.openshift.express.internal.client.ssh.SshSessionPool;
+
+/**
+ * @author agent
+ */
+public class LogFilterTest {
+
+	private static final String LOG = "/var/lib/libra/app-ns/app/logs/server.log";
+
+	@Test
+	public void unfilteredLogIsTailed() {
+		assertEquals("tail -n 100 " + LOG, new LogFilter().createCommand(LOG, 100));
+	}
+
+	@Test
+	public void portablePatternIsPushedDown() {
+		LogFilter filter = new LogFilter().setPattern("Exception: .*[0-9]+ (times|tries)");
+
+		assertEquals("grep -E -e 'Exception: .*[0-9]+ (times|tries)' " + LOG + " | tail -n 100",
+				filter.createCommand(LOG, 100));
+		assertTrue(filter.isPushedDown());
+	}
+
+	@Test
+	public void patternWithJavaOnlySyntaxIsFilteredOnClient() {
+		assertClientOnly("\\d+ ms");
+		assertClientOnly("(?i)error");
+		assertClientOnly("a.*?b");
+		assertClientOnly("[\\]x]");
+		assertClientOnly("[a-z&&[^e]]");
+		assertClientOnly("foo(?=bar)");
+	}
+
+	@Test
+	public void escapedMetacharactersArePushedDown() {
+		LogFilter filter = new LogFilter().setPattern("GET /index\\.php\\?id=\\(1\\)");
+
+		assertEquals("grep -E -e 'GET /index\\.php\\?id=\\(1\\)' " + LOG + " | tail -n 10",
+				filter.createCommand(LOG, 10));
+		assertTrue(filter.isPushedDown());
+	}
+
+	@Test
+	public void escapesThatGrepReadsAsAnchorsAreFilteredOnClient() {
+		assertClientOnly("a\\<b");
+		assertClientOnly("\\>");
+		assertClientOnly("\\`start");
+		assertClientOnly("end\\'");
+		assertClientOnly("a\\/b");
+	}
+
+	@Test
+	public void patternWithQuoteIsQuotedForShell() {
+		LogFilter filter = new LogFilter().setPattern("can't connect");
+
+		assertEquals("grep -E -e 'can'\\''t connect' " + LOG + " | tail -n 10", filter.createCommand(LOG, 10));
+	}
+
+	@Test
+	public void levelIncludesMoreSevereLevels() {
+		LogFilter filter = new LogFilter().setLevel(LogLevel.ERROR);
+
+		assertEquals("grep -E -e '(^|[^A-Za-z])(ERROR|SEVERE|FATAL)([^A-Za-z]|$)' " + LOG + " | tail -n 10",
+				filter.createCommand(LOG, 10));
+		assertTrue(filter.matches("10:22:51,001 ERROR [org.jboss.as] failed"));
+		assertTrue(filter.matches("10:22:51,001 FATAL [org.jboss.as] failed"));
+		assertFalse(filter.matches("10:22:51,001 WARN  [org.jboss.as] ERRORS=0"));
+		assertFalse(filter.matches("10:22:51,001 INFO  [org.jboss.as] started"));
+	}
+
+	@Test
+	public void sortableTimeWindowIsPushedDown() throws Exception {
+		SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+		LogFilter filter = new LogFilter().setLevel(LogLevel.WARN).setTimeWindow(
+				format.parse("2011-11-05 10:00:00"), format.parse("2011-11-05 11:00:00"), "yyyy-MM-dd HH:mm:ss");
+
+		assertEquals("grep -E -e '(^|[^A-Za-z])(WARN|WARNING|ERROR|SEVERE|FATAL)([^A-Za-z]|$)' " + LOG
+				+ " | awk 'substr($0, 1, 19) >= \"2011-11-05 10:00:00\" && substr($0, 1, 19) < \"2011-11-05 11:00:00\"'"
+				+ " | tail -n 10",
+				filter.createCommand(LOG, 10));
+		assertTrue(filter.isPushedDown());
+		assertTrue(filter.matches("2011-11-05 10:00:00 WARN starting"));
+		assertFalse(filter.matches("2011-11-05 11:00:00 WARN stopped"));
+		assertFalse(filter.matches("\tat org.jboss.as.Server.start(Server.java:42) WARN"));
+	}
+
+	@Test
+	public void unsortableTimeWindowIsFilteredOnClient() throws Exception {
+		String timestampFormat = "dd/MMM/yyyy:HH:mm:ss";
+		SimpleDateFormat format = new SimpleDateFormat(timestampFormat);
+		LogFilter filter = new LogFilter().setTimeWindow(format.parse("05/Nov/2011:10:00:00"), null, timestampFormat);
+
+		assertEquals("tail -n 100 " + LOG, filter.createCommand(LOG, 10));
+		assertFalse(filter.isPushedDown());
+		assertEquals("06/Nov/2011:09:00:00 GET /\n",
+				filter.filter("04/Nov/2011:23:00:00 GET /health\n06/Nov/2011:09:00:00 GET /\n"));
+	}
+
+	@Test
+	public void serviceFiltersLinesThatWereNotPushedDown() throws Exception {
+		final String[] command = new String[1];
+		SshSessionPool pool = new SshSessionPool() {
+
+			public String execute(SshSessionKey key, String remoteCommand) {
+				command[0] = remoteCommand;
+				return "12:00:01 ERROR took 12 ms\n12:00:02 ERROR took ages\n";
+			}
+		};
+		OpenShiftService service = new OpenShiftService("test", "https://openshift.redhat.com/broker");
+		service.setSshSessionPool(pool);
+		IUser user = mock(IUser.class);
+		IDomain domain = mock(IDomain.class);
+		when(domain.getNamespace()).thenReturn("ns");
+		when(user.getDomain()).thenReturn(domain);
+		when(user.getRhlogin()).thenReturn("toolsjboss@gmail.com");
+		LogFilter filter = new LogFilter().setLevel(LogLevel.ERROR).setPattern("\\d+ ms");
+
+		String log = service.getStatus("app", Cartridge.JBOSSAS_7, user, "logs/server.log", 10, filter);
+
+		pool.shutdown();
+		assertEquals("12:00:01 ERROR took 12 ms\n", log);
+		assertEquals("grep -E -e '(^|[^A-Za-z])(ERROR|SEVERE|FATAL)([^A-Za-z]|$)' "
+				+ "/var/lib/libra/app-ns/app/jbossas-7.0/logs/server.log | tail -n 100", command[0]);
+	}
+
+	@Test
+	public void serviceReturnsLastMatchingLinesOfPatternThatWasNotPushedDown() throws Exception {
+		final String[] command = new String[1];
+		SshSessionPool pool = new SshSessionPool() {
+
+			public String execute(SshSessionKey key, String remoteCommand) {
+				command[0] = remoteCommand;
+				StringBuilder log = new StringBuilder();
+				for (int i = 0; i < 20; i++) {
+					log.append("took ").append(i % 5 == 0 ? i + " ms" : "ages").append('\n');
+				}
+				return log.toString();
+			}
+		};
+		OpenShiftService service = new OpenShiftService("test", "https://openshift.redhat.com/broker");
+		service.setSshSessionPool(pool);
+		IUser user = mock(IUser.class);
+		IDomain domain = mock(IDomain.class);
+		when(domain.getNamespace()).thenReturn("ns");
+		when(user.getDomain()).thenReturn(domain);
+		when(user.getRhlogin()).thenReturn("toolsjboss@gmail.com");
+		LogFilter filter = new LogFilter().setPattern("\\d+ ms");
+
+		String log = service.getStatus("app", Cartridge.JBOSSAS_7, user, "logs/server.log", 2, filter);
+
+		pool.shutdown();
+		assertFalse(filter.isPushedDown());
+		assertEquals("took 10 ms\ntook 15 ms\n", log);
+		assertEquals("tail -n 20 /var/lib/libra/app-ns/app/jbossas-7.0/logs/server.log", command[0]);
+	}
+
+	@Test
+	public void serviceReturnsAllLinesWithoutFilter() throws Exception {
+		final String[] command = new String[1];
+		SshSessionPool pool = new SshSessionPool() {
+
+			public String execute(SshSessionKey key, String remoteCommand) {
+				command[0] = remoteCommand;
+				return "12:00:01 INFO started\n";
+			}
+		};
+		OpenShiftService service = new OpenShiftService("test", "https://openshift.redhat.com/broker");
+		service.setSshSessionPool(pool);
+		IUser user = mock(IUser.class);
+		IDomain domain = mock(IDomain.class);
+		when(domain.getNamespace()).thenReturn("ns");
+		when(user.getDomain()).thenReturn(domain);
+		when(user.getRhlogin()).thenReturn("toolsjboss@gmail.com");
+
+		String log = service.getStatus("app", Cartridge.JBOSSAS_7, user, "logs/server.log", 10, null);
+
+		pool.shutdown();
+		assertEquals("12:00:01 INFO started\n", log);
+		assertEquals("tail -10 /var/lib/libra/app-ns/app/jbossas-7.0/logs/server.log", command[0]);
+	}
+
+	private void assertClientOnly(String pattern) {
+		LogFilter filter = new LogFilter().setPattern(pattern);
+		assertEquals(pattern, "tail -n 100 " + LOG, filter.createCommand(LOG, 10));
+		assertFalse(pattern, filter.isPushedDown());
+	}
+}
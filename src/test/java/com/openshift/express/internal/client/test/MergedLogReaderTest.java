@@ -0,0 +1,124 @@
+/******************************************************************************* 
+ * Copyright (c) 2011 Red Hat, Inc. 
+ * Distributed under license by Red Hat, Inc. All rights reserved. 
+ * This program is made available under the terms of the 
+ * Eclipse Public License v1.0 which accompanies this distribution, 
+ * and is available at http://www.eclipse.org/legal/epl-v10.html 
+ * 
+ * Contributors: 
+ * Red Hat, Inc. - initial API and implementation 
+ ******************************************************************************/
+package com.openshift.express.internal.client.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.openshift.express.client.Cartridge;
+import com.openshift.express.client.ICartridge;
+import com.openshift.express.client.IOpenShiftService;
+import com.openshift.express.client.IUser;
+import com.openshift.express.client.MergedLogReader;
+import com.openshift.express.internal.client.Application;
+import com.openshift.express.internal.client.InternalUser;
+
+/**
+ * @author agent
+ */
+public class MergedLogReaderTest {
+
+	private static final String FORMAT = "HH:mm:ss,SSS";
+
+	@Test
+	public void mergesInTimestampOrder() throws IOException {
+		Map<String, Reader> logs = new LinkedHashMap<String, Reader>();
+		logs.put("server.log", new StringReader(
+				"10:00:00,000 INFO starting\n"
+						+ "10:00:02,000 INFO started\n"
+						+ "10:00:05,000 INFO stopping\n"));
+		logs.put("stdout.log", new StringReader(
+				"10:00:01,000 deploying\n"
+						+ "10:00:03,000 deployed\n"));
+		logs.put("boot.log", new StringReader(
+				"10:00:04,000 booted\n"));
+
+		assertEquals("10:00:00,000 INFO starting\n"
+				+ "10:00:01,000 deploying\n"
+				+ "10:00:02,000 INFO started\n"
+				+ "10:00:03,000 deployed\n"
+				+ "10:00:04,000 booted\n"
+				+ "10:00:05,000 INFO stopping\n",
+				read(new MergedLogReader(logs, FORMAT)));
+	}
+
+	@Test
+	public void keepsLinesWithoutTimestampWithTheirLine() throws IOException {
+		Map<String, Reader> logs = new LinkedHashMap<String, Reader>();
+		logs.put("server.log", new StringReader(
+				"10:00:00,000 ERROR failed\n"
+						+ "java.lang.IllegalStateException\n"
+						+ "\tat org.jboss.as.Server.start(Server.java:42)\n"
+						+ "10:00:03,000 INFO retrying\n"));
+		logs.put("stdout.log", new StringReader(
+				"10:00:01,000 deploying\n"));
+
+		assertEquals("10:00:00,000 ERROR failed\n"
+				+ "java.lang.IllegalStateException\n"
+				+ "\tat org.jboss.as.Server.start(Server.java:42)\n"
+				+ "10:00:01,000 deploying\n"
+				+ "10:00:03,000 INFO retrying\n",
+				read(new MergedLogReader(logs, FORMAT)));
+	}
+
+	@Test
+	public void tagsLinesAndBreaksTiesByLogOrder() throws IOException {
+		Map<String, Reader> logs = new LinkedHashMap<String, Reader>();
+		logs.put("b.log", new StringReader("10:00:00,000 b\n"));
+		logs.put("a.log", new StringReader("no timestamp\n10:00:00,000 a\n"));
+		MergedLogReader reader = new MergedLogReader(logs, FORMAT);
+		reader.setTagged(true);
+
+		assertEquals("[a.log] no timestamp\n"
+				+ "[b.log] 10:00:00,000 b\n"
+				+ "[a.log] 10:00:00,000 a\n",
+				read(reader));
+	}
+
+	@Test
+	public void applicationMergesTailsOfLogs() throws Exception {
+		IOpenShiftService service = mock(IOpenShiftService.class);
+		when(service.getStatus(eq("app"), any(ICartridge.class), any(IUser.class), eq("logs/server.log"), anyInt()))
+				.thenReturn("10:00:00,000 INFO starting\n10:00:02,000 INFO started\n");
+		when(service.getStatus(eq("app"), any(ICartridge.class), any(IUser.class), eq("stdout.log"), anyInt()))
+				.thenReturn("10:00:01,000 thread dump\n");
+		Application application =
+				new Application("app", "uuid", "", null, Cartridge.JBOSSAS_7, mock(InternalUser.class), service);
+
+		assertEquals("10:00:00,000 INFO starting\n"
+				+ "10:00:01,000 thread dump\n"
+				+ "10:00:02,000 INFO started\n",
+				read(application.getMergedLogReader(100, FORMAT, "logs/server.log", "stdout.log")));
+	}
+
+	private String read(Reader reader) throws IOException {
+		StringBuilder builder = new StringBuilder();
+		char[] buffer = new char[5];
+		int read;
+		while ((read = reader.read(buffer)) != -1) {
+			builder.append(buffer, 0, read);
+		}
+		reader.close();
+		return builder.toString();
+	}
+}
@@ -0,0 +1,223 @@
+/******************************************************************************* 
+ * Copyright (c) 2011 Red Hat, Inc. 
+ * Distributed under license by Red Hat, Inc. All rights reserved. 
+ * This program is made available under the terms of the 
+ * Eclipse Public License v1.0 which accompanies this distribution, 
+ * and is available at http://www.eclipse.org/legal/epl-v10.html 
+ * 
+ * Contributors: 
+ * Red Hat, Inc. - initial API and implementation 
+ ******************************************************************************/
+package com.openshift.express.internal.client.test;
+
+import static com.openshift.express.internal.client.test.utils.ApplicationInfoAsserts.assertThatContainsApplicationInfo;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.MalformedURLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.openshift.express.client.Cartridge;
+import com.openshift.express.client.ICartridge;
+import com.openshift.express.client.IEmbeddableCartridge;
+import com.openshift.express.client.IHttpClient;
+import com.openshift.express.client.OpenShiftException;
+import com.openshift.express.client.OpenShiftService;
+import com.openshift.express.internal.client.ApplicationInfo;
+import com.openshift.express.internal.client.EmbeddableCartridgeInfo;
+import com.openshift.express.internal.client.InternalUser;
+import com.openshift.express.internal.client.UserInfo;
+import com.openshift.express.internal.client.cache.ModelSnapshot;
+import com.openshift.express.internal.client.cache.ModelSnapshotStore;
+import com.openshift.express.internal.client.cache.ModelSnapshotWarmStart;
+import com.openshift.express.internal.client.response.unmarshalling.JsonSanitizer;
+import com.openshift.express.internal.client.response.unmarshalling.UserInfoResponseUnmarshaller;
+import com.openshift.express.internal.client.test.fakes.CartridgeResponseFake;
+import com.openshift.express.internal.client.test.fakes.UserInfoResponseFake;
+
+/**
+ * @author agent
+ */
+public class ModelSnapshotTest {
+
+	private static final String BROKER_URL = "https://openshift.redhat.com";
+	private static final long ONE_HOUR = 60 * 60 * 1000;
+
+	private File folder;
+
+	@Before
+	public void setUp() throws IOException {
+		this.folder = File.createTempFile("openshift-snapshot", "");
+		folder.delete();
+	}
+
+	@After
+	public void tearDown() {
+		File[] files = folder.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				file.delete();
+			}
+		}
+		folder.delete();
+	}
+
+	@Test
+	public void canSaveAndLoadSnapshot() throws Exception {
+		ModelSnapshotStore store = new ModelSnapshotStore(folder, ONE_HOUR);
+		store.save(createSnapshot(System.currentTimeMillis()));
+
+		ModelSnapshot snapshot = store.load(BROKER_URL, UserInfoResponseFake.RHLOGIN);
+		assertNotNull(snapshot);
+		UserInfo userInfo = snapshot.getUserInfo();
+		assertEquals(UserInfoResponseFake.RHLOGIN, userInfo.getRhLogin());
+		assertEquals(UserInfoResponseFake.UUID, userInfo.getUuid());
+		assertEquals(UserInfoResponseFake.SSH_KEY, userInfo.getSshPublicKey().getPublicKey());
+		assertEquals(UserInfoResponseFake.NAMESPACE, userInfo.getNamespace());
+		assertEquals(UserInfoResponseFake.RHC_DOMAIN, userInfo.getRhcDomain());
+		assertEquals(2, userInfo.getApplicationInfos().size());
+		assertThatContainsApplicationInfo(
+				UserInfoResponseFake.APP2_NAME,
+				Collections.singletonList(
+						UserInfoResponseFake.toEmbeddableCartridge(
+								UserInfoResponseFake.APP2_EMBEDDED_NAME,
+								UserInfoResponseFake.APP2_EMBEDDED_URL)),
+				UserInfoResponseFake.APP2_UUID,
+				UserInfoResponseFake.APP2_CARTRIDGE,
+				UserInfoResponseFake.APP2_CREATION_TIME,
+				userInfo.getApplicationInfos());
+		assertEquals(1, snapshot.getCartridges().size());
+		assertEquals(CartridgeResponseFake.CARTRIDGE_JBOSSAS70, snapshot.getCartridges().get(0).getName());
+		assertEquals(1, snapshot.getEmbeddableCartridges().size());
+		assertEquals(IEmbeddableCartridge.MYSQL_51.getName(), snapshot.getEmbeddableCartridges().get(0).getName());
+	}
+
+	@Test
+	public void doesNotLoadSnapshotOfOtherBroker() throws Exception {
+		ModelSnapshotStore store = new ModelSnapshotStore(folder, ONE_HOUR);
+		store.save(createSnapshot(System.currentTimeMillis()));
+
+		assertNull(store.load("https://localhost", UserInfoResponseFake.RHLOGIN));
+	}
+
+	@Test
+	public void doesNotLoadOutdatedSnapshot() throws Exception {
+		ModelSnapshotStore store = new ModelSnapshotStore(folder, ONE_HOUR);
+		store.save(createSnapshot(System.currentTimeMillis() - 2 * ONE_HOUR));
+
+		assertNull(store.load(BROKER_URL, UserInfoResponseFake.RHLOGIN));
+	}
+
+	@Test
+	public void doesNotLoadCorruptSnapshot() throws Exception {
+		ModelSnapshotStore store = new ModelSnapshotStore(folder, ONE_HOUR);
+		store.save(createSnapshot(System.currentTimeMillis()));
+		File file = folder.listFiles()[0];
+
+		// length of the broker url, after magic and version
+		writeInt(Integer.MAX_VALUE, 6, file);
+		assertNull(store.load(BROKER_URL, UserInfoResponseFake.RHLOGIN));
+		writeInt(-5, 6, file);
+		assertNull(store.load(BROKER_URL, UserInfoResponseFake.RHLOGIN));
+	}
+
+	@Test
+	public void canSaveAndLoadApplicationWithoutCartridge() throws Exception {
+		ModelSnapshotStore store = new ModelSnapshotStore(folder, ONE_HOUR);
+		ModelSnapshot snapshot = createSnapshot(System.currentTimeMillis());
+		List<ApplicationInfo> applicationInfos = new ArrayList<ApplicationInfo>();
+		applicationInfos.add(new ApplicationInfo("app", "uuid", (List<EmbeddableCartridgeInfo>) null, null, null));
+		UserInfo userInfo = snapshot.getUserInfo();
+		store.save(new ModelSnapshot(BROKER_URL, UserInfoResponseFake.RHLOGIN, snapshot.getTimestamp(),
+				new UserInfo(userInfo.getRhLogin(), userInfo.getUuid(), userInfo.getSshPublicKey().getPublicKey(),
+						userInfo.getRhcDomain(), userInfo.getNamespace(), applicationInfos,
+						userInfo.getSshPublicKey().getKeyType().getTypeId()),
+				snapshot.getCartridges(), snapshot.getEmbeddableCartridges()));
+
+		ModelSnapshot loaded = store.load(BROKER_URL, UserInfoResponseFake.RHLOGIN);
+		assertNotNull(loaded);
+		assertNull(loaded.getUserInfo().getApplicationInfos().get(0).getCartridge());
+	}
+
+	@Test
+	public void warmStartDoesNotSaveSnapshotFetchedBeforeInvalidation() throws Exception {
+		final ModelSnapshotStore store = new ModelSnapshotStore(folder, ONE_HOUR);
+		final ModelSnapshotWarmStart warmStart = new ModelSnapshotWarmStart(store, BROKER_URL);
+		final CountDownLatch refreshed = new CountDownLatch(1);
+
+		warmStart.get(UserInfoResponseFake.RHLOGIN, new Callable<ModelSnapshot>() {
+
+			public ModelSnapshot call() throws Exception {
+				ModelSnapshot snapshot = createSnapshot(System.currentTimeMillis());
+				// the model is altered while it is fetched
+				warmStart.invalidate(UserInfoResponseFake.RHLOGIN);
+				refreshed.countDown();
+				return snapshot;
+			}
+		});
+
+		assertTrue(refreshed.await(5, TimeUnit.SECONDS));
+		Thread.sleep(200);
+		assertNull(store.load(BROKER_URL, UserInfoResponseFake.RHLOGIN));
+	}
+
+	@Test
+	public void serviceServesSnapshotWithoutBroker() throws Exception {
+		ModelSnapshotStore store = new ModelSnapshotStore(folder, ONE_HOUR);
+		store.save(createSnapshot(System.currentTimeMillis()));
+		OpenShiftService service = new UnreachableBrokerService();
+		service.setModelSnapshotStore(store);
+		InternalUser user = new InternalUser(UserInfoResponseFake.RHLOGIN, UserInfoResponseFake.PASSWORD, service);
+
+		assertEquals(UserInfoResponseFake.UUID, user.getUUID());
+		assertEquals(1, user.getCartridges().size());
+	}
+
+	private void writeInt(int value, long position, File file) throws IOException {
+		RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+		try {
+			randomAccessFile.seek(position);
+			randomAccessFile.writeInt(value);
+		} finally {
+			randomAccessFile.close();
+		}
+	}
+
+	private ModelSnapshot createSnapshot(long timestamp) throws OpenShiftException {
+		UserInfo userInfo = new UserInfoResponseUnmarshaller()
+				.unmarshall(JsonSanitizer.sanitize(UserInfoResponseFake.RESPONSE)).getOpenShiftObject();
+		List<ICartridge> cartridges = new ArrayList<ICartridge>();
+		cartridges.add(new Cartridge(CartridgeResponseFake.CARTRIDGE_JBOSSAS70));
+		List<IEmbeddableCartridge> embeddableCartridges = new ArrayList<IEmbeddableCartridge>();
+		embeddableCartridges.add(IEmbeddableCartridge.MYSQL_51);
+		return new ModelSnapshot(
+				BROKER_URL, UserInfoResponseFake.RHLOGIN, timestamp, userInfo, cartridges, embeddableCartridges);
+	}
+
+	private static class UnreachableBrokerService extends OpenShiftService {
+
+		private UnreachableBrokerService() {
+			super("test", BROKER_URL);
+		}
+
+		@Override
+		protected IHttpClient createHttpClient(String id, String url, boolean verifyHostnames)
+				throws MalformedURLException {
+			throw new MalformedURLException("broker is not reachable");
+		}
+	}
+}
@@ -21,7 +21,29 @@ import org.junit.runners.Suite;
 	EmbedTest.class,
 	ApplicationLogReaderTest.class,
 	DomainTest.class,
+	ApplicationOperationQueueTest.class,
+	SessionManagerTest.class,
+	AimdLimitTest.class,
+	TokenBucketRateLimiterTest.class,
+	SshSessionPoolTest.class,
+	StreamingLogReaderTest.class,
+	LogAggregatorTest.class,
+	BoundedLogReaderTest.class,
+	LogFilterTest.class,
+	MergedLogReaderTest.class,
+	LogArchiveTest.class,
+	ThreadDumpParserTest.class,
+	RemoteCommandRunnerTest.class,
+	ScheduledWaiterTest.class,
+	HealthMonitorTest.class,
+	ApplicationWorkflowEngineTest.class,
 	UserInfoTest.class,
+	RequestCoalescerTest.class,
+	ModelSnapshotTest.class,
+	ApplicationInfoFootprintTest.class,
+	FleetInventoryTest.class,
+	BulkApplicationOperationTest.class,
+	BulkEmbedOperationTest.class,
 	UserTest.class,
 	CartridgeTest.class,
 	EmbeddableCartridgeTest.class,
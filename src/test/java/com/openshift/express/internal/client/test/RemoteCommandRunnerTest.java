@@ -0,0 +1,307 @@
+/******************************************************************************* 
+ * Copyright (c) 2011 Red Hat, Inc. 
+ * Distributed under license by Red Hat, Inc. All rights reserved. 
+ * This program is made available under the terms of the 
+ * Eclipse Public License v1.0 which accompanies this distribution, 
+ * and is available at http://www.eclipse.org/legal/epl-v10.html 
+ * 
+ * Contributors: 
+ * Red Hat, Inc. - initial API and implementation 
+ ******************************************************************************/
+package com.openshift.express.internal.client.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.jcraft.jsch.ChannelExec;
+import com.jcraft.jsch.JSchException;
+import com.jcraft.jsch.Session;
+import com.openshift.express.client.IRemoteCommandListener;
+import com.openshift.express.client.RemoteCommandResult;
+import com.openshift.express.client.RemoteCommandRunner;
+import com.openshift.express.client.RemoteCommandTarget;
+import com.openshift.express.internal.client.ssh.SshSessionKey;
+import com.openshift.express.internal.client.ssh.SshSessionPool;
+
+/**
+ * @author agent
+ */
+public class RemoteCommandRunnerTest {
+
+	private ExecSshSessionPoolFake pool = new ExecSshSessionPoolFake();
+
+	@After
+	public void tearDown() {
+		pool.shutdown();
+	}
+
+	@Test
+	public void collectsOutputAndExitCodes() throws Exception {
+		pool.stdout = "line1\nline2\n";
+		pool.stderr = "warning\n";
+		List<RemoteCommandTarget> targets = createTargets("app-ok", "app-failing");
+
+		List<RemoteCommandResult> results =
+				new RemoteCommandRunner(pool, 4).run(targets, "df -h .", 5 * 1000, null);
+
+		assertEquals(2, results.size());
+		assertEquals("app-ok", results.get(0).getTarget().getName());
+		assertEquals(0, results.get(0).getExitCode());
+		assertTrue(results.get(0).isSuccessful());
+		assertTrue(results.get(0).getOutput().contains("line1\nline2\n"));
+		assertTrue(results.get(0).getOutput().contains("warning\n"));
+		assertEquals(1, results.get(1).getExitCode());
+		assertFalse(results.get(1).isSuccessful());
+		assertEquals(0, pool.getLeases());
+	}
+
+	@Test
+	public void streamsLinesToListener() throws Exception {
+		pool.stdout = "line1\nline2\nunterminated";
+		pool.stderr = "warning\n";
+		final List<String> lines = Collections.synchronizedList(new ArrayList<String>());
+		final List<RemoteCommandResult> done = Collections.synchronizedList(new ArrayList<RemoteCommandResult>());
+
+		new RemoteCommandRunner(pool, 4).run(createTargets("app"), "ls", 5 * 1000, new IRemoteCommandListener() {
+
+			public void lineRead(RemoteCommandTarget target, String line, boolean stderr) {
+				lines.add((stderr ? "err:" : "out:") + line);
+			}
+
+			public void done(RemoteCommandResult result) {
+				done.add(result);
+			}
+		});
+
+		assertEquals(4, lines.size());
+		assertTrue(lines.contains("out:line1"));
+		assertTrue(lines.contains("out:unterminated"));
+		assertTrue(lines.contains("err:warning"));
+		assertEquals(1, done.size());
+	}
+
+	@Test
+	public void boundsLinesAndRetainedOutput() throws Exception {
+		StringBuilder stdout = new StringBuilder();
+		for (int i = 0; i < 100; i++) {
+			stdout.append("0123456789");
+		}
+		pool.stdout = stdout.append('\n').toString();
+		RemoteCommandRunner runner = new RemoteCommandRunner(pool, 4);
+		runner.setMaxLineLength(100);
+		runner.setRetainedOutput(50);
+		final List<String> lines = Collections.synchronizedList(new ArrayList<String>());
+
+		RemoteCommandResult result = runner.run(createTargets("app"), "cat", 5 * 1000, new IRemoteCommandListener() {
+
+			public void lineRead(RemoteCommandTarget target, String line, boolean stderr) {
+				lines.add(line);
+			}
+
+			public void done(RemoteCommandResult result) {
+			}
+		}).get(0);
+
+		assertEquals(10, lines.size());
+		assertEquals(100, lines.get(0).length());
+		assertEquals(50, result.getOutput().length());
+		assertTrue(result.isTruncated());
+	}
+
+	@Test
+	public void timesOutPerTarget() throws Exception {
+		pool.runMillis = 60 * 1000;
+		long start = System.currentTimeMillis();
+
+		RemoteCommandResult result =
+				new RemoteCommandRunner(pool, 4).run(createTargets("app-hanging"), "sleep 60", 100, null).get(0);
+
+		assertTrue(result.isTimedOut());
+		assertEquals(RemoteCommandResult.NO_EXIT_CODE, result.getExitCode());
+		assertTrue(System.currentTimeMillis() - start < 5 * 1000);
+		assertEquals(0, pool.getLeases());
+	}
+
+	@Test
+	public void splitsLinesAtCharacterBoundary() throws Exception {
+		// the 2 bytes of each umlaut would be cut at 5 bytes
+		pool.stdout = "abcd\u00e4\u00f6\u00fc\n";
+		RemoteCommandRunner runner = new RemoteCommandRunner(pool, 4);
+		runner.setMaxLineLength(5);
+		final List<String> lines = Collections.synchronizedList(new ArrayList<String>());
+
+		runner.run(createTargets("app"), "cat", 5 * 1000, new IRemoteCommandListener() {
+
+			public void lineRead(RemoteCommandTarget target, String line, boolean stderr) {
+				lines.add(line);
+			}
+
+			public void done(RemoteCommandResult result) {
+			}
+		});
+
+		assertEquals(Arrays.asList("abcd", "\u00e4\u00f6", "\u00fc"), lines);
+	}
+
+	@Test
+	public void connectsWithinTimeout() throws Exception {
+		pool.connectMillis = 200;
+
+		RemoteCommandResult result =
+				new RemoteCommandRunner(pool, 4).run(createTargets("app-slow"), "ls", 1000, null).get(0);
+
+		assertTrue(result.isSuccessful());
+		assertTrue(pool.connectTimeouts.get(0) <= 1000);
+		assertTrue(pool.channelConnectTimeouts.get(0) > 0);
+		assertTrue(pool.channelConnectTimeouts.get(0) <= 1000 - 200);
+	}
+
+	@Test
+	public void timesOutWhileConnecting() throws Exception {
+		pool.connectMillis = 500;
+
+		RemoteCommandResult result =
+				new RemoteCommandRunner(pool, 4).run(createTargets("app-slow"), "ls", 100, null).get(0);
+
+		assertTrue(result.isTimedOut());
+		assertTrue(pool.channelConnectTimeouts.isEmpty());
+		assertEquals(0, pool.getLeases());
+	}
+
+	@Test
+	public void reportsFailureToConnect() throws Exception {
+		RemoteCommandResult result =
+				new RemoteCommandRunner(pool, 4).run(createTargets("unreachable"), "ls", 1000, null).get(0);
+
+		assertNotNull(result.getFailure());
+		assertFalse(result.isSuccessful());
+	}
+
+	@Test
+	public void runsTargetsConcurrently() throws Exception {
+		pool.runMillis = 200;
+		List<String> names = new ArrayList<String>();
+		for (int i = 0; i < 50; i++) {
+			names.add("app" + i);
+		}
+		long start = System.currentTimeMillis();
+
+		List<RemoteCommandResult> results =
+				new RemoteCommandRunner(pool, 50).run(createTargets(names.toArray(new String[names.size()])), "ls",
+						5 * 1000, null);
+
+		// sequentially it would take 10s
+		assertTrue(System.currentTimeMillis() - start < 5 * 1000);
+		assertEquals(50, results.size());
+		for (RemoteCommandResult result : results) {
+			assertTrue(result.toString(), result.isSuccessful());
+		}
+	}
+
+	private List<RemoteCommandTarget> createTargets(String... names) {
+		List<RemoteCommandTarget> targets = new ArrayList<RemoteCommandTarget>();
+		for (String name : names) {
+			targets.add(new RemoteCommandTarget(name, new SshSessionKey(name, "localhost", null, null)));
+		}
+		return targets;
+	}
+
+	/**
+	 * Runs each command for the given time with the given output. Sessions take
+	 * the given time to connect and record their timeouts. Commands of users
+	 * that contain "failing" exit with 1, users that are "unreachable" cannot
+	 * connect.
+	 */
+	private static class ExecSshSessionPoolFake extends SshSessionPool {
+
+		private volatile String stdout = "";
+		private volatile String stderr = "";
+		private volatile long runMillis = 0;
+		private volatile long connectMillis = 0;
+		private final List<Integer> connectTimeouts = Collections.synchronizedList(new ArrayList<Integer>());
+		private final List<Integer> channelConnectTimeouts =
+				Collections.synchronizedList(new ArrayList<Integer>());
+		private int leases;
+
+		public Session acquire(SshSessionKey key, int connectTimeout) throws JSchException {
+			Session session = super.acquire(key, connectTimeout);
+			synchronized (this) {
+				leases++;
+			}
+			return session;
+		}
+
+		public void release(SshSessionKey key) {
+			synchronized (this) {
+				leases--;
+			}
+			super.release(key);
+		}
+
+		private synchronized int getLeases() {
+			return leases;
+		}
+
+		protected Session connect(final SshSessionKey key, int timeout) throws JSchException {
+			if (key.getUser().equals("unreachable")) {
+				throw new JSchException("connection refused");
+			}
+			connectTimeouts.add(timeout);
+			try {
+				Thread.sleep(connectMillis);
+			} catch (InterruptedException e) {
+				throw new JSchException("interrupted");
+			}
+			Session session = mock(Session.class);
+			when(session.isConnected()).thenReturn(true);
+			when(session.openChannel("exec")).thenAnswer(new Answer<ChannelExec>() {
+
+				public ChannelExec answer(InvocationOnMock invocation) throws Throwable {
+					return createChannel(key.getUser().contains("failing") ? 1 : 0);
+				}
+			});
+			return session;
+		}
+
+		private ChannelExec createChannel(int exitStatus) throws IOException, JSchException {
+			ChannelExec channel = mock(ChannelExec.class);
+			final long[] connected = new long[1];
+			doAnswer(new Answer<Void>() {
+
+				public Void answer(InvocationOnMock invocation) throws Throwable {
+					channelConnectTimeouts.add((Integer) invocation.getArguments()[0]);
+					connected[0] = System.currentTimeMillis();
+					return null;
+				}
+			}).when(channel).connect(anyInt());
+			when(channel.getInputStream()).thenReturn(new ByteArrayInputStream(stdout.getBytes("UTF-8")));
+			when(channel.getErrStream()).thenReturn(new ByteArrayInputStream(stderr.getBytes("UTF-8")));
+			when(channel.isClosed()).thenAnswer(new Answer<Boolean>() {
+
+				public Boolean answer(InvocationOnMock invocation) throws Throwable {
+					return System.currentTimeMillis() - connected[0] >= runMillis;
+				}
+			});
+			when(channel.getExitStatus()).thenReturn(exitStatus);
+			return channel;
+		}
+	}
+}
@@ -0,0 +1,138 @@
+/******************************************************************************* 
+ * Copyright (c) 2011 Red Hat, Inc. 
+ * Distributed under license by Red Hat, Inc. All rights reserved. 
+ * This program is made available under the terms of the 
+ * Eclipse Public License v1.0 which accompanies this distribution, 
+ * and is available at http://www.eclipse.org/legal/epl-v10.html 
+ * 
+ * Contributors: 
+ * Red Hat, Inc. - initial API and implementation 
+ ******************************************************************************/
+package com.openshift.express.internal.client.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.openshift.express.client.OpenShiftException;
+import com.openshift.express.internal.client.concurrent.RequestCoalescer;
+
+/**
+ * @author agent
+ */
+public class RequestCoalescerTest {
+
+	private static final int CALLERS = 10;
+
+	private ExecutorService executor;
+	private RequestCoalescer coalescer;
+
+	@Before
+	public void setUp() {
+		this.executor = Executors.newFixedThreadPool(CALLERS);
+		this.coalescer = new RequestCoalescer();
+	}
+
+	@After
+	public void tearDown() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void concurrentIdenticalRequestsAreExecutedOnce() throws Exception {
+		final Object result = new Object();
+		final AtomicInteger executions = new AtomicInteger();
+		final CountDownLatch release = new CountDownLatch(1);
+		List<Future<Object>> callers = submitCallers(RequestCoalescer.createKey("user_info", "toolsjboss"),
+				new Callable<Object>() {
+
+					public Object call() throws Exception {
+						executions.incrementAndGet();
+						release.await();
+						return result;
+					}
+				});
+
+		waitForInFlight();
+		release.countDown();
+
+		for (Future<Object> caller : callers) {
+			assertSame(result, caller.get(10, TimeUnit.SECONDS));
+		}
+		assertEquals(1, executions.get());
+		assertEquals(0, coalescer.getInFlight());
+	}
+
+	@Test
+	public void waitersShareException() throws Exception {
+		final CountDownLatch release = new CountDownLatch(1);
+		List<Future<Object>> callers = submitCallers(RequestCoalescer.createKey("status", "toolsjboss", "app"),
+				new Callable<Object>() {
+
+					public Object call() throws Exception {
+						release.await();
+						throw new OpenShiftException("broker unavailable");
+					}
+				});
+
+		waitForInFlight();
+		release.countDown();
+
+		for (Future<Object> caller : callers) {
+			assertTrue(caller.get(10, TimeUnit.SECONDS) instanceof OpenShiftException);
+		}
+	}
+
+	@Test
+	public void differentKeysAreNotCoalesced() throws Exception {
+		final AtomicInteger executions = new AtomicInteger();
+		Callable<Object> request = new Callable<Object>() {
+
+			public Object call() throws Exception {
+				return executions.incrementAndGet();
+			}
+		};
+		coalescer.execute(RequestCoalescer.createKey("status", "toolsjboss", "app1"), request);
+		coalescer.execute(RequestCoalescer.createKey("status", "toolsjboss", "app2"), request);
+		assertEquals(2, executions.get());
+	}
+
+	private List<Future<Object>> submitCallers(final RequestCoalescer.Key key, final Callable<Object> request) {
+		List<Future<Object>> callers = new ArrayList<Future<Object>>();
+		for (int i = 0; i < CALLERS; i++) {
+			callers.add(executor.submit(new Callable<Object>() {
+
+				public Object call() throws Exception {
+					try {
+						return coalescer.execute(key, request);
+					} catch (OpenShiftException e) {
+						return e;
+					}
+				}
+			}));
+		}
+		return callers;
+	}
+
+	private void waitForInFlight() throws InterruptedException {
+		while (coalescer.getInFlight() == 0) {
+			Thread.sleep(10);
+		}
+		// give the remaining callers time to join the request in flight
+		Thread.sleep(200);
+	}
+}
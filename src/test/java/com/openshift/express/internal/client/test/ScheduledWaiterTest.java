@@ -0,0 +1,140 @@
+/******************************************************************************* 
+ * Copyright (c) 2007 Red Hat, Inc. 
+ * Distributed under license by Red Hat, Inc. All rights reserved. 
+ * This program is made available under the terms of the 
+ * Eclipse Public License v1.0 which accompanies this distribution, 
+ * and is available at http://www.eclipse.org/legal/epl-v10.html 
+ * 
+ * Contributors: 
+ * Red Hat, Inc. - initial API and implementation 
+ ******************************************************************************/
+package com.openshift.express.internal.client.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.openshift.express.client.IWaitCallback;
+import com.openshift.express.internal.client.concurrent.ScheduledWaiter;
+
+/**
+ * @author agent
+ */
+public class ScheduledWaiterTest {
+
+	private static final int PROBE_THREADS = 2;
+
+	private ScheduledWaiter waiter = new ScheduledWaiter(10, 200, PROBE_THREADS);
+
+	@Test
+	public void backsOffWhileConditionIsNotMet() throws InterruptedException, ExecutionException {
+		final AtomicInteger probes = new AtomicInteger();
+		long start = System.currentTimeMillis();
+		Future<Boolean> wait = waiter.waitFor(new ScheduledWaiter.ICondition() {
+
+			public boolean isMet() throws Exception {
+				probes.incrementAndGet();
+				return false;
+			}
+		}, 1000, null);
+
+		assertFalse(wait.get());
+		assertTrue(System.currentTimeMillis() - start >= 1000);
+		// polling every 2 ms would have probed ~500 times
+		assertTrue("probed " + probes.get() + " times", probes.get() < 20);
+	}
+
+	@Test
+	public void servesManyWaitsWithFewThreads() throws InterruptedException, ExecutionException {
+		final long metAt = System.currentTimeMillis() + 200;
+		final Set<String> threads = Collections.synchronizedSet(new HashSet<String>());
+		final AtomicInteger callbacks = new AtomicInteger();
+		List<Future<Boolean>> waits = new ArrayList<Future<Boolean>>();
+		for (int i = 0; i < 200; i++) {
+			waits.add(waiter.waitFor(new ScheduledWaiter.ICondition() {
+
+				public boolean isMet() throws Exception {
+					threads.add(Thread.currentThread().getName());
+					return System.currentTimeMillis() >= metAt;
+				}
+			}, 5000, new IWaitCallback() {
+
+				public void done(boolean successful) {
+					callbacks.incrementAndGet();
+				}
+			}));
+		}
+
+		for (Future<Boolean> wait : waits) {
+			assertTrue(wait.get());
+		}
+		assertEquals(200, callbacks.get());
+		assertTrue(threads.size() <= PROBE_THREADS);
+	}
+
+	@Test
+	public void cancelledWaitStopsProbing() throws InterruptedException {
+		final AtomicInteger probes = new AtomicInteger();
+		Future<Boolean> wait = waiter.waitFor(new ScheduledWaiter.ICondition() {
+
+			public boolean isMet() throws Exception {
+				probes.incrementAndGet();
+				return false;
+			}
+		}, 5000, null);
+		Thread.sleep(100);
+
+		assertTrue(wait.cancel(false));
+		assertTrue(wait.isCancelled());
+		int probesAtCancel = probes.get();
+		Thread.sleep(500);
+		assertTrue(probes.get() <= probesAtCancel + 1);
+	}
+
+	@Test
+	public void expiresWaitsWhoseProbesAreBlockedOrQueued() throws Exception {
+		final CountDownLatch release = new CountDownLatch(1);
+		List<Future<Boolean>> blocked = new ArrayList<Future<Boolean>>();
+		for (int i = 0; i < PROBE_THREADS; i++) {
+			blocked.add(waiter.waitFor(new ScheduledWaiter.ICondition() {
+
+				public boolean isMet() throws Exception {
+					release.await();
+					return true;
+				}
+			}, 100, null));
+		}
+		final AtomicInteger queuedProbes = new AtomicInteger();
+		Future<Boolean> queued = waiter.waitFor(new ScheduledWaiter.ICondition() {
+
+			public boolean isMet() throws Exception {
+				queuedProbes.incrementAndGet();
+				return true;
+			}
+		}, 100, null);
+
+		try {
+			for (Future<Boolean> wait : blocked) {
+				assertFalse(wait.get(1, TimeUnit.SECONDS));
+			}
+			assertFalse(queued.get(1, TimeUnit.SECONDS));
+		} finally {
+			release.countDown();
+		}
+		Thread.sleep(100);
+		assertEquals(0, queuedProbes.get());
+	}
+}
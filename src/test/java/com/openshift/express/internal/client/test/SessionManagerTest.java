@@ -0,0 +1,149 @@
+/******************************************************************************* 
+ * Copyright (c) 2011 Red Hat, Inc. 
+ * Distributed under license by Red Hat, Inc. All rights reserved. 
+ * This program is made available under the terms of the 
+ * Eclipse Public License v1.0 which accompanies this distribution, 
+ * and is available at http://www.eclipse.org/legal/epl-v10.html 
+ * 
+ * Contributors: 
+ * Red Hat, Inc. - initial API and implementation 
+ ******************************************************************************/
+package com.openshift.express.internal.client.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.openshift.express.client.ICartridge;
+import com.openshift.express.client.IUser;
+import com.openshift.express.client.OpenShiftException;
+import com.openshift.express.client.OpenShiftService;
+import com.openshift.express.client.SessionManager;
+import com.openshift.express.internal.client.concurrent.FairScheduler;
+
+/**
+ * @author agent
+ */
+public class SessionManagerTest {
+
+	private static final String BROKER_URL = "https://localhost";
+
+	@Test
+	public void usersOfSameBrokerShareService() throws OpenShiftException {
+		SessionManager sessions = new SessionManager("test");
+		IUser user1 = sessions.getUser("user1", "password", BROKER_URL);
+		IUser user2 = sessions.getUser("user2", "password", BROKER_URL);
+		IUser user3 = sessions.getUser("user3", "password", "https://otherhost");
+
+		assertSame(user1, sessions.getUser("user1", "password", BROKER_URL));
+		assertSame(sessions.getService(BROKER_URL), sessions.getService(BROKER_URL));
+		assertNotSame(sessions.getService(BROKER_URL), sessions.getService("https://otherhost"));
+		assertEquals(3, sessions.getUserCount());
+		assertNotSame(user1, user2);
+		assertNotSame(user1, user3);
+	}
+
+	@Test
+	public void changedPasswordCreatesNewUser() throws OpenShiftException {
+		SessionManager sessions = new SessionManager("test");
+		IUser user = sessions.getUser("user1", "password", BROKER_URL);
+		IUser newUser = sessions.getUser("user1", "newpassword", BROKER_URL);
+
+		assertNotSame(user, newUser);
+		assertEquals("newpassword", newUser.getPassword());
+		assertEquals(1, sessions.getUserCount());
+	}
+
+	@Test
+	public void usersShareCartridgeCatalog() throws OpenShiftException {
+		final AtomicInteger requests = new AtomicInteger();
+		SessionManager sessions = new SessionManager("test") {
+
+			protected OpenShiftService createService(String url) {
+				return new OpenShiftService("test", url) {
+
+					protected List<ICartridge> requestCartridges(IUser user) throws OpenShiftException {
+						requests.incrementAndGet();
+						return Collections.<ICartridge> singletonList(ICartridge.JBOSSAS_7);
+					}
+				};
+			}
+		};
+		sessions.getUser("user1", "password", BROKER_URL).getCartridges();
+		sessions.getUser("user2", "password", BROKER_URL).getCartridges();
+
+		assertEquals(1, requests.get());
+	}
+
+	@Test
+	public void schedulerTakesTurnsAcrossTenants() throws Exception {
+		final FairScheduler scheduler = new FairScheduler(1);
+		final List<String> order = Collections.synchronizedList(new ArrayList<String>());
+		scheduler.acquire("holder");
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int i = 0; i < 4; i++) {
+			threads.add(startRequest(scheduler, "heavy", order));
+			waitForWaiting(scheduler, i + 1);
+		}
+		threads.add(startRequest(scheduler, "light", order));
+		waitForWaiting(scheduler, 5);
+
+		scheduler.release();
+		for (Thread thread : threads) {
+			thread.join(10 * 1000);
+		}
+
+		assertEquals(5, order.size());
+		assertEquals("heavy", order.get(0));
+		assertEquals("light", order.get(1));
+		assertEquals(0, scheduler.getInFlight());
+	}
+
+	@Test
+	public void raisedLimitGrantsWaitingRequests() throws Exception {
+		FairScheduler scheduler = new FairScheduler(1);
+		List<String> order = Collections.synchronizedList(new ArrayList<String>());
+		scheduler.acquire("holder");
+		Thread thread = startRequest(scheduler, "tenant", order);
+		waitForWaiting(scheduler, 1);
+
+		scheduler.setLimit(2);
+		thread.join(10 * 1000);
+
+		assertEquals(1, order.size());
+		assertEquals(1, scheduler.getInFlight());
+	}
+
+	private Thread startRequest(final FairScheduler scheduler, final String tenant, final List<String> order) {
+		Thread thread = new Thread() {
+
+			public void run() {
+				try {
+					scheduler.acquire(tenant);
+					order.add(tenant);
+					scheduler.release();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		};
+		thread.start();
+		return thread;
+	}
+
+	private void waitForWaiting(FairScheduler scheduler, int waiting) throws InterruptedException {
+		long timeout = System.currentTimeMillis() + 10 * 1000;
+		while (scheduler.getWaiting() < waiting
+				&& System.currentTimeMillis() < timeout) {
+			Thread.sleep(1);
+		}
+		assertEquals(waiting, scheduler.getWaiting());
+	}
+}
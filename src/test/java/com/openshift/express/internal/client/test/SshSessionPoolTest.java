@@ -0,0 +1,170 @@
+/******************************************************************************* 
+ * Copyright (c) 2011 Red Hat, Inc. 
+ * Distributed under license by Red Hat, Inc. All rights reserved. 
+ * This program is made available under the terms of the 
+ * Eclipse Public License v1.0 which accompanies this distribution, 
+ * and is available at http://www.eclipse.org/legal/epl-v10.html 
+ * 
+ * Contributors: 
+ * Red Hat, Inc. - initial API and implementation 
+ ******************************************************************************/
+package com.openshift.express.internal.client.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.jcraft.jsch.ChannelExec;
+import com.jcraft.jsch.JSchException;
+import com.jcraft.jsch.Session;
+import com.openshift.express.internal.client.ssh.SshSessionKey;
+import com.openshift.express.internal.client.ssh.SshSessionPool;
+
+/**
+ * @author agent
+ */
+public class SshSessionPoolTest {
+
+	private static final SshSessionKey KEY = new SshSessionKey("root", "localhost", "/id_rsa", null);
+
+	private SshSessionPoolFake pool;
+
+	@After
+	public void tearDown() {
+		if (pool != null) {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void reusesSessionPerKey() throws JSchException {
+		this.pool = new SshSessionPoolFake(60 * 1000);
+		Session session = pool.acquire(KEY);
+		pool.release(KEY);
+		assertSame(session, pool.acquire(KEY));
+		pool.release(KEY);
+		Session otherSession = pool.acquire(new SshSessionKey("root", "otherhost", "/id_rsa", null));
+
+		assertNotSame(session, otherSession);
+		assertEquals(2, pool.connects.get());
+		assertEquals(2, pool.getSessionCount());
+	}
+
+	@Test
+	public void reconnectsDisconnectedSession() throws JSchException {
+		this.pool = new SshSessionPoolFake(60 * 1000);
+		Session session = pool.acquire(KEY);
+		pool.release(KEY);
+		when(session.isConnected()).thenReturn(false);
+
+		assertNotSame(session, pool.acquire(KEY));
+		assertEquals(2, pool.connects.get());
+	}
+
+	@Test
+	public void evictsIdleSessionsOnly() throws JSchException {
+		this.pool = new SshSessionPoolFake(0);
+		Session idle = pool.acquire(KEY);
+		pool.release(KEY);
+		SshSessionKey leasedKey = new SshSessionKey("root", "otherhost", "/id_rsa", null);
+		Session leased = pool.acquire(leasedKey);
+
+		// may have been evicted in the background already
+		pool.evictIdle();
+		verify(idle).disconnect();
+		verify(leased, never()).disconnect();
+		assertEquals(1, pool.getSessionCount());
+	}
+
+	@Test
+	public void concurrentAcquiresConnectOnce() throws Exception {
+		this.pool = new SshSessionPoolFake(60 * 1000);
+		pool.connectDelay = 100;
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<Session>> sessions = new ArrayList<Future<Session>>();
+			for (int i = 0; i < 8; i++) {
+				sessions.add(executor.submit(new Callable<Session>() {
+
+					public Session call() throws Exception {
+						return pool.acquire(KEY);
+					}
+				}));
+			}
+			Session session = sessions.get(0).get();
+			for (Future<Session> future : sessions) {
+				assertSame(session, future.get());
+			}
+			assertEquals(1, pool.connects.get());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void executeReturnsCompleteOutput() throws Exception {
+		this.pool = new SshSessionPoolFake(60 * 1000);
+		pool.output = "line 1\nline 2\n";
+
+		assertEquals("line 1\nline 2\n", pool.execute(KEY, "tail -100 server.log"));
+		assertEquals("line 1\nline 2\n", pool.execute(KEY, "tail -100 server.log"));
+		assertEquals(1, pool.connects.get());
+	}
+
+	@Test
+	public void executeDecodesOutputAsUtf8() throws Exception {
+		this.pool = new SshSessionPoolFake(60 * 1000);
+		pool.output = "gr\u00fc\u00dfe \u20ac\n";
+
+		assertEquals("gr\u00fc\u00dfe \u20ac\n", pool.execute(KEY, "tail -100 server.log"));
+	}
+
+	private static class SshSessionPoolFake extends SshSessionPool {
+
+		private AtomicInteger connects = new AtomicInteger();
+		private volatile long connectDelay;
+		private volatile String output = "";
+
+		private SshSessionPoolFake(long idleTimeout) {
+			super(idleTimeout, 1000);
+		}
+
+		protected Session connect(SshSessionKey key, int timeout) throws JSchException {
+			connects.incrementAndGet();
+			try {
+				Thread.sleep(connectDelay);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			Session session = mock(Session.class);
+			when(session.isConnected()).thenReturn(true);
+			when(session.openChannel("exec")).thenAnswer(new Answer<ChannelExec>() {
+
+				public ChannelExec answer(InvocationOnMock invocation) throws Throwable {
+					ChannelExec channel = mock(ChannelExec.class);
+					when(channel.getInputStream()).thenReturn(new ByteArrayInputStream(output.getBytes("UTF-8")));
+					return channel;
+				}
+			});
+			return session;
+		}
+	}
+}
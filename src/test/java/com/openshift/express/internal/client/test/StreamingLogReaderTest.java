@@ -0,0 +1,226 @@
+/******************************************************************************* 
+ * Copyright (c) 2011 Red Hat, Inc. 
+ * Distributed under license by Red Hat, Inc. All rights reserved. 
+ * This program is made available under the terms of the 
+ * Eclipse Public License v1.0 which accompanies this distribution, 
+ * and is available at http://www.eclipse.org/legal/epl-v10.html 
+ * 
+ * Contributors: 
+ * Red Hat, Inc. - initial API and implementation 
+ ******************************************************************************/
+package com.openshift.express.internal.client.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.jcraft.jsch.ChannelExec;
+import com.jcraft.jsch.JSchException;
+import com.jcraft.jsch.Session;
+import com.openshift.express.client.StreamingLogReader;
+import com.openshift.express.internal.client.ssh.SshSessionKey;
+import com.openshift.express.internal.client.ssh.SshSessionPool;
+
+/**
+ * @author agent
+ */
+public class StreamingLogReaderTest {
+
+	private static final SshSessionKey KEY = new SshSessionKey("root", "localhost", null, null);
+	private static final String LOG = "/var/lib/libra/app-ns/app/logs/server.log";
+
+	private TailSshSessionPoolFake pool = new TailSshSessionPoolFake();
+
+	@After
+	public void tearDown() {
+		pool.shutdown();
+	}
+
+	@Test
+	public void resumesAtOffsetAfterReconnect() throws IOException {
+		pool.stats.add("1 100");
+		pool.tails.add("line1\nline2\n");
+		pool.tails.add("line3\n");
+		StreamingLogReader reader = new StreamingLogReader(pool, KEY, LOG, 0);
+		reader.setReconnectDelay(10);
+
+		assertEquals("line1\nline2\nline3\n", read(reader, 18));
+		reader.close();
+
+		assertEquals(18, reader.getOffset());
+		List<String> tails = pool.getTailCommands();
+		assertEquals(2, tails.size());
+		assertEquals("tail -c +1 -F " + LOG, tails.get(0));
+		assertEquals("tail -c +13 -F " + LOG, tails.get(1));
+		// closing released the session
+		assertEquals(0, pool.leases.get());
+	}
+
+	@Test
+	public void startsAtEndOfLog() throws IOException {
+		pool.stats.add("1 42");
+		pool.tails.add("line1\n");
+		StreamingLogReader reader = new StreamingLogReader(pool, KEY, LOG);
+
+		assertEquals("line1\n", read(reader, 6));
+		reader.close();
+
+		assertEquals("tail -c +43 -F " + LOG, pool.getTailCommands().get(0));
+		assertEquals(48, reader.getOffset());
+	}
+
+	@Test
+	public void readsRotatedLogFromStart() throws IOException {
+		pool.stats.add("1 10");
+		pool.tails.add("line1\n");
+		StreamingLogReader reader = new StreamingLogReader(pool, KEY, LOG, 100);
+
+		assertEquals("line1\n", read(reader, 6));
+		reader.close();
+
+		assertEquals("tail -c +1 -F " + LOG, pool.getTailCommands().get(0));
+	}
+
+	@Test
+	public void keepsMultibyteCharacterSplitAcrossReads() throws IOException {
+		pool.stats.add("1 100");
+		pool.tails.add(new String(new byte[] { 'a', (byte) 0xc3 }, "ISO-8859-1"));
+		pool.tails.add(new String(new byte[] { (byte) 0xc3, (byte) 0xa9, '\n' }, "ISO-8859-1"));
+		StreamingLogReader reader = new StreamingLogReader(pool, KEY, LOG, 0);
+		reader.setReconnectDelay(10);
+
+		String expected = "a" + new String(new byte[] { (byte) 0xc3, (byte) 0xa9 }, "UTF-8") + "\n";
+		assertEquals(expected, read(reader, 3));
+		reader.close();
+		// the incomplete character was read again after reconnecting
+		assertEquals("tail -c +2 -F " + LOG, pool.getTailCommands().get(1));
+	}
+
+	@Test
+	public void readsLogFromStartIfReplacedWhileConnected() throws IOException {
+		pool.stats.add("1 100");
+		pool.tails.add("line1\n");
+		pool.tails.add("line2\n");
+		// the new log grew past the offset in the old one
+		pool.stats.add("2 200");
+		StreamingLogReader reader = new StreamingLogReader(pool, KEY, LOG, 50);
+		reader.setReconnectDelay(10);
+
+		assertEquals("line1\nline2\n", read(reader, 12));
+		reader.close();
+
+		List<String> tails = pool.getTailCommands();
+		assertEquals("tail -c +51 -F " + LOG, tails.get(0));
+		assertEquals("tail -c +1 -F " + LOG, tails.get(1));
+		assertEquals(6, reader.getOffset());
+	}
+
+	private String read(StreamingLogReader reader, int length) throws IOException {
+		StringBuilder builder = new StringBuilder();
+		char[] buffer = new char[64];
+		while (builder.length() < length) {
+			int read = reader.read(buffer, 0, length - builder.length());
+			if (read == -1) {
+				break;
+			}
+			builder.append(buffer, 0, read);
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * Serves stat with the given inodes and sizes and each tail with the next output, as
+	 * if the tail dropped after writing its output.
+	 */
+	private static class TailSshSessionPoolFake extends SshSessionPool {
+
+		/** the stats to serve, the last one is served again */
+		private final Queue<String> stats = new LinkedList<String>();
+		private final Queue<String> tails = new LinkedList<String>();
+		private final List<String> commands = Collections.synchronizedList(new ArrayList<String>());
+		private final AtomicInteger leases = new AtomicInteger();
+
+		public Session acquire(SshSessionKey key) throws JSchException {
+			Session session = super.acquire(key);
+			leases.incrementAndGet();
+			return session;
+		}
+
+		public void release(SshSessionKey key) {
+			leases.decrementAndGet();
+			super.release(key);
+		}
+
+		protected Session connect(SshSessionKey key, int timeout) throws JSchException {
+			Session session = mock(Session.class);
+			when(session.isConnected()).thenReturn(true);
+			when(session.openChannel("exec")).thenAnswer(new Answer<ChannelExec>() {
+
+				public ChannelExec answer(InvocationOnMock invocation) throws Throwable {
+					return createChannel();
+				}
+			});
+			return session;
+		}
+
+		private ChannelExec createChannel() throws IOException {
+			ChannelExec channel = mock(ChannelExec.class);
+			final String[] command = new String[1];
+			doAnswer(new Answer<Void>() {
+
+				public Void answer(InvocationOnMock invocation) throws Throwable {
+					command[0] = (String) invocation.getArguments()[0];
+					commands.add(command[0]);
+					return null;
+				}
+			}).when(channel).setCommand(anyString());
+			when(channel.getInputStream()).thenAnswer(new Answer<InputStream>() {
+
+				public InputStream answer(InvocationOnMock invocation) throws Throwable {
+					if (command[0].startsWith("stat")) {
+						String stat;
+						synchronized (stats) {
+							stat = stats.size() > 1 ? stats.poll() : stats.peek();
+						}
+						return new ByteArrayInputStream((stat + "\n").getBytes("ISO-8859-1"));
+					}
+					String output;
+					synchronized (tails) {
+						output = tails.isEmpty() ? "" : tails.poll();
+					}
+					return new ByteArrayInputStream(output.getBytes("ISO-8859-1"));
+				}
+			});
+			return channel;
+		}
+
+		private List<String> getTailCommands() {
+			List<String> tailCommands = new ArrayList<String>();
+			synchronized (commands) {
+				for (String command : commands) {
+					if (command.startsWith("tail")) {
+						tailCommands.add(command);
+					}
+				}
+			}
+			return tailCommands;
+		}
+	}
+}
@@ -0,0 +1,245 @@
+/******************************************************************************* 
+ * Copyright (c) 2011 Red Hat, Inc. 
+ * Distributed under license by Red Hat, Inc. All rights reserved. 
+ * This program is made available under the terms of the 
+ * Eclipse Public License v1.0 which accompanies this distribution, 
+ * and is available at http://www.eclipse.org/legal/epl-v10.html 
+ * 
+ * Contributors: 
+ * Red Hat, Inc. - initial API and implementation 
+ ******************************************************************************/
+package com.openshift.express.internal.client.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.jcraft.jsch.ChannelExec;
+import com.jcraft.jsch.JSchException;
+import com.jcraft.jsch.Session;
+import com.openshift.express.client.Cartridge;
+import com.openshift.express.client.ICartridge;
+import com.openshift.express.client.IOpenShiftService;
+import com.openshift.express.client.IUser;
+import com.openshift.express.client.OpenShiftException;
+import com.openshift.express.client.StreamingLogReader;
+import com.openshift.express.client.threaddump.DumpedThread;
+import com.openshift.express.client.threaddump.IThreadDumpListener;
+import com.openshift.express.client.threaddump.ThreadDump;
+import com.openshift.express.client.threaddump.ThreadDumpParser;
+import com.openshift.express.internal.client.InternalUser;
+import com.openshift.express.internal.client.JBossASApplication;
+import com.openshift.express.internal.client.ssh.SshSessionKey;
+import com.openshift.express.internal.client.ssh.SshSessionPool;
+
+/**
+ * @author agent
+ */
+public class ThreadDumpParserTest {
+
+	private static final String DUMP =
+			"10:22:51,001 INFO  [org.jboss.as] JBoss AS 7.0.2.Final started\n"
+					+ "2011-11-05 10:23:00\n"
+					+ "Full thread dump OpenJDK 64-Bit Server VM (20.0-b12 mixed mode):\n"
+					+ "\n"
+					+ "\"http--127.0.250.1-8080-1\" daemon prio=10 tid=0x00007f1c3c1d1000 nid=0x4a2 runnable [0x00007f1c2f4f3000]\n"
+					+ "   java.lang.Thread.State: RUNNABLE\n"
+					+ "\tat java.net.PlainSocketImpl.socketAccept(Native Method)\n"
+					+ "\tat java.net.ServerSocket.accept(ServerSocket.java:408)\n"
+					+ "\t- locked <0x00000000e0a0e2a8> (a java.net.SocksSocketImpl)\n"
+					+ "\n"
+					+ "\"MSC service thread 1-1\" prio=10 tid=0x00007f1c3c1d2000 nid=0x4a3 waiting on condition [0x00007f1c2f5f4000]\n"
+					+ "   java.lang.Thread.State: WAITING (parking)\n"
+					+ "\tat sun.misc.Unsafe.park(Native Method)\n"
+					+ "\t- parking to wait for  <0x00000000e0b0e2a8> (a java.util.concurrent.locks.ReentrantLock$NonfairSync)\n"
+					+ "\tat java.net.ServerSocket.accept(ServerSocket.java:408)\n"
+					+ "\n"
+					+ "\"VM Thread\" prio=10 tid=0x00007f1c3c06a000 nid=0x48b runnable \n"
+					+ "\n"
+					+ "JNI global references: 1234\n"
+					+ "\n"
+					+ "Heap\n"
+					+ " def new generation   total 4928K, used 1043K\n";
+
+	private SshSessionKey key = new SshSessionKey("root", "localhost", null, null);
+	private DumpSshSessionPoolFake pool = new DumpSshSessionPoolFake();
+
+	@After
+	public void tearDown() {
+		pool.shutdown();
+	}
+
+	@Test
+	public void parsesThreads() throws IOException {
+		ThreadDump dump = new ThreadDumpParser().parse(new StringReader(DUMP));
+
+		assertEquals("OpenJDK 64-Bit Server VM (20.0-b12 mixed mode)", dump.getVm());
+		assertEquals(3, dump.getThreads().size());
+		DumpedThread http = dump.getThread("http--127.0.250.1-8080-1");
+		assertTrue(http.isDaemon());
+		assertEquals(10, http.getPriority());
+		assertEquals(Thread.State.RUNNABLE, http.getState());
+		assertEquals(2, http.getStack().size());
+		assertEquals("java.net.PlainSocketImpl.socketAccept(Native Method)", http.getStack().get(0));
+		assertEquals("locked <0x00000000e0a0e2a8> (a java.net.SocksSocketImpl)", http.getLocks().get(0));
+		DumpedThread msc = dump.getThread("MSC service thread 1-1");
+		assertFalse(msc.isDaemon());
+		assertEquals(Thread.State.WAITING, msc.getState());
+		assertEquals(1, dump.getThreads(Thread.State.WAITING).size());
+		assertNull(dump.getThread("VM Thread").getState());
+	}
+
+	@Test
+	public void sharesFramesAcrossThreads() throws IOException {
+		ThreadDump dump = new ThreadDumpParser().parse(new StringReader(DUMP));
+
+		assertSame(dump.getThread("http--127.0.250.1-8080-1").getStack().get(1),
+				dump.getThread("MSC service thread 1-1").getStack().get(1));
+	}
+
+	@Test
+	public void notifiesThreadsWhileParsing() throws IOException {
+		final List<String> names = new ArrayList<String>();
+		new ThreadDumpParser(new IThreadDumpListener() {
+
+			public void threadParsed(DumpedThread thread) {
+				names.add(thread.getName());
+			}
+		}).parse(new StringReader(DUMP));
+
+		assertEquals(3, names.size());
+		assertEquals("VM Thread", names.get(2));
+	}
+
+	@Test
+	public void returnsNullForIncompleteDump() throws IOException {
+		assertNull(new ThreadDumpParser().parse(new StringReader(DUMP.substring(0, DUMP.indexOf("JNI")))));
+	}
+
+	@Test
+	public void applicationTailsLogBeforeTriggeringDump() throws Exception {
+		pool.output = DUMP;
+		JBossASApplication application = createApplication(new Answer<Void>() {
+
+			public Void answer(InvocationOnMock invocation) throws Throwable {
+				assertEquals("tail -c +101 -F /stdout.log", pool.getTailCommand());
+				return null;
+			}
+		});
+
+		ThreadDump dump = application.captureThreadDump(5 * 1000);
+
+		assertEquals(3, dump.getThreads().size());
+	}
+
+	@Test
+	public void applicationFailsIfDumpIsNotReadWithinTimeout() throws Exception {
+		pool.output = DUMP.substring(0, DUMP.indexOf("JNI"));
+		JBossASApplication application = createApplication(null);
+
+		try {
+			application.captureThreadDump(200);
+			fail("dump without end was read");
+		} catch (OpenShiftException e) {
+			assertTrue(e.getMessage().contains("200 ms"));
+		}
+	}
+
+	private JBossASApplication createApplication(Answer<Void> threadDumpAnswer) throws OpenShiftException {
+		IOpenShiftService service = mock(IOpenShiftService.class);
+		when(service.getLogStream(anyString(), any(ICartridge.class), any(IUser.class), eq("stdout.log")))
+				.thenAnswer(new Answer<StreamingLogReader>() {
+
+					public StreamingLogReader answer(InvocationOnMock invocation) throws Throwable {
+						StreamingLogReader reader = new StreamingLogReader(pool, key, "/stdout.log");
+						reader.setReconnectDelay(10);
+						return reader;
+					}
+				});
+		if (threadDumpAnswer != null) {
+			doAnswer(threadDumpAnswer).when(service)
+					.threadDumpApplication(anyString(), any(ICartridge.class), any(IUser.class));
+		}
+		return new JBossASApplication("app", "uuid", "", null, Cartridge.JBOSSAS_7, mock(InternalUser.class), service);
+	}
+
+	/**
+	 * Serves stat with inode 1 and size 100 and the first tail with the given output, as
+	 * if the tail dropped after writing it.
+	 */
+	private static class DumpSshSessionPoolFake extends SshSessionPool {
+
+		private volatile String output = "";
+		private final List<String> commands = Collections.synchronizedList(new ArrayList<String>());
+
+		protected Session connect(SshSessionKey key, int timeout) throws JSchException {
+			Session session = mock(Session.class);
+			when(session.isConnected()).thenReturn(true);
+			when(session.openChannel("exec")).thenAnswer(new Answer<ChannelExec>() {
+
+				public ChannelExec answer(InvocationOnMock invocation) throws Throwable {
+					return createChannel();
+				}
+			});
+			return session;
+		}
+
+		private ChannelExec createChannel() throws IOException {
+			ChannelExec channel = mock(ChannelExec.class);
+			final String[] command = new String[1];
+			doAnswer(new Answer<Void>() {
+
+				public Void answer(InvocationOnMock invocation) throws Throwable {
+					command[0] = (String) invocation.getArguments()[0];
+					commands.add(command[0]);
+					return null;
+				}
+			}).when(channel).setCommand(anyString());
+			when(channel.getInputStream()).thenAnswer(new Answer<InputStream>() {
+
+				public InputStream answer(InvocationOnMock invocation) throws Throwable {
+					if (command[0].startsWith("stat")) {
+						return new ByteArrayInputStream("1 100\n".getBytes("UTF-8"));
+					}
+					String tail = output;
+					output = "";
+					return new ByteArrayInputStream(tail.getBytes("UTF-8"));
+				}
+			});
+			return channel;
+		}
+
+		private String getTailCommand() {
+			synchronized (commands) {
+				for (String command : commands) {
+					if (command.startsWith("tail")) {
+						return command;
+					}
+				}
+			}
+			return null;
+		}
+	}
+}
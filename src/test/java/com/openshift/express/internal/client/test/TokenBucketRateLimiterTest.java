@@ -0,0 +1,205 @@
+/******************************************************************************* 
+ * Copyright (c) 2011 Red Hat, Inc. 
+ * Distributed under license by Red Hat, Inc. All rights reserved. 
+ * This program is made available under the terms of the 
+ * Eclipse Public License v1.0 which accompanies this distribution, 
+ * and is available at http://www.eclipse.org/legal/epl-v10.html 
+ * 
+ * Contributors: 
+ * Red Hat, Inc. - initial API and implementation 
+ ******************************************************************************/
+package com.openshift.express.internal.client.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.net.MalformedURLException;
+
+import org.junit.Test;
+
+import com.openshift.express.client.ICartridge;
+import com.openshift.express.client.IHttpClient;
+import com.openshift.express.client.IUser;
+import com.openshift.express.client.OpenShiftEndpointException;
+import com.openshift.express.client.OpenShiftException;
+import com.openshift.express.client.OpenShiftService;
+import com.openshift.express.client.RateLimitedOpenShiftException;
+import com.openshift.express.internal.client.concurrent.TokenBucket;
+import com.openshift.express.internal.client.concurrent.TokenBucketRateLimiter;
+import com.openshift.express.internal.client.httpclient.InternalServerErrorException;
+
+/**
+ * @author agent
+ */
+public class TokenBucketRateLimiterTest {
+
+	@Test
+	public void allowsBurstUpToCapacity() {
+		TokenBucket bucket = new TokenBucket(3, 0.001);
+		assertTrue(bucket.tryAcquire());
+		assertTrue(bucket.tryAcquire());
+		assertTrue(bucket.tryAcquire());
+		assertFalse(bucket.tryAcquire());
+	}
+
+	@Test
+	public void reservationsQueueUp() {
+		TokenBucket bucket = new TokenBucket(1, 1);
+		assertEquals(0, bucket.reserve());
+		long first = bucket.reserve();
+		long second = bucket.reserve();
+		assertTrue(first > 0);
+		assertTrue(second > first + 500 * 1000 * 1000);
+	}
+
+	@Test
+	public void limitsPerUser() {
+		TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(2, 0.001);
+		assertTrue(limiter.tryAcquire("user1", "cartridge"));
+		assertTrue(limiter.tryAcquire("user1", "userinfo"));
+		assertFalse(limiter.tryAcquire("user1", "cartridge"));
+		assertTrue(limiter.tryAcquire("user2", "cartridge"));
+		assertEquals(3, limiter.getAcquiredCount());
+		assertEquals(1, limiter.getRejectedCount());
+	}
+
+	@Test
+	public void limitsPerOperation() {
+		TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(10, 0.001);
+		limiter.setOperationLimit("cartridge", 1, 0.001);
+		assertTrue(limiter.tryAcquire("user1", "cartridge"));
+		assertFalse(limiter.tryAcquire("user1", "cartridge"));
+		assertTrue(limiter.tryAcquire("user2", "cartridge"));
+		// rejected operation did not use up the user's token
+		for (int i = 0; i < 9; i++) {
+			assertTrue(limiter.tryAcquire("user1", "userinfo"));
+		}
+		assertFalse(limiter.tryAcquire("user1", "userinfo"));
+	}
+
+	@Test
+	public void blocksUntilTokenIsAvailable() throws InterruptedException {
+		TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(1, 20);
+		long start = System.currentTimeMillis();
+		for (int i = 0; i < 5; i++) {
+			limiter.acquire("user1", "cartridge");
+		}
+		long duration = System.currentTimeMillis() - start;
+
+		// 4 requests at 20 per second have to wait 200ms
+		assertTrue(duration >= 150);
+		assertEquals(4, limiter.getWaitCount());
+		assertTrue(limiter.getTotalWaitMillis() >= 150);
+		assertTrue(limiter.getMaxWaitMillis() >= limiter.getAverageWaitMillis());
+		assertTrue(limiter.getAverageWaitMillis() > 0);
+	}
+
+	@Test
+	public void rejectsInvalidLimits() {
+		try {
+			new TokenBucketRateLimiter(0, 1);
+			fail("capacity of 0 should be rejected");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		try {
+			new TokenBucketRateLimiter(1, 0);
+			fail("rate of 0 should be rejected");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void refundsTokensOfInterruptedWait() throws InterruptedException {
+		final TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(1, 5);
+		limiter.acquire("user1", "cartridge");
+		final boolean[] interrupted = new boolean[1];
+		Thread waiting = new Thread() {
+
+			public void run() {
+				try {
+					limiter.acquire("user1", "cartridge");
+				} catch (InterruptedException e) {
+					interrupted[0] = true;
+				}
+			}
+		};
+		waiting.start();
+		Thread.sleep(50);
+		waiting.interrupt();
+		waiting.join();
+		assertTrue(interrupted[0]);
+
+		// a token is refilled every 200ms, the interrupted wait did not keep one
+		Thread.sleep(200);
+		assertTrue(limiter.tryAcquire("user1", "cartridge"));
+		assertEquals(2, limiter.getAcquiredCount());
+	}
+
+	@Test
+	public void serviceRejectsRequestsBeyondQuota() throws Exception {
+		final IHttpClient client = mock(IHttpClient.class);
+		when(client.post(anyString())).thenThrow(new InternalServerErrorException("error"));
+		OpenShiftService service = new OpenShiftService("test", "https://localhost") {
+
+			protected IHttpClient createHttpClient(String id, String url, boolean verifyHostnames)
+					throws MalformedURLException {
+				return client;
+			}
+		};
+		service.setRateLimiter(new TokenBucketRateLimiter(1, 0.001), false);
+		IUser user = mock(IUser.class);
+		when(user.getRhlogin()).thenReturn("user1");
+		when(user.getPassword()).thenReturn("password");
+
+		try {
+			service.restartApplication("app", ICartridge.JBOSSAS_7, user);
+			fail("broker error expected");
+		} catch (OpenShiftEndpointException e) {
+			assertFalse(e instanceof RateLimitedOpenShiftException);
+		}
+		try {
+			service.restartApplication("app", ICartridge.JBOSSAS_7, user);
+			fail("rate limit expected");
+		} catch (RateLimitedOpenShiftException e) {
+			// expected
+		}
+		verify(client, times(1)).post(anyString());
+	}
+
+	@Test
+	public void serviceWaitsForQuota() throws Exception {
+		TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(1, 20);
+		final IHttpClient client = mock(IHttpClient.class);
+		when(client.post(anyString())).thenThrow(new InternalServerErrorException("error"));
+		OpenShiftService service = new OpenShiftService("test", "https://localhost") {
+
+			protected IHttpClient createHttpClient(String id, String url, boolean verifyHostnames)
+					throws MalformedURLException {
+				return client;
+			}
+		};
+		service.setRateLimiter(limiter, true);
+		IUser user = mock(IUser.class);
+		when(user.getRhlogin()).thenReturn("user1");
+		when(user.getPassword()).thenReturn("password");
+
+		for (int i = 0; i < 3; i++) {
+			try {
+				service.restartApplication("app", ICartridge.JBOSSAS_7, user);
+			} catch (OpenShiftException e) {
+				// broker error, request was sent though
+			}
+		}
+		assertEquals(3, limiter.getAcquiredCount());
+		assertEquals(2, limiter.getWaitCount());
+	}
+}
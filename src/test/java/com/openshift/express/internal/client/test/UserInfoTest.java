@@ -13,15 +13,23 @@ package com.openshift.express.internal.client.test;
 import static com.openshift.express.internal.client.test.utils.ApplicationInfoAsserts.assertThatContainsApplicationInfo;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 
+import java.net.MalformedURLException;
 import java.net.URLEncoder;
 import java.util.Collections;
 import java.util.List;
 
+import com.openshift.express.client.IHttpClient;
 import com.openshift.express.client.ISSHPublicKey;
 import com.openshift.express.client.OpenShiftException;
+import com.openshift.express.client.OpenShiftService;
 import com.openshift.express.internal.client.ApplicationInfo;
+import com.openshift.express.internal.client.InternalUser;
 import com.openshift.express.internal.client.UserInfo;
+import com.openshift.express.internal.client.cache.UserInfoCache;
+import com.openshift.express.internal.client.httpclient.HttpClientException;
 import com.openshift.express.internal.client.request.OpenShiftEnvelopeFactory;
 import com.openshift.express.internal.client.request.UserInfoRequest;
 import com.openshift.express.internal.client.request.marshalling.UserInfoRequestJsonMarshaller;
@@ -98,9 +106,65 @@ public class UserInfoTest {
 		assertEquals(UserInfoResponseFake.APP1_NAME, applicationInfo.getName());
 	}
 
+	@Test
+	public void unchangedResponseIsNotParsedAgain() throws OpenShiftException {
+		UserInfoResponseService service = new UserInfoResponseService();
+		InternalUser user = new InternalUser(UserInfoResponseFake.RHLOGIN, UserInfoResponseFake.PASSWORD, service);
+		UserInfoCache cache = service.getUserInfoCache();
+
+		UserInfo userInfo = service.getUserInfo(user);
+		assertNotNull(userInfo);
+		assertEquals(0, cache.getHits());
+		assertEquals(1, cache.getMisses());
+
+		assertSame(userInfo, service.getUserInfo(user));
+		assertEquals(1, cache.getHits());
+		assertEquals(1, cache.getMisses());
+	}
+
+	@Test
+	public void changedResponseIsParsedAgain() throws OpenShiftException {
+		UserInfoResponseService service = new UserInfoResponseService();
+		InternalUser user = new InternalUser(UserInfoResponseFake.RHLOGIN, UserInfoResponseFake.PASSWORD, service);
+
+		UserInfo userInfo = service.getUserInfo(user);
+		service.response = UserInfoResponseFake.RESPONSE.replace(
+				UserInfoResponseFake.NAMESPACE, UserInfoResponseFake.NAMESPACE + "0");
+		UserInfo changedUserInfo = service.getUserInfo(user);
+
+		assertNotSame(userInfo, changedUserInfo);
+		assertEquals(UserInfoResponseFake.NAMESPACE + "0", changedUserInfo.getNamespace());
+		assertEquals(0, service.getUserInfoCache().getHits());
+		assertEquals(2, service.getUserInfoCache().getMisses());
+	}
+
 	protected UserInfo getUserInfo(String response) throws OpenShiftException {
 		UserInfoResponseUnmarshaller unmarshaller = new UserInfoResponseUnmarshaller();
 		OpenShiftResponse<UserInfo> openshiftResponse = unmarshaller.unmarshall(response);
 		return openshiftResponse.getOpenShiftObject();
 	}
-}
\ No newline at end of file
+
+	private static class UserInfoResponseService extends OpenShiftService {
+
+		private String response = UserInfoResponseFake.RESPONSE;
+
+		private UserInfoResponseService() {
+			super("test", "http://localhost");
+		}
+
+		@Override
+		protected IHttpClient createHttpClient(String id, String url, boolean verifyHostnames)
+				throws MalformedURLException {
+			return new IHttpClient() {
+
+				public String post(String data) throws HttpClientException {
+					return response;
+				}
+
+				public String get() throws HttpClientException {
+					return response;
+				}
+			};
+		}
+	}
+}
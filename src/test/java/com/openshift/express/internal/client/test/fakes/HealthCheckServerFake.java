@@ -0,0 +1,107 @@
+/******************************************************************************* 
+ * Copyright (c) 2007 Red Hat, Inc. 
+ * Distributed under license by Red Hat, Inc. All rights reserved. 
+ * This program is made available under the terms of the 
+ * Eclipse Public License v1.0 which accompanies this distribution, 
+ * and is available at http://www.eclipse.org/legal/epl-v10.html 
+ * 
+ * Contributors: 
+ * Red Hat, Inc. - initial API and implementation 
+ ******************************************************************************/
+package com.openshift.express.internal.client.test.fakes;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A minimal http server that answers health checks on kept-alive
+ * connections.
+ * 
+ * @author agent
+ */
+public class HealthCheckServerFake {
+
+	private ServerSocket serverSocket;
+	private volatile boolean healthy = true;
+	private AtomicInteger connections = new AtomicInteger();
+	private AtomicInteger requests = new AtomicInteger();
+
+	public void start() throws IOException {
+		this.serverSocket = new ServerSocket(0);
+		Thread thread = new Thread(new Runnable() {
+
+			public void run() {
+				try {
+					while (!serverSocket.isClosed()) {
+						final Socket socket = serverSocket.accept();
+						connections.incrementAndGet();
+						new Thread(new Runnable() {
+
+							public void run() {
+								serve(socket);
+							}
+						}).start();
+					}
+				} catch (IOException e) {
+					// closed
+				}
+			}
+		});
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	private void serve(Socket socket) {
+		try {
+			BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), "US-ASCII"));
+			OutputStream out = socket.getOutputStream();
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.length() > 0) {
+					continue;
+				}
+				requests.incrementAndGet();
+				String body = healthy ? "1" : "0";
+				String status = healthy ? "200 OK" : "503 Service Unavailable";
+				out.write(("HTTP/1.1 " + status + "\r\n"
+						+ "Content-Length: " + body.length() + "\r\n"
+						+ "\r\n"
+						+ body).getBytes("US-ASCII"));
+				out.flush();
+			}
+		} catch (IOException e) {
+			// closed
+		} finally {
+			try {
+				socket.close();
+			} catch (IOException e) {
+				// ignore
+			}
+		}
+	}
+
+	public String getUrl() {
+		return "http://127.0.0.1:" + serverSocket.getLocalPort() + "/health";
+	}
+
+	public void setHealthy(boolean healthy) {
+		this.healthy = healthy;
+	}
+
+	public int getConnections() {
+		return connections.get();
+	}
+
+	public int getRequests() {
+		return requests.get();
+	}
+
+	public void stop() throws IOException {
+		serverSocket.close();
+	}
+}